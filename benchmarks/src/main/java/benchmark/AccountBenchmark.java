@@ -0,0 +1,105 @@
+package benchmark;
+
+import database.ShardConnections;
+import database.tables.BankAccount;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This benchmark measures the persistence path of AD and AW under contention: locking the account with
+ * AccountLocks, finding it, changing its balance and saving it in its own transaction, through a connection
+ * measured by the DatabaseTimer like every connection of a peer. Several threads change either a single
+ * account, so that they wait for each other, or random accounts out of many.
+ * The database is an InMemoryDatabase, so the time spent in a real database is not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class AccountBenchmark {
+    private static final int FIRST_NUMBER = 10000;
+    private static final long AMOUNT = 100;
+
+    /**
+     * Number of accounts the threads change.
+     */
+    @Param({"1", "1000"})
+    public int accounts;
+
+    private InMemoryDatabase database;
+
+    /**
+     * Database connections of a single peer, every thread is one peer.
+     */
+    @State(Scope.Thread)
+    public static class Peer {
+        private ShardConnections connections;
+        private Connection connection;
+
+        /**
+         * Opens the connection of the peer.
+         * @param benchmark Benchmark with the shared database
+         */
+        @Setup
+        public void setup(AccountBenchmark benchmark) {
+            connections = new ShardConnections();
+            connection = connections.getDatabaseTimer().wrap(benchmark.database.connect());
+        }
+    }
+
+    /**
+     * Creates the accounts, with a balance which no number of withdrawals during the benchmark can use up.
+     */
+    @Setup
+    public void setup() {
+        database = new InMemoryDatabase(FIRST_NUMBER, accounts, Long.MAX_VALUE / 2);
+    }
+
+    /**
+     * Deposits money to an account the way AccountDepositCommand does.
+     * @param peer Connections of the peer
+     * @return New balance
+     * @throws SQLException The account could not be read or saved
+     */
+    @Benchmark
+    public long deposit(Peer peer) throws SQLException {
+        int accountNumber = FIRST_NUMBER + ThreadLocalRandom.current().nextInt(accounts);
+        ReentrantLock lock = peer.connections.lockAccount(accountNumber);
+        try {
+            BankAccount account = BankAccount.findByAccountNumber(accountNumber, peer.connection);
+            account.deposit(AMOUNT);
+            account.save(peer.connection);
+            return account.getBalance();
+        } finally {
+            peer.connections.unlockAccount(lock);
+        }
+    }
+
+    /**
+     * Withdraws money from an account the way AccountWithdrawalCommand does.
+     * @param peer Connections of the peer
+     * @return New balance
+     * @throws SQLException The account could not be read or saved
+     */
+    @Benchmark
+    public long withdraw(Peer peer) throws SQLException {
+        int accountNumber = FIRST_NUMBER + ThreadLocalRandom.current().nextInt(accounts);
+        ReentrantLock lock = peer.connections.lockAccount(accountNumber);
+        try {
+            BankAccount account = BankAccount.findByAccountNumber(accountNumber, peer.connection);
+            account.withdraw(AMOUNT);
+            account.save(peer.connection);
+            return account.getBalance();
+        } finally {
+            peer.connections.unlockAccount(lock);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package benchmark;
+
+import command.Command;
+import command.commands.bank.*;
+import command.commands.batch.BatchBeginCommand;
+import command.commands.batch.BatchCommitCommand;
+import command.commands.batch.BatchRollbackCommand;
+import command.commands.replication.ReplicationStatusCommand;
+import command.commands.stats.StatsCommand;
+import command.commands.subscription.SubscribeCommand;
+import command.commands.subscription.UnsubscribeCommand;
+import command.commands.trace.TraceCommand;
+import command.util.CommandManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures looking up a Command by its name, which is done for every message.
+ * The Commands which Main registers on every node are registered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandManagerBenchmark {
+    private String known = "AD";
+    private String unknown = "XY";
+
+    /**
+     * Registers the Commands.
+     */
+    @Setup
+    public void setup() {
+        CommandManager commandManager = CommandManager.getInstance();
+        commandManager.registerCommand(new BankAmountCommand());
+        commandManager.registerCommand(new BankNumberCommand());
+        commandManager.registerCommand(new BankCodeCommand(Fixtures.BANK_CODE));
+        commandManager.registerCommand(new AccountCreateCommand(Fixtures.BANK_CODE));
+        commandManager.registerCommand(new AccountDepositCommand(Fixtures.BANK_CODE));
+        commandManager.registerCommand(new AccountBalanceCommand(Fixtures.BANK_CODE));
+        commandManager.registerCommand(new AccountRemoveCommand(Fixtures.BANK_CODE));
+        commandManager.registerCommand(new AccountWithdrawalCommand(Fixtures.BANK_CODE));
+        commandManager.registerCommand(new AccountTransferCommand(Fixtures.BANK_CODE));
+        commandManager.registerCommand(new AccountListCommand());
+        commandManager.registerCommand(new AccountHistoryCommand(Fixtures.BANK_CODE));
+        commandManager.registerCommand(new BatchBeginCommand());
+        commandManager.registerCommand(new BatchCommitCommand());
+        commandManager.registerCommand(new BatchRollbackCommand());
+        commandManager.registerCommand(new SubscribeCommand());
+        commandManager.registerCommand(new UnsubscribeCommand());
+        commandManager.registerCommand(new ReplicationStatusCommand());
+        commandManager.registerCommand(new StatsCommand());
+        commandManager.registerCommand(new TraceCommand());
+    }
+
+    /**
+     * Looks up a registered Command.
+     * @return The Command
+     */
+    @Benchmark
+    public Command getKnownCommand() {
+        return CommandManager.getInstance().getCommand(known);
+    }
+
+    /**
+     * Looks up a name which is not a Command.
+     * @return Null
+     */
+    @Benchmark
+    public Command getUnknownCommand() {
+        return CommandManager.getInstance().getCommand(unknown);
+    }
+}
@@ -0,0 +1,68 @@
+package benchmark;
+
+import util.FileLogger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+
+/**
+ * This class prepares the parts of a node which the benchmarks need, without the configuration file,
+ * the database or a running HostPeer.
+ */
+public final class Fixtures {
+    /**
+     * Bank code used by the benchmarked Commands.
+     */
+    public static final String BANK_CODE = "127.0.0.1";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Replaces the logger with one writing into a new temporary directory, instead of the node.log file
+     * in the working directory of the benchmark. Messages are dropped when the buffer is full, so a benchmark
+     * measures the cost paid by the calling thread rather than the speed of the disk.
+     * @param level Minimum level of written messages
+     * @return Path of the log file
+     */
+    public static Path configureLogger(Level level) {
+        return configureLogger(level, false);
+    }
+
+    /**
+     * Replaces the logger with one writing into a new temporary directory.
+     * @param level Minimum level of written messages
+     * @param blockWhenFull True if logging threads wait while the buffer is full, false if messages are dropped
+     * @return Path of the log file
+     */
+    public static Path configureLogger(Level level, boolean blockWhenFull) {
+        try {
+            Path file = Files.createTempDirectory("bank-benchmark").resolve("node.log");
+            FileLogger.configure(file, level, 8192, blockWhenFull, 10L * 1024 * 1024, 1);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Connects a socket over the loopback address and returns the accepted end, as a HostPeer would.
+     * The other end is left open until the JVM of the benchmark exits.
+     * @return Accepted peer socket
+     */
+    public static Socket acceptLoopbackPeer() {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (ServerSocket server = new ServerSocket(0, 1, loopback)) {
+            new Socket(loopback, server.getLocalPort());
+            return server.accept();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
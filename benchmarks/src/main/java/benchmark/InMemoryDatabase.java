@@ -0,0 +1,161 @@
+package benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class imitates the BankAccount table behind a JDBC Connection, keeping the balances in memory.
+ * It understands only the statements BankAccount uses to find, lock and update a single account,
+ * so a benchmark measures the code around the driver, and not the driver or the database.
+ * The id of an account is its account number.
+ */
+public final class InMemoryDatabase {
+    private final ConcurrentHashMap<Integer, Long> balances = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor which creates accounts with consecutive account numbers.
+     * @param firstNumber Account number of the first account
+     * @param accounts Number of accounts
+     * @param balance Balance of every account
+     */
+    public InMemoryDatabase(int firstNumber, int accounts, long balance) {
+        for (int i = 0; i < accounts; i++) {
+            balances.put(firstNumber + i, balance);
+        }
+    }
+
+    /**
+     * Opens a new connection. Every connection has its own auto-commit mode, like a connection of a peer.
+     * @return Database connection
+     */
+    public Connection connect() {
+        return proxy(Connection.class, new ConnectionHandler());
+    }
+
+    /**
+     * Creates a proxy of a JDBC interface.
+     * @param type JDBC interface
+     * @param handler Handler of the calls
+     * @return Proxy implementing the interface
+     * @param <T> Type of the JDBC interface
+     */
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(InMemoryDatabase.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    /**
+     * Handles the methods of Object, which every proxy must answer.
+     * @param proxy Proxy the method was called on
+     * @param method Called method
+     * @param args Arguments of the method
+     * @return Result of the method
+     */
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString" -> proxy.getClass().getSimpleName();
+            default -> throw new UnsupportedOperationException(method.getName() + " is not supported.");
+        };
+    }
+
+    /**
+     * Handles the calls of a Connection.
+     */
+    private class ConnectionHandler implements InvocationHandler {
+        private boolean autoCommit = true;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return switch (method.getName()) {
+                case "getAutoCommit" -> autoCommit;
+                case "setAutoCommit" -> {
+                    autoCommit = (boolean)args[0];
+                    yield null;
+                }
+                case "commit", "rollback", "close" -> null;
+                case "isClosed" -> false;
+                case "prepareStatement" -> proxy(PreparedStatement.class, new StatementHandler((String)args[0]));
+                default -> objectMethod(proxy, method, args);
+            };
+        }
+    }
+
+    /**
+     * Handles the calls of a PreparedStatement. Parameters are kept by their index.
+     */
+    private class StatementHandler implements InvocationHandler {
+        private final String sql;
+        private final Object[] parameters = new Object[3];
+
+        /**
+         * Constructor which sets the SQL of the statement.
+         * @param sql SQL statement
+         */
+        StatementHandler(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return switch (method.getName()) {
+                case "setInt", "setLong" -> {
+                    parameters[(int)args[0]] = args[1];
+                    yield null;
+                }
+                case "executeQuery" -> {
+                    // Accounts are found by their account number or by their id, which are the same here
+                    int accountNumber = (int)parameters[1];
+                    yield proxy(ResultSet.class, new ResultSetHandler(accountNumber, balances.get(accountNumber)));
+                }
+                case "executeUpdate" -> {
+                    if (!sql.startsWith("UPDATE BankAccount SET balance")) {
+                        throw new UnsupportedOperationException(sql + " is not supported.");
+                    }
+                    yield balances.replace((int)parameters[2], (long)parameters[1]) == null ? 0 : 1;
+                }
+                case "close" -> null;
+                default -> objectMethod(proxy, method, args);
+            };
+        }
+    }
+
+    /**
+     * Handles the calls of a ResultSet with at most one account.
+     */
+    private static class ResultSetHandler implements InvocationHandler {
+        private final int accountNumber;
+        private final Long balance;
+        private boolean read = false;
+
+        /**
+         * Constructor which sets the found account.
+         * @param accountNumber Bank account number
+         * @param balance Balance, or null if the account was not found
+         */
+        ResultSetHandler(int accountNumber, Long balance) {
+            this.accountNumber = accountNumber;
+            this.balance = balance;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return switch (method.getName()) {
+                case "next" -> {
+                    boolean hasRow = balance != null && !read;
+                    read = true;
+                    yield hasRow;
+                }
+                case "getInt" -> accountNumber;
+                case "getLong" -> balance;
+                case "close" -> null;
+                default -> objectMethod(proxy, method, args);
+            };
+        }
+    }
+}
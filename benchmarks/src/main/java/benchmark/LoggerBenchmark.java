@@ -0,0 +1,81 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import util.FileLogger;
+
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * This benchmark measures the cost of FileLogger paid by the thread handling a peer. With the INFO level
+ * the messages are stored in the buffer of the logger, with the WARNING level they are filtered out.
+ * When the buffer is full, the threads either wait for the writer thread, so the benchmark shows how many
+ * messages it can write, or drop the message, so the benchmark shows the cost of the call alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBenchmark {
+    /**
+     * Minimum level of written messages.
+     */
+    @Param({"INFO", "WARNING"})
+    public String level;
+
+    /**
+     * True if logging threads wait while the buffer is full, false if messages are dropped.
+     */
+    @Param({"true", "false"})
+    public boolean blockWhenFull;
+
+    private final Socket socket = new Socket();
+    private final String commandName = "AD";
+    private final Integer accountNumber = 10001;
+    private final Long amount = 1500L;
+
+    /**
+     * Replaces the logger with one using the parameters.
+     */
+    @Setup
+    public void setup() {
+        Fixtures.configureLogger(Level.parse(level), blockWhenFull);
+    }
+
+    /**
+     * Logs a message without arguments.
+     */
+    @Benchmark
+    public void message() {
+        FileLogger.getLogger().info("Received empty message from peer, disconnecting.");
+    }
+
+    /**
+     * Logs a message with two arguments, the most common message of the Commands.
+     */
+    @Benchmark
+    public void twoArguments() {
+        FileLogger.getLogger().info("Peer at {} used command {}.", socket, commandName);
+    }
+
+    /**
+     * Logs a message with three arguments.
+     */
+    @Benchmark
+    public void threeArguments() {
+        FileLogger.getLogger().info("Peer at {} deposited {} balance to account with number {}.",
+                socket, amount, accountNumber);
+    }
+
+    /**
+     * Logs messages with two arguments from several threads at once, which claim slots of the same buffer.
+     */
+    @Benchmark
+    @Threads(4)
+    public void twoArgumentsContended() {
+        FileLogger.getLogger().info("Peer at {} used command {}.", socket, commandName);
+    }
+}
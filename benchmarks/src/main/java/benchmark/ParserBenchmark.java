@@ -0,0 +1,71 @@
+package benchmark;
+
+import command.commands.bank.GeneralCommandParser;
+import command.exceptions.InvalidParameterException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the parsers shared by the bank Commands, for valid parameters
+ * and for parameters which are rejected with an InvalidParameterException.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    private final GeneralCommandParser parser = new GeneralCommandParser() {
+    };
+
+    private String account = "10001/" + Fixtures.BANK_CODE;
+    private String amount = "10001/" + Fixtures.BANK_CODE + " 1500";
+    private String transfer = "10001/" + Fixtures.BANK_CODE + " 10002/" + Fixtures.BANK_CODE + " 1500";
+    private String invalid = "10001/bank 1500";
+
+    /**
+     * Parses the parameters of AB and AR.
+     * @return Parsed parameters
+     * @throws InvalidParameterException Never, the parameters are valid
+     */
+    @Benchmark
+    public Object[] accountNumberAndBankCode() throws InvalidParameterException {
+        return parser.parseAccountNumberAndBankCode(account, "AB");
+    }
+
+    /**
+     * Parses the parameters of AD and AW.
+     * @return Parsed parameters
+     * @throws InvalidParameterException Never, the parameters are valid
+     */
+    @Benchmark
+    public Object[] amount() throws InvalidParameterException {
+        return parser.parseAmount(amount, "AD");
+    }
+
+    /**
+     * Parses the parameters of AT.
+     * @return Parsed parameters
+     * @throws InvalidParameterException Never, the parameters are valid
+     */
+    @Benchmark
+    public Object[] transfer() throws InvalidParameterException {
+        return parser.parseTransfer(transfer, "AT");
+    }
+
+    /**
+     * Rejects invalid parameters of AD, including the cost of creating the exception.
+     * @return Error message sent to the peer
+     */
+    @Benchmark
+    public String invalidAmount() {
+        try {
+            parser.parseAmount(invalid, "AD");
+            throw new IllegalStateException("The parameters were not rejected.");
+        } catch (InvalidParameterException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package benchmark;
+
+import command.commands.bank.BankCodeCommand;
+import command.commands.stats.StatsCommand;
+import org.openjdk.jmh.annotations.*;
+import stats.CommandStats;
+import stats.ResponseRecorder;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * This benchmark measures building responses and writing them to the peer's PrintWriter, which discards them.
+ * Informational messages are not logged, so only the formatting is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBenchmark {
+    private final Socket socket = new Socket();
+    private final PrintWriter plain = new PrintWriter(Writer.nullWriter());
+    private final ResponseRecorder recorder = new ResponseRecorder(new PrintWriter(Writer.nullWriter()));
+    private final BankCodeCommand bankCode = new BankCodeCommand(Fixtures.BANK_CODE);
+    private final StatsCommand stats = new StatsCommand();
+
+    private long balance = 1_234_567_890L;
+    private String error = "Not enough balance on the bank account.";
+
+    /**
+     * Turns off informational messages and records latencies of a few Commands, so that ST has something to send.
+     */
+    @Setup
+    public void setup() {
+        Fixtures.configureLogger(Level.WARNING);
+        String[] commandNames = {"BC", "AB", "AD", "AW", "AT"};
+        for (int i = 0; i < 10_000; i++) {
+            String commandName = commandNames[i % commandNames.length];
+            CommandStats.getInstance().record(commandName, i % 100 == 0 ? error : null, 20_000 + i * 7L, i * 3L);
+        }
+    }
+
+    /**
+     * Formats the AB response and writes it to a PrintWriter.
+     */
+    @Benchmark
+    public void balance() {
+        plain.print("AB " + balance + "\r\n");
+        plain.flush();
+    }
+
+    /**
+     * Formats the AB response and writes it through the ResponseRecorder used by HandleThread.
+     * @return Error of the response, null
+     */
+    @Benchmark
+    public String balanceRecorded() {
+        recorder.startResponse();
+        recorder.print("AB " + balance + "\r\n");
+        recorder.flush();
+        return recorder.getError();
+    }
+
+    /**
+     * Formats an ER response and writes it through the ResponseRecorder, which remembers the error.
+     * @return Error of the response
+     */
+    @Benchmark
+    public String errorRecorded() {
+        recorder.startResponse();
+        recorder.print("ER " + error + "\r\n");
+        recorder.flush();
+        return recorder.getError();
+    }
+
+    /**
+     * Executes BC, which checks its parameters and sends the bank code.
+     */
+    @Benchmark
+    public void bankCodeCommand() {
+        bankCode.execute(new Object[] {socket, plain, null});
+    }
+
+    /**
+     * Executes ST, the largest response built from numbers.
+     */
+    @Benchmark
+    public void statsCommand() {
+        stats.execute(new Object[] {socket, plain, null});
+    }
+}
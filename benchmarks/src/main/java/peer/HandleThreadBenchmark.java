@@ -0,0 +1,149 @@
+package peer;
+
+import benchmark.Fixtures;
+import command.commands.bank.AccountBalanceCommand;
+import command.commands.bank.AccountDepositCommand;
+import command.commands.bank.BankCodeCommand;
+import command.util.CommandManager;
+import jfr.CommandEvent;
+import org.openjdk.jmh.annotations.*;
+import stats.ResponseRecorder;
+import trace.Tracer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * This benchmark measures what a HandleThread does with every message before and after the Command itself:
+ * reading lines from the peer's stream, splitting the message, looking up the Command, checking the standby
+ * and idempotency key, tracing, and recording the outcome of the response. The benchmark lives in the peer
+ * package, because HandleThread.handleMessage() is package-private.
+ * No database is configured, so AD ends with the error sent when the shard cannot be reached.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandleThreadBenchmark {
+    private static final int LINES = 64;
+
+    /**
+     * Fraction of traced messages, 0 disables the Tracer and 0.01 is the default of the node.
+     */
+    @Param({"0", "0.01"})
+    public double traceSampleRate;
+
+    private byte[] stream;
+    private HandleThread thread;
+    private ResponseRecorder out;
+
+    /**
+     * Registers the Commands, configures the Tracer and creates a HandleThread for a loopback peer.
+     * Responses are written to a PrintWriter which discards them.
+     */
+    @Setup
+    public void setup() {
+        Fixtures.configureLogger(Level.INFO);
+        Tracer.getInstance().configure(traceSampleRate, traceSampleRate > 0 ? 100 : 0, 100);
+
+        CommandManager commandManager = CommandManager.getInstance();
+        commandManager.registerCommand(new BankCodeCommand(Fixtures.BANK_CODE));
+        commandManager.registerCommand(new AccountDepositCommand(Fixtures.BANK_CODE));
+        commandManager.registerCommand(new AccountBalanceCommand(Fixtures.BANK_CODE));
+
+        ClientPeer peer = ClientPeer.create(Fixtures.acceptLoopbackPeer());
+        thread = new HandleThread(new HostPeer(InetAddress.getLoopbackAddress(), 0, 1), peer);
+        out = new ResponseRecorder(new PrintWriter(Writer.nullWriter()));
+
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            lines.append("AD ").append(10000 + i).append('/').append(Fixtures.BANK_CODE).append(" 100\r\n");
+        }
+        stream = lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads messages from a stream the way ClientPeer does, through an InputStreamReader and a BufferedReader.
+     * @return Length of the last line
+     * @throws IOException Never, the stream is in memory
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public int readLine() throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(stream), StandardCharsets.UTF_8));
+        int length = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            length = line.length();
+        }
+        return length;
+    }
+
+    /**
+     * Handles a Command without parameters and without the database.
+     * @return Name of the called Command
+     */
+    @Benchmark
+    public String bankCode() {
+        return handle("BC");
+    }
+
+    /**
+     * Handles a change of an account, which fails because there is no database.
+     * @return Name of the called Command
+     */
+    @Benchmark
+    public String deposit() {
+        return handle("AD 10001/" + Fixtures.BANK_CODE + " 100");
+    }
+
+    /**
+     * Handles a change of an account sent again with the same idempotency key, so the remembered response
+     * is sent from the IdempotencyCache.
+     * @return Name of the called Command
+     */
+    @Benchmark
+    public String depositRepeatedKey() {
+        return handle("AD 10001/" + Fixtures.BANK_CODE + " 100 key=benchmark");
+    }
+
+    /**
+     * Handles a Command with invalid parameters.
+     * @return Name of the called Command
+     */
+    @Benchmark
+    public String invalidParameters() {
+        return handle("AB 1/2");
+    }
+
+    /**
+     * Handles a message which is not a Command.
+     * @return Null, no Command was called
+     */
+    @Benchmark
+    public String unknownCommand() {
+        return handle("XY 10001/" + Fixtures.BANK_CODE);
+    }
+
+    /**
+     * Handles a message the way HandleThread.handlePeer() does, without the statistics.
+     * @param message Message received from the peer
+     * @return Name of the called Command, or null
+     */
+    private String handle(String message) {
+        Tracer tracer = Tracer.getInstance();
+        out.startResponse();
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        tracer.begin();
+        String commandName = thread.handleMessage(message, out, event);
+        String error = out.getError();
+        tracer.finish(commandName, error == null ? "OK" : "ER " + error);
+        return commandName;
+    }
+}
@@ -25,4 +25,27 @@ BEGIN
     END
 
     DELETE FROM BankAccount WHERE id IN (SELECT id FROM deleted);
-END;
\ No newline at end of file
+END;
+
+-- Account history table, one row is appended for every change of an account.
+-- Rows are clustered by the account number and time, so the history of an account is read with an index seek.
+CREATE TABLE AccountHistory(
+id BIGINT IDENTITY(1, 1),
+account_number INT NOT NULL,
+created_at BIGINT NOT NULL,
+type TINYINT NOT NULL,
+amount BIGINT NOT NULL,
+balance BIGINT NOT NULL,
+CONSTRAINT PK_AccountHistory PRIMARY KEY CLUSTERED (account_number, created_at, id)
+) WITH (DATA_COMPRESSION = PAGE);
+
+-- Bulk operation progress table, one row is inserted for every processed range of accounts,
+-- in the same transaction as the change of the accounts, so a resumed operation skips the range.
+CREATE TABLE BulkProgress(
+operation_id VARCHAR(64) NOT NULL,
+change VARCHAR(64) NOT NULL,
+first_number INT NOT NULL,
+last_number INT NOT NULL,
+updated_accounts INT NOT NULL,
+CONSTRAINT PK_BulkProgress PRIMARY KEY CLUSTERED (operation_id, first_number)
+);
@@ -1,27 +1,162 @@
+import audit.AuditJournal;
+import audit.AuditReader;
+import audit.AuditRecord;
+import bulk.BulkScheduler;
+import cluster.ClusterManager;
+import cluster.RoutingTable;
 import command.commands.bank.*;
+import command.commands.bulk.BulkOperationCommand;
+import command.commands.batch.BatchBeginCommand;
+import command.commands.batch.BatchCommitCommand;
+import command.commands.batch.BatchRollbackCommand;
+import command.commands.cluster.ClusterHandoffCommand;
+import command.commands.cluster.ClusterTableCommand;
+import command.commands.interbank.PeerDirectoryCommand;
+import command.commands.replication.ReplicationStatusCommand;
+import command.commands.robbery.RobberyPlanCommand;
+import command.commands.stats.StatsCommand;
+import command.commands.trace.TraceCommand;
+import command.commands.subscription.SubscribeCommand;
+import command.commands.subscription.UnsubscribeCommand;
 import command.util.CommandManager;
+import database.AccountAllocator;
+import database.BulkAccounts;
 import database.DatabaseConnector;
+import database.MutationPublisher;
+import database.ReadCoalescer;
+import database.Shard;
+import database.ShardConnections;
+import history.HistoryWriter;
+import interbank.AddressFilter;
+import interbank.InterbankForwarder;
+import interbank.PeerDirectory;
 import peer.HostPeer;
+import peer.IdempotencyCache;
+import replication.JournalSender;
+import replication.PrimaryLease;
+import replication.StandbyNode;
+import robbery.BankScanner;
+import stats.CommandStats;
+import stats.MetricsServer;
+import subscription.SubscriptionHub;
+import trace.Tracer;
 import util.*;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.logging.Level;
 
 public class Main {
     public static void main(String[] args) {
+        // Accounts are exported and imported instead of running the node: (export|import) <file> [config_file]
+        if (args.length >= 2 && (args[0].equals("export") || args[0].equals("import"))) {
+            runBulkTool(args[0], args[1], args.length > 2 ? args[2] : "config.properties");
+            return;
+        }
+        // The audit journal is searched instead of running the node: audit <directory> [key=value]...
+        if (args.length >= 2 && args[0].equals("audit")) {
+            runAuditQuery(args[1], Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+
         ConfigLoader configLoader = new ConfigLoader();
-        String configFilePath = "config.properties";
+        // Several nodes of a cluster may run from one folder, each with its own configuration file
+        String configFilePath = args.length > 0 ? args[0] : "config.properties";
         try {
+            // The logger is configured first, so every following message uses the configured file
+            configureLogging(configLoader.loadLoggingSettings(configFilePath));
+
             HashMap<String, String> dbCredentials = configLoader.loadDatabaseCredentials(configFilePath);
             HashMap<String, String> peerSettings = configLoader.loadPeerSettings(configFilePath);
+            HashMap<String, String> replicaSettings = configLoader.loadReplicaSettings(configFilePath);
+            HashMap<String, String> readCoalescingSettings = configLoader.loadReadCoalescingSettings(configFilePath);
+            HashMap<String, String> lockSettings = configLoader.loadLockSettings(configFilePath);
+            HashMap<String, String> replicationSettings = configLoader.loadReplicationSettings(configFilePath);
+            HashMap<String, String> forwardingSettings = configLoader.loadForwardingSettings(configFilePath);
+            HashMap<String, String> robberySettings = configLoader.loadRobberySettings(configFilePath);
+            HashMap<String, String> directorySettings = configLoader.loadDirectorySettings(configFilePath);
+            HashMap<String, String> idempotencySettings = configLoader.loadIdempotencySettings(configFilePath);
+            HashMap<String, String> subscriptionSettings = configLoader.loadSubscriptionSettings(configFilePath);
+            HashMap<String, String> historySettings = configLoader.loadHistorySettings(configFilePath);
+            HashMap<String, String> bulkSettings = configLoader.loadBulkSettings(configFilePath);
+            HashMap<String, String> auditSettings = configLoader.loadAuditSettings(configFilePath);
+            HashMap<String, String> metricsSettings = configLoader.loadMetricsSettings(configFilePath);
+            HashMap<String, String> traceSettings = configLoader.loadTraceSettings(configFilePath);
 
-            DatabaseConnector dbConnector = DatabaseConnector.getInstance();
-            dbConnector.configure(
-                    dbCredentials.get("address"),
-                    dbCredentials.get("database"),
-                    dbCredentials.get("username"),
-                    dbCredentials.get("password")
+            ArrayList<HashMap<String, String>> shardSettings = configLoader.loadShardSettings(configFilePath);
+            ArrayList<HashMap<String, String>> clusterSettings = configLoader.loadClusterSettings(configFilePath);
+
+            configureDatabase(dbCredentials, replicaSettings, shardSettings);
+            ShardConnections.setReadYourWritesWindow(Long.parseLong(replicaSettings.get("readYourWritesMillis")));
+            ShardConnections.setAccountLockTimeout(Long.parseLong(lockSettings.get("accountLockMillis")));
+
+            ReadCoalescer readCoalescer = ReadCoalescer.getInstance();
+            readCoalescer.configure(Long.parseLong(readCoalescingSettings.get("readCacheMillis")));
+            MutationPublisher.getInstance().addListener(readCoalescer);
+
+            AccountAllocator accountAllocator = AccountAllocator.getInstance();
+            MutationPublisher.getInstance().addListener(accountAllocator);
+            if (DatabaseConnector.getInstance().getShards().size() > 1) {
+                try {
+                    accountAllocator.countAccounts();
+                } catch (SQLException e) {
+                    FileLogger.getLogger().warning("Failed to count the accounts of the shards, they will be counted by the first AC.");
+                }
+            }
+
+            if (Boolean.parseBoolean(historySettings.get("enabled"))) {
+                HistoryWriter historyWriter = HistoryWriter.getInstance();
+                historyWriter.start(
+                        Integer.parseInt(historySettings.get("queueSize")),
+                        Integer.parseInt(historySettings.get("batchSize"))
+                );
+                MutationPublisher.getInstance().addListener(historyWriter);
+            }
+
+            if (Boolean.parseBoolean(auditSettings.get("enabled"))) {
+                AuditJournal.getInstance().start(
+                        Path.of(auditSettings.get("directory")),
+                        Integer.parseInt(auditSettings.get("segmentMegabytes")) * 1024 * 1024
+                );
+            }
+
+            Tracer.getInstance().configure(
+                    Double.parseDouble(traceSettings.get("sampleRate")),
+                    Long.parseLong(traceSettings.get("slowMillis")),
+                    Integer.parseInt(traceSettings.get("slowLogSize"))
+            );
+
+            if (!metricsSettings.get("port").isEmpty()) {
+                startMetrics(metricsSettings);
+            }
+
+            SubscriptionHub subscriptionHub = SubscriptionHub.getInstance();
+            subscriptionHub.configure(Integer.parseInt(subscriptionSettings.get("queueSize")));
+            MutationPublisher.getInstance().addListener(subscriptionHub);
+
+            InterbankForwarder.getInstance().configure(
+                    Integer.parseInt(forwardingSettings.get("connectTimeoutMillis")),
+                    Integer.parseInt(forwardingSettings.get("readTimeoutMillis")),
+                    Integer.parseInt(forwardingSettings.get("poolSize")),
+                    AddressFilter.parse(forwardingSettings.get("allowedBanks"))
+            );
+
+            IdempotencyCache.getInstance().configure(
+                    Integer.parseInt(idempotencySettings.get("cacheSize")),
+                    Long.parseLong(idempotencySettings.get("ttlMillis"))
             );
 
             String hostAddressString = peerSettings.get("hostAddress");
@@ -37,12 +172,309 @@ public class Main {
             commandManager.registerCommand(new AccountBalanceCommand(hostAddressString));
             commandManager.registerCommand(new AccountRemoveCommand(hostAddressString));
             commandManager.registerCommand(new AccountWithdrawalCommand(hostAddressString));
+            commandManager.registerCommand(new AccountTransferCommand(hostAddressString));
+            commandManager.registerCommand(new AccountListCommand());
+            commandManager.registerCommand(new AccountHistoryCommand(hostAddressString));
+            commandManager.registerCommand(new BatchBeginCommand());
+            commandManager.registerCommand(new BatchCommitCommand());
+            commandManager.registerCommand(new BatchRollbackCommand());
+            commandManager.registerCommand(new SubscribeCommand());
+            commandManager.registerCommand(new UnsubscribeCommand());
+            commandManager.registerCommand(new ReplicationStatusCommand());
+            commandManager.registerCommand(new StatsCommand());
+            commandManager.registerCommand(new TraceCommand());
+            // The throughput reported by ST is counted from the start of the node
+            CommandStats.getInstance();
+            BankScanner scanner = createScanner(robberySettings, hostAddressString);
+            commandManager.registerCommand(new RobberyPlanCommand(hostAddressString, scanner));
+            commandManager.registerCommand(new PeerDirectoryCommand());
+
+            String directoryRefresh = directorySettings.get("refreshMillis");
+            if (!directoryRefresh.isEmpty()) {
+                long refreshMillis = Long.parseLong(directoryRefresh);
+                String directoryTtl = directorySettings.get("ttlMillis");
+                PeerDirectory.getInstance().start(
+                        scanner,
+                        hostAddressString,
+                        refreshMillis,
+                        Long.parseLong(directorySettings.get("discoveryMillis")),
+                        directoryTtl.isEmpty() ? refreshMillis * 3 : Long.parseLong(directoryTtl)
+                );
+            }
+
+            if (!clusterSettings.isEmpty()) {
+                startCluster(clusterSettings);
+                commandManager.registerCommand(new ClusterTableCommand());
+                commandManager.registerCommand(new ClusterHandoffCommand());
+            }
+
+            BulkScheduler.getInstance().configure(
+                    Path.of(bulkSettings.get("stateFile")),
+                    Integer.parseInt(bulkSettings.get("parallelism")),
+                    Integer.parseInt(bulkSettings.get("chunkSize")),
+                    Long.parseLong(bulkSettings.get("maxPauseMillis"))
+            );
+            commandManager.registerCommand(new BulkOperationCommand());
 
             HostPeer host = new HostPeer(hostAddress, port, 50);
-            host.start();
+            String replicationPort = replicationSettings.get("replicationPort");
+            String standbyOf = replicationSettings.get("standbyOf");
+            if (standbyOf.isEmpty()) {
+                // A primary with standbys changes accounts only while it holds the lease of the bank code
+                if (!replicationPort.isEmpty() && !PrimaryLease.getInstance().acquire(hostAddressString)) {
+                    FileLogger.getLogger().severe("The lease of bank code {} is held by another node or the database cannot be reached.",
+                            hostAddressString);
+                    return;
+                }
+                // Bulk operations stopped by a restart are resumed, a standby resumes them after the takeover
+                BulkScheduler.getInstance().resumePending();
+                if (!replicationPort.isEmpty()) {
+                    startJournal(hostAddress, Integer.parseInt(replicationPort));
+                }
+                host.start();
+            } else {
+                startStandby(replicationSettings, hostAddress, hostAddressString, host);
+            }
 
         } catch (IOException | IllegalArgumentException e) {
             FileLogger.getLogger().severe("An error occurred when attempting to run server.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Starts the HTTP server with the metrics and health checks. The node keeps running without it
+     * if it cannot be started.
+     * @param metricsSettings Metrics settings
+     * @throws IllegalArgumentException Invalid port
+     */
+    private static void startMetrics(HashMap<String, String> metricsSettings) throws IllegalArgumentException {
+        InetSocketAddress address = new InetSocketAddress(metricsSettings.get("address"),
+                Integer.parseInt(metricsSettings.get("port")));
+        try {
+            MetricsServer.getInstance().start(address);
+        } catch (IOException e) {
+            FileLogger.getLogger().severe("Failed to start the metrics server on {}.", address);
+        }
+    }
+
+    /**
+     * Replaces the default logger with one using the logging settings.
+     * @param loggingSettings Logging settings
+     * @throws IllegalArgumentException Invalid level, buffer size or policy
+     */
+    private static void configureLogging(HashMap<String, String> loggingSettings) throws IllegalArgumentException {
+        String whenFull = loggingSettings.get("whenFull");
+        if (!whenFull.equals("block") && !whenFull.equals("drop")) {
+            throw new IllegalArgumentException("Log buffer policy must be block or drop.");
+        }
+        FileLogger.configure(
+                Path.of(loggingSettings.get("file")),
+                Level.parse(loggingSettings.get("level").toUpperCase()),
+                Integer.parseInt(loggingSettings.get("bufferSize")),
+                whenFull.equals("block"),
+                Long.parseLong(loggingSettings.get("maxFileMegabytes")) * 1024 * 1024,
+                Integer.parseInt(loggingSettings.get("maxFiles"))
+        );
+    }
+
+    /**
+     * Exports all accounts to a file, or imports them from one, and prints the result.
+     * @param mode export or import
+     * @param file Path of the file
+     * @param configFilePath Path to the config file with the database settings
+     */
+    private static void runBulkTool(String mode, String file, String configFilePath) {
+        ConfigLoader configLoader = new ConfigLoader();
+        try {
+            configureDatabase(
+                    configLoader.loadDatabaseCredentials(configFilePath),
+                    configLoader.loadReplicaSettings(configFilePath),
+                    configLoader.loadShardSettings(configFilePath)
+            );
+            long start = System.nanoTime();
+            int count = mode.equals("export")
+                    ? BulkAccounts.exportAccounts(Path.of(file))
+                    : BulkAccounts.importAccounts(Path.of(file));
+            System.out.println((mode.equals("export") ? "Exported " : "Imported ") + count + " accounts in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        } catch (IOException | SQLException | IllegalArgumentException e) {
+            System.out.println("Failed to " + mode + " accounts: " + e.getMessage());
+            FileLogger.getLogger().severe("Failed to {} accounts: {}", mode, e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the records of the audit journal matching the query, one per line, followed by their number.
+     * @param directory Directory of the journal segments
+     * @param query Query arguments in the format key=value (account, from, to, type and result)
+     */
+    private static void runAuditQuery(String directory, String[] query) {
+        try {
+            Predicate<AuditRecord> filter = AuditReader.parseFilter(query);
+            // System.out flushes after every line, so the records are buffered and flushed once
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+            long matched = AuditReader.read(Path.of(directory), filter, out::println);
+            out.println("Matched records: " + matched);
+            out.flush();
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Failed to read the audit journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Configures the DatabaseConnector with a single database or with several shards.
+     * @param dbCredentials Database credentials
+     * @param replicaSettings Read replica settings of the single database
+     * @param shardSettings Settings of every shard, empty if the accounts are not sharded
+     * @throws IllegalArgumentException Invalid shard settings
+     */
+    private static void configureDatabase(HashMap<String, String> dbCredentials, HashMap<String, String> replicaSettings,
+                                          ArrayList<HashMap<String, String>> shardSettings) throws IllegalArgumentException {
+        DatabaseConnector dbConnector = DatabaseConnector.getInstance();
+        if (shardSettings.isEmpty()) {
+            dbConnector.configure(
+                    dbCredentials.get("address"),
+                    dbCredentials.get("database"),
+                    dbCredentials.get("username"),
+                    dbCredentials.get("password"),
+                    splitList(replicaSettings.get("replicaAddresses"))
+            );
+        } else {
+            List<Shard> shards = new ArrayList<>();
+            for (HashMap<String, String> shard : shardSettings) {
+                shards.add(Shard.create(
+                        shards.size(),
+                        Integer.parseInt(shard.get("firstAccountNumber")),
+                        Integer.parseInt(shard.get("lastAccountNumber")),
+                        shard.get("address"),
+                        shard.get("database"),
+                        splitList(shard.get("replicaAddresses"))
+                ));
+            }
+            dbConnector.configure(dbCredentials.get("username"), dbCredentials.get("password"), shards);
+        }
+    }
+
+    /**
+     * Enables the cluster mode and starts accepting internal links from the other nodes on a separate thread.
+     * @param clusterSettings Settings of every node of the cluster
+     * @throws IOException Link address of this node could not be resolved
+     * @throws IllegalArgumentException Invalid cluster settings
+     */
+    private static void startCluster(ArrayList<HashMap<String, String>> clusterSettings) throws IOException, IllegalArgumentException {
+        Map<Integer, String> linkAddresses = new HashMap<>();
+        List<RoutingTable.Segment> segments = new ArrayList<>();
+        int localNodeId = -1;
+        for (HashMap<String, String> node : clusterSettings) {
+            int nodeId = Integer.parseInt(node.get("id"));
+            linkAddresses.put(nodeId, node.get("link"));
+            segments.add(new RoutingTable.Segment(
+                    Integer.parseInt(node.get("firstAccountNumber")),
+                    Integer.parseInt(node.get("lastAccountNumber")),
+                    nodeId
+            ));
+            if (Boolean.parseBoolean(node.get("local"))) {
+                localNodeId = nodeId;
+            }
+        }
+        segments.sort(Comparator.comparingInt(RoutingTable.Segment::firstAccountNumber));
+
+        ClusterManager cluster = ClusterManager.getInstance();
+        cluster.configure(localNodeId, linkAddresses, RoutingTable.create(0, segments));
+
+        String[] linkAddress = linkAddresses.get(localNodeId).split(":");
+        HostPeer linkHost = new HostPeer(InetAddress.getByName(linkAddress[0]), Integer.parseInt(linkAddress[1]), 50, true);
+        Thread linkThread = new Thread(linkHost::start, "cluster-link");
+        linkThread.setDaemon(true);
+        linkThread.start();
+
+        // Ownership may have changed while this node was not running
+        cluster.synchronizeTable();
+    }
+
+    /**
+     * Starts streaming the replication journal to standbys on a separate thread.
+     * @param hostAddress Address the journal is served on
+     * @param replicationPort Port the journal is served on
+     */
+    private static void startJournal(InetAddress hostAddress, int replicationPort) {
+        JournalSender sender = JournalSender.getInstance();
+        MutationPublisher.getInstance().addListener(sender);
+        sender.start(hostAddress, replicationPort);
+    }
+
+    /**
+     * Starts the node as a standby of the primary. Reads are served on the standby port (if set)
+     * until the standby takes over, then the bank code is served on the usual port.
+     * @param replicationSettings Replication settings
+     * @param hostAddress Host address (bank code)
+     * @param bankCode Bank code whose lease the standby must get before it takes over
+     * @param host HostPeer serving the bank code after the takeover
+     * @throws IOException Standby reads could not be served
+     * @throws IllegalArgumentException Malformed primary address
+     */
+    private static void startStandby(HashMap<String, String> replicationSettings, InetAddress hostAddress, String bankCode,
+                                     HostPeer host) throws IOException, IllegalArgumentException {
+        String[] primary = replicationSettings.get("standbyOf").split(":");
+        if (primary.length != 2) {
+            throw new IllegalArgumentException("Address of the primary must be in the format host:port.");
+        }
+        String replicationPort = replicationSettings.get("replicationPort");
+        StandbyNode.getInstance().start(primary[0], Integer.parseInt(primary[1]),
+                Long.parseLong(replicationSettings.get("failoverMillis")), bankCode, () -> {
+                    // After the takeover, this node streams its own journal to the next standby
+                    if (!replicationPort.isEmpty()) {
+                        startJournal(hostAddress, Integer.parseInt(replicationPort));
+                    }
+                    BulkScheduler.getInstance().resumePending();
+                    new Thread(host::start, "host").start();
+                });
+
+        String standbyPort = replicationSettings.get("standbyPort");
+        if (!standbyPort.isEmpty()) {
+            new HostPeer(hostAddress, Integer.parseInt(standbyPort), 50).start();
+        }
+    }
+
+    /**
+     * Creates the network scanner of the robbery plan. Without a configured address range,
+     * the /24 network of the bank is scanned.
+     * @param robberySettings Robbery plan settings
+     * @param hostAddress Host address (bank code)
+     * @return New BankScanner instance
+     * @throws IOException An address of the range could not be parsed
+     * @throws IllegalArgumentException Invalid scan settings
+     */
+    private static BankScanner createScanner(HashMap<String, String> robberySettings, String hostAddress)
+            throws IOException, IllegalArgumentException {
+        String scanFirst = robberySettings.get("scanFirst");
+        String scanLast = robberySettings.get("scanLast");
+        if (scanFirst.isEmpty() || scanLast.isEmpty()) {
+            String network = hostAddress.substring(0, hostAddress.lastIndexOf('.') + 1);
+            scanFirst = network + "1";
+            scanLast = network + "254";
+        }
+        return BankScanner.create(
+                scanFirst,
+                scanLast,
+                Integer.parseInt(robberySettings.get("concurrency")),
+                Integer.parseInt(robberySettings.get("connectTimeoutMillis")),
+                Integer.parseInt(robberySettings.get("readTimeoutMillis"))
+        );
+    }
+
+    /**
+     * Splits a comma separated list and removes blank items.
+     * @param list Comma separated list
+     * @return List of stripped items
+     */
+    private static List<String> splitList(String list) {
+        List<String> items = new ArrayList<>();
+        for (String item : list.split(",")) {
+            if (!item.isBlank()) {
+                items.add(item.strip());
+            }
+        }
+        return items;
+    }
+}
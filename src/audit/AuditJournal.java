@@ -0,0 +1,172 @@
+package audit;
+
+import util.FileLogger;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * This class implements the Singleton design pattern. It appends the outcome of every command changing an account
+ * to the audit journal, a directory of segment files with fixed-width binary records. Segments are memory-mapped,
+ * so recording an outcome only reserves a position with a single atomic addition and copies the record into memory,
+ * without a system call or a lock. The operating system writes the pages to the file, so records survive a crash
+ * of the node. When a segment is full, the next one is created. Every start of the node begins a new segment.
+ */
+public class AuditJournal {
+    private static final String SEGMENT_PREFIX = "audit-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private static AuditJournal instance;
+    private volatile Segment current;
+    private Path directory;
+    private int segmentSize;
+    private long nextIndex;
+    private volatile boolean enabled = false;
+
+    /**
+     * A mapped segment file and the position of its next record.
+     * @param buffer Mapped contents of the file
+     * @param position Position of the next record, it exceeds the size of the buffer when the segment is full
+     */
+    private record Segment(MappedByteBuffer buffer, AtomicLong position) {
+    }
+
+    /**
+     * Returns the Singleton instance of AuditJournal.
+     * @return Singleton instance of AuditJournal
+     */
+    public static synchronized AuditJournal getInstance() {
+        if (instance == null) {
+            instance = new AuditJournal();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts recording to a new segment in the given directory.
+     * @param directory Directory of the segment files, it is created if it does not exist
+     * @param segmentSize Size of a segment file in bytes, rounded down to whole records
+     * @throws IOException The directory or the segment could not be created
+     */
+    public synchronized void start(Path directory, int segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.segmentSize = Math.max(1, segmentSize / AuditRecord.SIZE) * AuditRecord.SIZE;
+        this.nextIndex = findLastIndex(directory) + 1;
+        this.current = openSegment();
+        this.enabled = true;
+        // The last segment is written to the disk before the program exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> current.buffer().force(), "audit-shutdown"));
+    }
+
+    /**
+     * Returns whether outcomes are being recorded.
+     * @return True if the journal has been started
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the outcome of a command. This method does nothing if the journal is not enabled.
+     * @param type Type of the command
+     * @param socket Peer's socket
+     * @param accountNumber Bank account number (0 if it is not known)
+     * @param amount Amount of money deposited or withdrawn (0 for other types)
+     * @param balance Balance of the account after the command (0 if it is not known)
+     * @param result Outcome of the command
+     */
+    public void record(AuditRecord.Type type, Socket socket, int accountNumber, long amount, long balance,
+                       AuditRecord.Result result) {
+        if (!enabled) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        byte[] address = socket.getInetAddress().getAddress();
+        while (true) {
+            Segment segment = current;
+            long offset = segment.position().getAndAdd(AuditRecord.SIZE);
+            if (offset + AuditRecord.SIZE <= segmentSize) {
+                AuditRecord.write(segment.buffer(), (int)offset, timestamp, address, socket.getPort(), type, result,
+                        accountNumber, amount, balance);
+                return;
+            }
+            if (!roll(segment)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replaces a full segment with a new one, unless another thread has already done so.
+     * @param full Segment which is full
+     * @return False if the new segment could not be created, the journal is disabled then
+     */
+    private synchronized boolean roll(Segment full) {
+        if (current != full) {
+            return true;
+        }
+        try {
+            full.buffer().force();
+            current = openSegment();
+            return true;
+        } catch (IOException e) {
+            enabled = false;
+            FileLogger.getLogger().severe("Failed to create an audit journal segment in {}, auditing stopped.", directory);
+            return false;
+        }
+    }
+
+    /**
+     * Creates and maps the next segment file.
+     * @return New segment
+     * @throws IOException The file could not be created or mapped
+     */
+    private Segment openSegment() throws IOException {
+        Path path = directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, nextIndex++, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            FileLogger.getLogger().info("Audit journal segment {} created.", path);
+            return new Segment(buffer, new AtomicLong());
+        }
+    }
+
+    /**
+     * Finds the highest index of the segment files in a directory.
+     * @param directory Directory of the segment files
+     * @return Highest index, or 0 if there are no segments
+     * @throws IOException The directory could not be listed
+     */
+    private static long findLastIndex(Path directory) throws IOException {
+        long last = 0;
+        for (Path segment : listSegments(directory)) {
+            String name = segment.getFileName().toString();
+            last = Math.max(last, Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - SEGMENT_SUFFIX.length())));
+        }
+        return last;
+    }
+
+    /**
+     * Lists the segment files of a directory in the order they were written.
+     * @param directory Directory of the segment files
+     * @return Paths of the segment files
+     * @throws IOException The directory could not be listed
+     */
+    static Path[] listSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().matches(SEGMENT_PREFIX + "\\d{12}" + SEGMENT_SUFFIX))
+                    .sorted()
+                    .toArray(Path[]::new);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package audit;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * This class reads the audit journal offline. Segments are mapped read-only and scanned record by record,
+ * so even large journals are searched at the speed of the disk.
+ */
+public class AuditReader {
+    /**
+     * This class only contains static methods.
+     */
+    private AuditReader() {
+    }
+
+    /**
+     * Passes every record matching the filter to the consumer, in the order the segments were written.
+     * @param directory Directory of the segment files
+     * @param filter Filter of the records
+     * @param consumer Consumer of the matching records
+     * @return Number of matching records
+     * @throws IOException A segment could not be read
+     */
+    public static long read(Path directory, Predicate<AuditRecord> filter, Consumer<AuditRecord> consumer) throws IOException {
+        long matched = 0;
+        for (Path segment : AuditJournal.listSegments(directory)) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int records = (int)(channel.size() / AuditRecord.SIZE);
+                for (int i = 0; i < records; i++) {
+                    // Unused space at the end of a segment and incomplete records are skipped
+                    AuditRecord record = AuditRecord.read(buffer, i * AuditRecord.SIZE);
+                    if (record != null && filter.test(record)) {
+                        consumer.accept(record);
+                        matched++;
+                    }
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Creates a filter from query arguments in the format key=value. The keys are account, from, to
+     * (in milliseconds since the epoch), type and result, every given key must match.
+     * @param arguments Query arguments
+     * @return Filter of the records
+     * @throws IllegalArgumentException An argument is invalid
+     */
+    public static Predicate<AuditRecord> parseFilter(String[] arguments) throws IllegalArgumentException {
+        Predicate<AuditRecord> filter = record -> true;
+        for (String argument : arguments) {
+            String[] keyValue = argument.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Query arguments must be in the format key=value.");
+            }
+            String value = keyValue[1];
+            try {
+                filter = switch (keyValue[0]) {
+                    case "account" -> {
+                        int accountNumber = Integer.parseInt(value);
+                        yield filter.and(record -> record.accountNumber() == accountNumber);
+                    }
+                    case "from" -> {
+                        long from = Long.parseLong(value);
+                        yield filter.and(record -> record.timestamp() >= from);
+                    }
+                    case "to" -> {
+                        long to = Long.parseLong(value);
+                        yield filter.and(record -> record.timestamp() <= to);
+                    }
+                    case "type" -> {
+                        AuditRecord.Type type = AuditRecord.Type.valueOf(value.toUpperCase());
+                        yield filter.and(record -> record.type() == type);
+                    }
+                    case "result" -> {
+                        AuditRecord.Result result = AuditRecord.Result.valueOf(value.toUpperCase());
+                        yield filter.and(record -> record.result() == result);
+                    }
+                    default -> throw new IllegalArgumentException("Unknown query key " + keyValue[0] + ".");
+                };
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of query key " + keyValue[0] + ".");
+            }
+        }
+        return filter;
+    }
+}
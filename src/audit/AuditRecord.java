@@ -0,0 +1,111 @@
+package audit;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * This record describes the outcome of a command changing an account, as stored in the audit journal.
+ * Every record is stored in SIZE bytes: the timestamp, the peer's address as 16 bytes (IPv4 addresses are mapped
+ * to IPv6), the peer's port, the type, the result, the account number, the amount and the resulting balance.
+ * @param timestamp Time of the outcome in milliseconds since the epoch
+ * @param address Peer's address
+ * @param port Peer's port
+ * @param type Type of the command
+ * @param result Outcome of the command
+ * @param accountNumber Bank account number (0 if it is not known)
+ * @param amount Amount of money deposited or withdrawn (0 for other types)
+ * @param balance Balance of the account after the command (0 if it is not known)
+ */
+public record AuditRecord(long timestamp, InetAddress address, int port, Type type, Result result, int accountNumber,
+                          long amount, long balance) {
+    public static final int SIZE = 48;
+
+    /**
+     * Types of audited commands. New types are only added at the end, the journal stores their ordinal.
+     */
+    public enum Type {
+        CREATE, DEPOSIT, WITHDRAW, REMOVE, TRANSFER_OUT, TRANSFER_IN
+    }
+
+    /**
+     * Outcomes of audited commands. New outcomes are only added at the end, the journal stores their ordinal.
+     */
+    public enum Result {
+        OK, INVALID_PARAMETERS, FORWARDED, WRONG_BANK, NO_DATABASE, LOCK_TIMEOUT, NOT_FOUND, REJECTED, DATABASE_ERROR,
+        ROLLED_BACK, UNAVAILABLE
+    }
+
+    /**
+     * Writes a record at the given position of a buffer. The timestamp is written last, so a record which
+     * was not written completely (because the node crashed) has a zero timestamp and is skipped by readers.
+     * @param buffer Buffer of the journal segment
+     * @param offset Position of the record
+     * @param timestamp Time of the outcome in milliseconds since the epoch
+     * @param address Peer's address (4 or 16 bytes)
+     * @param port Peer's port
+     * @param type Type of the command
+     * @param result Outcome of the command
+     * @param accountNumber Bank account number
+     * @param amount Amount of money
+     * @param balance Resulting balance
+     */
+    static void write(ByteBuffer buffer, int offset, long timestamp, byte[] address, int port, Type type, Result result,
+                      int accountNumber, long amount, long balance) {
+        if (address.length == 4) {
+            // IPv4-mapped IPv6 address ::ffff:a.b.c.d
+            buffer.putLong(offset + 8, 0);
+            buffer.putShort(offset + 16, (short)0);
+            buffer.putShort(offset + 18, (short)0xffff);
+            buffer.put(offset + 20, address, 0, 4);
+        } else {
+            buffer.put(offset + 8, address, 0, 16);
+        }
+        buffer.putShort(offset + 24, (short)port);
+        buffer.put(offset + 26, (byte)type.ordinal());
+        buffer.put(offset + 27, (byte)result.ordinal());
+        buffer.putInt(offset + 28, accountNumber);
+        buffer.putLong(offset + 32, amount);
+        buffer.putLong(offset + 40, balance);
+        buffer.putLong(offset, timestamp);
+    }
+
+    /**
+     * Reads a record from the given position of a buffer.
+     * @param buffer Buffer of the journal segment
+     * @param offset Position of the record
+     * @return Record, or null if the record was not written completely or was written by a newer version
+     */
+    static AuditRecord read(ByteBuffer buffer, int offset) {
+        long timestamp = buffer.getLong(offset);
+        int type = buffer.get(offset + 26);
+        int result = buffer.get(offset + 27);
+        if (timestamp == 0 || type < 0 || type >= Type.values().length || result < 0 || result >= Result.values().length) {
+            return null;
+        }
+        byte[] addressBytes = new byte[16];
+        buffer.get(offset + 8, addressBytes);
+        InetAddress address;
+        try {
+            // IPv4-mapped addresses are turned back into IPv4 addresses
+            address = InetAddress.getByAddress(addressBytes);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+        return new AuditRecord(timestamp, address, Short.toUnsignedInt(buffer.getShort(offset + 24)),
+                Type.values()[type], Result.values()[result], buffer.getInt(offset + 28),
+                buffer.getLong(offset + 32), buffer.getLong(offset + 40));
+    }
+
+    /**
+     * Returns the record as a single line, for example
+     * 2026-10-18T10:15:30.125Z /127.0.0.1:52144 DEPOSIT 10000 500 2500 OK
+     * @return Record as a line of text
+     */
+    @Override
+    public String toString() {
+        return Instant.ofEpochMilli(timestamp) + " " + address + ":" + port + " " + type + " " + accountNumber
+                + " " + amount + " " + balance + " " + result;
+    }
+}
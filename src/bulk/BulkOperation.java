@@ -0,0 +1,48 @@
+package bulk;
+
+/**
+ * This record describes a bank-wide operation applied to every account, such as interest or a fee.
+ * @param id Id chosen by the administrator, the progress of the operation is recorded under it
+ * @param rule Rule applied to every account
+ * @param value Interest rate in hundredths of a percent, or the fee
+ * @param startAt Time the operation starts at, in milliseconds since the epoch
+ */
+public record BulkOperation(String id, Rule rule, long value, long startAt) {
+    /**
+     * Rules which can be applied to every account.
+     */
+    public enum Rule {
+        INTEREST, FEE
+    }
+
+    /**
+     * Parses an operation serialized by the serialize() method.
+     * @param id Operation id
+     * @param serialized Rule, value and start time separated by spaces
+     * @return New BulkOperation instance
+     * @throws IllegalArgumentException The operation is malformed
+     */
+    public static BulkOperation parse(String id, String serialized) throws IllegalArgumentException {
+        String[] parts = serialized.strip().split(" ");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed bulk operation " + id + ".");
+        }
+        return new BulkOperation(id, Rule.valueOf(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+    }
+
+    /**
+     * Serializes the operation without its id, for example "INTEREST 25 1760000000000".
+     * @return Serialized operation
+     */
+    public String serialize() {
+        return rule + " " + value + " " + startAt;
+    }
+
+    /**
+     * Describes the change applied to every account, for example "INTEREST 25".
+     * @return Rule and value separated by a space
+     */
+    public String change() {
+        return rule + " " + value;
+    }
+}
@@ -0,0 +1,579 @@
+package bulk;
+
+import cluster.ClusterManager;
+import cluster.RoutingTable;
+import database.AccountLocks;
+import database.DatabaseConnector;
+import database.Mutation;
+import database.MutationPublisher;
+import database.Shard;
+import database.tables.BankAccount;
+import database.tables.BulkProgress;
+import util.FileLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class implements the Singleton design pattern. It runs bank-wide operations, such as interest or a fee,
+ * at a scheduled time. The accounts owned by this node are split into chunks, which are processed in parallel,
+ * each one with a single set-based update in its own transaction. The chunk is recorded in the BulkProgress table
+ * in the same transaction, so a restarted operation skips the chunks which were already applied and no account
+ * is changed twice. While a chunk is being updated, its accounts are locked like during any other command,
+ * so commands on them wait at most for one chunk. The chunk size is adjusted to keep that wait under the configured pause.
+ * Scheduled operations are stored in a file until they finish, so they are resumed after a restart.
+ */
+public class BulkScheduler {
+    private static final int MIN_CHUNK_SIZE = 16;
+
+    private static BulkScheduler instance;
+    private final ScheduledExecutorService timer;
+    private final ConcurrentHashMap<String, Progress> operations = new ConcurrentHashMap<>();
+    private Path stateFile = Path.of("bulk-operations.properties");
+    private int parallelism = 2;
+    private int maxChunkSize = 1000;
+    private long maxPauseNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    private volatile int chunkSize = 1000;
+
+    /**
+     * Progress of a scheduled operation.
+     */
+    public static class Progress {
+        private final BulkOperation operation;
+        private volatile State state = State.SCHEDULED;
+        private volatile int totalNumbers = 0;
+        private final AtomicInteger processedNumbers = new AtomicInteger();
+        private final AtomicInteger updatedAccounts = new AtomicInteger();
+
+        /**
+         * States of an operation.
+         */
+        public enum State {
+            SCHEDULED, RUNNING, DONE, FAILED
+        }
+
+        /**
+         * Constructor which creates the progress of an operation which has not started yet.
+         * @param operation Scheduled operation
+         */
+        private Progress(BulkOperation operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * Returns the operation.
+         * @return Scheduled operation
+         */
+        public BulkOperation getOperation() {
+            return operation;
+        }
+
+        /**
+         * Returns the state of the operation.
+         * @return State of the operation
+         */
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * Returns the number of account numbers the operation has to process on this node.
+         * It is 0 until the operation starts.
+         * @return Number of account numbers
+         */
+        public int getTotalNumbers() {
+            return totalNumbers;
+        }
+
+        /**
+         * Returns the number of account numbers which have been processed, including the ones
+         * processed before a restart.
+         * @return Number of processed account numbers
+         */
+        public int getProcessedNumbers() {
+            return processedNumbers.get();
+        }
+
+        /**
+         * Returns the number of accounts which have been changed.
+         * @return Number of changed accounts
+         */
+        public int getUpdatedAccounts() {
+            return updatedAccounts.get();
+        }
+    }
+
+    /**
+     * Returns the Singleton instance of BulkScheduler.
+     * @return Singleton instance of BulkScheduler
+     */
+    public static synchronized BulkScheduler getInstance() {
+        if (instance == null) {
+            instance = new BulkScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Private constructor which creates the thread starting the operations at their scheduled time.
+     */
+    private BulkScheduler() {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the file storing scheduled operations and the limits of their execution.
+     * @param stateFile Path of the file storing the operations which have not finished
+     * @param parallelism Number of chunks processed at the same time
+     * @param chunkSize Maximum number of account numbers in a chunk
+     * @param maxPauseMillis Maximum time the accounts of a chunk should stay locked, in milliseconds
+     */
+    public synchronized void configure(Path stateFile, int parallelism, int chunkSize, long maxPauseMillis) {
+        this.stateFile = stateFile;
+        this.parallelism = parallelism;
+        this.maxChunkSize = chunkSize;
+        this.chunkSize = chunkSize;
+        this.maxPauseNanos = TimeUnit.MILLISECONDS.toNanos(maxPauseMillis);
+    }
+
+    /**
+     * Schedules the operations stored in the state file, which did not finish before the node stopped.
+     * Operations whose time has passed are started immediately.
+     */
+    public synchronized void resumePending() {
+        Properties state;
+        try {
+            state = loadState();
+        } catch (IOException e) {
+            FileLogger.getLogger().severe("Failed to read the bulk operations from {}.", stateFile);
+            return;
+        }
+        for (String id : state.stringPropertyNames()) {
+            try {
+                schedule(BulkOperation.parse(id, state.getProperty(id)));
+                FileLogger.getLogger().info("Resumed bulk operation {}.", id);
+            } catch (IllegalArgumentException | IOException e) {
+                FileLogger.getLogger().severe("Failed to resume bulk operation {}: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Schedules an operation and stores it in the state file. An operation which has finished or failed
+     * can be scheduled again with the same id, only the chunks which were not applied yet are processed.
+     * @param operation Operation to be scheduled
+     * @return Progress of the operation
+     * @throws IllegalArgumentException The operation is already scheduled or running, or its id is used
+     * for a different change
+     * @throws IOException The state file could not be written
+     */
+    public synchronized Progress schedule(BulkOperation operation) throws IllegalArgumentException, IOException {
+        Progress existing = operations.get(operation.id());
+        if (existing != null) {
+            if (!existing.operation.change().equals(operation.change())) {
+                throw new IllegalArgumentException("The bulk operation id is already used for a different change.");
+            }
+            if (existing.state == Progress.State.SCHEDULED || existing.state == Progress.State.RUNNING) {
+                throw new IllegalArgumentException("The bulk operation is already scheduled.");
+            }
+        }
+
+        Properties state = loadState();
+        state.setProperty(operation.id(), operation.serialize());
+        saveState(state);
+
+        Progress progress = new Progress(operation);
+        operations.put(operation.id(), progress);
+        long delay = Math.max(0, operation.startAt() - System.currentTimeMillis());
+        timer.schedule(() -> run(progress), delay, TimeUnit.MILLISECONDS);
+        return progress;
+    }
+
+    /**
+     * Returns the progress of an operation scheduled since the node started.
+     * @param id Operation id
+     * @return Progress of the operation, or null if it is not known
+     */
+    public Progress getProgress(String id) {
+        return operations.get(id);
+    }
+
+    /**
+     * Runs an operation on the scheduler thread. The account numbers owned by this node which have not been
+     * processed yet are split into tasks, which are processed on a separate pool. A finished operation is
+     * removed from the state file, a failed one stays there and is resumed after a restart.
+     * @param progress Progress of the operation
+     */
+    private void run(Progress progress) {
+        BulkOperation operation = progress.operation;
+        progress.state = Progress.State.RUNNING;
+        FileLogger.getLogger().info("Started bulk operation {} ({}).", operation.id(), operation.change());
+
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        Map<Shard, Queue<Connection>> idleConnections = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ChunkTask> tasks = new ArrayList<>();
+            int totalNumbers = 0;
+            for (Shard shard : connector.getShards()) {
+                idleConnections.put(shard, new ConcurrentLinkedQueue<>());
+                List<BulkProgress.Chunk> done = loadProcessedChunks(shard, operation);
+                for (RoutingTable.Segment segment : ClusterManager.getInstance().getLocalSegments()) {
+                    int first = Math.max(segment.firstAccountNumber(), shard.getFirstAccountNumber());
+                    int last = Math.min(segment.lastAccountNumber(), shard.getLastAccountNumber());
+                    if (first > last) {
+                        continue;
+                    }
+                    totalNumbers += last - first + 1;
+                    addRemainingTasks(tasks, done, shard, first, last, progress, idleConnections);
+                }
+                for (BulkProgress.Chunk chunk : done) {
+                    progress.updatedAccounts.addAndGet(chunk.updatedAccounts());
+                }
+            }
+            int remainingNumbers = 0;
+            for (ChunkTask task : tasks) {
+                remainingNumbers += task.lastNumber - task.firstNumber + 1;
+            }
+            progress.totalNumbers = totalNumbers;
+            progress.processedNumbers.addAndGet(totalNumbers - remainingNumbers);
+
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+            progress.state = Progress.State.DONE;
+            removeFromState(operation.id());
+            FileLogger.getLogger().info("Finished bulk operation {}, {} accounts were updated.",
+                    operation.id(), progress.getUpdatedAccounts());
+        } catch (RuntimeException | SQLException e) {
+            progress.state = Progress.State.FAILED;
+            FileLogger.getLogger().severe("Bulk operation {} failed after processing {} account numbers: {}",
+                    operation.id(), progress.getProcessedNumbers(), e.getMessage());
+        } finally {
+            pool.shutdown();
+            for (Queue<Connection> queue : idleConnections.values()) {
+                for (Connection connection : queue) {
+                    connector.closeConnection(connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the chunks of an operation which were already applied to a shard.
+     * @param shard Shard to be read
+     * @param operation Operation
+     * @return Processed chunks ordered by their first account number
+     * @throws SQLException The shard could not be read, or the id was used for a different change
+     */
+    private List<BulkProgress.Chunk> loadProcessedChunks(Shard shard, BulkOperation operation) throws SQLException {
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        Connection connection = connector.getConnection(shard);
+        if (connection == null) {
+            throw new SQLException("Failed to connect to shard " + shard.getIndex() + ".");
+        }
+        try {
+            List<BulkProgress.Chunk> chunks = BulkProgress.findByOperation(connection, operation.id());
+            for (BulkProgress.Chunk chunk : chunks) {
+                if (!chunk.change().equals(operation.change())) {
+                    throw new SQLException("The id was already used for " + chunk.change() + ".");
+                }
+            }
+            return chunks;
+        } finally {
+            connector.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Adds tasks for the parts of a range which are not covered by processed chunks.
+     * @param tasks List the tasks are added to
+     * @param done Processed chunks ordered by their first account number
+     * @param shard Shard the range belongs to
+     * @param first First account number of the range
+     * @param last Last account number of the range
+     * @param progress Progress of the operation
+     * @param idleConnections Connections shared by the tasks, per shard
+     */
+    private void addRemainingTasks(List<ChunkTask> tasks, List<BulkProgress.Chunk> done, Shard shard, int first, int last,
+                                   Progress progress, Map<Shard, Queue<Connection>> idleConnections) {
+        int next = first;
+        for (BulkProgress.Chunk chunk : done) {
+            if (chunk.lastNumber() < next || chunk.firstNumber() > last) {
+                continue;
+            }
+            if (chunk.firstNumber() > next) {
+                tasks.add(new ChunkTask(shard, next, chunk.firstNumber() - 1, progress, idleConnections));
+            }
+            next = chunk.lastNumber() + 1;
+        }
+        if (next <= last) {
+            tasks.add(new ChunkTask(shard, next, last, progress, idleConnections));
+        }
+    }
+
+    /**
+     * Task processing a range of account numbers of a single shard. A range larger than the current chunk size
+     * is split in half, so the pool can process the halves in parallel.
+     */
+    @SuppressWarnings("serial")
+    private class ChunkTask extends RecursiveAction {
+        private final Shard shard;
+        private final int firstNumber;
+        private final int lastNumber;
+        private final Progress progress;
+        private final Map<Shard, Queue<Connection>> idleConnections;
+
+        /**
+         * Constructor which creates a task for a range of account numbers.
+         * @param shard Shard the range belongs to
+         * @param firstNumber First account number of the range
+         * @param lastNumber Last account number of the range
+         * @param progress Progress of the operation
+         * @param idleConnections Connections shared by the tasks, per shard
+         */
+        ChunkTask(Shard shard, int firstNumber, int lastNumber, Progress progress,
+                  Map<Shard, Queue<Connection>> idleConnections) {
+            this.shard = shard;
+            this.firstNumber = firstNumber;
+            this.lastNumber = lastNumber;
+            this.progress = progress;
+            this.idleConnections = idleConnections;
+        }
+
+        /**
+         * Splits the range, or processes it in chunks when it is small enough. The chunk size is read again
+         * before every chunk, so a change made by another task is applied immediately. A chunk of the minimum
+         * size whose accounts are busy is skipped, and the skipped chunks are retried after the rest of the range.
+         */
+        @Override
+        protected void compute() {
+            int size = lastNumber - firstNumber + 1;
+            if (size > 2 * maxChunkSize) {
+                int middle = firstNumber + size / 2;
+                invokeAll(new ChunkTask(shard, firstNumber, middle - 1, progress, idleConnections),
+                        new ChunkTask(shard, middle, lastNumber, progress, idleConnections));
+                return;
+            }
+            Queue<int[]> busyChunks = new ArrayDeque<>();
+            int next = firstNumber;
+            while (next <= lastNumber) {
+                int last = Math.min(lastNumber, next + chunkSize - 1);
+                if (!applyChunk(next, last)) {
+                    if (last - next + 1 > MIN_CHUNK_SIZE) {
+                        continue; // The accounts are busy, a smaller chunk is tried
+                    }
+                    busyChunks.add(new int[] {next, last}); // Come back to the busy accounts later
+                }
+                next = last + 1;
+            }
+            // The busy chunks are retried until their accounts are released
+            while (!busyChunks.isEmpty()) {
+                int[] chunk = busyChunks.poll();
+                if (!applyChunk(chunk[0], chunk[1])) {
+                    busyChunks.add(chunk);
+                }
+            }
+        }
+
+        /**
+         * Applies the operation to a chunk, see processChunk().
+         * @param first First account number of the chunk
+         * @param last Last account number of the chunk
+         * @return True if the chunk was applied, false if its accounts could not be locked in time
+         * @throws RuntimeException The chunk could not be applied, which fails the operation
+         */
+        private boolean applyChunk(int first, int last) throws RuntimeException {
+            try {
+                return processChunk(first, last);
+            } catch (SQLException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Applies the operation to a chunk and records it in one transaction, while its accounts are locked.
+         * The changes are published after the locks are released.
+         * @param first First account number of the chunk
+         * @param last Last account number of the chunk
+         * @return True if the chunk was applied, false if its accounts could not be locked in time
+         * @throws SQLException The chunk could not be applied, nothing was changed
+         */
+        private boolean processChunk(int first, int last) throws SQLException {
+            BulkOperation operation = progress.operation;
+            AccountLocks locks = AccountLocks.getInstance();
+            if (!lockRange(first, last)) {
+                return false;
+            }
+            long lockedAt = System.nanoTime();
+            Connection connection;
+            try {
+                connection = borrowConnection();
+            } catch (SQLException e) {
+                locks.unlockRange(first, last);
+                throw e;
+            }
+            List<Mutation> mutations;
+            try {
+                connection.setAutoCommit(false);
+                if (operation.rule() == BulkOperation.Rule.INTEREST) {
+                    mutations = BankAccount.addInterest(connection, operation.value(), first, last);
+                } else {
+                    mutations = BankAccount.chargeFee(connection, operation.value(), first, last);
+                }
+                BulkProgress.insert(connection, operation.id(),
+                        new BulkProgress.Chunk(operation.change(), first, last, mutations.size()));
+                connection.commit();
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ex) {
+                    // The connection is closed either way
+                }
+                DatabaseConnector.getInstance().closeConnection(connection);
+                throw e; // Propagate the exception
+            } finally {
+                locks.unlockRange(first, last);
+                adjustChunkSize(last - first + 1, System.nanoTime() - lockedAt);
+            }
+            idleConnections.get(shard).add(connection);
+
+            for (Mutation mutation : mutations) {
+                MutationPublisher.getInstance().publish(mutation);
+            }
+            progress.processedNumbers.addAndGet(last - first + 1);
+            progress.updatedAccounts.addAndGet(mutations.size());
+            return true;
+        }
+
+        /**
+         * Locks every account of a chunk in ascending order. Commands hold single accounts only for a short time,
+         * so each lock is waited for, but at most half of the allowed pause for the whole chunk, as the accounts
+         * locked so far wait too. If an account stays busy (for example in an open batch), the chunk size
+         * is halved, and a busy chunk of the minimum size is skipped by compute() and retried later,
+         * so the rest of the range is processed meanwhile.
+         * @param first First account number of the chunk
+         * @param last Last account number of the chunk
+         * @return True if every account of the chunk was locked
+         */
+        private boolean lockRange(int first, int last) {
+            try {
+                if (AccountLocks.getInstance().lockRange(first, last, maxPauseNanos / 2)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while locking accounts.", e);
+            }
+            shrinkChunkSize(last - first + 1);
+            return false;
+        }
+
+        /**
+         * Returns an idle connection to the task's shard, or opens a new one.
+         * @return Database connection
+         * @throws SQLException The shard could not be reached
+         */
+        private Connection borrowConnection() throws SQLException {
+            Connection connection = idleConnections.get(shard).poll();
+            if (connection == null) {
+                connection = DatabaseConnector.getInstance().getConnection(shard);
+                if (connection == null) {
+                    throw new SQLException("Failed to connect to shard " + shard.getIndex() + ".");
+                }
+            }
+            return connection;
+        }
+    }
+
+    /**
+     * Halves the chunk size when a chunk kept its accounts locked for longer than the allowed pause,
+     * and doubles it (up to the configured size) when the chunk was much faster.
+     * @param size Number of account numbers in the processed chunk
+     * @param heldNanos Time the accounts of the chunk were locked, in nanoseconds
+     */
+    private void adjustChunkSize(int size, long heldNanos) {
+        if (heldNanos > maxPauseNanos && size > MIN_CHUNK_SIZE) {
+            chunkSize = Math.max(MIN_CHUNK_SIZE, size / 2);
+        } else if (heldNanos < maxPauseNanos / 4 && size >= chunkSize) {
+            chunkSize = Math.min(maxChunkSize, size * 2);
+        }
+    }
+
+    /**
+     * Halves the chunk size when the accounts of a chunk could not be locked in time.
+     * @param size Number of account numbers in the chunk which could not be locked
+     */
+    private void shrinkChunkSize(int size) {
+        chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(chunkSize, size / 2));
+    }
+
+    /**
+     * Removes a finished operation from the state file.
+     * @param id Operation id
+     */
+    private synchronized void removeFromState(String id) {
+        try {
+            Properties state = loadState();
+            state.remove(id);
+            saveState(state);
+        } catch (IOException e) {
+            FileLogger.getLogger().warning("Failed to remove bulk operation {} from {}, it will be resumed and"
+                    + " skipped after a restart.", id, stateFile);
+        }
+    }
+
+    /**
+     * Reads the stored operations.
+     * @return Operations by their id, empty if the file does not exist
+     * @throws IOException The file could not be read
+     */
+    private Properties loadState() throws IOException {
+        Properties state = new Properties();
+        if (Files.exists(stateFile)) {
+            try (InputStream in = Files.newInputStream(stateFile)) {
+                state.load(in);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Writes the stored operations to a temporary file, which then replaces the state file,
+     * so a crash never leaves a partially written file behind.
+     * @param state Operations by their id
+     * @throws IOException The file could not be written
+     */
+    private void saveState(Properties state) throws IOException {
+        Path temporary = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            state.store(out, "Scheduled bulk operations");
+        }
+        Files.move(temporary, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
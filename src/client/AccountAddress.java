@@ -0,0 +1,35 @@
+package client;
+
+/**
+ * The address of a bank account, its account number and the bank code of the bank which owns it.
+ * @param accountNumber Bank account number
+ * @param bankCode Bank code (IP address)
+ */
+public record AccountAddress(int accountNumber, String bankCode) {
+    /**
+     * Parses an address in the format used by the protocol, for example "10001/10.0.0.1".
+     * @param address Account address
+     * @return New AccountAddress instance
+     * @throws IllegalArgumentException The address is malformed
+     */
+    public static AccountAddress parse(String address) throws IllegalArgumentException {
+        String[] parts = address.strip().split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Account address must be in the format <account_number>/<bank_code>.");
+        }
+        try {
+            return new AccountAddress(Integer.parseInt(parts[0]), parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Account number must be a number.", e);
+        }
+    }
+
+    /**
+     * Returns the address in the format used by the protocol, for example "10001/10.0.0.1".
+     * @return Account address
+     */
+    @Override
+    public String toString() {
+        return accountNumber + "/" + bankCode;
+    }
+}
@@ -0,0 +1,295 @@
+package client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * This class is a client of a node speaking the text protocol. Requests are pipelined over a small pool
+ * of persistent connections, so many requests can be in flight at once without a TCP handshake each.
+ * Every command is available as a blocking method and as an asynchronous method returning a CompletableFuture.
+ * Error messages (ER) of the node are turned into a BankErrorException, transport errors and timeouts
+ * into an IOException.
+ */
+public class BankClient implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final long readTimeout;
+
+    /**
+     * This private constructor sets the connection pool and the response timeout.
+     * @param pool Connection pool of the node
+     * @param readTimeout How long to wait for a response, in milliseconds
+     */
+    private BankClient(ConnectionPool pool, long readTimeout) {
+        this.pool = pool;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Creates a new BankClient with 4 connections, a connect timeout of 1 second and a response timeout of 5 seconds.
+     * @param host Host of the node
+     * @param port Port of the node
+     * @return New BankClient instance
+     */
+    public static BankClient create(String host, int port) {
+        return create(host, port, 4, 1000, 5000);
+    }
+
+    /**
+     * Attempts to create a new BankClient. No connection is opened until the first request.
+     * @param host Host of the node
+     * @param port Port of the node
+     * @param poolSize Maximum number of connections
+     * @param connectTimeout Connect timeout in milliseconds
+     * @param readTimeout How long to wait for a response, in milliseconds
+     * @return New BankClient instance
+     * @throws IllegalArgumentException Invalid settings
+     */
+    public static BankClient create(String host, int port, int poolSize, int connectTimeout, int readTimeout)
+            throws IllegalArgumentException {
+        if (poolSize < 1 || connectTimeout < 1 || readTimeout < 1) {
+            throw new IllegalArgumentException("Pool size and timeouts must be greater than 0.");
+        }
+        return new BankClient(new ConnectionPool(host, port, poolSize, connectTimeout), readTimeout);
+    }
+
+    /**
+     * Retrieves the bank code of the node (BC).
+     * @return Future completed with the bank code
+     */
+    public CompletableFuture<String> bankCodeAsync() {
+        return request("BC", Function.identity());
+    }
+
+    /**
+     * Retrieves the total balance of the bank (BA).
+     * @return Future completed with the total balance
+     */
+    public CompletableFuture<Long> bankAmountAsync() {
+        return request("BA", Long::parseLong);
+    }
+
+    /**
+     * Retrieves the number of bank accounts of the bank (BN).
+     * @return Future completed with the number of accounts
+     */
+    public CompletableFuture<Long> bankNumberAsync() {
+        return request("BN", Long::parseLong);
+    }
+
+    /**
+     * Creates a new bank account (AC).
+     * @return Future completed with the address of the new account
+     */
+    public CompletableFuture<AccountAddress> createAccountAsync() {
+        return request("AC", AccountAddress::parse);
+    }
+
+    /**
+     * Retrieves the balance of a bank account (AB).
+     * @param account Account address
+     * @return Future completed with the balance
+     */
+    public CompletableFuture<Long> balanceAsync(AccountAddress account) {
+        return request("AB " + account, Long::parseLong);
+    }
+
+    /**
+     * Deposits money to a bank account (AD).
+     * @param account Account address
+     * @param amount Amount of money
+     * @return Future completed when the money has been deposited
+     */
+    public CompletableFuture<Void> depositAsync(AccountAddress account, long amount) {
+        return request("AD " + account + " " + amount, value -> null);
+    }
+
+    /**
+     * Withdraws money from a bank account (AW).
+     * @param account Account address
+     * @param amount Amount of money
+     * @return Future completed when the money has been withdrawn
+     */
+    public CompletableFuture<Void> withdrawAsync(AccountAddress account, long amount) {
+        return request("AW " + account + " " + amount, value -> null);
+    }
+
+    /**
+     * Removes a bank account (AR).
+     * @param account Account address
+     * @return Future completed when the account has been removed
+     */
+    public CompletableFuture<Void> removeAsync(AccountAddress account) {
+        return request("AR " + account, value -> null);
+    }
+
+    /**
+     * Moves money between two bank accounts of the same bank in one transaction (AT).
+     * @param from Account the money is withdrawn from
+     * @param to Account the money is deposited to
+     * @param amount Amount of money
+     * @return Future completed when the money has been transferred
+     */
+    public CompletableFuture<Void> transferAsync(AccountAddress from, AccountAddress to, long amount) {
+        return request("AT " + from + " " + to + " " + amount, value -> null);
+    }
+
+    /**
+     * Retrieves the bank code of the node (BC).
+     * @return Bank code
+     * @throws IOException The node could not be reached or did not respond in time
+     * @throws BankErrorException The node responded with an error
+     */
+    public String bankCode() throws IOException, BankErrorException {
+        return await(bankCodeAsync());
+    }
+
+    /**
+     * Retrieves the total balance of the bank (BA).
+     * @return Total balance
+     * @throws IOException The node could not be reached or did not respond in time
+     * @throws BankErrorException The node responded with an error
+     */
+    public long bankAmount() throws IOException, BankErrorException {
+        return await(bankAmountAsync());
+    }
+
+    /**
+     * Retrieves the number of bank accounts of the bank (BN).
+     * @return Number of accounts
+     * @throws IOException The node could not be reached or did not respond in time
+     * @throws BankErrorException The node responded with an error
+     */
+    public long bankNumber() throws IOException, BankErrorException {
+        return await(bankNumberAsync());
+    }
+
+    /**
+     * Creates a new bank account (AC).
+     * @return Address of the new account
+     * @throws IOException The node could not be reached or did not respond in time
+     * @throws BankErrorException The node responded with an error
+     */
+    public AccountAddress createAccount() throws IOException, BankErrorException {
+        return await(createAccountAsync());
+    }
+
+    /**
+     * Retrieves the balance of a bank account (AB).
+     * @param account Account address
+     * @return Balance
+     * @throws IOException The node could not be reached or did not respond in time
+     * @throws BankErrorException The node responded with an error
+     */
+    public long balance(AccountAddress account) throws IOException, BankErrorException {
+        return await(balanceAsync(account));
+    }
+
+    /**
+     * Deposits money to a bank account (AD).
+     * @param account Account address
+     * @param amount Amount of money
+     * @throws IOException The node could not be reached or did not respond in time
+     * @throws BankErrorException The node responded with an error
+     */
+    public void deposit(AccountAddress account, long amount) throws IOException, BankErrorException {
+        await(depositAsync(account, amount));
+    }
+
+    /**
+     * Withdraws money from a bank account (AW).
+     * @param account Account address
+     * @param amount Amount of money
+     * @throws IOException The node could not be reached or did not respond in time
+     * @throws BankErrorException The node responded with an error
+     */
+    public void withdraw(AccountAddress account, long amount) throws IOException, BankErrorException {
+        await(withdrawAsync(account, amount));
+    }
+
+    /**
+     * Removes a bank account (AR).
+     * @param account Account address
+     * @throws IOException The node could not be reached or did not respond in time
+     * @throws BankErrorException The node responded with an error
+     */
+    public void remove(AccountAddress account) throws IOException, BankErrorException {
+        await(removeAsync(account));
+    }
+
+    /**
+     * Moves money between two bank accounts of the same bank in one transaction (AT).
+     * @param from Account the money is withdrawn from
+     * @param to Account the money is deposited to
+     * @param amount Amount of money
+     * @throws IOException The node could not be reached or did not respond in time
+     * @throws BankErrorException The node responded with an error
+     */
+    public void transfer(AccountAddress from, AccountAddress to, long amount) throws IOException, BankErrorException {
+        await(transferAsync(from, to, amount));
+    }
+
+    /**
+     * Closes every connection of the client. Pending requests fail.
+     */
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Sends a request and parses the value of the response. A response "XX value" to a request "XX ..."
+     * is passed to the parser without the command name, an error response fails the future with a BankErrorException.
+     * @param request Request line
+     * @param parser Parser of the response value (the value is empty if the response has none)
+     * @return Future completed with the parsed value
+     * @param <T> Type of the parsed value
+     */
+    private <T> CompletableFuture<T> request(String request, Function<String, T> parser) {
+        String commandName = request.split(" ", 2)[0];
+        CompletableFuture<String> response;
+        try {
+            response = pool.send(request, readTimeout);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return response.thenApply(line -> {
+            if (line.startsWith("ER")) {
+                throw new CompletionException(new BankErrorException(line.substring(2).strip()));
+            }
+            if (!line.equals(commandName) && !line.startsWith(commandName + " ")) {
+                throw new CompletionException(new IOException("Unexpected response to " + commandName + ": " + line));
+            }
+            try {
+                return parser.apply(line.substring(commandName.length()).strip());
+            } catch (IllegalArgumentException e) {
+                throw new CompletionException(new IOException("Malformed response to " + commandName + ": " + line, e));
+            }
+        });
+    }
+
+    /**
+     * Waits for a future of this client and unwraps its exception.
+     * @param future Future returned by an asynchronous method
+     * @return Value of the future
+     * @param <T> Type of the value
+     * @throws IOException The node could not be reached or did not respond in time
+     * @throws BankErrorException The node responded with an error
+     */
+    private static <T> T await(CompletableFuture<T> future) throws IOException, BankErrorException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BankErrorException bankError) {
+                throw bankError;
+            }
+            throw e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response.");
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package client;
+
+/**
+ * This exception is thrown when a node answers a request with an error message (ER).
+ * The message of the exception is the error message sent by the node.
+ */
+public class BankErrorException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * This constructor sets the error message sent by the node.
+     * @param message Error message, without the ER prefix
+     */
+    public BankErrorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,149 @@
+package client;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class keeps a small pool of pipelined connections to one node. Requests are sent over the connection
+ * with the fewest pending requests, and a new connection is opened only when every connection is busy
+ * and the pool is not full yet.
+ */
+public class ConnectionPool {
+    private final String host;
+    private final int port;
+    private final int size;
+    private final int connectTimeout;
+    private final List<PipelinedConnection> connections = new ArrayList<>();
+
+    /**
+     * This constructor sets the node and the pool settings. No connection is opened until the first request.
+     * @param host Host of the node
+     * @param port Port of the node
+     * @param size Maximum number of connections
+     * @param connectTimeout Connect timeout in milliseconds
+     */
+    public ConnectionPool(String host, int port, int size, int connectTimeout) {
+        this.host = host;
+        this.port = port;
+        this.size = size;
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Sends a request line without waiting for the response. If the chosen connection turns out to be closed
+     * before the request is written, the request is sent over a new connection. Requests which were written
+     * are never sent again, as the node may have executed them. If the response does not arrive in time,
+     * the connection is closed, because a late response would be matched to the next request.
+     * @param request Request line, without the line terminator
+     * @param readTimeout How long to wait for the response, in milliseconds
+     * @return Future completed with the response line, or exceptionally with an IOException
+     * @throws IOException The node could not be reached, the request was not sent
+     */
+    public CompletableFuture<String> send(String request, long readTimeout) throws IOException {
+        PipelinedConnection connection = acquire();
+        CompletableFuture<String> response;
+        try {
+            response = connection.send(request);
+        } catch (IOException e) {
+            connection = open();
+            response = connection.send(request);
+        }
+
+        PipelinedConnection usedConnection = connection;
+        if (!isPooled(connection)) {
+            // Nobody else can find a connection outside the pool, it only serves this request
+            response.whenComplete((line, exception) -> usedConnection.close());
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        response.orTimeout(readTimeout, TimeUnit.MILLISECONDS).whenComplete((line, exception) -> {
+            if (exception == null) {
+                result.complete(line);
+            } else if (exception instanceof TimeoutException) {
+                usedConnection.close();
+                result.completeExceptionally(new SocketTimeoutException("Node at " + host + ":" + port + " did not respond in time."));
+            } else {
+                Throwable cause = exception instanceof CompletionException && exception.getCause() != null ? exception.getCause() : exception;
+                result.completeExceptionally(cause instanceof IOException ? cause : new IOException(cause));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the connection with the fewest pending requests, or opens a new one if every connection
+     * is busy and the pool is not full yet.
+     * @return Open connection
+     * @throws IOException A new connection could not be opened
+     */
+    private PipelinedConnection acquire() throws IOException {
+        synchronized (connections) {
+            connections.removeIf(PipelinedConnection::isClosed);
+            PipelinedConnection leastBusy = null;
+            for (PipelinedConnection connection : connections) {
+                if (leastBusy == null || connection.getPendingCount() < leastBusy.getPendingCount()) {
+                    leastBusy = connection;
+                }
+            }
+            if (leastBusy != null && (leastBusy.getPendingCount() == 0 || connections.size() >= size)) {
+                return leastBusy;
+            }
+        }
+        return open();
+    }
+
+    /**
+     * Opens a new connection and adds it to the pool, if the pool is not full. Closed connections are removed
+     * from the pool first, so a connection replacing a closed one always takes its place. If the pool is full
+     * (because other threads opened connections at the same time), the new connection is not pooled
+     * and it is closed by send() once its response completes.
+     * @return New connection
+     * @throws IOException The node could not be reached
+     */
+    private PipelinedConnection open() throws IOException {
+        PipelinedConnection connection = PipelinedConnection.open(host, port, connectTimeout);
+        synchronized (connections) {
+            connections.removeIf(PipelinedConnection::isClosed);
+            if (connections.size() < size) {
+                connections.add(connection);
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Returns whether the connection is a part of the pool.
+     * @param connection Connection
+     * @return True if the connection is in the pool
+     */
+    private boolean isPooled(PipelinedConnection connection) {
+        synchronized (connections) {
+            return connections.contains(connection);
+        }
+    }
+
+    /**
+     * Returns the port of the node.
+     * @return Port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Closes every connection of the pool.
+     */
+    public void close() {
+        synchronized (connections) {
+            for (PipelinedConnection connection : connections) {
+                connection.close();
+            }
+            connections.clear();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package client;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class represents a persistent connection to a node speaking the text protocol. Requests are pipelined:
+ * several requests may be sent before the first response arrives. The node answers the requests of one connection
+ * in order, so a reader thread completes the pending requests in the order they were sent.
+ */
+public class PipelinedConnection {
+    private final Socket socket;
+    private final Writer out;
+    private final BufferedReader in;
+    private final ConcurrentLinkedQueue<CompletableFuture<String>> pending = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed = false;
+
+    /**
+     * This private constructor sets the connected socket and its streams.
+     * @param socket Connected socket
+     * @throws IOException The streams could not be opened
+     */
+    private PipelinedConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens a new connection and starts its reader thread.
+     * @param host Remote host
+     * @param port Remote port
+     * @param connectTimeout Connect timeout in milliseconds
+     * @return New connection
+     * @throws IOException The node could not be reached
+     */
+    public static PipelinedConnection open(String host, int port, int connectTimeout) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), connectTimeout);
+            socket.setTcpNoDelay(true);
+            PipelinedConnection connection = new PipelinedConnection(socket);
+            Thread readerThread = new Thread(connection::readResponses, "pipelined-reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+            return connection;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a request line without waiting for the response.
+     * @param request Request line, without the line terminator
+     * @return Future completed with the response line, or exceptionally if the connection breaks
+     * @throws IOException The connection is closed, the request was not sent
+     */
+    public CompletableFuture<String> send(String request) throws IOException {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        synchronized (out) {
+            if (closed) {
+                throw new EOFException("Connection to the node is closed.");
+            }
+            // The response is queued before the request is written, so the reader can never miss it
+            pending.add(response);
+            try {
+                out.write(request + "\r\n");
+                out.flush();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Reads responses and completes the pending requests in order, until the connection is closed.
+     */
+    private void readResponses() {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                CompletableFuture<String> response = pending.poll();
+                if (response != null) {
+                    response.complete(line);
+                }
+            }
+        } catch (IOException e) {
+            // The connection is broken, the pending requests fail below
+        }
+        close();
+    }
+
+    /**
+     * Closes the connection. Requests still waiting for a response fail.
+     */
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // The connection is discarded either way
+        }
+        // Senders add their requests while holding the writer, so no request is added after this point
+        synchronized (out) {
+            CompletableFuture<String> response;
+            while ((response = pending.poll()) != null) {
+                response.completeExceptionally(new EOFException("Connection to the node was closed."));
+            }
+        }
+    }
+
+    /**
+     * Returns whether the connection has been closed.
+     * @return True if closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the number of requests waiting for a response.
+     * @return Number of pending requests
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+}
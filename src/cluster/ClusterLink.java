@@ -0,0 +1,132 @@
+package cluster;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class represents the internal link to another node of the cluster. It keeps a small pool
+ * of persistent connections, so forwarding a command does not cost a TCP handshake.
+ * The link speaks the same text protocol as peers do, one request line and one response line.
+ */
+public class ClusterLink {
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final int READ_TIMEOUT = 5000;
+
+    private final int nodeId;
+    private final String host;
+    private final int port;
+    private final BlockingQueue<LinkConnection> idle;
+
+    /**
+     * A single persistent connection to the remote node.
+     * @param socket Connected socket
+     * @param in Reader of the responses
+     * @param out Writer of the requests
+     */
+    private record LinkConnection(Socket socket, BufferedReader in, Writer out) {
+        /**
+         * Closes the connection, errors are ignored.
+         */
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // The connection is discarded either way
+            }
+        }
+    }
+
+    /**
+     * This constructor sets the remote node and the maximum number of idle connections kept open.
+     * @param nodeId Id of the remote node
+     * @param host Host of the remote node's link
+     * @param port Port of the remote node's link
+     * @param poolSize Maximum number of idle connections
+     */
+    public ClusterLink(int nodeId, String host, int port, int poolSize) {
+        this.nodeId = nodeId;
+        this.host = host;
+        this.port = port;
+        this.idle = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * Sends a request line to the remote node and waits for the response line. An idle pooled connection
+     * is reused if there is one. If a pooled connection turns out to be closed, the request is retried
+     * once on a new connection. Timed out requests are never retried.
+     * @param request Request line, without the line terminator
+     * @return Response line, without the line terminator
+     * @throws IOException The remote node could not be reached or did not respond in time
+     */
+    public String send(String request) throws IOException {
+        LinkConnection connection = idle.poll();
+        if (connection != null) {
+            try {
+                return exchange(connection, request);
+            } catch (SocketTimeoutException e) {
+                throw e; // The request may have been executed, it must not be sent again
+            } catch (IOException e) {
+                // The pooled connection was closed by the remote node, try a new one
+            }
+        }
+        return exchange(open(), request);
+    }
+
+    /**
+     * Sends the request over the given connection and returns the connection to the pool afterwards.
+     * @param connection Link connection
+     * @param request Request line
+     * @return Response line
+     * @throws IOException The connection is broken or the response timed out
+     */
+    private String exchange(LinkConnection connection, String request) throws IOException {
+        try {
+            connection.out().write(request + "\r\n");
+            connection.out().flush();
+            String response = connection.in().readLine();
+            if (response == null) {
+                throw new EOFException("Cluster node " + nodeId + " closed the link.");
+            }
+            if (!idle.offer(connection)) {
+                connection.close();
+            }
+            return response;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a new connection to the remote node.
+     * @return New link connection
+     * @throws IOException The remote node could not be reached
+     */
+    private LinkConnection open() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            socket.setSoTimeout(READ_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            return new LinkConnection(socket, in, out);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the id of the remote node.
+     * @return Node id
+     */
+    public int getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,343 @@
+package cluster;
+
+import database.AccountLocks;
+import database.ApplicationLocks;
+import database.DatabaseConnector;
+import database.ReadCoalescer;
+import database.Shard;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class implements the Singleton design pattern. It allows several node processes to serve
+ * a single bank code. Every node owns some ranges of account numbers (described by the RoutingTable),
+ * and commands for accounts owned by another node are forwarded to it over an internal ClusterLink.
+ * All nodes use the same databases, so changing the owner of a range does not move any data.
+ */
+public class ClusterManager {
+    /**
+     * Response sent over a link when the node does not own the account anymore.
+     */
+    public static final String NOT_OWNER_RESPONSE = "ER Account is owned by another node.";
+
+    private static final int HANDOFF_TIMEOUT = 5000;
+    private static final String HANDOFF_LOCK = "cluster-handoff";
+
+    private static ClusterManager instance;
+    private boolean enabled = false;
+    private int nodeId;
+    private final Map<Integer, ClusterLink> links = new HashMap<>();
+    private final Set<InetAddress> memberAddresses = new HashSet<>();
+    private volatile RoutingTable table;
+
+    /**
+     * Returns the Singleton instance of ClusterManager.
+     * @return Singleton instance of ClusterManager
+     */
+    public static synchronized ClusterManager getInstance() {
+        if (instance == null) {
+            instance = new ClusterManager();
+        }
+        return instance;
+    }
+
+    /**
+     * Enables the cluster mode.
+     * @param nodeId Id of this node
+     * @param linkAddresses Map of node ids and their link addresses (host:port), including this node
+     * @param table Initial routing table
+     * @throws IllegalArgumentException Malformed link address, or this node is not a member of the cluster
+     * @throws UnknownHostException Link host could not be resolved
+     */
+    public synchronized void configure(int nodeId, Map<Integer, String> linkAddresses, RoutingTable table)
+            throws IllegalArgumentException, UnknownHostException {
+        if (enabled) {
+            return;
+        }
+        if (!linkAddresses.containsKey(nodeId)) {
+            throw new IllegalArgumentException("This node is not a member of the cluster.");
+        }
+        for (Map.Entry<Integer, String> entry : linkAddresses.entrySet()) {
+            String[] hostAndPort = entry.getValue().split(":");
+            if (hostAndPort.length != 2) {
+                throw new IllegalArgumentException("Cluster link address must be in the format host:port.");
+            }
+            memberAddresses.add(InetAddress.getByName(hostAndPort[0]));
+            if (entry.getKey() != nodeId) {
+                links.put(entry.getKey(), new ClusterLink(entry.getKey(), hostAndPort[0], Integer.parseInt(hostAndPort[1]), 8));
+            }
+        }
+        this.nodeId = nodeId;
+        this.table = table;
+        this.enabled = true;
+    }
+
+    /**
+     * Returns whether the cluster mode is enabled.
+     * @return True if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Checks if this node owns the given account number. Without the cluster mode, every account is local.
+     * @param accountNumber Bank account number
+     * @return True if the account is served by this node
+     */
+    public boolean isLocal(int accountNumber) {
+        return !enabled || table.ownerOf(accountNumber) == nodeId;
+    }
+
+    /**
+     * Returns the account number ranges owned by this node. Without the cluster mode,
+     * this node owns the whole 10000 - 99999 range.
+     * @return List of owned segments
+     */
+    public List<RoutingTable.Segment> getLocalSegments() {
+        if (!enabled) {
+            return List.of(new RoutingTable.Segment(10000, 99999, 0));
+        }
+        return table.segmentsOf(nodeId);
+    }
+
+    /**
+     * Forwards a message to the node owning the account. If that node responds that it does not own
+     * the account anymore, the routing table is refreshed from it and the message is forwarded once more.
+     * @param accountNumber Bank account number the message is about
+     * @param message Message received from a peer
+     * @return Response of the owning node
+     * @throws IOException The owning node could not be reached
+     */
+    public String forward(int accountNumber, String message) throws IOException {
+        int owner = table.ownerOf(accountNumber);
+        String response = getLink(owner).send(message);
+        if (!response.equals(NOT_OWNER_RESPONSE)) {
+            return response;
+        }
+
+        // Our routing table is stale, ask the node we contacted for its table
+        String tableResponse = getLink(owner).send("CT");
+        if (tableResponse.startsWith("CT ")) {
+            install(RoutingTable.parse(tableResponse.substring(3)));
+        }
+        int newOwner = table.ownerOf(accountNumber);
+        if (newOwner == nodeId || newOwner == owner) {
+            return NOT_OWNER_RESPONSE;
+        }
+        return getLink(newOwner).send(message);
+    }
+
+    /**
+     * Sends a numeric command (BA or BN) to every other node and sums the results.
+     * Each node answers with the value of the ranges it owns.
+     * @param commandName Command name
+     * @return Sum of the values of all other nodes
+     * @throws IOException A node could not be reached or responded with an error
+     */
+    public long sumRemote(String commandName) throws IOException {
+        long sum = 0;
+        for (ClusterLink link : links.values()) {
+            String response = link.send(commandName);
+            if (!response.startsWith(commandName + " ")) {
+                throw new IOException("Cluster node " + link.getNodeId() + " failed to answer " + commandName + ".");
+            }
+            try {
+                sum += Long.parseLong(response.substring(commandName.length() + 1).strip());
+            } catch (NumberFormatException e) {
+                throw new IOException("Cluster node " + link.getNodeId() + " sent a malformed answer.", e);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Installs the given routing table, if it is newer than the current one.
+     * @param newTable Routing table
+     * @return True if the table was installed
+     */
+    public synchronized boolean install(RoutingTable newTable) {
+        if (newTable.getEpoch() <= table.getEpoch()) {
+            return false;
+        }
+        table = newTable;
+        ReadCoalescer.getInstance().invalidate();
+        return true;
+    }
+
+    /**
+     * Hands the ownership of a range owned by this node over to the given node. Handoffs of the whole cluster
+     * are serialized by an application lock in the database of the first shard, and the newest routing table
+     * of the other nodes is fetched first, so two handoffs never create different tables with the same epoch.
+     * The accounts of the range are locked while the ownership changes: commands changing them finish first,
+     * and commands waiting for them find out that the accounts are owned by another node once they get the lock.
+     * The new routing table is installed locally, if the table has not changed in the meantime, and sent
+     * to every other node before the accounts are unlocked.
+     * @param firstAccountNumber First account number of the range
+     * @param lastAccountNumber Last account number of the range
+     * @param newOwner Id of the new owner
+     * @return Number of other nodes which could not be reached
+     * @throws IllegalArgumentException Invalid range, unknown node, or the range is not owned by this node
+     * @throws IllegalStateException Another handoff is running, or the accounts of the range are busy
+     */
+    public int handoff(int firstAccountNumber, int lastAccountNumber, int newOwner)
+            throws IllegalArgumentException, IllegalStateException {
+        if (newOwner != nodeId && !links.containsKey(newOwner)) {
+            throw new IllegalArgumentException("Unknown cluster node " + newOwner + ".");
+        }
+        if (firstAccountNumber < 10000 || lastAccountNumber > 99999 || firstAccountNumber > lastAccountNumber) {
+            throw new IllegalArgumentException("Range must be within 10000 and 99999.");
+        }
+
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        List<Shard> shards = connector.getShards();
+        Connection lockConnection = shards.isEmpty() ? null : connector.getConnection(shards.get(0));
+        if (lockConnection == null) {
+            throw new IllegalStateException("Failed to access database.");
+        }
+        try {
+            if (!ApplicationLocks.acquire(lockConnection, HANDOFF_LOCK, HANDOFF_TIMEOUT)) {
+                throw new IllegalStateException("Another handoff is in progress, try again later.");
+            }
+            synchronizeTable();
+            return handoffLocked(firstAccountNumber, lastAccountNumber, newOwner);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to access database.");
+        } finally {
+            // Closing the session releases the application lock
+            connector.closeConnection(lockConnection);
+        }
+    }
+
+    /**
+     * Hands a range over while the handoffs of the cluster are serialized.
+     * @param firstAccountNumber First account number of the range
+     * @param lastAccountNumber Last account number of the range
+     * @param newOwner Id of the new owner
+     * @return Number of other nodes which could not be reached
+     * @throws IllegalArgumentException The range is not owned by this node
+     * @throws IllegalStateException The accounts of the range are busy, or the routing table changed
+     */
+    private int handoffLocked(int firstAccountNumber, int lastAccountNumber, int newOwner)
+            throws IllegalArgumentException, IllegalStateException {
+        if (!table.isOwnedBy(firstAccountNumber, lastAccountNumber, nodeId)) {
+            throw new IllegalArgumentException("Only the node owning the whole range can hand it over.");
+        }
+        AccountLocks locks = AccountLocks.getInstance();
+        try {
+            if (!locks.lockRange(firstAccountNumber, lastAccountNumber, TimeUnit.MILLISECONDS.toNanos(HANDOFF_TIMEOUT))) {
+                throw new IllegalStateException("Accounts of the range are busy, try again later.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while locking the accounts of the range.");
+        }
+        try {
+            RoutingTable expected = table;
+            if (!expected.isOwnedBy(firstAccountNumber, lastAccountNumber, nodeId)) {
+                throw new IllegalArgumentException("Only the node owning the whole range can hand it over.");
+            }
+            RoutingTable newTable = expected.withOwner(firstAccountNumber, lastAccountNumber, newOwner);
+            if (!compareAndInstall(expected, newTable)) {
+                throw new IllegalStateException("The routing table changed during the handoff, try again.");
+            }
+            return broadcast(newTable);
+        } finally {
+            locks.unlockRange(firstAccountNumber, lastAccountNumber);
+        }
+    }
+
+    /**
+     * Installs the given routing table, if the current table is still the expected one.
+     * @param expected Routing table the new table was created from
+     * @param newTable Routing table
+     * @return True if the table was installed
+     */
+    private synchronized boolean compareAndInstall(RoutingTable expected, RoutingTable newTable) {
+        if (table != expected) {
+            return false;
+        }
+        table = newTable;
+        ReadCoalescer.getInstance().invalidate();
+        return true;
+    }
+
+    /**
+     * Asks every other node for its routing table and installs the newest one. This should be called
+     * when the node starts, as ownership changes are not stored in the configuration file.
+     */
+    public void synchronizeTable() {
+        for (ClusterLink link : links.values()) {
+            try {
+                String response = link.send("CT");
+                if (response.startsWith("CT ")) {
+                    install(RoutingTable.parse(response.substring(3)));
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // The node is not running yet, it will receive our table later
+            }
+        }
+    }
+
+    /**
+     * Checks if the given address is the link address of a member of the cluster, as configured.
+     * @param address Peer address
+     * @return True if the address is a cluster member
+     */
+    public boolean isMember(InetAddress address) {
+        return memberAddresses.contains(address);
+    }
+
+    /**
+     * Returns the id of this node.
+     * @return Node id
+     */
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Returns the current routing table.
+     * @return Routing table, or null if the cluster mode is disabled
+     */
+    public RoutingTable getRoutingTable() {
+        return table;
+    }
+
+    /**
+     * Sends the routing table to every other node.
+     * @param newTable Routing table
+     * @return Number of nodes which could not be reached
+     */
+    private int broadcast(RoutingTable newTable) {
+        int unreachable = 0;
+        for (ClusterLink link : links.values()) {
+            try {
+                link.send("CT " + newTable);
+            } catch (IOException e) {
+                unreachable++;
+            }
+        }
+        return unreachable;
+    }
+
+    /**
+     * Returns the link to the given node.
+     * @param owner Node id
+     * @return Cluster link
+     * @throws IOException There is no link to the node
+     */
+    private ClusterLink getLink(int owner) throws IOException {
+        ClusterLink link = links.get(owner);
+        if (link == null) {
+            throw new IOException("No link to cluster node " + owner + ".");
+        }
+        return link;
+    }
+}
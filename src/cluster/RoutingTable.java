@@ -0,0 +1,201 @@
+package cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This immutable class maps account number ranges to the cluster nodes owning them.
+ * Every change of ownership creates a new table with a higher epoch, so nodes can tell
+ * which of two tables is newer.
+ */
+public class RoutingTable {
+    private final long epoch;
+    private final List<Segment> segments;
+
+    /**
+     * A contiguous range of account numbers owned by one node.
+     * @param firstAccountNumber First account number of the range
+     * @param lastAccountNumber Last account number of the range
+     * @param nodeId Id of the owning node
+     */
+    public record Segment(int firstAccountNumber, int lastAccountNumber, int nodeId) {
+        /**
+         * Checks if the segment contains the given account number.
+         * @param accountNumber Bank account number
+         * @return True if the account number is within the segment
+         */
+        public boolean contains(int accountNumber) {
+            return accountNumber >= firstAccountNumber && accountNumber <= lastAccountNumber;
+        }
+    }
+
+    /**
+     * This private constructor sets the epoch and the segments, ordered by their account numbers.
+     * @param epoch Table version
+     * @param segments Segments covering the whole account number range
+     */
+    private RoutingTable(long epoch, List<Segment> segments) {
+        this.epoch = epoch;
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Attempts to create a new RoutingTable. The segments must cover the account numbers
+     * 10000 - 99999 in order, without gaps and overlaps.
+     * @param epoch Table version
+     * @param segments Segments ordered by their account numbers
+     * @return New RoutingTable instance
+     * @throws IllegalArgumentException The segments do not cover the account number range exactly
+     */
+    public static RoutingTable create(long epoch, List<Segment> segments) throws IllegalArgumentException {
+        int expectedFirst = 10000;
+        for (Segment segment : segments) {
+            if (segment.firstAccountNumber() != expectedFirst || segment.lastAccountNumber() < segment.firstAccountNumber()) {
+                throw new IllegalArgumentException("Cluster ranges must cover the account numbers 10000 - 99999 in order, without gaps.");
+            }
+            expectedFirst = segment.lastAccountNumber() + 1;
+        }
+        if (expectedFirst != 100000) {
+            throw new IllegalArgumentException("Cluster ranges must cover the account numbers 10000 - 99999 in order, without gaps.");
+        }
+        return new RoutingTable(epoch, new ArrayList<>(segments));
+    }
+
+    /**
+     * Parses a table serialized by the toString() method, for example "3 10000-54999:1,55000-99999:2".
+     * @param serialized Serialized table
+     * @return New RoutingTable instance
+     * @throws IllegalArgumentException The table is malformed
+     */
+    public static RoutingTable parse(String serialized) throws IllegalArgumentException {
+        String[] parts = serialized.strip().split(" ");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Malformed routing table.");
+        }
+        List<Segment> segments = new ArrayList<>();
+        for (String segment : parts[1].split(",")) {
+            String[] rangeAndNode = segment.split(":");
+            String[] range = rangeAndNode[0].split("-");
+            if (rangeAndNode.length != 2 || range.length != 2) {
+                throw new IllegalArgumentException("Malformed routing table.");
+            }
+            segments.add(new Segment(Integer.parseInt(range[0]), Integer.parseInt(range[1]), Integer.parseInt(rangeAndNode[1])));
+        }
+        return create(Long.parseLong(parts[0]), segments);
+    }
+
+    /**
+     * Creates a new table, in which the given range is owned by the given node. The epoch is increased by one.
+     * Neighbouring segments of the same node are merged.
+     * @param firstAccountNumber First account number of the range
+     * @param lastAccountNumber Last account number of the range
+     * @param nodeId Id of the new owner
+     * @return New RoutingTable instance
+     * @throws IllegalArgumentException Invalid range
+     */
+    public RoutingTable withOwner(int firstAccountNumber, int lastAccountNumber, int nodeId) throws IllegalArgumentException {
+        if (firstAccountNumber < 10000 || lastAccountNumber > 99999 || firstAccountNumber > lastAccountNumber) {
+            throw new IllegalArgumentException("Range must be within 10000 and 99999.");
+        }
+        List<Segment> split = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.lastAccountNumber() < firstAccountNumber || segment.firstAccountNumber() > lastAccountNumber) {
+                split.add(segment);
+                continue;
+            }
+            if (segment.firstAccountNumber() < firstAccountNumber) {
+                split.add(new Segment(segment.firstAccountNumber(), firstAccountNumber - 1, segment.nodeId()));
+            }
+            if (segment.firstAccountNumber() <= firstAccountNumber) {
+                split.add(new Segment(firstAccountNumber, lastAccountNumber, nodeId));
+            }
+            if (segment.lastAccountNumber() > lastAccountNumber) {
+                split.add(new Segment(lastAccountNumber + 1, segment.lastAccountNumber(), segment.nodeId()));
+            }
+        }
+
+        List<Segment> merged = new ArrayList<>();
+        for (Segment segment : split) {
+            Segment previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && previous.nodeId() == segment.nodeId()) {
+                merged.set(merged.size() - 1, new Segment(previous.firstAccountNumber(), segment.lastAccountNumber(), segment.nodeId()));
+            } else {
+                merged.add(segment);
+            }
+        }
+        return create(epoch + 1, merged);
+    }
+
+    /**
+     * Returns the id of the node owning the given account number.
+     * @param accountNumber Bank account number
+     * @return Node id, or -1 if the account number is out of range
+     */
+    public int ownerOf(int accountNumber) {
+        for (Segment segment : segments) {
+            if (segment.contains(accountNumber)) {
+                return segment.nodeId();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the segments owned by the given node.
+     * @param nodeId Node id
+     * @return List of segments, ordered by their account numbers
+     */
+    public List<Segment> segmentsOf(int nodeId) {
+        List<Segment> owned = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.nodeId() == nodeId) {
+                owned.add(segment);
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * Checks if every account number of the given range is owned by the given node.
+     * @param firstAccountNumber First account number of the range
+     * @param lastAccountNumber Last account number of the range
+     * @param nodeId Node id
+     * @return True if the node owns the whole range
+     */
+    public boolean isOwnedBy(int firstAccountNumber, int lastAccountNumber, int nodeId) {
+        for (Segment segment : segments) {
+            boolean overlaps = segment.lastAccountNumber() >= firstAccountNumber && segment.firstAccountNumber() <= lastAccountNumber;
+            if (overlaps && segment.nodeId() != nodeId) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the table version.
+     * @return Epoch
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Serializes the table, for example "3 10000-54999:1,55000-99999:2".
+     * @return Serialized table
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder().append(epoch).append(' ');
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(segment.firstAccountNumber()).append('-').append(segment.lastAccountNumber())
+                    .append(':').append(segment.nodeId());
+        }
+        return builder.toString();
+    }
+}
@@ -1,11 +1,25 @@
 package command;
 
+import audit.AuditRecord;
 import command.exceptions.InvalidParameterException;
+import database.ShardConnections;
+import interbank.InterbankForwarder;
+import util.FileLogger;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.Socket;
 
 /**
  * This class represents a Command in the Command design pattern.
  */
 public abstract class Command {
+    /**
+     * Start of the response sent when the bank owning an account could not be reached. The other bank may have
+     * executed the Command before the connection failed, so the outcome of the Command is unknown.
+     */
+    public static final String UNREACHABLE_BANK_RESPONSE = "ER Failed to reach the bank ";
+
     protected final String name;
 
     /**
@@ -31,6 +45,94 @@ public abstract class Command {
      */
     public abstract Object[] parseParameters(String paramString) throws InvalidParameterException;
 
+    /**
+     * Returns the number of the account the Command operates on. By convention, Commands which operate
+     * on an account return its number as the first parsed parameter. The cluster mode uses it to route
+     * the Command to the node owning the account.
+     * @param paramString String of parameters to be parsed
+     * @return Account number, or null if the Command does not operate on an account or the parameters are invalid
+     */
+    public Integer getAccountNumber(String paramString) {
+        try {
+            Object[] parameters = parseParameters(paramString);
+            if (parameters != null && parameters.length > 0 && parameters[0] instanceof Integer accountNumber) {
+                return accountNumber;
+            }
+        } catch (InvalidParameterException e) {
+            // Invalid parameters are reported by the node executing the Command
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the Command only reads data. Read-only Commands may be given
+     * a read replica connection instead of the primary database connection.
+     * @return True if the Command never changes data, otherwise false
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * Returns whether the Command may be used in a batch opened by BEGIN. Only Commands which change
+     * accounts of this bank, and the Commands controlling the batch, can be batched.
+     * @return True if the Command may be used in a batch, otherwise false
+     */
+    public boolean isBatchable() {
+        return false;
+    }
+
+    /**
+     * Returns whether the Command accepts an idempotency key, sent as the last parameter in the format key=[token].
+     * A Command repeated with the same key is not executed again, the peer receives the response of the first one.
+     * @return True if the Command accepts an idempotency key, otherwise false
+     */
+    public boolean acceptsIdempotencyKey() {
+        return false;
+    }
+
+    /**
+     * Forwards the Command to the bank with the given bank code, and sends its response to the peer.
+     * Commands about accounts of other banks use it instead of refusing the bank code.
+     * A Command in a batch is never forwarded, as the other bank cannot take part in its transaction.
+     * @param bankCode Bank code (IP address) of the bank owning the account
+     * @param paramString String of parameters, forwarded unchanged
+     * @param socket Peer Socket
+     * @param out PrintWriter used to communicate with the peer
+     * @param connections Peer's database connections
+     * @return FORWARDED if the other bank answered, REJECTED if the Command was refused because of a batch
+     * or the bank is not allowed, or UNAVAILABLE if the other bank could not be reached
+     */
+    protected AuditRecord.Result forwardToBank(String bankCode, String paramString, Socket socket, PrintWriter out,
+                                               ShardConnections connections) {
+        if (connections.isInBatch()) {
+            out.print("ER Accounts of other banks cannot be used in a batch.\r\n");
+            out.flush();
+            return AuditRecord.Result.REJECTED;
+        }
+        if (!InterbankForwarder.getInstance().isAllowed(bankCode)) {
+            out.print("ER Forwarding to bank " + bankCode + " is not allowed.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used command {} for bank {}, which is not allowed.",
+                    socket, this.name, bankCode);
+            return AuditRecord.Result.REJECTED;
+        }
+        try {
+            String response = InterbankForwarder.getInstance().forward(bankCode, this.name + " " + paramString);
+            out.print(response + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used command {}, which was forwarded to bank {}.",
+                    socket, this.name, bankCode);
+            return AuditRecord.Result.FORWARDED;
+        } catch (IOException e) {
+            out.print(UNREACHABLE_BANK_RESPONSE + bankCode + ".\r\n");
+            out.flush();
+            FileLogger.getLogger().warning("Peer at {} used command {}, but the bank {} could not be reached.",
+                    socket, this.name, bankCode);
+            return AuditRecord.Result.UNAVAILABLE;
+        }
+    }
+
     /**
      * Returns the Command name, which is used to call it.
      * @return Command name
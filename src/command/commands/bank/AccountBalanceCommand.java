@@ -2,7 +2,10 @@ package command.commands.bank;
 
 import command.Command;
 import command.exceptions.InvalidParameterException;
+import database.ReadCoalescer;
+import database.ShardConnections;
 import database.tables.BankAccount;
+import replication.ReplicaStore;
 import util.FileLogger;
 
 import java.io.PrintWriter;
@@ -28,25 +31,17 @@ public class AccountBalanceCommand extends Command implements GeneralCommandPars
     /**
      * Executes the Command action. The parameters are parsed and the bank account with the
      * given account number is retrieved. The balance is then sent to the peer. If an error occurs,
-     * an error message is sent to the peer instead. If the peer's database connection has not been established,
+     * an error message is sent to the peer instead. If the database connection of the account's shard cannot be established,
      * an error message is sent to the peer.
-     * @param args Array of type Object. This Command expects a Socket, PrintWriter, parameter String, and database Connection.
+     * If the account belongs to another bank, the Command is forwarded to that bank and its response is sent to the peer.
+     * @param args Array of type Object. This Command expects a Socket, PrintWriter, parameter String, and the peer's ShardConnections.
      */
     @Override
     public void execute(Object[] args) {
         Socket socket = (Socket)args[0];
         PrintWriter out = (PrintWriter)args[1];
         String paramString = (String)args[2];
-        Connection connection = (Connection)args[3];
-
-        // If the connection doesn't exist, database can't be accessed.
-        if (connection == null) {
-            out.print("ER Failed to access database.\r\n");
-            out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " could not connect to the database.");
-            return;
-        }
+        ShardConnections connections = (ShardConnections)args[3];
 
         Object[] parameters;
         try {
@@ -54,41 +49,65 @@ public class AccountBalanceCommand extends Command implements GeneralCommandPars
         } catch (InvalidParameterException e) {
             out.print("ER " + e.getMessage() + "\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " used invalid parameters with command " + this.name + ".");
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
             return;
         }
 
         int accountNumber = (int)parameters[0];
         String bankCode = (String)parameters[1];
 
+        // Accounts of other banks are served by the bank owning them
         if (!bankCode.equals(this.bankCode)) {
-            out.print("ER Incorrect bank code.\r\n");
+            forwardToBank(bankCode, paramString, socket, out, connections);
+            return;
+        }
+
+        ReplicaStore store = ReplicaStore.getInstance();
+        if (store.isActive()) {
+            // A hot standby answers from the state replicated from the journal of the primary
+            sendBalance(store.getBalance(accountNumber), socket, out);
+            return;
+        }
+
+        Connection connection = connections.getReadConnection(accountNumber);
+        // If the connection doesn't exist, database can't be accessed.
+        if (connection == null) {
+            out.print("ER Failed to access database.\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " used incorrect bank code for command " + this.name + ".");
+            FileLogger.getLogger().info("Peer at {} could not connect to the database.", socket);
             return;
         }
 
         try {
-            // Get account with given account number
-            BankAccount account = BankAccount.findByAccountNumber(accountNumber, connection);
-            if (account == null) {
-                out.print("ER Account not found.\r\n");
-                out.flush();
-                FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                        + " used incorrect account number for command " + this.name + ".");
-                return;
-            }
-            long balance = account.getBalance();
-            out.print(this.name + " " + balance + "\r\n");
-            out.flush();
+            // Get balance of account with given account number, identical concurrent reads share one query
+            Long balance = ReadCoalescer.getInstance().read(this.name + " " + accountNumber, connections.readsFromPrimary(), () -> {
+                BankAccount account = BankAccount.findByAccountNumber(accountNumber, connection);
+                return account == null ? null : account.getBalance();
+            });
+            sendBalance(balance, socket, out);
         } catch (SQLException e) {
             out.print("ER Database error occurred, failed to retrieve account balance.\r\n");
             out.flush();
-            FileLogger.getLogger().severe("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " failed to retrieve account from the database while using command " + this.name + ".");
+            FileLogger.getLogger().severe("Peer at {} failed to retrieve account from the database while using"
+                    + " command {}.", socket, this.name);
+        }
+    }
+
+    /**
+     * Sends the balance to the peer, or an error message if the account does not exist.
+     * @param balance Account balance, or null if the account was not found
+     * @param socket Peer Socket
+     * @param out PrintWriter used to communicate with the peer
+     */
+    private void sendBalance(Long balance, Socket socket, PrintWriter out) {
+        if (balance == null) {
+            out.print("ER Account not found.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used incorrect account number for command {}.", socket, this.name);
+            return;
         }
+        out.print(this.name + " " + balance + "\r\n");
+        out.flush();
     }
 
     /**
@@ -102,4 +121,13 @@ public class AccountBalanceCommand extends Command implements GeneralCommandPars
     public Object[] parseParameters(String paramString) throws InvalidParameterException {
         return parseAccountNumberAndBankCode(paramString, this.name);
     }
+
+    /**
+     * This Command only reads data, so it may use a read replica.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
@@ -1,7 +1,16 @@
 package command.commands.bank;
 
+import cluster.ClusterManager;
+import cluster.RoutingTable;
+import audit.AuditJournal;
+import audit.AuditRecord;
 import command.Command;
 import command.exceptions.InvalidParameterException;
+import database.AccountAllocator;
+import database.DatabaseConnector;
+import database.Mutation;
+import database.Shard;
+import database.ShardConnections;
 import database.tables.BankAccount;
 import util.FileLogger;
 
@@ -9,11 +18,15 @@ import java.io.PrintWriter;
 import java.net.Socket;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This Command attempts to create new bank account in the database.
  */
 public class AccountCreateCommand extends Command {
+    private static final int MAX_ATTEMPTS = 3;
+
     private final String bankCode;
 
     /**
@@ -27,8 +40,10 @@ public class AccountCreateCommand extends Command {
 
     /**
      * Attempts to create a new bank account in the database and logs errors and info using
-     * the FileLogger class.
-     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter, database Connection, and parameter String.
+     * the FileLogger class. If there are several shards, the account is created in the shard
+     * with the fewest accounts, so that accounts are balanced across the databases. The account numbers
+     * are allocated by the AccountAllocator, a number taken meanwhile by another node is skipped.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter, parameter String, and the peer's ShardConnections.
      */
     @Override
     public void execute(Object[] args) {
@@ -36,54 +51,119 @@ public class AccountCreateCommand extends Command {
         Socket socket = (Socket)args[0];
         PrintWriter out = (PrintWriter)args[1];
         String paramString = (String)args[2];
-        Connection connection = (Connection)args[3];
-
-        // If the connection doesn't exist, database can't be accessed.
-        if (connection == null) {
-            out.print("ER Failed to access database.\r\n");
-            out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " could not connect to the database.");
-            return;
-        }
+        ShardConnections connections = (ShardConnections)args[3];
 
         try {
             parseParameters(paramString);
         } catch (InvalidParameterException e) {
             out.print("ER " + e.getMessage() + "\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " used invalid parameters with command " + this.name + ".");
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.CREATE, socket, 0, 0, 0,
+                    AuditRecord.Result.INVALID_PARAMETERS);
             return;
         }
 
         try {
-            // Get the current max account number in the database
-            int max_number = BankAccount.getMaxNumber(connection);
-            int account_number;
-            if (max_number == 0) {
-                account_number = 10000;
-            } else {
-                account_number = max_number + 1; // New account number will be the max + 1
+            // Try the shards with the fewest accounts first
+            List<Shard> shards = new ArrayList<>(DatabaseConnector.getInstance().getShards());
+            if (connections.isInBatch()) {
+                // A batch is a transaction of a single shard, it cannot count the accounts of the others
+                shards.removeIf(shard -> !connections.isBatchShard(shard));
+            } else if (shards.size() > 1) {
+                shards = AccountAllocator.getInstance().getShardsByLoad();
             }
-            if (account_number > 99999) { // Max account number reached
-                out.print("ER Cannot create a new account right now.\r\n");
-                out.flush();
-                FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                        + " could not create a bank account.");
-                return;
+
+            for (Shard shard : shards) {
+                // Once a batch has created an account, it stays in the same shard
+                if (!connections.isBatchShard(shard)) {
+                    continue;
+                }
+                Connection connection = connections.getConnection(shard);
+                // If the connection doesn't exist, database can't be accessed.
+                if (connection == null) {
+                    out.print("ER Failed to access database.\r\n");
+                    out.flush();
+                    FileLogger.getLogger().info("Peer at {} could not connect to the database.", socket);
+                    AuditJournal.getInstance().record(AuditRecord.Type.CREATE, socket, 0, 0, 0,
+                            AuditRecord.Result.NO_DATABASE);
+                    return;
+                }
+
+                // In the cluster mode, accounts are created only in the ranges owned by this node
+                for (RoutingTable.Segment segment : ClusterManager.getInstance().getLocalSegments()) {
+                    int firstNumber = Math.max(shard.getFirstAccountNumber(), segment.firstAccountNumber());
+                    int lastNumber = Math.min(shard.getLastAccountNumber(), segment.lastAccountNumber());
+                    if (firstNumber > lastNumber) {
+                        continue;
+                    }
+
+                    int account_number = save(shard, connection, firstNumber, lastNumber);
+                    if (account_number == 0) { // Max account number of the range reached
+                        continue;
+                    }
+                    connections.publish(Mutation.now(Mutation.Type.CREATE, account_number, 0, 0));
+                    out.print(this.name + " " + account_number + "/" + bankCode + "\r\n");
+                    out.flush();
+                    FileLogger.getLogger().info("Peer at {} created a new bank account with number {}.",
+                            socket, account_number);
+                    connections.auditSuccess(AuditRecord.Type.CREATE, socket, account_number, 0, 0);
+                    return;
+                }
             }
-            BankAccount account = BankAccount.create(0, account_number, 0);
-            account.save(connection);
-            out.print(this.name + " " + account.getAccountNumber() + "/" + bankCode + "\r\n");
+
+            // Max account number reached in every shard
+            out.print("ER Cannot create a new account right now.\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " created a new bank account with number " + account.getAccountNumber() + ".");
+            FileLogger.getLogger().info("Peer at {} could not create a bank account.", socket);
+            AuditJournal.getInstance().record(AuditRecord.Type.CREATE, socket, 0, 0, 0, AuditRecord.Result.REJECTED);
         } catch (SQLException e) {
+            // Every request is answered with exactly one line, pipelining clients match responses by their order
+            out.print("ER Failed to create bank account.\r\n");
+            out.flush();
             FileLogger.getLogger().severe("Failed to create bank account.");
+            AuditJournal.getInstance().record(AuditRecord.Type.CREATE, socket, 0, 0, 0,
+                    AuditRecord.Result.DATABASE_ERROR);
         }
     }
 
+    /**
+     * Creates a new bank account in the given range of a shard. If the allocated account number
+     * is already taken, another number is allocated, at most MAX_ATTEMPTS times.
+     * @param shard Shard the account is created in
+     * @param connection Connection to the shard
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @return Number of the created account, or 0 if the range is full
+     * @throws SQLException The account could not be created
+     */
+    private static int save(Shard shard, Connection connection, int firstNumber, int lastNumber) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            int account_number = AccountAllocator.getInstance().allocate(shard, connection, firstNumber, lastNumber);
+            if (account_number == 0) {
+                return 0;
+            }
+            try {
+                BankAccount.create(0, account_number, 0).save(connection);
+                return account_number;
+            } catch (SQLException e) {
+                if (attempt >= MAX_ATTEMPTS || !isDuplicateKey(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if a SQLException was caused by a violated primary key or unique constraint.
+     * @param e SQLException
+     * @return True if the key already exists
+     */
+    private static boolean isDuplicateKey(SQLException e) {
+        // 2627 - violation of a primary key or unique constraint, 2601 - duplicate key in a unique index
+        return e.getErrorCode() == 2627 || e.getErrorCode() == 2601;
+    }
+
     /**
      * Parses the parameter string. The AccountCreateCommand does not expect any parameters.
      * If parameters are present, an InvalidParameterException is thrown.
@@ -98,4 +178,22 @@ public class AccountCreateCommand extends Command {
         }
         return null;
     }
+
+    /**
+     * This Command changes an account of this bank, so it may be used in a batch.
+     * @return Always true
+     */
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+
+    /**
+     * This Command changes an account, so a peer may send it with an idempotency key to retry it safely.
+     * @return Always true
+     */
+    @Override
+    public boolean acceptsIdempotencyKey() {
+        return true;
+    }
 }
@@ -1,7 +1,11 @@
 package command.commands.bank;
 
+import audit.AuditJournal;
+import audit.AuditRecord;
 import command.Command;
 import command.exceptions.InvalidParameterException;
+import database.Mutation;
+import database.ShardConnections;
 import database.tables.BankAccount;
 import util.FileLogger;
 
@@ -9,6 +13,7 @@ import java.io.PrintWriter;
 import java.net.Socket;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This Command deposits a given amount of money to a bank account.
@@ -26,29 +31,21 @@ public class AccountDepositCommand extends Command implements GeneralCommandPars
     }
 
     /**
-     * Executes the Command action. If the peer's database connection has not been
-     * established, an error message is sent. Parameters are parsed and this Command
+     * Executes the Command action. Parameters are parsed and this Command
      * expects an account number, bank code and amount of money to be deposited.
      * The bank account is retrieved from the database and the money is deposited to it, and
-     * it is updated. If an error occurs, a message is sent to the peer and it is logged.
-     * @param args Array of type Object. This Command expects a Socket, PrintWriter, parameter String and database
-     *             Connection (can be null).
+     * it is updated. If the database connection of the account's shard cannot be
+     * established, an error message is sent. If an error occurs, a message is sent to the peer and it is logged.
+     * If the account belongs to another bank, the Command is forwarded to that bank and its response is sent to the peer.
+     * @param args Array of type Object. This Command expects a Socket, PrintWriter, parameter String and the peer's
+     *             ShardConnections.
      */
     @Override
     public void execute(Object[] args) {
         Socket socket = (Socket)args[0];
         PrintWriter out = (PrintWriter)args[1];
         String paramString = (String)args[2];
-        Connection connection = (Connection)args[3];
-
-        // If the connection doesn't exist, database can't be accessed.
-        if (connection == null) {
-            out.print("ER Failed to access database.\r\n");
-            out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " could not connect to the database.");
-            return;
-        }
+        ShardConnections connections = (ShardConnections)args[3];
 
         Object[] parameters;
         try {
@@ -56,8 +53,9 @@ public class AccountDepositCommand extends Command implements GeneralCommandPars
         } catch (InvalidParameterException e) {
             out.print("ER " + e.getMessage() + "\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " used invalid parameters with command " + this.name + ".");
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.DEPOSIT, socket, 0, 0, 0,
+                    AuditRecord.Result.INVALID_PARAMETERS);
             return;
         }
 
@@ -65,48 +63,83 @@ public class AccountDepositCommand extends Command implements GeneralCommandPars
         String bankCode = (String)parameters[1];
         long amount = (long)parameters[2];
 
+        // Accounts of other banks are served by the bank owning them
         if (!bankCode.equals(this.bankCode)) {
-            out.print("ER Incorrect bank code.\r\n");
+            AuditRecord.Result result = forwardToBank(bankCode, paramString, socket, out, connections);
+            AuditJournal.getInstance().record(AuditRecord.Type.DEPOSIT, socket, accountNumber, amount, 0, result);
+            return;
+        }
+
+        Connection connection = connections.getConnection(accountNumber);
+        // If the connection doesn't exist, database can't be accessed.
+        if (connection == null) {
+            out.print("ER Failed to access database.\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " used incorrect bank code for command " + this.name + ".");
+            FileLogger.getLogger().info("Peer at {} could not connect to the database.", socket);
+            AuditJournal.getInstance().record(AuditRecord.Type.DEPOSIT, socket, accountNumber, amount, 0,
+                    AuditRecord.Result.NO_DATABASE);
             return;
         }
 
+        // Changes of the same account wait here, instead of holding a connection while waiting in the database
+        ReentrantLock lock;
+        try {
+            lock = connections.lockAccount(accountNumber);
+        } catch (SQLException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} could not lock account {} for command {}.",
+                    socket, accountNumber, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.DEPOSIT, socket, accountNumber, amount, 0,
+                    AuditRecord.Result.LOCK_TIMEOUT);
+            return;
+        }
         try {
             // Get account with given account number
             BankAccount account = BankAccount.findByAccountNumber(accountNumber, connection);
             if (account == null) {
                 out.print("ER Account not found.\r\n");
                 out.flush();
-                FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                        + " used incorrect account number for command " + this.name + ".");
+                FileLogger.getLogger().info("Peer at {} used incorrect account number for command {}.",
+                        socket, this.name);
+                AuditJournal.getInstance().record(AuditRecord.Type.DEPOSIT, socket, accountNumber, amount, 0,
+                        AuditRecord.Result.NOT_FOUND);
                 return;
             }
             try {
                 account.deposit(amount);
                 account.save(connection);
+                connections.publish(Mutation.now(Mutation.Type.DEPOSIT, accountNumber, amount, account.getBalance()));
                 out.print(this.name + "\r\n");
                 out.flush();
-                FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                        + " deposited " + amount + " balance to account with number " + accountNumber + ".");
+                FileLogger.getLogger().info("Peer at {} deposited {} balance to account with number {}.",
+                        socket, amount, accountNumber);
+                connections.auditSuccess(AuditRecord.Type.DEPOSIT, socket, accountNumber, amount, account.getBalance());
             } catch (IllegalArgumentException e) {
                 out.print("ER " + e.getMessage() + "\r\n");
                 out.flush();
-                FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                        + " used incorrect deposit amount for command " + this.name + ".");
+                FileLogger.getLogger().info("Peer at {} used incorrect deposit amount for command {}.",
+                        socket, this.name);
+                AuditJournal.getInstance().record(AuditRecord.Type.DEPOSIT, socket, accountNumber, amount, account.getBalance(),
+                        AuditRecord.Result.REJECTED);
             } catch (SQLException e) {
                 System.out.println(e.getMessage());
                 out.print("ER Failed to deposit to the bank account.\r\n");
                 out.flush();
-                FileLogger.getLogger().info("A database error occurred while peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                        + " attempted to deposit to account using command " + this.name + ".");
+                FileLogger.getLogger().info("A database error occurred while peer at {} attempted to deposit to"
+                        + " account using command {}.", socket, this.name);
+                AuditJournal.getInstance().record(AuditRecord.Type.DEPOSIT, socket, accountNumber, amount, 0,
+                        AuditRecord.Result.DATABASE_ERROR);
             }
         } catch (SQLException e) {
             out.print("ER Database error occurred, failed to deposit.\r\n");
             out.flush();
-            FileLogger.getLogger().severe("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " failed to retrieve account from the database while using command " + this.name + ".");
+            FileLogger.getLogger().severe("Peer at {} failed to retrieve account from the database while using"
+                    + " command {}.", socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.DEPOSIT, socket, accountNumber, amount, 0,
+                    AuditRecord.Result.DATABASE_ERROR);
+        } finally {
+            connections.unlockAccount(lock);
         }
     }
 
@@ -121,4 +154,22 @@ public class AccountDepositCommand extends Command implements GeneralCommandPars
     public Object[] parseParameters(String paramString) throws InvalidParameterException {
         return parseAmount(paramString, this.name);
     }
+
+    /**
+     * This Command changes an account of this bank, so it may be used in a batch.
+     * @return Always true
+     */
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+
+    /**
+     * This Command changes an account, so a peer may send it with an idempotency key to retry it safely.
+     * @return Always true
+     */
+    @Override
+    public boolean acceptsIdempotencyKey() {
+        return true;
+    }
 }
@@ -0,0 +1,151 @@
+package command.commands.bank;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import database.ShardConnections;
+import database.tables.AccountHistory;
+import history.HistoryWriter;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This Command returns the recorded changes of a bank account, newest first. The response is in the format
+ * AH [timestamp] [type] [amount] [balance]; [timestamp] [type] [amount] [balance]; ...
+ */
+public class AccountHistoryCommand extends Command {
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 1000;
+
+    private final String bankCode;
+
+    /**
+     * This constructor sets the Command name to AH and the bank code.
+     * @param bankCode Bank code (IP address of the node)
+     */
+    public AccountHistoryCommand(String bankCode) {
+        super("AH");
+        this.bankCode = bankCode;
+    }
+
+    /**
+     * Executes the Command action. Parameters are parsed and this Command expects an account number and bank code,
+     * optionally followed by a time range (in milliseconds since the epoch) and the maximum number of changes.
+     * Without a time range, the most recent changes are returned. If the account history is disabled,
+     * or an error occurs, a message is sent to the peer and it is logged.
+     * @param args Array of type Object. This Command expects a Socket, PrintWriter, parameter String and the peer's
+     *             ShardConnections.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+        ShardConnections connections = (ShardConnections)args[3];
+
+        Object[] parameters;
+        try {
+            parameters = parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        int accountNumber = (int)parameters[0];
+        String bankCode = (String)parameters[1];
+        long from = (long)parameters[2];
+        long to = (long)parameters[3];
+        int limit = (int)parameters[4];
+
+        if (!bankCode.equals(this.bankCode)) {
+            out.print("ER Incorrect bank code.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used incorrect bank code for command {}.", socket, this.name);
+            return;
+        }
+        if (!HistoryWriter.getInstance().isEnabled()) {
+            out.print("ER Account history is disabled.\r\n");
+            out.flush();
+            return;
+        }
+
+        Connection connection = connections.getReadConnection(accountNumber);
+        // If the connection doesn't exist, database can't be accessed.
+        if (connection == null) {
+            out.print("ER Failed to access database.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} could not connect to the database.", socket);
+            return;
+        }
+
+        try {
+            List<AccountHistory.Entry> entries = AccountHistory.find(connection, accountNumber, from, to, limit);
+            StringBuilder response = new StringBuilder(this.name);
+            for (int i = 0; i < entries.size(); i++) {
+                AccountHistory.Entry entry = entries.get(i);
+                response.append(i == 0 ? " " : "; ").append(entry.timestamp()).append(' ').append(entry.type())
+                        .append(' ').append(entry.amount()).append(' ').append(entry.balance());
+            }
+            out.print(response + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} retrieved the history of account {}.", socket, accountNumber);
+        } catch (SQLException e) {
+            out.print("ER Failed to retrieve the account history.\r\n");
+            out.flush();
+            FileLogger.getLogger().severe("Peer at {} used command {}, but failed to retrieve the account history"
+                    + " from the database.", socket, this.name);
+        }
+    }
+
+    /**
+     * Parses the parameters provided to the Command. This Command expects parameters in this format:
+     * [account_number]/[bank_code] [limit] or [account_number]/[bank_code] [from] [to] [limit],
+     * the limit is optional.
+     * @param paramString String of parameters to be parsed
+     * @return Array of Objects (account number (int), bank code (String), start of the time range (long),
+     * end of the time range (long) and limit (int))
+     * @throws InvalidParameterException Invalid or no parameters
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        String usage = "Invalid parameters (usage: " + this.name + " <account_number>/<bank_code> [<from> <to>] [limit]).";
+        if (paramString == null) {
+            throw new InvalidParameterException(usage);
+        }
+
+        Pattern pattern = Pattern.compile("^(\\d{5})/(\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}\\.\\d{1,4})"
+                + "(?: (\\d{1,18}) (\\d{1,18}))?(?: (\\d{1,4}))?$");
+        Matcher matcher = pattern.matcher(paramString);
+        if (!matcher.find()) {
+            throw new InvalidParameterException(usage);
+        }
+
+        long from = matcher.group(3) == null ? 0 : Long.parseLong(matcher.group(3));
+        long to = matcher.group(4) == null ? Long.MAX_VALUE : Long.parseLong(matcher.group(4));
+        int limit = matcher.group(5) == null ? DEFAULT_LIMIT : Integer.parseInt(matcher.group(5));
+        if (from > to) {
+            throw new InvalidParameterException("The start of the time range must not be after its end.");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidParameterException("The limit must be between 1 and " + MAX_LIMIT + ".");
+        }
+        return new Object[]{Integer.parseInt(matcher.group(1)), matcher.group(2), from, to, limit};
+    }
+
+    /**
+     * This Command only reads data, so it may use a read replica.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
@@ -0,0 +1,173 @@
+package command.commands.bank;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import database.DatabaseConnector;
+import database.Shard;
+import database.ShardConnections;
+import database.tables.BankAccount;
+import util.FileLogger;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This Command lists the bank accounts in a range of account numbers with their balances, one page at a time.
+ * The response is a single line in the format AL [account_number]:[balance] ... [next=cursor|end], which is
+ * written to the peer while the accounts are being read, so the memory used does not depend on the size of the range.
+ */
+public class AccountListCommand extends Command {
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_LIMIT = 10000;
+    private static final int FETCH_SIZE = 500;
+
+    /**
+     * This constructor sets the Command name to AL.
+     */
+    public AccountListCommand() {
+        super("AL");
+    }
+
+    /**
+     * Executes the Command action. Parameters are parsed and this Command expects the first and last account number
+     * of the range, optionally the maximum number of listed accounts and the cursor returned by the previous page.
+     * The shards covering the range are read in order with forward-only cursors. If there are more accounts than
+     * the limit allows, the response ends with next=[cursor], which the peer passes to get the next page, otherwise
+     * it ends with end. If a database error occurs after some accounts have been sent, the page is ended early
+     * with a cursor, so the peer can continue from the last account it received.
+     * @param args Array of type Object. This Command expects a Socket, PrintWriter, parameter String and the peer's
+     *             ShardConnections.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+        ShardConnections connections = (ShardConnections)args[3];
+
+        Object[] parameters;
+        try {
+            parameters = parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        int firstNumber = (int)parameters[0];
+        int lastNumber = (int)parameters[1];
+        int limit = (int)parameters[2];
+        Integer cursor = (Integer)parameters[3];
+        int startNumber = cursor == null ? firstNumber : cursor + 1;
+
+        // Index 0 holds the number of listed accounts, index 1 the last listed account number
+        int[] listed = {0, 0};
+        boolean[] more = {false};
+        try {
+            for (Shard shard : DatabaseConnector.getInstance().getShards()) {
+                if (more[0]) {
+                    break;
+                }
+                int shardFirst = Math.max(startNumber, shard.getFirstAccountNumber());
+                int shardLast = Math.min(lastNumber, shard.getLastAccountNumber());
+                if (shardFirst > shardLast) {
+                    continue;
+                }
+                Connection connection = connections.getReadConnection(shard);
+                if (connection == null) {
+                    throw new SQLException("Failed to connect to shard " + shard.getIndex() + ".");
+                }
+                // One account more than needed is read, to find out whether there is a next page
+                BankAccount.scan(connection, shardFirst, shardLast, FETCH_SIZE, limit - listed[0] + 1, (accountNumber, balance) -> {
+                    if (listed[0] == limit) {
+                        more[0] = true;
+                        return;
+                    }
+                    out.print((listed[0] == 0 ? this.name : "") + " " + accountNumber + ":" + balance);
+                    listed[0]++;
+                    listed[1] = accountNumber;
+                });
+            }
+        } catch (SQLException | IOException e) {
+            FileLogger.getLogger().severe("Peer at {} used command {}, but failed to list the bank accounts from the"
+                    + " database.", socket, this.name);
+            if (listed[0] == 0) {
+                out.print("ER Failed to list bank accounts.\r\n");
+                out.flush();
+                return;
+            }
+            more[0] = true;
+        }
+
+        if (listed[0] == 0) {
+            out.print(this.name);
+        }
+        out.print(more[0] ? " next=" + listed[1] + "\r\n" : " end\r\n");
+        out.flush();
+        FileLogger.getLogger().info("Peer at {} listed {} bank accounts using command {}.",
+                socket, listed[0], this.name);
+    }
+
+    /**
+     * Parses the parameters provided to the Command. This Command
+     * expects parameters in this format: [first_account_number] [last_account_number] [limit] [cursor],
+     * the limit and the cursor are optional.
+     * @param paramString String of parameters to be parsed
+     * @return Array of Objects (first account number (int), last account number (int), limit (int)
+     * and cursor (Integer, null if not present))
+     * @throws InvalidParameterException Invalid or no parameters
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        String usage = "Invalid parameters (usage: " + this.name + " <first_account_number> <last_account_number> [limit] [cursor]).";
+        if (paramString == null) {
+            throw new InvalidParameterException(usage);
+        }
+
+        Pattern pattern = Pattern.compile("^(\\d{5}) (\\d{5})(?: (\\d{1,5})(?: (\\d{5}))?)?$");
+        Matcher matcher = pattern.matcher(paramString);
+        if (!matcher.find()) {
+            throw new InvalidParameterException(usage);
+        }
+
+        int firstNumber = Integer.parseInt(matcher.group(1));
+        int lastNumber = Integer.parseInt(matcher.group(2));
+        int limit = matcher.group(3) == null ? DEFAULT_LIMIT : Integer.parseInt(matcher.group(3));
+        Integer cursor = matcher.group(4) == null ? null : Integer.parseInt(matcher.group(4));
+        if (firstNumber < 10000 || firstNumber > lastNumber) {
+            throw new InvalidParameterException("The range must be within 10000 and 99999.");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidParameterException("The limit must be between 1 and " + MAX_LIMIT + ".");
+        }
+        if (cursor != null && (cursor < firstNumber || cursor > lastNumber)) {
+            throw new InvalidParameterException("The cursor must be within the range.");
+        }
+        return new Object[]{firstNumber, lastNumber, limit, cursor};
+    }
+
+    /**
+     * All nodes of the cluster share the databases, so the listing is never forwarded to another node.
+     * @param paramString String of parameters
+     * @return Always null
+     */
+    @Override
+    public Integer getAccountNumber(String paramString) {
+        return null;
+    }
+
+    /**
+     * This Command only reads data, so it may use a read replica.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
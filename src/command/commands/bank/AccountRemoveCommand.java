@@ -1,7 +1,11 @@
 package command.commands.bank;
 
+import audit.AuditJournal;
+import audit.AuditRecord;
 import command.Command;
 import command.exceptions.InvalidParameterException;
+import database.Mutation;
+import database.ShardConnections;
 import database.tables.BankAccount;
 import util.FileLogger;
 
@@ -9,6 +13,7 @@ import java.io.PrintWriter;
 import java.net.Socket;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This Command removes a bank account with a given account number.
@@ -28,25 +33,16 @@ public class AccountRemoveCommand extends Command implements GeneralCommandParse
     /**
      * Executes the Command action. The parameters are parsed and the bank account with the
      * given account number is retrieved. The account is then deleted. If an error occurs,
-     * an error message is sent to the peer instead. If the peer's database connection has not been established,
+     * an error message is sent to the peer instead. If the database connection of the account's shard cannot be established,
      * an error message is sent to the peer.
-     * @param args Array of type Object. This Command expects a Socket, PrintWriter, parameter String, and database Connection.
+     * @param args Array of type Object. This Command expects a Socket, PrintWriter, parameter String, and the peer's ShardConnections.
      */
     @Override
     public void execute(Object[] args) {
         Socket socket = (Socket)args[0];
         PrintWriter out = (PrintWriter)args[1];
         String paramString = (String)args[2];
-        Connection connection = (Connection)args[3];
-
-        // If the connection doesn't exist, database can't be accessed.
-        if (connection == null) {
-            out.print("ER Failed to access database.\r\n");
-            out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " could not connect to the database.");
-            return;
-        }
+        ShardConnections connections = (ShardConnections)args[3];
 
         Object[] parameters;
         try {
@@ -54,8 +50,9 @@ public class AccountRemoveCommand extends Command implements GeneralCommandParse
         } catch (InvalidParameterException e) {
             out.print("ER " + e.getMessage() + "\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " used invalid parameters with command " + this.name + ".");
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.REMOVE, socket, 0, 0, 0,
+                    AuditRecord.Result.INVALID_PARAMETERS);
             return;
         }
 
@@ -65,38 +62,72 @@ public class AccountRemoveCommand extends Command implements GeneralCommandParse
         if (!bankCode.equals(this.bankCode)) {
             out.print("ER Incorrect bank code.\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " used incorrect bank code for command " + this.name + ".");
+            FileLogger.getLogger().info("Peer at {} used incorrect bank code for command {}.", socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.REMOVE, socket, accountNumber, 0, 0,
+                    AuditRecord.Result.WRONG_BANK);
             return;
         }
 
+        Connection connection = connections.getConnection(accountNumber);
+        // If the connection doesn't exist, database can't be accessed.
+        if (connection == null) {
+            out.print("ER Failed to access database.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} could not connect to the database.", socket);
+            AuditJournal.getInstance().record(AuditRecord.Type.REMOVE, socket, accountNumber, 0, 0,
+                    AuditRecord.Result.NO_DATABASE);
+            return;
+        }
+
+        // Changes of the same account wait here, instead of holding a connection while waiting in the database
+        ReentrantLock lock;
+        try {
+            lock = connections.lockAccount(accountNumber);
+        } catch (SQLException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} could not lock account {} for command {}.",
+                    socket, accountNumber, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.REMOVE, socket, accountNumber, 0, 0,
+                    AuditRecord.Result.LOCK_TIMEOUT);
+            return;
+        }
         try {
             // Get account with given account number
             BankAccount account = BankAccount.findByAccountNumber(accountNumber, connection);
             if (account == null) {
                 out.print("ER Account not found.\r\n");
                 out.flush();
-                FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                        + " used incorrect account number for command " + this.name + ".");
+                FileLogger.getLogger().info("Peer at {} used incorrect account number for command {}.",
+                        socket, this.name);
+                AuditJournal.getInstance().record(AuditRecord.Type.REMOVE, socket, accountNumber, 0, 0,
+                        AuditRecord.Result.NOT_FOUND);
                 return;
             }
             try {
                 account.delete(connection);
+                connections.publish(Mutation.now(Mutation.Type.REMOVE, accountNumber, 0, 0));
                 out.print(this.name + "\r\n");
                 out.flush();
-                FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                        + " deleted account with number " + accountNumber + ".");
+                FileLogger.getLogger().info("Peer at {} deleted account with number {}.", socket, accountNumber);
+                connections.auditSuccess(AuditRecord.Type.REMOVE, socket, accountNumber, 0, 0);
             } catch (SQLException e) {
                 out.print("ER Database error occurred, failed to delete account.\r\n");
                 out.flush();
-                FileLogger.getLogger().severe("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                        + " failed to delete account from the database while using command " + this.name + ".");
+                FileLogger.getLogger().severe("Peer at {} failed to delete account from the database while using"
+                        + " command {}.", socket, this.name);
+                AuditJournal.getInstance().record(AuditRecord.Type.REMOVE, socket, accountNumber, 0, 0,
+                        AuditRecord.Result.DATABASE_ERROR);
             }
         } catch (SQLException e) {
             out.print("ER Database error occurred, failed to delete account.\r\n");
             out.flush();
-            FileLogger.getLogger().severe("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " failed to retrieve account from the database while using command " + this.name + ".");
+            FileLogger.getLogger().severe("Peer at {} failed to retrieve account from the database while using"
+                    + " command {}.", socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.REMOVE, socket, accountNumber, 0, 0,
+                    AuditRecord.Result.DATABASE_ERROR);
+        } finally {
+            connections.unlockAccount(lock);
         }
     }
 
@@ -111,4 +142,22 @@ public class AccountRemoveCommand extends Command implements GeneralCommandParse
     public Object[] parseParameters(String paramString) throws InvalidParameterException {
         return parseAccountNumberAndBankCode(paramString, this.name);
     }
+
+    /**
+     * This Command changes an account of this bank, so it may be used in a batch.
+     * @return Always true
+     */
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+
+    /**
+     * This Command changes an account, so a peer may send it with an idempotency key to retry it safely.
+     * @return Always true
+     */
+    @Override
+    public boolean acceptsIdempotencyKey() {
+        return true;
+    }
 }
@@ -0,0 +1,184 @@
+package command.commands.bank;
+
+import cluster.ClusterManager;
+import audit.AuditJournal;
+import audit.AuditRecord;
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import database.DatabaseConnector;
+import database.Mutation;
+import database.ShardConnections;
+import database.tables.BankAccount;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This Command moves a given amount of balance between two bank accounts of this bank
+ * in a single database transaction.
+ */
+public class AccountTransferCommand extends Command implements GeneralCommandParser {
+    private final String bankCode;
+
+    /**
+     * This constructor sets the Command name to AT, and the bank code.
+     * @param bankCode Bank code (IP address)
+     */
+    public AccountTransferCommand(String bankCode) {
+        super("AT");
+        this.bankCode = bankCode;
+    }
+
+    /**
+     * Executes the Command action. Parameters are parsed and this Command expects two account numbers
+     * with their bank codes and the amount of money to be transferred. Both accounts must belong to this bank,
+     * be stored in the same shard and, in the cluster mode, be served by the same node. The account locks are
+     * taken in the order of the account numbers, so concurrent transfers cannot deadlock.
+     * If an error occurs, a message is sent to the peer and it is logged.
+     * @param args Array of type Object. This Command expects a Socket, PrintWriter, parameter String and the peer's
+     *             ShardConnections.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+        ShardConnections connections = (ShardConnections)args[3];
+
+        Object[] parameters;
+        try {
+            parameters = parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.TRANSFER_OUT, socket, 0, 0, 0,
+                    AuditRecord.Result.INVALID_PARAMETERS);
+            return;
+        }
+
+        int fromNumber = (int)parameters[0];
+        String fromBankCode = (String)parameters[1];
+        int toNumber = (int)parameters[2];
+        String toBankCode = (String)parameters[3];
+        long amount = (long)parameters[4];
+
+        if (!fromBankCode.equals(this.bankCode) || !toBankCode.equals(this.bankCode)) {
+            out.print("ER Incorrect bank code.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used incorrect bank code for command {}.", socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.TRANSFER_OUT, socket, fromNumber, amount, 0,
+                    AuditRecord.Result.WRONG_BANK);
+            return;
+        }
+
+        // The transfer is a single transaction of a single node, so both accounts must live together
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        if (connector.getShard(fromNumber) != connector.getShard(toNumber) || !ClusterManager.getInstance().isLocal(toNumber)) {
+            out.print("ER Both accounts must be stored together, use AW and AD instead.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} attempted to transfer between accounts stored apart"
+                    + " using command {}.", socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.TRANSFER_OUT, socket, fromNumber, amount, 0,
+                    AuditRecord.Result.REJECTED);
+            return;
+        }
+
+        Connection connection = connections.getConnection(fromNumber);
+        // If the connection doesn't exist, database can't be accessed.
+        if (connection == null) {
+            out.print("ER Failed to access database.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} could not connect to the database.", socket);
+            AuditJournal.getInstance().record(AuditRecord.Type.TRANSFER_OUT, socket, fromNumber, amount, 0,
+                    AuditRecord.Result.NO_DATABASE);
+            return;
+        }
+
+        // Locks are always taken in the order of the account numbers, so two transfers cannot wait for each other
+        ReentrantLock firstLock;
+        ReentrantLock secondLock;
+        try {
+            firstLock = connections.lockAccount(Math.min(fromNumber, toNumber));
+        } catch (SQLException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            AuditJournal.getInstance().record(AuditRecord.Type.TRANSFER_OUT, socket, fromNumber, amount, 0,
+                    AuditRecord.Result.LOCK_TIMEOUT);
+            return;
+        }
+        try {
+            secondLock = connections.lockAccount(Math.max(fromNumber, toNumber));
+        } catch (SQLException e) {
+            connections.unlockAccount(firstLock);
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            AuditJournal.getInstance().record(AuditRecord.Type.TRANSFER_OUT, socket, fromNumber, amount, 0,
+                    AuditRecord.Result.LOCK_TIMEOUT);
+            return;
+        }
+        try {
+            BankAccount.TransferResult result = BankAccount.transfer(connection, fromNumber, toNumber, amount);
+            connections.publish(Mutation.now(Mutation.Type.WITHDRAW, fromNumber, amount, result.fromBalance()));
+            connections.publish(Mutation.now(Mutation.Type.DEPOSIT, toNumber, amount, result.toBalance()));
+            out.print(this.name + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} transferred {} balance from account {} to account {}.",
+                    socket, amount, fromNumber, toNumber);
+            connections.auditSuccess(AuditRecord.Type.TRANSFER_OUT, socket, fromNumber, amount, result.fromBalance());
+            connections.auditSuccess(AuditRecord.Type.TRANSFER_IN, socket, toNumber, amount, result.toBalance());
+        } catch (IllegalArgumentException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used incorrect accounts or amount for command {}.",
+                    socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.TRANSFER_OUT, socket, fromNumber, amount, 0,
+                    AuditRecord.Result.REJECTED);
+        } catch (SQLException e) {
+            out.print("ER Database error occurred, failed to transfer.\r\n");
+            out.flush();
+            FileLogger.getLogger().severe("Peer at {} failed to transfer between accounts in the database while using"
+                    + " command {}.", socket, this.name);
+            AuditJournal.getInstance().record(AuditRecord.Type.TRANSFER_OUT, socket, fromNumber, amount, 0,
+                    AuditRecord.Result.DATABASE_ERROR);
+        } finally {
+            connections.unlockAccount(secondLock);
+            connections.unlockAccount(firstLock);
+        }
+    }
+
+    /**
+     * Parses the parameters provided to the Command. This Command
+     * expects parameters in this format: [account_number]/[bank_code] [account_number]/[bank_code] [amount]
+     * @param paramString String of parameters to be parsed
+     * @return Array of Objects (source account number (int), source bank code (String),
+     * target account number (int), target bank code (String) and amount (long))
+     * @throws InvalidParameterException Invalid or no parameters
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        return parseTransfer(paramString, this.name);
+    }
+
+    /**
+     * This Command changes an account of this bank, so it may be used in a batch.
+     * @return Always true
+     */
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+
+    /**
+     * This Command changes an account, so a peer may send it with an idempotency key to retry it safely.
+     * @return Always true
+     */
+    @Override
+    public boolean acceptsIdempotencyKey() {
+        return true;
+    }
+}
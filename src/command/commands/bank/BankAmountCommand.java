@@ -1,13 +1,18 @@
 package command.commands.bank;
 
+import cluster.ClusterManager;
+import cluster.RoutingTable;
 import command.Command;
 import command.exceptions.InvalidParameterException;
+import database.ReadCoalescer;
+import database.ShardConnections;
 import database.tables.BankAccount;
+import replication.ReplicaStore;
 import util.FileLogger;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.Socket;
-import java.sql.Connection;
 import java.sql.SQLException;
 /**
  * This Command retrieves the total bank balance (sum of all bank account balance).
@@ -26,43 +31,55 @@ public class BankAmountCommand extends Command {
      * Using parameters will result in an InvalidParameterException being thrown and an error message
      * being sent to the peer.
      *
-     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter, parameter String, and Connection.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter, parameter String, and the peer's ShardConnections.
      */
     @Override
     public void execute(Object[] args) {
         Socket socket = (Socket)args[0];
         PrintWriter out = (PrintWriter)args[1];
         String paramString = (String)args[2];
-        Connection connection = (Connection)args[3];
-
-        // If the connection doesn't exist, database can't be accessed.
-        if (connection == null) {
-            out.print("ER Failed to access database.\r\n");
-            out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " could not connect to the database.");
-            return;
-        }
+        ShardConnections connections = (ShardConnections)args[3];
+        boolean internal = (boolean)args[4];
 
         try {
             parseParameters(paramString);
         } catch (InvalidParameterException e) {
             out.print("ER " + e.getMessage() + "\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " used invalid parameters with command " + this.name + ".");
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
             return;
         }
         try {
-            int total = BankAccount.getTotalBalance(connection);
+            long total;
+            ReplicaStore store = ReplicaStore.getInstance();
+            if (store.isActive()) {
+                // A hot standby answers from the state replicated from the journal of the primary
+                total = store.getTotalBalance();
+            } else {
+                // Every shard is queried in parallel, identical concurrent reads share one scatter-gather
+                total = ReadCoalescer.getInstance().read(this.name, connections.readsFromPrimary(), () -> {
+                    long sum = 0;
+                    for (RoutingTable.Segment segment : ClusterManager.getInstance().getLocalSegments()) {
+                        for (long shardTotal : connections.queryAll(true, connection ->
+                                BankAccount.getTotalBalance(connection, segment.firstAccountNumber(), segment.lastAccountNumber()))) {
+                            sum += shardTotal;
+                        }
+                    }
+                    return sum;
+                });
+            }
+            // In the cluster mode, the other nodes add the values of the ranges they own
+            if (ClusterManager.getInstance().isEnabled() && !internal) {
+                total += ClusterManager.getInstance().sumRemote(this.name);
+            }
             out.print(this.name + " " + total + "\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort() + " used command " + this.name + ".");
-        } catch (SQLException e) {
+            FileLogger.getLogger().info("Peer at {} used command {}.", socket, this.name);
+        } catch (SQLException | IOException e) {
             out.print("ER Failed to retrieve bank amount.\r\n");
             out.flush();
-            FileLogger.getLogger().severe("Peer at " + socket.getInetAddress() + ":" + socket.getPort() + " used command "
-                    + this.name + ", but failed to retrieve the bank amount from the database.");
+            FileLogger.getLogger().severe("Peer at {} used command {}, but failed to retrieve the bank amount from"
+                    + " the database.", socket, this.name);
         }
     }
 
@@ -80,4 +97,13 @@ public class BankAmountCommand extends Command {
         }
         return null;
     }
+
+    /**
+     * This Command only reads data, so it may use a read replica.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
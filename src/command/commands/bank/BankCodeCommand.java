@@ -37,13 +37,12 @@ public class BankCodeCommand extends Command {
         } catch (InvalidParameterException e) {
             out.print("ER " + e.getMessage() + "\r\n");
             out.flush();
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort()
-                    + " used invalid parameters with command " + this.name + ".");
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
             return;
         }
         out.print(this.name + " " + bankCode + "\r\n");
         out.flush();
-        FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort() + " used command " + this.name + ".");
+        FileLogger.getLogger().info("Peer at {} used command {}.", socket, this.name);
     }
 
     /**
@@ -60,4 +59,13 @@ public class BankCodeCommand extends Command {
         }
         return null;
     }
+
+    /**
+     * This Command only reads data, so it may use a read replica.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
 }
@@ -1,12 +1,15 @@
 package command.commands.bank;
 
 import command.exceptions.InvalidParameterException;
+import trace.Stage;
+import trace.Tracer;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * This interface contains some default methods for parsing the Command parameters.
+ * Parsing is measured as the PARSE stage of the traced message.
  */
 public interface GeneralCommandParser {
     /**
@@ -17,25 +20,30 @@ public interface GeneralCommandParser {
      * @throws InvalidParameterException Invalid or no parameters
      */
     default Object[] parseAccountNumberAndBankCode(String paramString, String commandName) throws InvalidParameterException {
-        if (paramString == null) {
-            throw new InvalidParameterException("Invalid parameters (usage: " + commandName + " <account_number>/<bank_code>).");
-        }
+        long traceStart = Tracer.getInstance().start();
+        try {
+            if (paramString == null) {
+                throw new InvalidParameterException("Invalid parameters (usage: " + commandName + " <account_number>/<bank_code>).");
+            }
 
-        Pattern pattern = Pattern.compile("^(\\d{5})/(\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}\\.\\d{1,4})$");
-        Matcher matcher = pattern.matcher(paramString);
+            Pattern pattern = Pattern.compile("^(\\d{5})/(\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}\\.\\d{1,4})$");
+            Matcher matcher = pattern.matcher(paramString);
 
-        if (matcher.find()) {
-            String accountNumberString = matcher.group(1);
-            String bankCode = matcher.group(2);
+            if (matcher.find()) {
+                String accountNumberString = matcher.group(1);
+                String bankCode = matcher.group(2);
 
-            int accountNumber = Integer.parseInt(accountNumberString);
+                int accountNumber = Integer.parseInt(accountNumberString);
 
-            Object[] params = new Object[2];
-            params[0] = accountNumber;
-            params[1] = bankCode;
-            return params;
-        } else {
-            throw new InvalidParameterException("Invalid parameters (usage: " + commandName + " <account_number>/<bank_code>).");
+                Object[] params = new Object[2];
+                params[0] = accountNumber;
+                params[1] = bankCode;
+                return params;
+            } else {
+                throw new InvalidParameterException("Invalid parameters (usage: " + commandName + " <account_number>/<bank_code>).");
+            }
+        } finally {
+            Tracer.getInstance().stage(Stage.PARSE, null, traceStart);
         }
     }
 
@@ -47,28 +55,69 @@ public interface GeneralCommandParser {
      * @throws InvalidParameterException Invalid or no parameters
      */
     default Object[] parseAmount(String paramString, String commandName) throws InvalidParameterException {
-        if (paramString == null) {
-            throw new InvalidParameterException("Invalid parameters (usage: " + commandName + " <account_number>/<bank_code> <amount>).");
-        }
+        long traceStart = Tracer.getInstance().start();
+        try {
+            if (paramString == null) {
+                throw new InvalidParameterException("Invalid parameters (usage: " + commandName + " <account_number>/<bank_code> <amount>).");
+            }
+
+            Pattern pattern = Pattern.compile("^(\\d{5})/(\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}) (\\d{1,19})$");
+            Matcher matcher = pattern.matcher(paramString);
 
-        Pattern pattern = Pattern.compile("^(\\d{5})/(\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}) (\\d{1,19})$");
-        Matcher matcher = pattern.matcher(paramString);
+            if (matcher.find()) {
+                String accountNumberString = matcher.group(1);
+                String bankCode = matcher.group(2);
+                String amountString = matcher.group(3);
+
+                int accountNumber = Integer.parseInt(accountNumberString);
+                long amount = Long.parseLong(amountString);
+
+                Object[] params = new Object[3];
+                params[0] = accountNumber;
+                params[1] = bankCode;
+                params[2] = amount;
+                return params;
+            } else {
+                throw new InvalidParameterException("Invalid parameters (usage: " + commandName + " <account_number>/<bank_code> <amount>).");
+            }
+        } finally {
+            Tracer.getInstance().stage(Stage.PARSE, null, traceStart);
+        }
+    }
 
-        if (matcher.find()) {
-            String accountNumberString = matcher.group(1);
-            String bankCode = matcher.group(2);
-            String amountString = matcher.group(3);
+    /**
+     * Parses the string of parameters. This method
+     * expects parameters in this format: [account_number]/[bank_code] [account_number]/[bank_code] [number]
+     * @param paramString String of parameters to be parsed
+     * @return Array of Objects (source account number (int), source bank code (String),
+     * target account number (int), target bank code (String) and amount (long))
+     * @throws InvalidParameterException Invalid or no parameters
+     */
+    default Object[] parseTransfer(String paramString, String commandName) throws InvalidParameterException {
+        long traceStart = Tracer.getInstance().start();
+        try {
+            String usage = "Invalid parameters (usage: " + commandName + " <account_number>/<bank_code> <account_number>/<bank_code> <amount>).";
+            if (paramString == null) {
+                throw new InvalidParameterException(usage);
+            }
 
-            int accountNumber = Integer.parseInt(accountNumberString);
-            long amount = Long.parseLong(amountString);
+            Pattern pattern = Pattern.compile("^(\\d{5})/(\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}) "
+                    + "(\\d{5})/(\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}\\.\\d{1,4}) (\\d{1,19})$");
+            Matcher matcher = pattern.matcher(paramString);
 
-            Object[] params = new Object[3];
-            params[0] = accountNumber;
-            params[1] = bankCode;
-            params[2] = amount;
-            return params;
-        } else {
-            throw new InvalidParameterException("Invalid parameters (usage: " + commandName + " <account_number>/<bank_code> <amount>).");
+            if (matcher.find()) {
+                Object[] params = new Object[5];
+                params[0] = Integer.parseInt(matcher.group(1));
+                params[1] = matcher.group(2);
+                params[2] = Integer.parseInt(matcher.group(3));
+                params[3] = matcher.group(4);
+                params[4] = Long.parseLong(matcher.group(5));
+                return params;
+            } else {
+                throw new InvalidParameterException(usage);
+            }
+        } finally {
+            Tracer.getInstance().stage(Stage.PARSE, null, traceStart);
         }
     }
 }
@@ -0,0 +1,79 @@
+package command.commands.batch;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import database.ShardConnections;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+
+/**
+ * This Command opens a batch. The account changes sent by the peer until COMMIT or ROLLBACK
+ * are made in a single database transaction, so either all of them or none are applied.
+ */
+public class BatchBeginCommand extends Command {
+    /**
+     * Constructor which sets the Command name to BEGIN.
+     */
+    public BatchBeginCommand() {
+        super("BEGIN");
+    }
+
+    /**
+     * Opens a batch on the peer's database connections and confirms it to the peer.
+     * If a batch is already open, an error message is sent.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter, parameter String
+     *             and the peer's ShardConnections.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+        ShardConnections connections = (ShardConnections)args[3];
+
+        try {
+            parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        try {
+            connections.beginBatch();
+            out.print(this.name + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} opened a batch.", socket);
+        } catch (IllegalStateException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+        }
+    }
+
+    /**
+     * Parses the parameter string. The BatchBeginCommand does not expect any parameters.
+     * If parameters are present, an InvalidParameterException is thrown.
+     * @param paramString String of parameters to be parsed
+     * @return Array of type Object, however this method always returns null
+     * @throws InvalidParameterException Invalid parameters were used
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString != null) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + ").");
+        }
+        return null;
+    }
+
+    /**
+     * This Command controls the batch, so it is accepted while a batch is open.
+     * @return Always true
+     */
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+}
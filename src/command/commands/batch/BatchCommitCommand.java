@@ -0,0 +1,84 @@
+package command.commands.batch;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import database.ShardConnections;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.sql.SQLException;
+
+/**
+ * This Command commits the batch opened by BEGIN. If any Command of the batch failed,
+ * the whole batch is rolled back instead.
+ */
+public class BatchCommitCommand extends Command {
+    /**
+     * Constructor which sets the Command name to COMMIT.
+     */
+    public BatchCommitCommand() {
+        super("COMMIT");
+    }
+
+    /**
+     * Commits the open batch and sends COMMIT to the peer. If the batch was rolled back, the reason
+     * is sent in an error message. If no batch is open, an error message is sent.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter, parameter String
+     *             and the peer's ShardConnections.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+        ShardConnections connections = (ShardConnections)args[3];
+
+        try {
+            parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        try {
+            connections.commitBatch();
+            out.print(this.name + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} committed a batch.", socket);
+        } catch (IllegalStateException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+        } catch (SQLException e) {
+            out.print("ER Batch rolled back: " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} attempted to commit a batch, but it was rolled back.", socket);
+        }
+    }
+
+    /**
+     * Parses the parameter string. The BatchCommitCommand does not expect any parameters.
+     * If parameters are present, an InvalidParameterException is thrown.
+     * @param paramString String of parameters to be parsed
+     * @return Array of type Object, however this method always returns null
+     * @throws InvalidParameterException Invalid parameters were used
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString != null) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + ").");
+        }
+        return null;
+    }
+
+    /**
+     * This Command controls the batch, so it is accepted while a batch is open.
+     * @return Always true
+     */
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+}
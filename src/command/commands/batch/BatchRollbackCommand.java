@@ -0,0 +1,77 @@
+package command.commands.batch;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import database.ShardConnections;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+
+/**
+ * This Command rolls back the batch opened by BEGIN, none of its changes are applied.
+ */
+public class BatchRollbackCommand extends Command {
+    /**
+     * Constructor which sets the Command name to ROLLBACK.
+     */
+    public BatchRollbackCommand() {
+        super("ROLLBACK");
+    }
+
+    /**
+     * Rolls back the open batch and sends ROLLBACK to the peer. If no batch is open, an error message is sent.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter, parameter String
+     *             and the peer's ShardConnections.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+        ShardConnections connections = (ShardConnections)args[3];
+
+        try {
+            parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        if (!connections.isInBatch()) {
+            out.print("ER No batch is open.\r\n");
+            out.flush();
+            return;
+        }
+        connections.rollbackBatch();
+        out.print(this.name + "\r\n");
+        out.flush();
+        FileLogger.getLogger().info("Peer at {} rolled back a batch.", socket);
+    }
+
+    /**
+     * Parses the parameter string. The BatchRollbackCommand does not expect any parameters.
+     * If parameters are present, an InvalidParameterException is thrown.
+     * @param paramString String of parameters to be parsed
+     * @return Array of type Object, however this method always returns null
+     * @throws InvalidParameterException Invalid parameters were used
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString != null) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + ").");
+        }
+        return null;
+    }
+
+    /**
+     * This Command controls the batch, so it is accepted while a batch is open.
+     * @return Always true
+     */
+    @Override
+    public boolean isBatchable() {
+        return true;
+    }
+}
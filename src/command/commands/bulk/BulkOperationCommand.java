@@ -0,0 +1,133 @@
+package command.commands.bulk;
+
+import bulk.BulkOperation;
+import bulk.BulkScheduler;
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import util.FileLogger;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This admin Command schedules a bank-wide operation, such as interest or a fee, or returns the progress
+ * of a scheduled one. It can only be used by peers connecting from the loopback address.
+ */
+public class BulkOperationCommand extends Command {
+    /**
+     * Constructor which sets the Command name to BO.
+     */
+    public BulkOperationCommand() {
+        super("BO");
+    }
+
+    /**
+     * Executes the Command action. With an id only, the progress of the operation is sent to the peer
+     * in the format BO [id] [state] [updated_accounts] [processed]/[total]. With a rule and value,
+     * the operation is scheduled and its progress is sent to the peer.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter and parameter String.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+
+        if (!socket.getInetAddress().isLoopbackAddress()) {
+            out.print("ER Bulk operations can only be managed from the loopback address.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} attempted to use admin command {}.", socket, this.name);
+            return;
+        }
+
+        Object[] parameters;
+        try {
+            parameters = parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        String id = (String)parameters[0];
+        BulkOperation operation = (BulkOperation)parameters[1];
+        BulkScheduler scheduler = BulkScheduler.getInstance();
+        BulkScheduler.Progress progress;
+        if (operation == null) {
+            progress = scheduler.getProgress(id);
+            if (progress == null) {
+                out.print("ER Unknown bulk operation.\r\n");
+                out.flush();
+                return;
+            }
+        } else {
+            try {
+                progress = scheduler.schedule(operation);
+                FileLogger.getLogger().info("Peer at {} scheduled bulk operation {} ({}).",
+                        socket, id, operation.change());
+            } catch (IllegalArgumentException e) {
+                out.print("ER " + e.getMessage() + "\r\n");
+                out.flush();
+                return;
+            } catch (IOException e) {
+                out.print("ER Failed to store the bulk operation.\r\n");
+                out.flush();
+                FileLogger.getLogger().severe("Failed to store bulk operation {}.", id);
+                return;
+            }
+        }
+
+        out.print(this.name + " " + id + " " + progress.getState() + " " + progress.getUpdatedAccounts() + " "
+                + progress.getProcessedNumbers() + "/" + progress.getTotalNumbers() + "\r\n");
+        out.flush();
+    }
+
+    /**
+     * Parses the parameter string. This Command expects parameters in this format:
+     * [id] or [id] [INTEREST|FEE] [value] [start_time], the start time is optional.
+     * @param paramString String of parameters to be parsed
+     * @return Array of Objects (operation id (String) and operation (BulkOperation, null if only the id is present))
+     * @throws InvalidParameterException Invalid or no parameters
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        String usage = "Invalid parameters (usage: " + this.name + " <id> [INTEREST|FEE <value> [start_time]]).";
+        if (paramString == null) {
+            throw new InvalidParameterException(usage);
+        }
+        Pattern pattern = Pattern.compile("^([A-Za-z0-9_-]{1,64})(?: (INTEREST|FEE) (\\d{1,18})(?: (\\d{1,18}))?)?$");
+        Matcher matcher = pattern.matcher(paramString);
+        if (!matcher.find()) {
+            throw new InvalidParameterException(usage);
+        }
+
+        String id = matcher.group(1);
+        if (matcher.group(2) == null) {
+            return new Object[]{id, null};
+        }
+        BulkOperation.Rule rule = BulkOperation.Rule.valueOf(matcher.group(2));
+        long value = Long.parseLong(matcher.group(3));
+        if (value < 1) {
+            throw new InvalidParameterException("The value must be positive.");
+        }
+        if (rule == BulkOperation.Rule.INTEREST && value > 10000) {
+            throw new InvalidParameterException("The interest rate must be at most 10000 hundredths of a percent.");
+        }
+        long startAt = matcher.group(4) == null ? System.currentTimeMillis() : Long.parseLong(matcher.group(4));
+        return new Object[]{id, new BulkOperation(id, rule, value, startAt)};
+    }
+
+    /**
+     * Every node processes the accounts it owns, so this Command is never routed.
+     * @param paramString String of parameters
+     * @return Always null
+     */
+    @Override
+    public Integer getAccountNumber(String paramString) {
+        return null;
+    }
+}
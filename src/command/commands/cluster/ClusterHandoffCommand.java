@@ -0,0 +1,106 @@
+package command.commands.cluster;
+
+import cluster.ClusterManager;
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This admin Command hands the ownership of an account number range over to another node of the cluster.
+ * It can only be used by peers connecting from the configured address of a cluster node.
+ */
+public class ClusterHandoffCommand extends Command {
+    /**
+     * Constructor which sets the Command name to CH.
+     */
+    public ClusterHandoffCommand() {
+        super("CH");
+    }
+
+    /**
+     * Changes the owner of the given range and sends the new routing table to every node.
+     * The new routing table is sent to the peer.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter and parameter String.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+
+        ClusterManager cluster = ClusterManager.getInstance();
+        if (!cluster.isMember(socket.getInetAddress())) {
+            out.print("ER Only cluster nodes can hand over account ranges.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} attempted to use admin command {}.", socket, this.name);
+            return;
+        }
+
+        Object[] parameters;
+        try {
+            parameters = parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        int firstNumber = (int)parameters[0];
+        int lastNumber = (int)parameters[1];
+        int nodeId = (int)parameters[2];
+
+        try {
+            int unreachable = cluster.handoff(firstNumber, lastNumber, nodeId);
+            if (unreachable > 0) {
+                FileLogger.getLogger().warning("{} cluster nodes could not be reached during handoff, they will"
+                        + " refresh their routing table on their next forwarded command.", unreachable);
+            }
+            out.print(this.name + " " + cluster.getRoutingTable() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} handed accounts {}-{} over to node {}.",
+                    socket, firstNumber, lastNumber, nodeId);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+        }
+    }
+
+    /**
+     * Parses the parameter string. This Command expects parameters in this format: [first]-[last] [node_id]
+     * @param paramString String of parameters to be parsed
+     * @return Array of Objects (first account number (int), last account number (int), node id (int))
+     * @throws InvalidParameterException Invalid or no parameters
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString == null) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + " <first>-<last> <node_id>).");
+        }
+        Pattern pattern = Pattern.compile("^(\\d{5})-(\\d{5}) (\\d{1,4})$");
+        Matcher matcher = pattern.matcher(paramString);
+        if (!matcher.find()) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + " <first>-<last> <node_id>).");
+        }
+        Object[] params = new Object[3];
+        params[0] = Integer.parseInt(matcher.group(1));
+        params[1] = Integer.parseInt(matcher.group(2));
+        params[2] = Integer.parseInt(matcher.group(3));
+        return params;
+    }
+
+    /**
+     * The range of this Command is handed over by the node receiving it, so it is never routed.
+     * @param paramString String of parameters
+     * @return Always null
+     */
+    @Override
+    public Integer getAccountNumber(String paramString) {
+        return null;
+    }
+}
@@ -0,0 +1,91 @@
+package command.commands.cluster;
+
+import cluster.ClusterManager;
+import cluster.RoutingTable;
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+
+/**
+ * This Command exchanges routing tables between the nodes of a cluster. Without parameters,
+ * the current routing table is sent. Over a cluster link, a newer routing table can be installed.
+ */
+public class ClusterTableCommand extends Command {
+    /**
+     * Constructor which sets the Command name to CT.
+     */
+    public ClusterTableCommand() {
+        super("CT");
+    }
+
+    /**
+     * Installs the routing table sent over a cluster link (if it is newer than the current one),
+     * and sends the current routing table to the peer. Peers which are not cluster nodes
+     * may only read the routing table.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter, parameter String,
+     *             and whether the message arrived over a cluster link.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+        boolean internal = (boolean)args[4];
+
+        RoutingTable table;
+        try {
+            table = (RoutingTable)parseParameters(paramString)[0];
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        ClusterManager cluster = ClusterManager.getInstance();
+        if (table != null) {
+            if (!internal) {
+                out.print("ER Routing tables can only be sent by cluster nodes.\r\n");
+                out.flush();
+                FileLogger.getLogger().info("Peer at {} attempted to change the routing table with command {}.",
+                        socket, this.name);
+                return;
+            }
+            if (cluster.install(table)) {
+                FileLogger.getLogger().info("Installed routing table {}.", table);
+            }
+        }
+        out.print(this.name + " " + cluster.getRoutingTable() + "\r\n");
+        out.flush();
+    }
+
+    /**
+     * Parses the parameter string. It is either empty, or contains a serialized routing table.
+     * @param paramString String of parameters to be parsed
+     * @return Array of Objects (routing table, or null if no parameters were used)
+     * @throws InvalidParameterException Malformed routing table
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString == null) {
+            return new Object[]{null};
+        }
+        try {
+            return new Object[]{RoutingTable.parse(paramString)};
+        } catch (IllegalArgumentException e) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + " [<epoch> <first>-<last>:<node>,...]).");
+        }
+    }
+
+    /**
+     * This Command only reads or replaces the routing table, which is not stored in the database.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
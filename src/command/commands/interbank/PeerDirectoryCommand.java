@@ -0,0 +1,92 @@
+package command.commands.interbank;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import interbank.PeerDirectory;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This admin Command sends the peer directory to a peer, in the format
+ * PD [count] [bank_code]:[port] ba=[amount] bn=[clients] rtt=[microseconds]us age=[milliseconds]ms [up|down]; ...
+ */
+public class PeerDirectoryCommand extends Command {
+    /**
+     * Constructor which sets the Command name to PD.
+     */
+    public PeerDirectoryCommand() {
+        super("PD");
+    }
+
+    /**
+     * Sends every bank known to the peer directory, with its last known values. It can only be used
+     * from the loopback address.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter and parameter String.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+
+        if (!socket.getInetAddress().isLoopbackAddress()) {
+            out.print("ER The peer directory can only be read from this machine.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} attempted to use admin command {}.", socket, this.name);
+            return;
+        }
+
+        try {
+            parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        PeerDirectory directory = PeerDirectory.getInstance();
+        if (!directory.isEnabled()) {
+            out.print("ER The peer directory is disabled.\r\n");
+            out.flush();
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<String> banks = new ArrayList<>();
+        for (PeerDirectory.Entry entry : directory.getEntries()) {
+            banks.add(entry.bankCode() + ":" + entry.port() + " ba=" + entry.amount() + " bn=" + entry.clients()
+                    + " rtt=" + entry.rttMicros() + "us age=" + (now - entry.updatedAt()) + "ms " + (entry.alive() ? "up" : "down"));
+        }
+        out.print(this.name + " " + banks.size() + (banks.isEmpty() ? "" : " " + String.join("; ", banks)) + "\r\n");
+        out.flush();
+    }
+
+    /**
+     * Parses the parameter string. The PeerDirectoryCommand does not expect any parameters.
+     * If parameters are present, an InvalidParameterException is thrown.
+     * @param paramString String of parameters to be parsed
+     * @return Array of type Object, however this method always returns null
+     * @throws InvalidParameterException Invalid parameters were used
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString != null) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + ").");
+        }
+        return null;
+    }
+
+    /**
+     * This Command does not touch the database.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
@@ -0,0 +1,84 @@
+package command.commands.replication;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import replication.JournalSender;
+import replication.ReplicaStore;
+import replication.StandbyNode;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+
+/**
+ * This Command sends the replication status of the node to a peer, in the format
+ * RS [role] [journal_sequence] [lag_ms] [standbys]. The role is PRIMARY, STANDBY or PROMOTED
+ * (a standby which has taken over the bank code).
+ */
+public class ReplicationStatusCommand extends Command {
+    /**
+     * Constructor which sets the Command name to RS.
+     */
+    public ReplicationStatusCommand() {
+        super("RS");
+    }
+
+    /**
+     * Sends the replication status to the peer. A standby reports the last journal sequence number
+     * it has applied and how far behind the primary it is. A primary reports the last sequence number
+     * it has sent and the number of connected standbys.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter and parameter String.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+
+        try {
+            parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        StandbyNode standbyNode = StandbyNode.getInstance();
+        JournalSender sender = JournalSender.getInstance();
+        String status;
+        if (standbyNode.isStandby()) {
+            ReplicaStore store = ReplicaStore.getInstance();
+            status = "STANDBY " + store.getLastSequence() + " " + store.getLagMillis() + " 0";
+        } else {
+            String role = standbyNode.isPromoted() ? "PROMOTED" : "PRIMARY";
+            status = role + " " + sender.getSequence() + " 0 " + sender.getStandbyCount();
+        }
+        out.print(this.name + " " + status + "\r\n");
+        out.flush();
+    }
+
+    /**
+     * Parses the parameter string. The ReplicationStatusCommand does not expect any parameters.
+     * If parameters are present, an InvalidParameterException is thrown.
+     * @param paramString String of parameters to be parsed
+     * @return Array of type Object, however this method always returns null
+     * @throws InvalidParameterException Invalid parameters were used
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString != null) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + ").");
+        }
+        return null;
+    }
+
+    /**
+     * This Command does not touch the database, so it is allowed on a standby.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
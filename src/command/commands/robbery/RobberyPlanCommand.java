@@ -0,0 +1,136 @@
+package command.commands.robbery;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import interbank.PeerDirectory;
+import robbery.BankInfo;
+import robbery.BankScanner;
+import robbery.RobberyPlanner;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This Command searches the network for other banks and finds which of them should be robbed
+ * to get at least the target amount of money, while affecting the fewest clients.
+ */
+public class RobberyPlanCommand extends Command {
+    private final String bankCode;
+    private final BankScanner scanner;
+
+    /**
+     * This constructor sets the Command name to RP, the bank code and the scanner of the network.
+     * @param bankCode Bank code (IP address), this bank is never robbed
+     * @param scanner Scanner of the network
+     */
+    public RobberyPlanCommand(String bankCode, BankScanner scanner) {
+        super("RP");
+        this.bankCode = bankCode;
+        this.scanner = scanner;
+    }
+
+    /**
+     * Executes the Command action. The network is scanned for banks, their total balance (BA) and
+     * number of clients (BN) are retrieved, and the robbery plan is sent to the peer. If the peer directory
+     * holds fresh values of other banks, they are used instead of scanning the network. If the found banks
+     * together do not reach the target amount, an error message is sent instead.
+     * @param args Array of type Object. This Command expects a Socket, PrintWriter and parameter String.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+
+        long target;
+        try {
+            target = (long)parseParameters(paramString)[0];
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        try {
+            // The peer directory already knows the values of other banks, the network is only scanned without it
+            List<BankInfo> banks = PeerDirectory.getInstance().getFreshBanks();
+            if (banks.isEmpty()) {
+                banks = scanner.scan(bankCode);
+            }
+            RobberyPlanner.Plan plan = RobberyPlanner.plan(banks, target);
+            if (plan == null) {
+                long total = 0;
+                for (BankInfo bank : banks) {
+                    total += bank.amount();
+                }
+                out.print("ER The target amount cannot be reached, " + banks.size() + " found banks hold " + total + " in total.\r\n");
+                out.flush();
+                return;
+            }
+            out.print(this.name + " " + describe(plan, target) + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used command {}, {} banks were found.",
+                    socket, this.name, banks.size());
+        } catch (IllegalArgumentException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.print("ER The network scan was interrupted.\r\n");
+            out.flush();
+        }
+    }
+
+    /**
+     * Describes the robbery plan in a sentence.
+     * @param plan Robbery plan
+     * @param target Target amount of money
+     * @return Description of the plan
+     */
+    private String describe(RobberyPlanner.Plan plan, long target) {
+        if (plan.banks().isEmpty()) {
+            return "No bank has to be robbed to get " + target + ".";
+        }
+        List<String> bankCodes = new ArrayList<>();
+        for (BankInfo bank : plan.banks()) {
+            bankCodes.add(bank.bankCode());
+        }
+        String banks = bankCodes.size() == 1 ? bankCodes.get(0)
+                : String.join(", ", bankCodes.subList(0, bankCodes.size() - 1)) + " and " + bankCodes.get(bankCodes.size() - 1);
+        return "Rob " + (bankCodes.size() == 1 ? "bank " : "banks ") + banks + " to get " + plan.amount()
+                + " of the target " + target + ", affecting only " + plan.clients() + " clients.";
+    }
+
+    /**
+     * Parses the parameters provided to the Command. This Command expects parameters in this format: [target_amount]
+     * @param paramString String of parameters to be parsed
+     * @return Array of Objects (target amount (long))
+     * @throws InvalidParameterException Invalid or no parameters
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString == null) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + " <target_amount>).");
+        }
+        Matcher matcher = Pattern.compile("^(\\d{1,18})$").matcher(paramString);
+        if (!matcher.find()) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + " <target_amount>).");
+        }
+        return new Object[]{Long.parseLong(matcher.group(1))};
+    }
+
+    /**
+     * This Command does not touch the database of this bank.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
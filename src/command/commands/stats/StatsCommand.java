@@ -0,0 +1,126 @@
+package command.commands.stats;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import stats.CommandMetrics;
+import stats.CommandStats;
+import stats.LatencyHistogram;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This Command sends the latency statistics of the node to a peer. Without parameters, it sends a summary
+ * of every Command used so far, in the format
+ * ST [uptime_s] [command] count=[n] errors=[n] rps=[n] p50=[us] p99=[us] p999=[us] db_p50=[us] db_p99=[us]; ...
+ * With a Command name, it sends the statistics of that Command split by outcome, in the format
+ * ST [command] OK count=[n] p50=[us] p99=[us] p999=[us]; ER [message] count=[n] p50=[us] p99=[us] p999=[us]; ...
+ * Latencies are in microseconds.
+ */
+public class StatsCommand extends Command {
+    /**
+     * Constructor which sets the Command name to ST.
+     */
+    public StatsCommand() {
+        super("ST");
+    }
+
+    /**
+     * Sends the statistics to the peer.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter and parameter String.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+
+        Object[] parameters;
+        try {
+            parameters = parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        CommandStats stats = CommandStats.getInstance();
+        StringBuilder response = new StringBuilder(this.name);
+        if (parameters == null) {
+            response.append(' ').append(stats.getUptimeSeconds());
+            List<CommandMetrics> allMetrics = stats.getAllMetrics();
+            for (int i = 0; i < allMetrics.size(); i++) {
+                CommandMetrics metrics = allMetrics.get(i);
+                response.append(i == 0 ? " " : "; ").append(metrics.getName())
+                        .append(" count=").append(metrics.getCount())
+                        .append(" errors=").append(metrics.getErrorCount())
+                        .append(" rps=").append(String.format(Locale.ROOT, "%.2f", metrics.getThroughput()))
+                        .append(" p50=").append(metrics.getP50Micros())
+                        .append(" p99=").append(metrics.getP99Micros())
+                        .append(" p999=").append(metrics.getP999Micros())
+                        .append(" db_p50=").append(metrics.getDatabaseP50Micros())
+                        .append(" db_p99=").append(metrics.getDatabaseP99Micros());
+            }
+        } else {
+            String commandName = (String)parameters[0];
+            CommandMetrics metrics = stats.getMetrics(commandName);
+            if (metrics == null) {
+                out.print("ER Command " + commandName + " has not been used yet.\r\n");
+                out.flush();
+                return;
+            }
+            response.append(' ').append(commandName);
+            appendOutcome(response.append(" OK"), metrics.getOk());
+            for (Map.Entry<String, LatencyHistogram> error : metrics.getErrors().entrySet()) {
+                appendOutcome(response.append("; ER ").append(error.getKey()), error.getValue());
+            }
+        }
+        out.print(response + "\r\n");
+        out.flush();
+        FileLogger.getLogger().info("Peer at {} used command {}.", socket, this.name);
+    }
+
+    /**
+     * Appends the count and percentiles of one outcome to the response.
+     * @param response Response being built
+     * @param histogram Latency histogram of the outcome
+     */
+    private void appendOutcome(StringBuilder response, LatencyHistogram histogram) {
+        long[] percentiles = histogram.getPercentiles(0.5, 0.99, 0.999);
+        response.append(" count=").append(histogram.getCount())
+                .append(" p50=").append(percentiles[0] / 1000)
+                .append(" p99=").append(percentiles[1] / 1000)
+                .append(" p999=").append(percentiles[2] / 1000);
+    }
+
+    /**
+     * Parses the parameter string. The StatsCommand expects no parameters, or the name of a Command.
+     * @param paramString String of parameters to be parsed
+     * @return Array of type Object containing the Command name, or null if no parameters were given
+     * @throws InvalidParameterException Invalid parameters were used
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString == null) {
+            return null;
+        }
+        if (!paramString.matches("[A-Za-z]+")) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + " [command]).");
+        }
+        return new Object[] {paramString.toUpperCase()};
+    }
+
+    /**
+     * This Command does not touch the database, so it is allowed on a standby.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
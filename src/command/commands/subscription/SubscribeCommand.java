@@ -0,0 +1,107 @@
+package command.commands.subscription;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import subscription.SubscriptionHub;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This Command subscribes the peer to changes of the given accounts, or of all accounts. After every committed
+ * change of a subscribed account, the new balance is pushed to the peer as EV [account_number] [balance].
+ */
+public class SubscribeCommand extends Command {
+    /**
+     * Constructor which sets the Command name to SUB.
+     */
+    public SubscribeCommand() {
+        super("SUB");
+    }
+
+    /**
+     * Subscribes the peer and confirms it with SUB. If the peer is already subscribed, the accounts are added
+     * to its subscription. If the parameters end with conflate, only the latest change of every account is kept
+     * while the peer is not reading fast enough.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter and parameter String.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+
+        Object[] parameters;
+        try {
+            parameters = parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        Set<Integer> accountNumbers = (Set<Integer>)parameters[0];
+        boolean conflate = (boolean)parameters[1];
+        try {
+            SubscriptionHub.getInstance().subscribe(socket, out, accountNumbers, conflate);
+            out.print(this.name + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} subscribed to {}.",
+                    socket, (accountNumbers == null ? "all accounts" : accountNumbers.size() + " accounts"));
+        } catch (IllegalStateException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+        }
+    }
+
+    /**
+     * Parses the parameters provided to the Command. This Command expects parameters in this format:
+     * [account_number] [account_number] ... [conflate] or * [conflate], where * means all accounts.
+     * @param paramString String of parameters to be parsed
+     * @return Array of Objects (set of account numbers (null for all accounts) and the conflation mode (boolean))
+     * @throws InvalidParameterException Invalid or no parameters
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        String usage = "Invalid parameters (usage: " + this.name + " <account_number> ... [conflate] or " + this.name + " * [conflate]).";
+        if (paramString == null) {
+            throw new InvalidParameterException(usage);
+        }
+
+        String[] tokens = paramString.split(" +");
+        int count = tokens.length;
+        boolean conflate = tokens[count - 1].equalsIgnoreCase("conflate");
+        if (conflate) {
+            count--;
+        }
+        if (count == 0) {
+            throw new InvalidParameterException(usage);
+        }
+        if (count == 1 && tokens[0].equals("*")) {
+            return new Object[]{null, conflate};
+        }
+
+        Set<Integer> accountNumbers = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            if (!tokens[i].matches("\\d{5}")) {
+                throw new InvalidParameterException(usage);
+            }
+            accountNumbers.add(Integer.parseInt(tokens[i]));
+        }
+        return new Object[]{accountNumbers, conflate};
+    }
+
+    /**
+     * This Command does not change any data.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package command.commands.subscription;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import subscription.SubscriptionHub;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+
+/**
+ * This Command cancels the subscription of the peer, no more changes are pushed to it.
+ */
+public class UnsubscribeCommand extends Command {
+    /**
+     * Constructor which sets the Command name to UNSUB.
+     */
+    public UnsubscribeCommand() {
+        super("UNSUB");
+    }
+
+    /**
+     * Cancels the subscription of the peer and confirms it with UNSUB.
+     * If the peer is not subscribed, an error message is sent.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter and parameter String.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+
+        try {
+            parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        if (!SubscriptionHub.getInstance().unsubscribe(socket)) {
+            out.print("ER Not subscribed.\r\n");
+            out.flush();
+            return;
+        }
+        out.print(this.name + "\r\n");
+        out.flush();
+        FileLogger.getLogger().info("Peer at {} unsubscribed.", socket);
+    }
+
+    /**
+     * Parses the parameter string. The UnsubscribeCommand does not expect any parameters.
+     * If parameters are present, an InvalidParameterException is thrown.
+     * @param paramString String of parameters to be parsed
+     * @return Array of type Object, however this method always returns null
+     * @throws InvalidParameterException Invalid parameters were used
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString != null) {
+            throw new InvalidParameterException("Invalid parameters (usage: " + this.name + ").");
+        }
+        return null;
+    }
+
+    /**
+     * This Command does not change any data.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
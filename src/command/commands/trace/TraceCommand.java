@@ -0,0 +1,149 @@
+package command.commands.trace;
+
+import command.Command;
+import command.exceptions.InvalidParameterException;
+import stats.LatencyHistogram;
+import trace.SlowRequest;
+import trace.Stage;
+import trace.Tracer;
+import util.FileLogger;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * This admin Command sends the traces of the node to a peer, it can only be used from the loopback address.
+ * Without parameters or with a limit, it sends the most recent slow messages, newest first, in the format
+ * TR [time] [command] [total_us] [stage]=[us] ... [outcome]; ...
+ * With a Command name, it sends the stage breakdown of the sampled messages of that Command, in the format
+ * TR [command] total count=[n] p50=[us] p99=[us] p999=[us]; [stage] count=[n] p50=[us] p99=[us] p999=[us]; ...
+ */
+public class TraceCommand extends Command {
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 1000;
+
+    /**
+     * Constructor which sets the Command name to TR.
+     */
+    public TraceCommand() {
+        super("TR");
+    }
+
+    /**
+     * Sends the slow log or the stage breakdown of a Command to the peer.
+     * @param args Array of type Object. This Command expects a peer Socket, PrintWriter and parameter String.
+     */
+    @Override
+    public void execute(Object[] args) {
+        Socket socket = (Socket)args[0];
+        PrintWriter out = (PrintWriter)args[1];
+        String paramString = (String)args[2];
+
+        if (!socket.getInetAddress().isLoopbackAddress()) {
+            out.print("ER Traces can only be read from the loopback address.\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} attempted to use admin command {}.", socket, this.name);
+            return;
+        }
+
+        Object[] parameters;
+        try {
+            parameters = parseParameters(paramString);
+        } catch (InvalidParameterException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} used invalid parameters with command {}.", socket, this.name);
+            return;
+        }
+
+        Tracer tracer = Tracer.getInstance();
+        if (!tracer.isEnabled()) {
+            out.print("ER Tracing is disabled.\r\n");
+            out.flush();
+            return;
+        }
+
+        StringBuilder response = new StringBuilder(this.name);
+        if (parameters[0] instanceof Integer limit) {
+            List<SlowRequest> requests = tracer.getSlowRequests(limit);
+            for (int i = 0; i < requests.size(); i++) {
+                response.append(i == 0 ? " " : "; ").append(requests.get(i));
+            }
+        } else {
+            String commandName = (String)parameters[0];
+            Tracer.StageStats stageStats = tracer.getStageStats(commandName);
+            if (stageStats == null) {
+                out.print("ER No message of command " + commandName + " has been sampled yet.\r\n");
+                out.flush();
+                return;
+            }
+            response.append(' ').append(commandName);
+            appendStage(response.append(" total"), stageStats.getTotal());
+            for (Stage stage : Stage.values()) {
+                LatencyHistogram histogram = stageStats.getStage(stage);
+                if (histogram.getCount() > 0) {
+                    appendStage(response.append("; ").append(stage.label()), histogram);
+                }
+            }
+        }
+        out.print(response + "\r\n");
+        out.flush();
+        FileLogger.getLogger().info("Peer at {} used command {}.", socket, this.name);
+    }
+
+    /**
+     * Appends the count and percentiles of one stage to the response.
+     * @param response Response being built
+     * @param histogram Latency histogram of the stage
+     */
+    private void appendStage(StringBuilder response, LatencyHistogram histogram) {
+        long[] percentiles = histogram.getPercentiles(0.5, 0.99, 0.999);
+        response.append(" count=").append(histogram.getCount())
+                .append(" p50=").append(percentiles[0] / 1000)
+                .append(" p99=").append(percentiles[1] / 1000)
+                .append(" p999=").append(percentiles[2] / 1000);
+    }
+
+    /**
+     * Parses the parameter string. This Command expects no parameters, the number of slow messages
+     * (1 to MAX_LIMIT), or a Command name.
+     * @param paramString String of parameters to be parsed
+     * @return Array of Objects (the limit (Integer) or the Command name (String))
+     * @throws InvalidParameterException Invalid parameters were used
+     */
+    @Override
+    public Object[] parseParameters(String paramString) throws InvalidParameterException {
+        if (paramString == null) {
+            return new Object[] {DEFAULT_LIMIT};
+        }
+        if (paramString.matches("\\d{1,4}")) {
+            int limit = Integer.parseInt(paramString);
+            if (limit >= 1 && limit <= MAX_LIMIT) {
+                return new Object[] {limit};
+            }
+        } else if (paramString.matches("[A-Za-z]+")) {
+            return new Object[] {paramString.toUpperCase()};
+        }
+        throw new InvalidParameterException("Invalid parameters (usage: " + this.name + " [limit|command]).");
+    }
+
+    /**
+     * The Command only reads the traces kept in memory, so it is allowed on a standby.
+     * @return Always true
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    /**
+     * The limit is not an account number, so the Command is never routed to another node of the cluster.
+     * @param paramString String of parameters to be parsed
+     * @return Always null
+     */
+    @Override
+    public Integer getAccountNumber(String paramString) {
+        return null;
+    }
+}
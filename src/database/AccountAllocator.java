@@ -0,0 +1,138 @@
+package database;
+
+import database.tables.BankAccount;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class implements the Singleton design pattern. It picks the shard and the account number of new accounts
+ * (the AccountAllocator must be registered in the MutationPublisher). The accounts of every shard are counted
+ * once, and the counts are then kept up to date from the created and removed accounts, so creating an account
+ * does not count the accounts of every shard. Only changes made through this node are counted, the counts
+ * are only used to balance the shards. Account numbers of a shard are allocated one at a time, and a number
+ * is never allocated twice, even if the account created with it has not been committed yet.
+ */
+public class AccountAllocator implements MutationListener {
+    private static AccountAllocator instance;
+    private final List<Shard> shards;
+    private final AtomicIntegerArray counts;
+    private final ReentrantLock[] locks;
+    private final int[] lastAllocated;
+    private volatile boolean counted = false;
+
+    /**
+     * Returns the Singleton instance of AccountAllocator. The DatabaseConnector must be configured first.
+     * @return Singleton instance of AccountAllocator
+     */
+    public static synchronized AccountAllocator getInstance() {
+        if (instance == null) {
+            instance = new AccountAllocator();
+        }
+        return instance;
+    }
+
+    /**
+     * This private constructor creates the counts, locks and last allocated numbers of the configured shards.
+     */
+    private AccountAllocator() {
+        this.shards = DatabaseConnector.getInstance().getShards();
+        this.counts = new AtomicIntegerArray(shards.size());
+        this.locks = new ReentrantLock[shards.size()];
+        this.lastAllocated = new int[shards.size()];
+        for (int i = 0; i < shards.size(); i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Counts the accounts of every shard, unless they have been counted already.
+     * @throws SQLException A shard could not be reached or read, the accounts will be counted on the next call
+     */
+    public synchronized void countAccounts() throws SQLException {
+        if (counted) {
+            return;
+        }
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        for (Shard shard : shards) {
+            Connection connection = connector.getConnection(shard);
+            if (connection == null) {
+                throw new SQLException("Failed to connect to shard " + shard.getIndex() + ".");
+            }
+            try {
+                counts.set(shard.getIndex(), BankAccount.getAccountAmount(connection, 10000, 99999));
+            } finally {
+                connector.closeConnection(connection);
+            }
+        }
+        counted = true;
+    }
+
+    /**
+     * Returns the shards ordered by their number of accounts, the shard with the fewest accounts first.
+     * The accounts are counted first if they have not been counted yet.
+     * @return List of shards
+     * @throws SQLException The accounts could not be counted
+     */
+    public List<Shard> getShardsByLoad() throws SQLException {
+        countAccounts();
+        List<Shard> sorted = new ArrayList<>(shards);
+        sorted.sort(Comparator.comparingInt(shard -> counts.get(shard.getIndex())));
+        return sorted;
+    }
+
+    /**
+     * Allocates the account number of a new account in the given range of a shard: the number after the highest
+     * number stored in the range, or after the last number allocated in the range, whichever is higher.
+     * @param shard Shard the account is created in
+     * @param connection Connection to the shard
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @return Account number, or 0 if the range is full
+     * @throws SQLException The highest account number could not be read
+     */
+    public int allocate(Shard shard, Connection connection, int firstNumber, int lastNumber) throws SQLException {
+        int index = shard.getIndex();
+        ReentrantLock lock = locks[index];
+        lock.lock();
+        try {
+            int candidate = Math.max(firstNumber, BankAccount.getMaxNumber(connection, firstNumber, lastNumber) + 1);
+            int last = lastAllocated[index];
+            if (last >= firstNumber && last <= lastNumber) {
+                candidate = Math.max(candidate, last + 1);
+            }
+            if (candidate > lastNumber) {
+                return 0;
+            }
+            lastAllocated[index] = candidate;
+            return candidate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a created or removed account in its shard.
+     * @param mutation Committed change
+     */
+    @Override
+    public void onMutation(Mutation mutation) {
+        if (!counted) {
+            return;
+        }
+        Shard shard = DatabaseConnector.getInstance().getShard(mutation.accountNumber());
+        if (shard == null) {
+            return;
+        }
+        if (mutation.type() == Mutation.Type.CREATE) {
+            counts.incrementAndGet(shard.getIndex());
+        } else if (mutation.type() == Mutation.Type.REMOVE) {
+            counts.decrementAndGet(shard.getIndex());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package database;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class implements the Singleton design pattern. It holds an in-process lock for every account number,
+ * so changes of the same account are serialized before they reach the database, and changes of different
+ * accounts never wait for each other. As there are only 90000 account numbers, every number has its own
+ * lock stripe. The locks are created when they are first needed.
+ */
+public class AccountLocks {
+    private static final int FIRST_ACCOUNT_NUMBER = 10000;
+    private static final int LAST_ACCOUNT_NUMBER = 99999;
+
+    private static AccountLocks instance;
+    private final AtomicReferenceArray<ReentrantLock> locks =
+            new AtomicReferenceArray<>(LAST_ACCOUNT_NUMBER - FIRST_ACCOUNT_NUMBER + 1);
+
+    /**
+     * Returns the Singleton instance of AccountLocks.
+     * @return Singleton instance of AccountLocks
+     */
+    public static synchronized AccountLocks getInstance() {
+        if (instance == null) {
+            instance = new AccountLocks();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the lock of the given account number. The same lock is always returned for the same number.
+     * @param accountNumber Bank account number
+     * @return Lock of the account
+     * @throws IllegalArgumentException The account number is out of range
+     */
+    public ReentrantLock getLock(int accountNumber) throws IllegalArgumentException {
+        if (accountNumber < FIRST_ACCOUNT_NUMBER || accountNumber > LAST_ACCOUNT_NUMBER) {
+            throw new IllegalArgumentException("Bank account number must be between 10000 and 99999.");
+        }
+        int index = accountNumber - FIRST_ACCOUNT_NUMBER;
+        ReentrantLock lock = locks.get(index);
+        if (lock == null) {
+            // If another thread creates the lock first, its lock is used
+            locks.compareAndSet(index, null, new ReentrantLock());
+            lock = locks.get(index);
+        }
+        return lock;
+    }
+
+    /**
+     * Attempts to lock every account of the given range, waiting for each lock in ascending order until the timeout
+     * runs out. Locks held only for a short time by single commands are therefore taken as soon as they are released.
+     * If the timeout runs out, the locks taken so far are released again.
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @param timeoutNanos Maximum time to wait for all locks of the range, in nanoseconds
+     * @return True if all locks of the range were taken, they must be released with unlockRange()
+     * @throws IllegalArgumentException An account number is out of range
+     * @throws InterruptedException The thread was interrupted while waiting, no lock of the range is held
+     */
+    public boolean lockRange(int firstNumber, int lastNumber, long timeoutNanos)
+            throws IllegalArgumentException, InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (int accountNumber = firstNumber; accountNumber <= lastNumber; accountNumber++) {
+            boolean locked;
+            try {
+                locked = getLock(accountNumber).tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                unlockRange(firstNumber, accountNumber - 1);
+                throw e;
+            }
+            if (!locked) {
+                unlockRange(firstNumber, accountNumber - 1);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the locks of the given range taken by lockRange().
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     */
+    public void unlockRange(int firstNumber, int lastNumber) {
+        for (int accountNumber = lastNumber; accountNumber >= firstNumber; accountNumber--) {
+            getLock(accountNumber).unlock();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package database;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * This class takes exclusive application locks (sp_getapplock) in a database. The locks are owned by the session
+ * of the connection, so they are shared by every node using the database and are released when the connection
+ * is closed, also when the node holding them stops.
+ */
+public class ApplicationLocks {
+    /**
+     * This class only contains static methods.
+     */
+    private ApplicationLocks() {
+    }
+
+    /**
+     * Attempts to take the exclusive application lock with the given name for the session of the connection.
+     * @param connection Database connection, the lock is held until it is closed
+     * @param resource Name of the lock
+     * @param timeoutMillis How long to wait for the lock, 0 to not wait at all
+     * @return True if the lock was taken, false if another session holds it
+     * @throws SQLException The lock could not be requested
+     */
+    public static boolean acquire(Connection connection, String resource, int timeoutMillis) throws SQLException {
+        try (CallableStatement statement = connection.prepareCall("{? = call sp_getapplock(?, ?, ?, ?)}")) {
+            statement.registerOutParameter(1, Types.INTEGER);
+            statement.setString(2, resource);
+            statement.setString(3, "Exclusive");
+            statement.setString(4, "Session");
+            statement.setInt(5, timeoutMillis);
+            statement.execute();
+            // Negative results mean that the lock is held by another session or could not be requested
+            return statement.getInt(1) >= 0;
+        }
+    }
+
+    /**
+     * Returns whether the session of the connection holds the exclusive application lock with the given name.
+     * @param connection Database connection
+     * @param resource Name of the lock
+     * @return True if the lock is held
+     * @throws SQLException The database could not be asked
+     */
+    public static boolean isHeld(Connection connection, String resource) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT APPLOCK_MODE('public', ?, 'Session')")) {
+            statement.setString(1, resource);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && "Exclusive".equals(resultSet.getString(1));
+            }
+        }
+    }
+}
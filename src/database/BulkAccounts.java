@@ -0,0 +1,164 @@
+package database;
+
+import database.tables.BankAccount;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * This class exports all bank accounts to a file and imports them from one, so a bank can be moved
+ * to other databases. The file contains the line account_number,balance followed by one line per account.
+ * Both directions stream the accounts, so the memory used does not depend on the number of accounts.
+ * They are meant to be run while the node is stopped.
+ */
+public class BulkAccounts {
+    private static final String HEADER = "account_number,balance";
+    private static final int EXPORT_FETCH_SIZE = 10000;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int IMPORT_COMMIT_SIZE = 10000;
+
+    /**
+     * This class only contains static methods.
+     */
+    private BulkAccounts() {
+    }
+
+    /**
+     * Exports the accounts of every shard to the given file, ordered by their account number.
+     * @param file Path of the file, it is overwritten if it exists
+     * @return Number of exported accounts
+     * @throws SQLException A shard could not be reached or read
+     * @throws IOException The file could not be written
+     */
+    public static int exportAccounts(Path file) throws SQLException, IOException {
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        int[] count = {0};
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Shard shard : connector.getShards()) {
+                Connection connection = connector.getConnection(shard);
+                if (connection == null) {
+                    throw new SQLException("Failed to connect to shard " + shard.getIndex() + ".");
+                }
+                try {
+                    BankAccount.scan(connection, shard.getFirstAccountNumber(), shard.getLastAccountNumber(), EXPORT_FETCH_SIZE,
+                            (accountNumber, balance) -> {
+                                writer.write(accountNumber + "," + balance);
+                                writer.newLine();
+                                count[0]++;
+                            });
+                } finally {
+                    connector.closeConnection(connection);
+                }
+            }
+        }
+        return count[0];
+    }
+
+    /**
+     * Imports the accounts from the given file. Every shard receives its accounts in JDBC batches, which are
+     * committed periodically, so a large file is not imported in a single huge transaction. The import stops
+     * at the first invalid line or database error, the accounts committed before it stay in the database.
+     * @param file Path of the file
+     * @return Number of imported accounts
+     * @throws IllegalArgumentException A line of the file is invalid, or an account number is out of range
+     * or its balance is negative
+     * @throws SQLException A shard could not be reached, or an account could not be inserted (for example because it exists)
+     * @throws IOException The file could not be read
+     */
+    public static int importAccounts(Path file) throws IllegalArgumentException, SQLException, IOException {
+        String insertQuery = "INSERT INTO BankAccount (account_number, balance) VALUES (?, ?)";
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        int shardCount = connector.getShards().size();
+        Connection[] connections = new Connection[shardCount];
+        PreparedStatement[] statements = new PreparedStatement[shardCount];
+        int[] batched = new int[shardCount];
+        int[] uncommitted = new int[shardCount];
+        int count = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.strip().equals(HEADER))) {
+                    continue;
+                }
+                // BankAccount.create() checks the account number range and the balance
+                BankAccount account = parseLine(line, lineNumber);
+                Shard shard = connector.getShard(account.getAccountNumber());
+                int index = shard.getIndex();
+                if (statements[index] == null) {
+                    connections[index] = connector.getConnection(shard);
+                    if (connections[index] == null) {
+                        throw new SQLException("Failed to connect to shard " + index + ".");
+                    }
+                    connections[index].setAutoCommit(false);
+                    statements[index] = connections[index].prepareStatement(insertQuery);
+                }
+
+                statements[index].setInt(1, account.getAccountNumber());
+                statements[index].setLong(2, account.getBalance());
+                statements[index].addBatch();
+                if (++batched[index] == IMPORT_BATCH_SIZE) {
+                    statements[index].executeBatch();
+                    uncommitted[index] += batched[index];
+                    batched[index] = 0;
+                }
+                if (uncommitted[index] >= IMPORT_COMMIT_SIZE) {
+                    connections[index].commit();
+                    uncommitted[index] = 0;
+                }
+                count++;
+            }
+
+            for (int i = 0; i < shardCount; i++) {
+                if (statements[i] != null) {
+                    statements[i].executeBatch();
+                    connections[i].commit();
+                }
+            }
+        } finally {
+            for (int i = 0; i < shardCount; i++) {
+                if (connections[i] != null) {
+                    try {
+                        connections[i].rollback(); // Nothing is rolled back after a successful import
+                    } catch (SQLException e) {
+                        // The connection is closed either way
+                    }
+                    connector.closeConnection(connections[i]);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Parses a single line of the file.
+     * @param line Line in the format account_number,balance
+     * @param lineNumber Number of the line, used in error messages
+     * @return Bank account which has not been saved yet
+     * @throws IllegalArgumentException The line is invalid
+     */
+    private static BankAccount parseLine(String line, int lineNumber) throws IllegalArgumentException {
+        String[] values = line.split(",");
+        if (values.length != 2) {
+            throw new IllegalArgumentException("Line " + lineNumber + " must be in the format account_number,balance.");
+        }
+        try {
+            return BankAccount.create(0, Integer.parseInt(values[0].strip()), Long.parseLong(values[1].strip()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + " must be in the format account_number,balance.");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+        }
+    }
+}
@@ -3,17 +3,24 @@ package database;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class implements the Singleton design pattern and can be configured to
- * easily create new database connections.
+ * easily create new database connections. The account number range can be split into several
+ * shards, each stored in its own database. Every shard can also have read replicas, which
+ * read-only connections are distributed to in a round-robin fashion.
  */
 public class DatabaseConnector {
     private static DatabaseConnector instance;
     private Boolean configured = false;
-    private String url;
     private String user;
     private String password;
+    private List<Shard> shards = List.of();
+    private final AtomicInteger openConnections = new AtomicInteger();
 
     /**
      * Returns the Singleton instance of DatabaseConnector.
@@ -27,30 +34,59 @@ public class DatabaseConnector {
     }
 
     /**
-     * Configures the DatabaseConnector so that it can create new database connections.
+     * Configures the DatabaseConnector with a single database which owns all account numbers.
      * @param dbAddress Database address
      * @param dbName Database name
      * @param dbUser Database user
      * @param dbPassword Database password
+     * @param replicaAddresses Addresses of the read replicas (may be empty)
      */
-    public void configure(String dbAddress, String dbName, String dbUser, String dbPassword) {
-        if (!configured) {
-            this.url = "jdbc:sqlserver://" + dbAddress + ";databaseName=" + dbName + ";encrypt=true;trustServerCertificate=true;";
-            this.user = dbUser;
-            this.password = dbPassword;
-            configured = true;
+    public void configure(String dbAddress, String dbName, String dbUser, String dbPassword, List<String> replicaAddresses) {
+        configure(dbUser, dbPassword, List.of(Shard.create(0, 10000, 99999, dbAddress, dbName, replicaAddresses)));
+    }
+
+    /**
+     * Configures the DatabaseConnector with several shards. The shards must together cover
+     * the whole 10000 - 99999 account number range, without gaps and overlaps.
+     * @param dbUser Database user, shared by all shards
+     * @param dbPassword Database password, shared by all shards
+     * @param shards Shards, ordered by their index
+     * @throws IllegalArgumentException The shards do not cover the account number range exactly
+     */
+    public void configure(String dbUser, String dbPassword, List<Shard> shards) throws IllegalArgumentException {
+        if (configured) {
+            return;
+        }
+        List<Shard> sortedShards = new ArrayList<>(shards);
+        sortedShards.sort(Comparator.comparingInt(Shard::getFirstAccountNumber));
+        int expectedFirst = 10000;
+        for (int i = 0; i < sortedShards.size(); i++) {
+            Shard shard = sortedShards.get(i);
+            if (shard.getFirstAccountNumber() != expectedFirst || shard.getIndex() != i) {
+                throw new IllegalArgumentException("Shards must cover the account numbers 10000 - 99999 in order, without gaps.");
+            }
+            expectedFirst = shard.getLastAccountNumber() + 1;
         }
+        if (expectedFirst != 100000) {
+            throw new IllegalArgumentException("Shards must cover the account numbers 10000 - 99999 in order, without gaps.");
+        }
+        this.shards = List.copyOf(sortedShards);
+        this.user = dbUser;
+        this.password = dbPassword;
+        configured = true;
     }
 
     /**
-     * Creates a new Connection if it has been configured. It uses that configuration
-     * to create the new Connection.
+     * Creates a new Connection to the primary database of a shard.
+     * @param shard Shard the connection leads to
      * @return New database connection, or null if an error occurs or the DatabaseConnector has not been configured
      */
-    public Connection getConnection() {
+    public Connection getConnection(Shard shard) {
         if (configured) {
             try {
-                return DriverManager.getConnection(url, user, password);
+                Connection connection = DriverManager.getConnection(shard.getUrl(), user, password);
+                openConnections.incrementAndGet();
+                return connection;
             } catch (SQLException e) {
                 return null;
             }
@@ -58,4 +94,73 @@ public class DatabaseConnector {
             return null;
         }
     }
+
+    /**
+     * Creates a new Connection to one of the read replicas of a shard. Replicas are picked
+     * in a round-robin fashion. If a replica cannot be reached, the next one is tried.
+     * @param shard Shard the connection leads to
+     * @return New read replica connection, or null if the shard has no replicas or none of them can be reached
+     */
+    public Connection getReadConnection(Shard shard) {
+        if (!configured) {
+            return null;
+        }
+        String replicaUrl;
+        for (int attempt = 0; (replicaUrl = shard.nextReplicaUrl(attempt)) != null; attempt++) {
+            try {
+                Connection connection = DriverManager.getConnection(replicaUrl, user, password);
+                openConnections.incrementAndGet();
+                return connection;
+            } catch (SQLException e) {
+                // Try the next replica
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Closes a Connection created by this DatabaseConnector. Errors are ignored.
+     * @param connection Database connection, may be null
+     */
+    public void closeConnection(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        openConnections.decrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // The connection is unusable either way
+        }
+    }
+
+    /**
+     * Returns the number of connections created by this DatabaseConnector which have not been closed yet.
+     * @return Number of open connections
+     */
+    public int getOpenConnectionCount() {
+        return openConnections.get();
+    }
+
+    /**
+     * Returns the configured shards, ordered by their account number range.
+     * @return List of shards
+     */
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * Returns the shard which owns the given account number.
+     * @param accountNumber Bank account number
+     * @return Shard owning the account number, or null if the number is out of range
+     */
+    public Shard getShard(int accountNumber) {
+        for (Shard shard : shards) {
+            if (shard.contains(accountNumber)) {
+                return shard;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,30 @@
+package database;
+
+/**
+ * This record describes a committed change of a bank account.
+ * @param type Type of the change
+ * @param accountNumber Bank account number
+ * @param amount Amount of money deposited or withdrawn (0 for other types)
+ * @param balance Balance of the account after the change (0 for removed accounts)
+ * @param timestamp Time of the commit in milliseconds since the epoch
+ */
+public record Mutation(Type type, int accountNumber, long amount, long balance, long timestamp) {
+    /**
+     * Types of account changes.
+     */
+    public enum Type {
+        CREATE, DEPOSIT, WITHDRAW, REMOVE
+    }
+
+    /**
+     * Creates a new Mutation with the current time.
+     * @param type Type of the change
+     * @param accountNumber Bank account number
+     * @param amount Amount of money deposited or withdrawn
+     * @param balance Balance of the account after the change
+     * @return New Mutation instance
+     */
+    public static Mutation now(Type type, int accountNumber, long amount, long balance) {
+        return new Mutation(type, accountNumber, amount, balance, System.currentTimeMillis());
+    }
+}
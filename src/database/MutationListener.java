@@ -0,0 +1,14 @@
+package database;
+
+/**
+ * This interface is implemented by classes which react to committed account changes.
+ * Listeners are called on the thread which committed the change, so they must return quickly.
+ */
+@FunctionalInterface
+public interface MutationListener {
+    /**
+     * Called after an account change has been committed.
+     * @param mutation Committed change
+     */
+    void onMutation(Mutation mutation);
+}
@@ -0,0 +1,49 @@
+package database;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class implements the Singleton design pattern. Commands publish every committed account change
+ * through it, and it passes the change to all registered listeners.
+ */
+public class MutationPublisher {
+    private static MutationPublisher instance;
+    private final CopyOnWriteArrayList<MutationListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns the Singleton instance of MutationPublisher.
+     * @return Singleton instance of MutationPublisher
+     */
+    public static synchronized MutationPublisher getInstance() {
+        if (instance == null) {
+            instance = new MutationPublisher();
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a new listener.
+     * @param listener Listener being registered
+     */
+    public void addListener(MutationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     * @param listener Listener being unregistered
+     */
+    public void removeListener(MutationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Passes a committed change to all registered listeners.
+     * @param mutation Committed change
+     */
+    public void publish(Mutation mutation) {
+        for (MutationListener listener : listeners) {
+            listener.onMutation(mutation);
+        }
+    }
+}
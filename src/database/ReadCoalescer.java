@@ -0,0 +1,156 @@
+package database;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class implements the Singleton design pattern. It coalesces identical read queries which
+ * are executed at the same time, so only one of them reaches the database and the others wait for its result.
+ * Results can optionally be reused for a short staleness window. Every committed change invalidates
+ * all results read before it (the ReadCoalescer must be registered in the MutationPublisher),
+ * so a peer never receives a result older than its own change.
+ * Peers which must read their own writes from the primary database never share queries with other peers.
+ */
+public class ReadCoalescer implements MutationListener {
+    private static ReadCoalescer instance;
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CachedResult> cache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long stalenessNanos = 0;
+
+    /**
+     * A read query which can be shared by multiple peers.
+     * @param <T> Type of the query result
+     */
+    @FunctionalInterface
+    public interface Query<T> {
+        /**
+         * Executes the query.
+         * @return Query result
+         * @throws SQLException Error occurred while executing the query
+         */
+        T execute() throws SQLException;
+    }
+
+    /**
+     * A finished query result, along with the generation and time it was read at.
+     * @param value Query result
+     * @param generation Generation the result was read in
+     * @param readAt System.nanoTime() when the query finished
+     */
+    private record CachedResult(Object value, long generation, long readAt) {
+    }
+
+    /**
+     * Returns the Singleton instance of ReadCoalescer.
+     * @return Singleton instance of ReadCoalescer
+     */
+    public static synchronized ReadCoalescer getInstance() {
+        if (instance == null) {
+            instance = new ReadCoalescer();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the staleness window. Results are reused for this amount of time after the query finishes.
+     * @param stalenessMillis Staleness window in milliseconds, 0 disables reusing finished results
+     * @throws IllegalArgumentException Negative staleness window
+     */
+    public void configure(long stalenessMillis) throws IllegalArgumentException {
+        if (stalenessMillis < 0) {
+            throw new IllegalArgumentException("Read cache staleness must be equal to or greater than 0.");
+        }
+        this.stalenessNanos = stalenessMillis * 1_000_000L;
+    }
+
+    /**
+     * Executes the query, unless an identical query is already running or has finished within the
+     * staleness window. In that case, its result is returned instead.
+     * @param key Key identifying the query, identical queries must have identical keys
+     * @param primaryOnly True if the query must not be shared with queries running on read replicas
+     * @param query Query to be executed
+     * @return Query result
+     * @param <T> Type of the query result
+     * @throws SQLException Error occurred while executing the query
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T read(String key, boolean primaryOnly, Query<T> query) throws SQLException {
+        long currentGeneration = generation.get();
+        key = (primaryOnly ? "primary:" : "replica:") + key;
+
+        if (stalenessNanos > 0) {
+            CachedResult cached = cache.get(key);
+            if (cached != null && cached.generation() == currentGeneration
+                    && System.nanoTime() - cached.readAt() <= stalenessNanos) {
+                return (T) cached.value();
+            }
+        }
+
+        // Queries started before the last change are never joined
+        String flightKey = key + "@" + currentGeneration;
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, own);
+        if (existing != null) {
+            return (T) await(existing);
+        }
+
+        try {
+            T result = query.execute();
+            if (stalenessNanos > 0) {
+                cache.put(key, new CachedResult(result, currentGeneration, System.nanoTime()));
+            }
+            own.complete(result);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, own);
+        }
+    }
+
+    /**
+     * Invalidates all results read so far.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * Invalidates all results read so far, as the committed change may affect them.
+     * @param mutation Committed change
+     */
+    @Override
+    public void onMutation(Mutation mutation) {
+        invalidate();
+    }
+
+    /**
+     * Waits for a query started by another peer and returns its result.
+     * @param future Future of the running query
+     * @return Query result
+     * @throws SQLException The query failed, or the waiting thread was interrupted
+     */
+    private Object await(CompletableFuture<Object> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a shared query.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException("Shared query failed.", cause);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class represents one database which owns a contiguous range of account numbers.
+ * It contains the connection URL of the primary database and of its read replicas.
+ */
+public class Shard {
+    private final int index;
+    private final int firstAccountNumber;
+    private final int lastAccountNumber;
+    private final String url;
+    private final List<String> replicaUrls;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    /**
+     * This private constructor sets the required properties.
+     * @param index Position of the shard in the account number range
+     * @param firstAccountNumber First account number owned by the shard
+     * @param lastAccountNumber Last account number owned by the shard
+     * @param url Primary database URL
+     * @param replicaUrls Read replica URLs
+     */
+    private Shard(int index, int firstAccountNumber, int lastAccountNumber, String url, List<String> replicaUrls) {
+        this.index = index;
+        this.firstAccountNumber = firstAccountNumber;
+        this.lastAccountNumber = lastAccountNumber;
+        this.url = url;
+        this.replicaUrls = replicaUrls;
+    }
+
+    /**
+     * Attempts to create a new Shard instance.
+     * @param index Position of the shard in the account number range
+     * @param firstAccountNumber First account number owned by the shard
+     * @param lastAccountNumber Last account number owned by the shard
+     * @param dbAddress Database address
+     * @param dbName Database name
+     * @param replicaAddresses Addresses of the read replicas, they must use the same database name
+     * @return New Shard instance
+     * @throws IllegalArgumentException Invalid account number range
+     */
+    public static Shard create(int index, int firstAccountNumber, int lastAccountNumber, String dbAddress, String dbName,
+                               List<String> replicaAddresses) throws IllegalArgumentException {
+        if (firstAccountNumber < 10000 || lastAccountNumber > 99999 || firstAccountNumber > lastAccountNumber) {
+            throw new IllegalArgumentException("Shard account number range must be within 10000 and 99999.");
+        }
+        List<String> replicaUrls = new ArrayList<>();
+        for (String replicaAddress : replicaAddresses) {
+            replicaUrls.add(createUrl(replicaAddress, dbName));
+        }
+        return new Shard(index, firstAccountNumber, lastAccountNumber, createUrl(dbAddress, dbName), replicaUrls);
+    }
+
+    /**
+     * Checks if the shard owns the given account number.
+     * @param accountNumber Bank account number
+     * @return True if the account number is within the shard range, otherwise false
+     */
+    public boolean contains(int accountNumber) {
+        return accountNumber >= firstAccountNumber && accountNumber <= lastAccountNumber;
+    }
+
+    /**
+     * Returns the URL of the next read replica, picked in a round-robin fashion.
+     * @param attempt Number of replicas already tried for the current connection
+     * @return Read replica URL, or null if there are no more replicas to try
+     */
+    String nextReplicaUrl(int attempt) {
+        if (attempt >= replicaUrls.size()) {
+            return null;
+        }
+        return replicaUrls.get(Math.floorMod(nextReplica.getAndIncrement(), replicaUrls.size()));
+    }
+
+    /**
+     * Returns whether the shard has any read replicas.
+     * @return True if at least one read replica is configured
+     */
+    public boolean hasReplicas() {
+        return !replicaUrls.isEmpty();
+    }
+
+    /**
+     * Returns the position of the shard in the account number range.
+     * @return Shard index, starting at 0
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the first account number owned by the shard.
+     * @return First account number
+     */
+    public int getFirstAccountNumber() {
+        return firstAccountNumber;
+    }
+
+    /**
+     * Returns the last account number owned by the shard.
+     * @return Last account number
+     */
+    public int getLastAccountNumber() {
+        return lastAccountNumber;
+    }
+
+    /**
+     * Returns the primary database URL.
+     * @return Primary database URL
+     */
+    String getUrl() {
+        return url;
+    }
+
+    /**
+     * Creates a JDBC connection URL.
+     * @param dbAddress Database address
+     * @param dbName Database name
+     * @return JDBC connection URL
+     */
+    private static String createUrl(String dbAddress, String dbName) {
+        return "jdbc:sqlserver://" + dbAddress + ";databaseName=" + dbName + ";encrypt=true;trustServerCertificate=true;";
+    }
+}
@@ -0,0 +1,493 @@
+package database;
+
+import audit.AuditJournal;
+import audit.AuditRecord;
+import cluster.ClusterManager;
+import stats.DatabaseTimer;
+import trace.Stage;
+import trace.Tracer;
+
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class holds the database connections of a single peer, one primary and one read connection
+ * per shard. Connections are created when they are first needed. Read connections lead to a read replica,
+ * unless the peer has changed data recently, so that the peer always reads its own writes.
+ * The peer may also open a batch: its changes are then made in a single transaction of one shard,
+ * the accounts it changed stay locked and the changes are published only after the batch is committed.
+ * Successful changes of a batch are audited when the batch ends, as OK if it is committed, or as ROLLED_BACK.
+ */
+public class ShardConnections {
+    private static final ExecutorService scatterExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shard-query");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile long readYourWritesNanos = 5_000_000_000L;
+    private static volatile long accountLockMillis = 2000;
+    private static final long BATCH_LOCK_TIMEOUT = 2000;
+
+    private final List<Shard> shards;
+    private final Connection[] connections;
+    private final Connection[] readConnections;
+    private volatile long lastWriteAt = Long.MIN_VALUE;
+    private boolean inBatch = false;
+    private Shard batchShard = null;
+    private String batchFailure = null;
+    private final List<ReentrantLock> batchLocks = new ArrayList<>();
+    private final List<Mutation> batchMutations = new ArrayList<>();
+    private final List<PendingAudit> batchAudits = new ArrayList<>();
+    private final DatabaseTimer databaseTimer = new DatabaseTimer();
+
+    /**
+     * A successful change of a batch, which is audited when the batch ends.
+     * @param type Type of the command
+     * @param socket Peer's socket
+     * @param accountNumber Bank account number
+     * @param amount Amount of money deposited or withdrawn (0 for other types)
+     * @param balance Balance of the account after the command
+     */
+    private record PendingAudit(AuditRecord.Type type, Socket socket, int accountNumber, long amount, long balance) {
+    }
+
+    /**
+     * A query executed on every shard by the scatter-gather methods.
+     * @param <T> Type of the query result
+     */
+    @FunctionalInterface
+    public interface ShardQuery<T> {
+        /**
+         * Executes the query on one shard.
+         * @param connection Connection to the shard
+         * @return Query result
+         * @throws SQLException Error occurred while executing the query
+         */
+        T execute(Connection connection) throws SQLException;
+    }
+
+    /**
+     * This constructor creates empty connection slots for every configured shard.
+     */
+    public ShardConnections() {
+        this.shards = DatabaseConnector.getInstance().getShards();
+        this.connections = new Connection[shards.size()];
+        this.readConnections = new Connection[shards.size()];
+    }
+
+    /**
+     * Returns the timer measuring the time the peer's connections spend in the database.
+     * @return Database timer
+     */
+    public DatabaseTimer getDatabaseTimer() {
+        return databaseTimer;
+    }
+
+    /**
+     * Sets how long after a change the peer keeps reading from the primary databases.
+     * It should be greater than the maximum replication lag of the read replicas.
+     * @param millis Read-your-writes window in milliseconds
+     */
+    public static void setReadYourWritesWindow(long millis) {
+        readYourWritesNanos = millis * 1_000_000L;
+    }
+
+    /**
+     * Sets how long a change outside a batch waits for the lock of its account, for example while a batch
+     * of another peer holds it, before it is refused.
+     * @param millis Account lock timeout in milliseconds
+     */
+    public static void setAccountLockTimeout(long millis) {
+        accountLockMillis = millis;
+    }
+
+    /**
+     * Returns the primary connection to the shard owning the given account number.
+     * @param accountNumber Bank account number
+     * @return Database connection, or null if it cannot be created
+     */
+    public Connection getConnection(int accountNumber) {
+        long traceStart = Tracer.getInstance().start();
+        Shard shard = DatabaseConnector.getInstance().getShard(accountNumber);
+        Connection connection = shard == null ? null : getConnection(shard);
+        Tracer.getInstance().stage(Stage.CONNECTION, null, traceStart);
+        return connection;
+    }
+
+    /**
+     * Returns the primary connection to the given shard. In a batch, the first shard used becomes
+     * the shard of the batch, its connection is switched to a transaction, and other shards cannot be used.
+     * @param shard Shard
+     * @return Database connection, or null if it cannot be created or the batch uses another shard
+     */
+    public synchronized Connection getConnection(Shard shard) {
+        if (inBatch && batchShard != null && batchShard != shard) {
+            return null;
+        }
+        int index = shard.getIndex();
+        if (connections[index] == null) {
+            connections[index] = databaseTimer.wrap(DatabaseConnector.getInstance().getConnection(shard));
+        }
+        if (inBatch && batchShard == null && connections[index] != null) {
+            try {
+                connections[index].setAutoCommit(false);
+                batchShard = shard;
+            } catch (SQLException e) {
+                return null;
+            }
+        }
+        return connections[index];
+    }
+
+    /**
+     * Returns the read connection to the shard owning the given account number.
+     * @param accountNumber Bank account number
+     * @return Database connection, or null if it cannot be created
+     */
+    public Connection getReadConnection(int accountNumber) {
+        long traceStart = Tracer.getInstance().start();
+        Shard shard = DatabaseConnector.getInstance().getShard(accountNumber);
+        Connection connection = shard == null ? null : getReadConnection(shard);
+        Tracer.getInstance().stage(Stage.CONNECTION, null, traceStart);
+        return connection;
+    }
+
+    /**
+     * Returns the read connection to the given shard. The primary connection is returned if the shard
+     * has no reachable replicas, or if the peer has changed data within the read-your-writes window.
+     * @param shard Shard
+     * @return Database connection, or null if it cannot be created
+     */
+    public synchronized Connection getReadConnection(Shard shard) {
+        if (readsFromPrimary() || !shard.hasReplicas()) {
+            return getConnection(shard);
+        }
+        int index = shard.getIndex();
+        if (readConnections[index] == null) {
+            readConnections[index] = databaseTimer.wrap(DatabaseConnector.getInstance().getReadConnection(shard));
+        }
+        return readConnections[index] != null ? readConnections[index] : getConnection(shard);
+    }
+
+    /**
+     * Executes a query on every shard in parallel and returns the results in shard order.
+     * @param read True to use the read connections, false to use the primary connections
+     * @param query Query executed on every shard
+     * @return List of results, one per shard
+     * @param <T> Type of the query result
+     * @throws SQLException A connection could not be created, or the query failed on a shard
+     */
+    public <T> List<T> queryAll(boolean read, ShardQuery<T> query) throws SQLException {
+        List<Connection> shardConnections = new ArrayList<>();
+        for (Shard shard : shards) {
+            Connection connection = read ? getReadConnection(shard) : getConnection(shard);
+            if (connection == null) {
+                throw new SQLException("Failed to connect to shard " + shard.getIndex() + ".");
+            }
+            shardConnections.add(connection);
+        }
+
+        // A single shard is queried directly, without handing it to another thread
+        if (shardConnections.size() == 1) {
+            return Collections.singletonList(query.execute(shardConnections.get(0)));
+        }
+
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (Connection connection : shardConnections) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return query.execute(connection);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, scatterExecutor));
+        }
+
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Returns whether read-only commands currently have to use the primary databases,
+     * because the peer has changed data within the read-your-writes window.
+     * @return True if reads go to the primary databases
+     */
+    public boolean readsFromPrimary() {
+        return lastWriteAt != Long.MIN_VALUE && System.nanoTime() - lastWriteAt < readYourWritesNanos;
+    }
+
+    /**
+     * Marks that the peer has just changed data in the database.
+     */
+    public void markWrite() {
+        lastWriteAt = System.nanoTime();
+    }
+
+    /**
+     * Locks the given account for a change. Outside a batch, the caller waits for the lock at most for the account
+     * lock timeout, so a change of an account held by a batch is refused instead of blocking the peer and its
+     * connection, and releases it with unlockAccount(). In a batch, the lock is held until the batch ends, and
+     * the caller does not wait longer than a short timeout, so two batches locking the same accounts in a different
+     * order cannot wait forever.
+     * In the cluster mode, the account may have been handed over to another node while the caller waited,
+     * so its owner is checked again once the lock is held.
+     * @param accountNumber Bank account number
+     * @return Lock of the account
+     * @throws SQLException The account is busy or locked by another batch, or it is owned by another node
+     */
+    public ReentrantLock lockAccount(int accountNumber) throws SQLException {
+        ReentrantLock lock = AccountLocks.getInstance().getLock(accountNumber);
+        long traceStart = Tracer.getInstance().start();
+        if (!inBatch) {
+            try {
+                if (!lock.tryLock(accountLockMillis, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("Account is busy.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for account " + accountNumber + ".", e);
+            } finally {
+                Tracer.getInstance().stage(Stage.LOCK, null, traceStart);
+            }
+            checkOwner(accountNumber, lock);
+            return lock;
+        }
+        if (lock.isHeldByCurrentThread()) {
+            return lock;
+        }
+        try {
+            if (!lock.tryLock(BATCH_LOCK_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Account " + accountNumber + " is locked by another batch.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for account " + accountNumber + ".", e);
+        } finally {
+            Tracer.getInstance().stage(Stage.LOCK, null, traceStart);
+        }
+        checkOwner(accountNumber, lock);
+        batchLocks.add(lock);
+        return lock;
+    }
+
+    /**
+     * Checks that this node still owns an account it has just locked. If it does not, the lock is released.
+     * @param accountNumber Bank account number
+     * @param lock Lock of the account, held by the current thread
+     * @throws SQLException The account is owned by another node
+     */
+    private void checkOwner(int accountNumber, ReentrantLock lock) throws SQLException {
+        if (!ClusterManager.getInstance().isLocal(accountNumber)) {
+            lock.unlock();
+            // The message is the response a forwarding node recognizes, so it refreshes its routing table
+            throw new SQLException(ClusterManager.NOT_OWNER_RESPONSE.substring(3));
+        }
+    }
+
+    /**
+     * Releases a lock returned by lockAccount(). In a batch, locks are held until the batch ends.
+     * @param lock Lock of the account
+     */
+    public void unlockAccount(ReentrantLock lock) {
+        if (!inBatch) {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Publishes a committed change. In a batch, the change is published after the batch is committed.
+     * @param mutation Change of an account
+     */
+    public void publish(Mutation mutation) {
+        if (inBatch) {
+            batchMutations.add(mutation);
+        } else {
+            MutationPublisher.getInstance().publish(mutation);
+        }
+    }
+
+    /**
+     * Audits a successful change. In a batch, the change is audited after the batch ends, as OK if the batch
+     * is committed, or as ROLLED_BACK if it is not.
+     * @param type Type of the command
+     * @param socket Peer's socket
+     * @param accountNumber Bank account number
+     * @param amount Amount of money deposited or withdrawn (0 for other types)
+     * @param balance Balance of the account after the command
+     */
+    public void auditSuccess(AuditRecord.Type type, Socket socket, int accountNumber, long amount, long balance) {
+        if (inBatch) {
+            batchAudits.add(new PendingAudit(type, socket, accountNumber, amount, balance));
+        } else {
+            AuditJournal.getInstance().record(type, socket, accountNumber, amount, balance, AuditRecord.Result.OK);
+        }
+    }
+
+    /**
+     * Opens a batch. The following changes are made in a single transaction.
+     * @throws IllegalStateException A batch is already open
+     */
+    public synchronized void beginBatch() throws IllegalStateException {
+        if (inBatch) {
+            throw new IllegalStateException("A batch is already open.");
+        }
+        inBatch = true;
+        batchShard = null;
+        batchFailure = null;
+    }
+
+    /**
+     * Returns whether a batch is open.
+     * @return True if a batch is open
+     */
+    public boolean isInBatch() {
+        return inBatch;
+    }
+
+    /**
+     * Checks if the given shard can be used in the open batch.
+     * @param shard Shard
+     * @return True if no batch is open, the batch has not used any shard yet, or it uses the given one
+     */
+    public synchronized boolean isBatchShard(Shard shard) {
+        return !inBatch || batchShard == null || batchShard == shard;
+    }
+
+    /**
+     * Returns the shard the open batch uses.
+     * @return Shard, or null if the batch has not used any shard yet
+     */
+    public synchronized Shard getBatchShard() {
+        return batchShard;
+    }
+
+    /**
+     * Marks the open batch as failed, it will be rolled back instead of committed.
+     * The first failure is kept.
+     * @param reason Reason of the failure
+     */
+    public synchronized void failBatch(String reason) {
+        if (inBatch && batchFailure == null) {
+            batchFailure = reason;
+        }
+    }
+
+    /**
+     * Commits the open batch and publishes its changes. If a command of the batch failed,
+     * the batch is rolled back instead. The batch is closed either way.
+     * @throws SQLException The batch failed or could not be committed, it was rolled back
+     * @throws IllegalStateException No batch is open
+     */
+    public synchronized void commitBatch() throws SQLException, IllegalStateException {
+        if (!inBatch) {
+            throw new IllegalStateException("No batch is open.");
+        }
+        if (batchFailure != null) {
+            String reason = batchFailure;
+            rollbackBatch();
+            throw new SQLException(reason);
+        }
+        Connection connection = batchShard == null ? null : connections[batchShard.getIndex()];
+        try {
+            if (connection != null) {
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            rollbackBatch();
+            throw e;
+        }
+        // The changes are published while the accounts are still locked, so a newer change of another peer
+        // cannot be published before them
+        for (Mutation mutation : batchMutations) {
+            MutationPublisher.getInstance().publish(mutation);
+        }
+        List<PendingAudit> audits = new ArrayList<>(batchAudits);
+        endBatch();
+        writeAudits(audits, AuditRecord.Result.OK);
+    }
+
+    /**
+     * Rolls back the open batch and closes it. Nothing is done if no batch is open.
+     */
+    public synchronized void rollbackBatch() {
+        if (!inBatch) {
+            return;
+        }
+        Connection connection = batchShard == null ? null : connections[batchShard.getIndex()];
+        if (connection != null) {
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                // The connection is broken, it is replaced by a new one
+                DatabaseConnector.getInstance().closeConnection(connection);
+                connections[batchShard.getIndex()] = null;
+            }
+        }
+        List<PendingAudit> audits = new ArrayList<>(batchAudits);
+        endBatch();
+        writeAudits(audits, AuditRecord.Result.ROLLED_BACK);
+    }
+
+    /**
+     * Writes the audit records of the changes of a batch which has ended.
+     * @param audits Changes of the batch
+     * @param result OK if the batch was committed, ROLLED_BACK if it was not
+     */
+    private void writeAudits(List<PendingAudit> audits, AuditRecord.Result result) {
+        for (PendingAudit audit : audits) {
+            AuditJournal.getInstance().record(audit.type(), audit.socket(), audit.accountNumber(), audit.amount(),
+                    audit.balance(), result);
+        }
+    }
+
+    /**
+     * Closes the batch, releases the locks of its accounts and forgets its changes and their audit records.
+     */
+    private void endBatch() {
+        for (ReentrantLock lock : batchLocks) {
+            lock.unlock();
+        }
+        batchLocks.clear();
+        batchMutations.clear();
+        batchAudits.clear();
+        inBatch = false;
+        batchShard = null;
+        batchFailure = null;
+    }
+
+    /**
+     * Closes all connections created so far. An open batch is rolled back.
+     */
+    public synchronized void close() {
+        rollbackBatch();
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        for (int i = 0; i < shards.size(); i++) {
+            connector.closeConnection(readConnections[i]);
+            connector.closeConnection(connections[i]);
+            readConnections[i] = null;
+            connections[i] = null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package database.tables;
+
+import database.Mutation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents the AccountHistory table in the database. The table is append-only, every committed
+ * change of an account adds one row, which is never changed afterwards. Rows are clustered by the account number
+ * and time, so the history of an account is read with an index seek, without scanning the histories of others.
+ */
+public class AccountHistory {
+    /**
+     * A single recorded change of an account.
+     * @param timestamp Time of the commit in milliseconds since the epoch
+     * @param type Type of the change
+     * @param amount Amount of money deposited or withdrawn (0 for other types)
+     * @param balance Balance of the account after the change
+     */
+    public record Entry(long timestamp, Mutation.Type type, long amount, long balance) {
+    }
+
+    /**
+     * This class only contains static methods.
+     */
+    private AccountHistory() {
+    }
+
+    /**
+     * Inserts the given changes using a single JDBC batch and commits them in one transaction.
+     * @param connection Database connection
+     * @param mutations Committed changes of accounts stored in the connection's database
+     * @throws SQLException Error occurred while inserting, nothing was inserted
+     */
+    public static void insertBatch(Connection connection, List<Mutation> mutations) throws SQLException {
+        String insertQuery = "INSERT INTO AccountHistory (account_number, created_at, type, amount, balance) VALUES (?, ?, ?, ?, ?)";
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(insertQuery)) {
+            for (Mutation mutation : mutations) {
+                statement.setInt(1, mutation.accountNumber());
+                statement.setLong(2, mutation.timestamp());
+                statement.setByte(3, (byte)mutation.type().ordinal());
+                statement.setLong(4, mutation.amount());
+                statement.setLong(5, mutation.balance());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex; // Propagate the exception
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Returns the newest recorded changes of an account within a time range, newest first.
+     * @param connection Database connection
+     * @param accountNumber Bank account number
+     * @param from Start of the time range in milliseconds since the epoch (inclusive)
+     * @param to End of the time range in milliseconds since the epoch (inclusive)
+     * @param limit Maximum number of returned changes
+     * @return List of changes
+     * @throws SQLException Error occurred while reading the history
+     */
+    public static List<Entry> find(Connection connection, int accountNumber, long from, long to, int limit) throws SQLException {
+        String selectQuery = "SELECT TOP (?) created_at, type, amount, balance FROM AccountHistory "
+                + "WHERE account_number = ? AND created_at BETWEEN ? AND ? ORDER BY created_at DESC, id DESC";
+
+        List<Entry> entries = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(selectQuery)) {
+            statement.setInt(1, limit);
+            statement.setInt(2, accountNumber);
+            statement.setLong(3, from);
+            statement.setLong(4, to);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Mutation.Type[] types = Mutation.Type.values();
+                while (resultSet.next()) {
+                    int type = resultSet.getByte(2);
+                    if (type < 0 || type >= types.length) {
+                        continue; // Written by a newer version, which knows more types of changes
+                    }
+                    entries.add(new Entry(resultSet.getLong(1), types[type], resultSet.getLong(3), resultSet.getLong(4)));
+                }
+            }
+        }
+        return entries;
+    }
+}
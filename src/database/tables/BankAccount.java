@@ -1,12 +1,19 @@
 package database.tables;
 
+import database.Mutation;
+
+import java.io.IOException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /**
  * This class represents the BankAccount table in the database, with properties id, accountNumber
  * (account_number in the database) and balance. It contains CRUD methods such as insert, update and delete,
- * but also other helpful methods.
+ * but also other helpful methods. Every request works with its own instance, concurrent changes
+ * of the same account are serialized by the caller using AccountLocks. Every database call is measured
+ * by a DatabaseCall, for Java Flight Recorder and for the Tracer.
  */
 public class BankAccount {
     private int id;
@@ -55,7 +62,7 @@ public class BankAccount {
      * @param connection Database connection
      * @throws SQLException Error occurred while inserting/updating
      */
-    public synchronized void save(Connection connection) throws SQLException {
+    public void save(Connection connection) throws SQLException {
         if (id == 0) {
             insert(connection);
         } else {
@@ -68,14 +75,16 @@ public class BankAccount {
      * @param connection Database connection
      * @throws SQLException Error occurred while inserting
      */
-    private synchronized void insert(Connection connection) throws SQLException {
+    private void insert(Connection connection) throws SQLException {
         String insertQuery = "INSERT INTO BankAccount (account_number, balance) VALUES (?, ?)";
-        connection.setAutoCommit(false);
+        boolean ownTransaction = beginTransaction(connection);
 
         try (PreparedStatement statement = connection.prepareStatement(insertQuery, Statement.RETURN_GENERATED_KEYS)) {
             statement.setInt(1, accountNumber);
             statement.setLong(2, balance);
+            DatabaseCall call = DatabaseCall.start();
             int affectedRows = statement.executeUpdate();
+            call.end("insert", "INSERT", affectedRows, false);
 
             if (affectedRows > 0) {
                 try (ResultSet ids = statement.getGeneratedKeys()) {
@@ -84,13 +93,13 @@ public class BankAccount {
                     }
                 }
             }
-            connection.commit();
+            commitTransaction(connection, ownTransaction, "insert");
         } catch (SQLException ex) {
             System.out.println("Failed to insert bank account, rolling back.");
-            connection.rollback();
+            rollbackTransaction(connection, ownTransaction, "insert");
             throw ex; // Propagate the exception
         } finally {
-            connection.setAutoCommit(true);
+            endTransaction(connection, ownTransaction);
         }
     }
 
@@ -99,33 +108,38 @@ public class BankAccount {
      * @param connection Database connection
      * @throws SQLException Error occurred while updating
      */
-    private synchronized void update(Connection connection) throws SQLException {
+    private void update(Connection connection) throws SQLException {
         String selectQuery = "SELECT * FROM BankAccount WITH (UPDLOCK, ROWLOCK) WHERE id = ?"; // Ensures concurrency safety
         String updateQuery = "UPDATE BankAccount SET balance = ? WHERE id = ?";
 
-        connection.setAutoCommit(false);
+        boolean ownTransaction = beginTransaction(connection);
 
         try (PreparedStatement selectStatement = connection.prepareStatement(selectQuery)) {
             selectStatement.setInt(1, this.id);
 
+            DatabaseCall selectCall = DatabaseCall.start();
             ResultSet rs = selectStatement.executeQuery();
-            if (!rs.next()) {
+            boolean found = rs.next();
+            selectCall.end("update", "SELECT", found ? 1 : 0, true);
+            if (!found) {
                 throw new SQLException("Account not found.");
             }
 
             try (PreparedStatement statement = connection.prepareStatement(updateQuery)) {
                 statement.setLong(1, this.balance);
                 statement.setInt(2, this.id);
-                statement.executeUpdate();
-                connection.commit();
+                DatabaseCall updateCall = DatabaseCall.start();
+                int affectedRows = statement.executeUpdate();
+                updateCall.end("update", "UPDATE", affectedRows, false);
+                commitTransaction(connection, ownTransaction, "update");
             }
 
         } catch (SQLException ex) {
             System.out.println("Failed to update bank account, rolling back.");
-            connection.rollback();
+            rollbackTransaction(connection, ownTransaction, "update");
             throw ex; // Propagate the exception
         } finally {
-            connection.setAutoCommit(true);
+            endTransaction(connection, ownTransaction);
         }
     }
 
@@ -134,20 +148,81 @@ public class BankAccount {
      * @param connection Database connection
      * @throws SQLException Error occurred while deleting
      */
-    public synchronized void delete(Connection connection) throws SQLException {
+    public void delete(Connection connection) throws SQLException {
         String deleteQuery = "DELETE FROM BankAccount WHERE id = ?";
-        connection.setAutoCommit(false);
+        boolean ownTransaction = beginTransaction(connection);
 
         try (PreparedStatement statement = connection.prepareStatement(deleteQuery)) {
             statement.setInt(1, id);
-            statement.executeUpdate();
-            connection.commit();
+            DatabaseCall call = DatabaseCall.start();
+            int affectedRows = statement.executeUpdate();
+            call.end("delete", "DELETE", affectedRows, false);
+            commitTransaction(connection, ownTransaction, "delete");
             this.id = 0;
         } catch (SQLException ex) {
             System.out.println("Failed to delete bank account, rolling back.");
-            connection.rollback();
+            rollbackTransaction(connection, ownTransaction, "delete");
             throw ex; // Propagate the exception
         } finally {
+            endTransaction(connection, ownTransaction);
+        }
+    }
+
+    /**
+     * Starts a transaction for a single change, unless the connection is already in a transaction
+     * (a batch of commands), which the change then becomes a part of.
+     * @param connection Database connection
+     * @return True if the change has its own transaction, false if it is a part of an outer transaction
+     * @throws SQLException Error occurred while starting the transaction
+     */
+    private static boolean beginTransaction(Connection connection) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            return false;
+        }
+        connection.setAutoCommit(false);
+        return true;
+    }
+
+    /**
+     * Commits the transaction of a single change. Changes of an outer transaction are committed by its owner.
+     * @param connection Database connection
+     * @param ownTransaction True if the change has its own transaction
+     * @param operation BankAccount method which made the change
+     * @throws SQLException Error occurred while committing
+     */
+    private static void commitTransaction(Connection connection, boolean ownTransaction, String operation)
+            throws SQLException {
+        if (ownTransaction) {
+            DatabaseCall call = DatabaseCall.start();
+            connection.commit();
+            call.end(operation, "COMMIT", 0, false);
+        }
+    }
+
+    /**
+     * Rolls back the transaction of a single change. An outer transaction is rolled back by its owner.
+     * @param connection Database connection
+     * @param ownTransaction True if the change has its own transaction
+     * @param operation BankAccount method which made the change
+     * @throws SQLException Error occurred while rolling back
+     */
+    private static void rollbackTransaction(Connection connection, boolean ownTransaction, String operation)
+            throws SQLException {
+        if (ownTransaction) {
+            DatabaseCall call = DatabaseCall.start();
+            connection.rollback();
+            call.end(operation, "ROLLBACK", 0, false);
+        }
+    }
+
+    /**
+     * Ends the transaction of a single change and restores the auto-commit mode.
+     * @param connection Database connection
+     * @param ownTransaction True if the change has its own transaction
+     * @throws SQLException Error occurred while restoring the auto-commit mode
+     */
+    private static void endTransaction(Connection connection, boolean ownTransaction) throws SQLException {
+        if (ownTransaction) {
             connection.setAutoCommit(true);
         }
     }
@@ -158,7 +233,7 @@ public class BankAccount {
      * @param amount Amount of money being deposited
      * @throws IllegalArgumentException Invalid deposit amount
      */
-    public synchronized void deposit(long amount) throws IllegalArgumentException {
+    public void deposit(long amount) throws IllegalArgumentException {
         if (amount <= 0) {
             throw new IllegalArgumentException("Deposit amount must be greater than 0.");
         }
@@ -172,7 +247,7 @@ public class BankAccount {
      * @param amount Amount of money being withdrawn
      * @throws IllegalArgumentException Invalid withdraw amount
      */
-    public synchronized void withdraw(long amount) throws IllegalArgumentException {
+    public void withdraw(long amount) throws IllegalArgumentException {
         if (amount <= 0) {
             throw new IllegalArgumentException("Withdraw amount must be greater than 0.");
         }
@@ -183,19 +258,109 @@ public class BankAccount {
     }
 
     /**
-     * Retrieves the total amount of balance from the database. It is the sum of all
-     * bank account balance. If no sum was found, 0 is returned.
+     * Moves money between two bank accounts in a single transaction. Both rows are locked in the
+     * order of their account numbers, so concurrent transfers cannot deadlock each other, and both balances
+     * are changed by one update. Both accounts must be stored in the database the connection leads to.
      * @param connection Database connection
-     * @return Total bank balance
+     * @param fromNumber Account number the money is withdrawn from
+     * @param toNumber Account number the money is deposited to
+     * @param amount Amount of money being transferred, must be greater than 0
+     * @return New balances of both accounts
+     * @throws IllegalArgumentException Invalid amount, an account was not found, or not enough balance
+     * @throws SQLException Error occurred while transferring, the transaction is rolled back
+     */
+    public static TransferResult transfer(Connection connection, int fromNumber, int toNumber, long amount)
+            throws IllegalArgumentException, SQLException {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be greater than 0.");
+        }
+        if (fromNumber == toNumber) {
+            throw new IllegalArgumentException("Cannot transfer money to the same bank account.");
+        }
+        String selectQuery = "SELECT account_number, balance FROM BankAccount WITH (UPDLOCK, ROWLOCK) "
+                + "WHERE account_number IN (?, ?) ORDER BY account_number";
+        String updateQuery = "UPDATE BankAccount SET balance = CASE WHEN account_number = ? THEN balance - ? ELSE balance + ? END "
+                + "WHERE account_number IN (?, ?)";
+
+        boolean ownTransaction = beginTransaction(connection);
+        try {
+            long fromBalance = -1;
+            long toBalance = -1;
+            try (PreparedStatement selectStatement = connection.prepareStatement(selectQuery)) {
+                selectStatement.setInt(1, fromNumber);
+                selectStatement.setInt(2, toNumber);
+                DatabaseCall selectCall = DatabaseCall.start();
+                ResultSet resultSet = selectStatement.executeQuery();
+                int rows = 0;
+                while (resultSet.next()) {
+                    rows++;
+                    if (resultSet.getInt("account_number") == fromNumber) {
+                        fromBalance = resultSet.getLong("balance");
+                    } else {
+                        toBalance = resultSet.getLong("balance");
+                    }
+                }
+                selectCall.end("transfer", "SELECT", rows, true);
+            }
+            if (fromBalance < 0 || toBalance < 0) {
+                throw new IllegalArgumentException("Account not found.");
+            }
+            if (amount > fromBalance) {
+                throw new IllegalArgumentException("Not enough balance on the bank account.");
+            }
+            if (toBalance > Long.MAX_VALUE - amount) {
+                throw new IllegalArgumentException("Transfer would exceed the maximum balance of the bank account.");
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(updateQuery)) {
+                statement.setInt(1, fromNumber);
+                statement.setLong(2, amount);
+                statement.setLong(3, amount);
+                statement.setInt(4, fromNumber);
+                statement.setInt(5, toNumber);
+                DatabaseCall updateCall = DatabaseCall.start();
+                int affectedRows = statement.executeUpdate();
+                updateCall.end("transfer", "UPDATE", affectedRows, false);
+            }
+            commitTransaction(connection, ownTransaction, "transfer");
+            return new TransferResult(fromBalance - amount, toBalance + amount);
+        } catch (SQLException | IllegalArgumentException ex) {
+            rollbackTransaction(connection, ownTransaction, "transfer");
+            throw ex; // Propagate the exception
+        } finally {
+            endTransaction(connection, ownTransaction);
+        }
+    }
+
+    /**
+     * Balances of both accounts after a transfer.
+     * @param fromBalance New balance of the account the money was withdrawn from
+     * @param toBalance New balance of the account the money was deposited to
+     */
+    public record TransferResult(long fromBalance, long toBalance) {
+    }
+
+    /**
+     * Retrieves the total amount of balance in the given account number range from the database.
+     * It is the sum of the bank account balance. If no sum was found, 0 is returned.
+     * @param connection Database connection
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @return Total balance in the range
      * @throws SQLException Error occurred while retrieving total balance
      */
-    public static int getTotalBalance(Connection connection) throws SQLException {
-        String selectQuery = "SELECT SUM(balance) AS total FROM BankAccount";
+    public static long getTotalBalance(Connection connection, int firstNumber, int lastNumber) throws SQLException {
+        String selectQuery = "SELECT SUM(balance) AS total FROM BankAccount WHERE account_number BETWEEN ? AND ?";
 
         try (PreparedStatement statement = connection.prepareStatement(selectQuery)) {
+            statement.setInt(1, firstNumber);
+            statement.setInt(2, lastNumber);
+            DatabaseCall call = DatabaseCall.start();
             ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                return resultSet.getInt("total");
+            boolean found = resultSet.next();
+            call.end("getTotalBalance", "SELECT", found ? 1 : 0, false);
+            if (found) {
+                return resultSet.getLong("total");
             } else {
                 return 0;
             }
@@ -203,17 +368,24 @@ public class BankAccount {
     }
 
     /**
-     * Retrieves the total amount of bank accounts in the database.
+     * Retrieves the amount of bank accounts in the given account number range from the database.
      * @param connection Database connection
-     * @return Amount of bank accounts in the database
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @return Amount of bank accounts in the range
      * @throws SQLException Database error occurred while retrieving amount of accounts
      */
-    public static int getAccountAmount(Connection connection) throws SQLException {
-        String selectQuery = "SELECT COUNT(*) AS accounts FROM BankAccount";
+    public static int getAccountAmount(Connection connection, int firstNumber, int lastNumber) throws SQLException {
+        String selectQuery = "SELECT COUNT(*) AS accounts FROM BankAccount WHERE account_number BETWEEN ? AND ?";
 
         try (PreparedStatement statement = connection.prepareStatement(selectQuery)) {
+            statement.setInt(1, firstNumber);
+            statement.setInt(2, lastNumber);
+            DatabaseCall call = DatabaseCall.start();
             ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
+            boolean found = resultSet.next();
+            call.end("getAccountAmount", "SELECT", found ? 1 : 0, false);
+            if (found) {
                 return resultSet.getInt("accounts");
             } else {
                 return 0;
@@ -222,18 +394,25 @@ public class BankAccount {
     }
 
     /**
-     * Retrieves the current maximum account number in the BankAccount table. If there are no accounts,
-     * 0 is returned instead.
+     * Retrieves the current maximum account number in the given range of the BankAccount table.
+     * If there are no accounts in the range, 0 is returned instead.
      * @param connection Database connection
-     * @return Highest account number, or 0 if not found
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @return Highest account number in the range, or 0 if not found
      * @throws SQLException Database error occurred while retrieving account number
      */
-    public static int getMaxNumber(Connection connection) throws SQLException {
-        String selectQuery = "SELECT MAX(account_number) AS max_number FROM BankAccount";
+    public static int getMaxNumber(Connection connection, int firstNumber, int lastNumber) throws SQLException {
+        String selectQuery = "SELECT MAX(account_number) AS max_number FROM BankAccount WHERE account_number BETWEEN ? AND ?";
 
         try (PreparedStatement statement = connection.prepareStatement(selectQuery)) {
+            statement.setInt(1, firstNumber);
+            statement.setInt(2, lastNumber);
+            DatabaseCall call = DatabaseCall.start();
             ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
+            boolean found = resultSet.next();
+            call.end("getMaxNumber", "SELECT", found ? 1 : 0, false);
+            if (found) {
                 return resultSet.getInt("max_number");
             } else {
                 return 0;
@@ -254,8 +433,11 @@ public class BankAccount {
 
         try (PreparedStatement statement = connection.prepareStatement(selectQuery)) {
             statement.setInt(1, accountNumber);
+            DatabaseCall call = DatabaseCall.start();
             ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
+            boolean found = resultSet.next();
+            call.end("findByAccountNumber", "SELECT", found ? 1 : 0, false);
+            if (found) {
                 int id = resultSet.getInt("id");
                 long balance = resultSet.getLong("balance");
                 return BankAccount.create(id, accountNumber, balance);
@@ -265,11 +447,159 @@ public class BankAccount {
         }
     }
 
+    /**
+     * Reads all bank accounts in the given account number range, ordered by their account number,
+     * and passes them to the visitor one by one. The accounts are read with a forward-only cursor,
+     * so the memory used does not depend on the size of the range.
+     * @param connection Database connection
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @param fetchSize Number of rows fetched from the database at once
+     * @param visitor Visitor receiving the accounts
+     * @throws SQLException Error occurred while reading the accounts
+     * @throws IOException The visitor failed to process an account
+     */
+    public static void scan(Connection connection, int firstNumber, int lastNumber, int fetchSize, AccountVisitor visitor)
+            throws SQLException, IOException {
+        scan(connection, firstNumber, lastNumber, fetchSize, 0, visitor);
+    }
+
+    /**
+     * Reads at most the given number of bank accounts in the given account number range, ordered by their
+     * account number, and passes them to the visitor one by one. The accounts are read with a forward-only cursor,
+     * so the memory used does not depend on the size of the range.
+     * @param connection Database connection
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @param fetchSize Number of rows fetched from the database at once
+     * @param maxRows Maximum number of accounts read, or 0 for no limit
+     * @param visitor Visitor receiving the accounts
+     * @throws SQLException Error occurred while reading the accounts
+     * @throws IOException The visitor failed to process an account
+     */
+    public static void scan(Connection connection, int firstNumber, int lastNumber, int fetchSize, int maxRows,
+                            AccountVisitor visitor) throws SQLException, IOException {
+        String selectQuery = "SELECT account_number, balance FROM BankAccount WHERE account_number BETWEEN ? AND ? ORDER BY account_number";
+
+        try (PreparedStatement statement = connection.prepareStatement(selectQuery, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setInt(1, firstNumber);
+            statement.setInt(2, lastNumber);
+            statement.setFetchSize(fetchSize);
+            statement.setMaxRows(maxRows);
+            // The call also covers the time the visitor spends with the rows, they are fetched as it goes
+            DatabaseCall call = DatabaseCall.start();
+            int rows = 0;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows++;
+                    visitor.visit(resultSet.getInt(1), resultSet.getLong(2));
+                }
+            }
+            call.end("scan", "SELECT", rows, false);
+        }
+    }
+
+    /**
+     * This interface receives the bank accounts read by the scan() method.
+     */
+    @FunctionalInterface
+    public interface AccountVisitor {
+        /**
+         * Processes a single bank account.
+         * @param accountNumber Bank account number
+         * @param balance Bank account balance
+         * @throws IOException Error occurred while processing the account
+         */
+        void visit(int accountNumber, long balance) throws IOException;
+    }
+
+    /**
+     * Adds interest to every account of the given range with a single set-based update. The interest is
+     * the balance multiplied by the rate and rounded down, accounts which would receive nothing are not changed.
+     * The interest is computed as DECIMAL(38,0), so a large balance cannot overflow, and the new balance is capped
+     * at the largest BIGINT value (Long.MAX_VALUE). Accounts which already hold that balance are not changed.
+     * The caller controls the transaction and must make sure the accounts are not changed concurrently.
+     * @param connection Database connection
+     * @param basisPoints Interest rate in hundredths of a percent
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @return Changes of the updated accounts
+     * @throws SQLException Error occurred while updating
+     */
+    public static List<Mutation> addInterest(Connection connection, long basisPoints, int firstNumber, int lastNumber)
+            throws SQLException {
+        String maxBalance = String.valueOf(Long.MAX_VALUE);
+        String updateQuery = "UPDATE account SET balance = CAST(CASE WHEN interest.new_balance > " + maxBalance
+                + " THEN " + maxBalance + " ELSE interest.new_balance END AS BIGINT) "
+                + "OUTPUT inserted.account_number, deleted.balance, inserted.balance "
+                + "FROM BankAccount account CROSS APPLY (SELECT account.balance "
+                + "+ FLOOR(CAST(account.balance AS DECIMAL(38,0)) * ? / 10000) AS new_balance) interest "
+                + "WHERE account.account_number BETWEEN ? AND ? AND interest.new_balance > account.balance "
+                + "AND account.balance < " + maxBalance;
+
+        try (PreparedStatement statement = connection.prepareStatement(updateQuery)) {
+            statement.setLong(1, basisPoints);
+            statement.setInt(2, firstNumber);
+            statement.setInt(3, lastNumber);
+            return readChanges(statement, "addInterest");
+        }
+    }
+
+    /**
+     * Charges a fee to every account of the given range with a single set-based update. Accounts with
+     * a lower balance than the fee are charged their whole balance, empty accounts are not changed.
+     * The caller controls the transaction and must make sure the accounts are not changed concurrently.
+     * @param connection Database connection
+     * @param fee Fee charged to every account
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @return Changes of the updated accounts
+     * @throws SQLException Error occurred while updating
+     */
+    public static List<Mutation> chargeFee(Connection connection, long fee, int firstNumber, int lastNumber)
+            throws SQLException {
+        String updateQuery = "UPDATE BankAccount SET balance = balance - CASE WHEN balance < ? THEN balance ELSE ? END "
+                + "OUTPUT inserted.account_number, deleted.balance, inserted.balance "
+                + "WHERE account_number BETWEEN ? AND ? AND balance > 0";
+
+        try (PreparedStatement statement = connection.prepareStatement(updateQuery)) {
+            statement.setLong(1, fee);
+            statement.setLong(2, fee);
+            statement.setInt(3, firstNumber);
+            statement.setInt(4, lastNumber);
+            return readChanges(statement, "chargeFee");
+        }
+    }
+
+    /**
+     * Executes a set-based update returning the account number, the old and the new balance of every updated
+     * account, and turns the returned rows into changes.
+     * @param statement Prepared update with an OUTPUT clause
+     * @param operation BankAccount method which made the update
+     * @return Changes of the updated accounts
+     * @throws SQLException Error occurred while updating
+     */
+    private static List<Mutation> readChanges(PreparedStatement statement, String operation) throws SQLException {
+        List<Mutation> mutations = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        DatabaseCall call = DatabaseCall.start();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                long oldBalance = resultSet.getLong(2);
+                long newBalance = resultSet.getLong(3);
+                Mutation.Type type = newBalance >= oldBalance ? Mutation.Type.DEPOSIT : Mutation.Type.WITHDRAW;
+                mutations.add(new Mutation(type, resultSet.getInt(1), Math.abs(newBalance - oldBalance), newBalance, now));
+            }
+        }
+        call.end(operation, "UPDATE", mutations.size(), false);
+        return mutations;
+    }
+
     /**
      * Sets the bank account id.
      * @param id New bank account id
      */
-    public synchronized void setId(int id) {
+    public void setId(int id) {
         this.id = id;
     }
 
@@ -0,0 +1,75 @@
+package database.tables;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents the BulkProgress table in the database. Every processed chunk of a bulk operation
+ * adds one row in the same transaction as its update, so a chunk is either updated and recorded, or neither,
+ * and an interrupted operation can be resumed without updating any account twice.
+ */
+public class BulkProgress {
+    /**
+     * A processed range of account numbers.
+     * @param change Description of the change applied to the range, for example "INTEREST 25"
+     * @param firstNumber First account number of the range
+     * @param lastNumber Last account number of the range
+     * @param updatedAccounts Number of accounts which were changed
+     */
+    public record Chunk(String change, int firstNumber, int lastNumber, int updatedAccounts) {
+    }
+
+    /**
+     * This class only contains static methods.
+     */
+    private BulkProgress() {
+    }
+
+    /**
+     * Records a processed chunk. The caller controls the transaction.
+     * @param connection Database connection
+     * @param operationId Id of the bulk operation
+     * @param chunk Processed chunk
+     * @throws SQLException Error occurred while inserting, for example the chunk has already been recorded
+     */
+    public static void insert(Connection connection, String operationId, Chunk chunk) throws SQLException {
+        String insertQuery = "INSERT INTO BulkProgress (operation_id, change, first_number, last_number, updated_accounts) "
+                + "VALUES (?, ?, ?, ?, ?)";
+
+        try (PreparedStatement statement = connection.prepareStatement(insertQuery)) {
+            statement.setString(1, operationId);
+            statement.setString(2, chunk.change());
+            statement.setInt(3, chunk.firstNumber());
+            statement.setInt(4, chunk.lastNumber());
+            statement.setInt(5, chunk.updatedAccounts());
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the processed chunks of a bulk operation, ordered by their account numbers.
+     * @param connection Database connection
+     * @param operationId Id of the bulk operation
+     * @return List of processed chunks
+     * @throws SQLException Error occurred while reading
+     */
+    public static List<Chunk> findByOperation(Connection connection, String operationId) throws SQLException {
+        String selectQuery = "SELECT change, first_number, last_number, updated_accounts FROM BulkProgress "
+                + "WHERE operation_id = ? ORDER BY first_number";
+
+        List<Chunk> chunks = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(selectQuery)) {
+            statement.setString(1, operationId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    chunks.add(new Chunk(resultSet.getString(1), resultSet.getInt(2), resultSet.getInt(3), resultSet.getInt(4)));
+                }
+            }
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,44 @@
+package database.tables;
+
+import jfr.DatabaseCallEvent;
+import trace.Stage;
+import trace.Tracer;
+
+/**
+ * This class measures a single database call made by a table. The call is recorded as a DatabaseCallEvent
+ * for Java Flight Recorder, and as an SQL stage of the message being traced by the current thread.
+ */
+class DatabaseCall {
+    private final DatabaseCallEvent event = new DatabaseCallEvent();
+    private final long traceStart;
+
+    /**
+     * Constructor which starts timing the call.
+     */
+    private DatabaseCall() {
+        event.start();
+        traceStart = Tracer.getInstance().start();
+    }
+
+    /**
+     * Starts timing a database call.
+     * @return New DatabaseCall
+     */
+    static DatabaseCall start() {
+        return new DatabaseCall();
+    }
+
+    /**
+     * Ends timing the call and records it.
+     * @param operation Table method which made the call
+     * @param sqlKind SELECT, INSERT, UPDATE, DELETE, COMMIT or ROLLBACK
+     * @param rows Number of rows read or changed
+     * @param locking True if the call was a locking read
+     */
+    void end(String operation, String sqlKind, int rows, boolean locking) {
+        if (traceStart != Tracer.NOT_TRACED) {
+            Tracer.getInstance().stage(Stage.SQL, operation + "." + sqlKind.toLowerCase(), traceStart);
+        }
+        event.commit(operation, sqlKind, rows, locking);
+    }
+}
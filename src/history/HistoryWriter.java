@@ -0,0 +1,167 @@
+package history;
+
+import database.DatabaseConnector;
+import database.Mutation;
+import database.MutationListener;
+import database.Shard;
+import database.tables.AccountHistory;
+import util.FileLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class implements the Singleton design pattern. It records every committed account change in the
+ * AccountHistory table of the shard owning the account (the HistoryWriter must be registered in the MutationPublisher).
+ * Changes are only queued on the committing thread. A background thread writes them in batches, one transaction
+ * per shard and batch, so recording the history does not add a database round trip to the commands.
+ * No change is ever dropped: if the queue is full, the committing thread waits until there is space in it,
+ * and a batch which cannot be written is retried until it is written.
+ */
+public class HistoryWriter implements MutationListener {
+    private static final long RETRY_DELAY = 1000;
+    private static final long MAX_RETRY_DELAY = 30000;
+
+    private static HistoryWriter instance;
+    private BlockingQueue<Mutation> queue;
+    private int batchSize;
+    private volatile boolean started = false;
+    private final AtomicLong waits = new AtomicLong();
+    private Connection[] connections;
+
+    /**
+     * Returns the Singleton instance of HistoryWriter.
+     * @return Singleton instance of HistoryWriter
+     */
+    public static synchronized HistoryWriter getInstance() {
+        if (instance == null) {
+            instance = new HistoryWriter();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts writing the queued changes on a separate thread.
+     * @param queueSize Maximum number of changes waiting to be written
+     * @param batchSize Maximum number of changes written in one transaction
+     */
+    public synchronized void start(int queueSize, int batchSize) {
+        if (started) {
+            return;
+        }
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.connections = new Connection[DatabaseConnector.getInstance().getShards().size()];
+        Thread writerThread = new Thread(this::writeLoop, "history-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        started = true;
+    }
+
+    /**
+     * Returns whether the history is being recorded.
+     * @return True if the HistoryWriter has been started
+     */
+    public boolean isEnabled() {
+        return started;
+    }
+
+    /**
+     * Queues a committed change to be written. If the queue is full, this method waits until there is space in it,
+     * so the commands are slowed down to the speed of the history instead of losing changes.
+     * @param mutation Committed change
+     */
+    @Override
+    public void onMutation(Mutation mutation) {
+        if (!started || queue.offer(mutation)) {
+            return;
+        }
+        if (waits.getAndIncrement() % 1000 == 0) {
+            FileLogger.getLogger().warning("The account history cannot keep up, {} changes had to wait for it so far.",
+                    waits.get());
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(mutation);
+                break;
+            } catch (InterruptedException e) {
+                // The change is committed, so it is recorded anyway
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes the queued changes in batches and writes them, until the thread is interrupted.
+     */
+    private void writeLoop() {
+        List<Mutation> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes a batch of changes, grouped by the shards owning the accounts. A failed shard is retried,
+     * with a growing delay, until its changes are written, so the history of an account never has gaps.
+     * @param batch Changes in the order they were committed
+     */
+    private void write(List<Mutation> batch) {
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        Map<Shard, List<Mutation>> byShard = new LinkedHashMap<>();
+        for (Mutation mutation : batch) {
+            Shard shard = connector.getShard(mutation.accountNumber());
+            if (shard != null) {
+                byShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(mutation);
+            }
+        }
+
+        for (Map.Entry<Shard, List<Mutation>> entry : byShard.entrySet()) {
+            int index = entry.getKey().getIndex();
+            long delay = RETRY_DELAY;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    if (connections[index] == null) {
+                        connections[index] = connector.getConnection(entry.getKey());
+                        if (connections[index] == null) {
+                            throw new SQLException("Failed to connect to shard " + index + ".");
+                        }
+                    }
+                    AccountHistory.insertBatch(connections[index], entry.getValue());
+                    break;
+                } catch (SQLException e) {
+                    // The connection may be broken, a new one is created for the next attempt
+                    connector.closeConnection(connections[index]);
+                    connections[index] = null;
+                    FileLogger.getLogger().severe("Failed to record {} changes in the account history of shard {}"
+                            + " (attempt {}), retrying.", entry.getValue().size(), index, attempt);
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+                }
+            }
+        }
+    }
+}
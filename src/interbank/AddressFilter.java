@@ -0,0 +1,107 @@
+package interbank;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This immutable class decides which bank codes commands may be forwarded to. It holds a list of IPv4 networks
+ * in the CIDR notation (for example 192.168.0.0/24), a single address is a network with the prefix length 32.
+ * An empty filter allows every address.
+ */
+public class AddressFilter {
+    private final List<Network> networks;
+
+    /**
+     * An IPv4 network.
+     * @param address Address of the network
+     * @param mask Mask of the prefix length
+     */
+    private record Network(int address, int mask) {
+    }
+
+    /**
+     * This private constructor sets the networks.
+     * @param networks Allowed networks, empty to allow every address
+     */
+    private AddressFilter(List<Network> networks) {
+        this.networks = List.copyOf(networks);
+    }
+
+    /**
+     * Attempts to create a new AddressFilter from a comma separated list of networks,
+     * for example "192.168.0.0/24,10.0.0.5".
+     * @param list List of networks, empty to allow every address
+     * @return New AddressFilter instance
+     * @throws IllegalArgumentException A network is malformed
+     */
+    public static AddressFilter parse(String list) throws IllegalArgumentException {
+        List<Network> networks = new ArrayList<>();
+        for (String entry : list.split(",")) {
+            entry = entry.strip();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            String[] parts = entry.split("/");
+            if (parts.length > 2) {
+                throw new IllegalArgumentException("Network " + entry + " must be in the format address[/prefix].");
+            }
+            int prefix;
+            try {
+                prefix = parts.length == 2 ? Integer.parseInt(parts[1]) : 32;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Network " + entry + " has an invalid prefix length.");
+            }
+            if (prefix < 0 || prefix > 32) {
+                throw new IllegalArgumentException("Network " + entry + " has an invalid prefix length.");
+            }
+            Integer address = parseAddress(parts[0]);
+            if (address == null) {
+                throw new IllegalArgumentException("Network " + entry + " has an invalid IPv4 address.");
+            }
+            int mask = prefix == 0 ? 0 : -1 << (32 - prefix);
+            networks.add(new Network(address & mask, mask));
+        }
+        return new AddressFilter(networks);
+    }
+
+    /**
+     * Checks if commands may be forwarded to the bank with the given bank code.
+     * @param bankCode Bank code (IP address) of the bank
+     * @return True if the filter is empty, or the bank code is an IPv4 address within one of the networks
+     */
+    public boolean allows(String bankCode) {
+        if (networks.isEmpty()) {
+            return true;
+        }
+        Integer address = parseAddress(bankCode);
+        if (address == null) {
+            return false;
+        }
+        for (Network network : networks) {
+            if ((address & network.mask()) == network.address()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses an IPv4 address in the dotted decimal notation, without resolving host names.
+     * @param address Address
+     * @return Address as a number, or null if it is not an IPv4 address
+     */
+    private static Integer parseAddress(String address) {
+        String[] octets = address.split("\\.", -1);
+        if (octets.length != 4) {
+            return null;
+        }
+        int value = 0;
+        for (String octet : octets) {
+            if (!octet.matches("\\d{1,3}") || Integer.parseInt(octet) > 255) {
+                return null;
+            }
+            value = (value << 8) | Integer.parseInt(octet);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,71 @@
+package interbank;
+
+/**
+ * This class stops sending requests to a remote bank which keeps failing. After a number of consecutive
+ * failures the breaker opens and requests fail immediately. Once the cooldown expires, a single trial
+ * request is let through, and its result decides whether the breaker closes or opens again.
+ */
+public class CircuitBreaker {
+    private final int failureThreshold;
+    private final long cooldownMillis;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+    private boolean open = false;
+    private boolean trialRunning = false;
+
+    /**
+     * This constructor sets the number of failures which open the breaker, and the cooldown.
+     * @param failureThreshold Number of consecutive failures which open the breaker
+     * @param cooldownMillis How long the breaker stays open before a trial request is let through
+     */
+    public CircuitBreaker(int failureThreshold, long cooldownMillis) {
+        this.failureThreshold = failureThreshold;
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    /**
+     * Checks if a request may be sent. While the breaker is open, only one trial request
+     * is allowed after the cooldown.
+     * @return True if the request may be sent
+     */
+    public synchronized boolean allowRequest() {
+        if (!open) {
+            return true;
+        }
+        if (!trialRunning && System.currentTimeMillis() - openedAt >= cooldownMillis) {
+            trialRunning = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records a successful request, the breaker closes.
+     */
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        open = false;
+        trialRunning = false;
+    }
+
+    /**
+     * Records a failed request. The breaker opens after too many consecutive failures,
+     * or if the trial request failed.
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (trialRunning || consecutiveFailures >= failureThreshold) {
+            open = true;
+            openedAt = System.currentTimeMillis();
+        }
+        trialRunning = false;
+    }
+
+    /**
+     * Returns whether the breaker is open.
+     * @return True if requests are currently refused
+     */
+    public synchronized boolean isOpen() {
+        return open;
+    }
+}
@@ -0,0 +1,91 @@
+package interbank;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class implements the Singleton design pattern. It forwards commands about accounts of other banks
+ * to the bank owning them. Every remote bank has its own pool of persistent connections, so forwarding
+ * a command does not cost a TCP handshake, and its own circuit breaker, so a bank which is down
+ * does not slow down the peers of this bank. Commands are only forwarded to bank codes allowed by the AddressFilter,
+ * so a peer cannot make the node connect to any address it chooses.
+ */
+public class InterbankForwarder {
+    private static final int BREAKER_FAILURES = 3;
+    private static final long BREAKER_COOLDOWN = 10000;
+
+    private static InterbankForwarder instance;
+    private final ConcurrentMap<String, RemoteBank> banks = new ConcurrentHashMap<>();
+    private volatile int connectTimeout = 1000;
+    private volatile int readTimeout = 5000;
+    private volatile int poolSize = 4;
+    private volatile AddressFilter allowedBanks = AddressFilter.parse("");
+
+    /**
+     * Returns the Singleton instance of InterbankForwarder.
+     * @return Singleton instance of InterbankForwarder
+     */
+    public static synchronized InterbankForwarder getInstance() {
+        if (instance == null) {
+            instance = new InterbankForwarder();
+        }
+        return instance;
+    }
+
+    /**
+     * Configures the connections to other banks. It should be called before the first command is forwarded.
+     * @param connectTimeout Connect timeout in milliseconds
+     * @param readTimeout How long to wait for a response, in milliseconds
+     * @param poolSize Maximum number of connections to one bank
+     * @param allowedBanks Filter of the bank codes commands may be forwarded to
+     */
+    public void configure(int connectTimeout, int readTimeout, int poolSize, AddressFilter allowedBanks) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.poolSize = poolSize;
+        this.allowedBanks = allowedBanks;
+    }
+
+    /**
+     * Checks if commands may be forwarded to the bank with the given bank code.
+     * @param bankCode Bank code (IP address) of the bank
+     * @return True if the bank is allowed
+     */
+    public boolean isAllowed(String bankCode) {
+        return allowedBanks.allows(bankCode);
+    }
+
+    /**
+     * Forwards a message to the bank with the given bank code and returns its response.
+     * @param bankCode Bank code (IP address) of the bank
+     * @param message Message, without the line terminator
+     * @return Response of the bank, without the line terminator
+     * @throws IOException The bank is not allowed, could not be reached or did not respond in time
+     */
+    public String forward(String bankCode, String message) throws IOException {
+        if (!isAllowed(bankCode)) {
+            throw new IOException("Forwarding to bank " + bankCode + " is not allowed.");
+        }
+        return getBank(bankCode).send(message);
+    }
+
+    /**
+     * Remembers the port a bank was found on, so it does not have to be searched for before the first forward.
+     * @param bankCode Bank code (IP address) of the bank
+     * @param port Port of the bank
+     */
+    public void rememberPort(String bankCode, int port) {
+        getBank(bankCode).setPort(port);
+    }
+
+    /**
+     * Returns the remote bank with the given bank code, it is created when it is first needed.
+     * @param bankCode Bank code (IP address) of the bank
+     * @return Remote bank
+     */
+    private RemoteBank getBank(String bankCode) {
+        return banks.computeIfAbsent(bankCode, code ->
+                new RemoteBank(code, connectTimeout, readTimeout, poolSize, new CircuitBreaker(BREAKER_FAILURES, BREAKER_COOLDOWN)));
+    }
+}
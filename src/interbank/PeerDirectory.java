@@ -0,0 +1,178 @@
+package interbank;
+
+import robbery.BankInfo;
+import robbery.BankScanner;
+import util.FileLogger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class implements the Singleton design pattern. It keeps a table of known remote banks with their
+ * last known values, refreshed in the background. Banks are discovered by scanning the network from time to time,
+ * and their values are refreshed more often over the persistent connections of the InterbankForwarder.
+ * Features which need the values of other banks read them from memory instead of asking the banks.
+ */
+public class PeerDirectory {
+    private static PeerDirectory instance;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean enabled = false;
+    private volatile long ttlMillis;
+
+    /**
+     * A remote bank known to the directory.
+     * @param bankCode Bank code (IP address)
+     * @param port Port the bank was found on
+     * @param amount Last known total balance (BA)
+     * @param clients Last known number of clients (BN)
+     * @param rttMicros Round-trip time of the last refresh in microseconds
+     * @param updatedAt Time of the last successful refresh in milliseconds
+     * @param alive True if the last refresh succeeded
+     */
+    public record Entry(String bankCode, int port, long amount, long clients, long rttMicros, long updatedAt, boolean alive) {
+    }
+
+    /**
+     * Returns the Singleton instance of PeerDirectory.
+     * @return Singleton instance of PeerDirectory
+     */
+    public static synchronized PeerDirectory getInstance() {
+        if (instance == null) {
+            instance = new PeerDirectory();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts discovering and refreshing remote banks on a background thread.
+     * @param scanner Scanner of the network, used to discover banks
+     * @param ownBankCode Bank code of this bank, which is left out
+     * @param refreshMillis How often the values of known banks are refreshed
+     * @param discoveryMillis How often the network is scanned for new banks
+     * @param ttlMillis How old the values of a bank may be to be used
+     */
+    public synchronized void start(BankScanner scanner, String ownBankCode, long refreshMillis, long discoveryMillis, long ttlMillis) {
+        if (enabled) {
+            return;
+        }
+        this.ttlMillis = ttlMillis;
+        this.enabled = true;
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "peer-directory");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> discover(scanner, ownBankCode), 0, discoveryMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns whether the directory is running.
+     * @return True if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the banks which are alive and whose values are not older than the TTL.
+     * @return List of banks, ordered by their bank code
+     */
+    public List<BankInfo> getFreshBanks() {
+        long now = System.currentTimeMillis();
+        List<BankInfo> banks = new ArrayList<>();
+        for (Entry entry : getEntries()) {
+            if (entry.alive() && now - entry.updatedAt() <= ttlMillis) {
+                banks.add(new BankInfo(entry.bankCode(), entry.port(), entry.amount(), entry.clients()));
+            }
+        }
+        return banks;
+    }
+
+    /**
+     * Returns every known bank, including the ones which are not alive.
+     * @return List of entries, ordered by their bank code
+     */
+    public List<Entry> getEntries() {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(Comparator.comparing(Entry::bankCode));
+        return sorted;
+    }
+
+    /**
+     * Scans the network and adds the found banks to the directory, with the values they have just sent.
+     * @param scanner Scanner of the network
+     * @param ownBankCode Bank code of this bank
+     */
+    private void discover(BankScanner scanner, String ownBankCode) {
+        try {
+            long now = System.currentTimeMillis();
+            for (BankInfo bank : scanner.scan(ownBankCode)) {
+                Entry known = entries.get(bank.bankCode());
+                long rttMicros = known == null ? 0 : known.rttMicros();
+                entries.put(bank.bankCode(), new Entry(bank.bankCode(), bank.port(), bank.amount(), bank.clients(), rttMicros, now, true));
+                InterbankForwarder.getInstance().rememberPort(bank.bankCode(), bank.port());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            FileLogger.getLogger().warning("Peer directory failed to scan the network.");
+        }
+    }
+
+    /**
+     * Refreshes the values of every known bank in parallel. Banks which do not respond are marked as not alive,
+     * their last known values are kept.
+     */
+    private void refresh() {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Entry entry : entries.values()) {
+                executor.submit(() -> entries.put(entry.bankCode(), refresh(entry)));
+            }
+        }
+    }
+
+    /**
+     * Retrieves the current values of a bank.
+     * @param entry Known entry of the bank
+     * @return Updated entry
+     */
+    private Entry refresh(Entry entry) {
+        InterbankForwarder forwarder = InterbankForwarder.getInstance();
+        try {
+            long start = System.nanoTime();
+            long amount = parseValue(forwarder.forward(entry.bankCode(), "BA"), "BA");
+            long rttMicros = (System.nanoTime() - start) / 1000;
+            long clients = parseValue(forwarder.forward(entry.bankCode(), "BN"), "BN");
+            return new Entry(entry.bankCode(), entry.port(), amount, clients, rttMicros, System.currentTimeMillis(), true);
+        } catch (IOException e) {
+            return new Entry(entry.bankCode(), entry.port(), entry.amount(), entry.clients(), entry.rttMicros(), entry.updatedAt(), false);
+        }
+    }
+
+    /**
+     * Parses a numeric response, for example "BA 1000".
+     * @param response Response line
+     * @param commandName Expected command name
+     * @return Parsed value
+     * @throws IOException The response is malformed
+     */
+    private static long parseValue(String response, String commandName) throws IOException {
+        if (!response.startsWith(commandName + " ")) {
+            throw new IOException("Bank answered " + commandName + " with an error.");
+        }
+        try {
+            return Long.parseLong(response.substring(commandName.length() + 1).strip());
+        } catch (NumberFormatException e) {
+            throw new IOException("Bank sent a malformed answer.", e);
+        }
+    }
+}
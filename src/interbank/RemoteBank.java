@@ -0,0 +1,236 @@
+package interbank;
+
+import client.ConnectionPool;
+import client.PipelinedConnection;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class represents another bank, which requests are forwarded to. It remembers the port the bank
+ * was found on, keeps a small pool of pipelined connections and a circuit breaker. The ports are searched
+ * without holding the monitor of the bank, and by one thread at a time, the others wait for its result.
+ */
+public class RemoteBank {
+    /**
+     * First port a bank may run on.
+     */
+    public static final int FIRST_PORT = 65525;
+    /**
+     * Last port a bank may run on.
+     */
+    public static final int LAST_PORT = 65535;
+
+    private final String bankCode;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int poolSize;
+    private final CircuitBreaker breaker;
+    private ConnectionPool pool = null;
+    private int port = 0;
+    private CompletableFuture<Integer> discovery = null;
+
+    /**
+     * This constructor sets the bank code and the connection settings.
+     * @param bankCode Bank code (IP address) of the remote bank
+     * @param connectTimeout Connect timeout in milliseconds
+     * @param readTimeout How long to wait for a response, in milliseconds
+     * @param poolSize Maximum number of connections to the bank
+     * @param breaker Circuit breaker of the bank
+     */
+    public RemoteBank(String bankCode, int connectTimeout, int readTimeout, int poolSize, CircuitBreaker breaker) {
+        this.bankCode = bankCode;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.poolSize = poolSize;
+        this.breaker = breaker;
+    }
+
+    /**
+     * Sends a request to the bank and waits for the response. Requests which were written are never sent again,
+     * as the bank may have executed them.
+     * @param request Request line, without the line terminator
+     * @return Response line
+     * @throws IOException The bank could not be reached, did not respond in time, or its circuit breaker is open
+     */
+    public String send(String request) throws IOException {
+        if (!breaker.allowRequest()) {
+            throw new IOException("Bank " + bankCode + " is unavailable.");
+        }
+        try {
+            String response = exchange(request);
+            breaker.recordSuccess();
+            return response;
+        } catch (IOException e) {
+            breaker.recordFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the request over the connection pool of the bank and waits for the response. If the port the bank
+     * was found on refuses connections, the bank has moved and the ports are searched again.
+     * @param request Request line
+     * @return Response line
+     * @throws IOException The bank could not be reached or did not respond in time
+     */
+    private String exchange(String request) throws IOException {
+        ConnectionPool currentPool = getPool();
+        CompletableFuture<String> response;
+        try {
+            response = currentPool.send(request, readTimeout);
+        } catch (ConnectException e) {
+            forget(currentPool);
+            response = getPool().send(request, readTimeout);
+        }
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for bank " + bankCode + ".", e);
+        }
+    }
+
+    /**
+     * Returns the connection pool of the bank. If the port of the bank is not known, it is searched for first.
+     * Only the first thread which needs the port searches for it, threads which need it in the meantime
+     * wait for the same search.
+     * @return Connection pool
+     * @throws IOException The bank was not found
+     */
+    private ConnectionPool getPool() throws IOException {
+        CompletableFuture<Integer> search;
+        boolean searching = false;
+        synchronized (this) {
+            if (pool != null) {
+                return pool;
+            }
+            if (port != 0) {
+                pool = new ConnectionPool(bankCode, port, poolSize, connectTimeout);
+                return pool;
+            }
+            if (discovery == null) {
+                discovery = new CompletableFuture<>();
+                searching = true;
+            }
+            search = discovery;
+        }
+
+        if (searching) {
+            try {
+                search.complete(discover());
+            } catch (IOException | RuntimeException e) {
+                // The waiting threads receive the failure too
+                search.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    discovery = null;
+                }
+            }
+        }
+
+        int foundPort;
+        try {
+            foundPort = search.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching for bank " + bankCode + ".", e);
+        }
+        synchronized (this) {
+            if (pool == null) {
+                if (port == 0) {
+                    port = foundPort;
+                }
+                pool = new ConnectionPool(bankCode, port, poolSize, connectTimeout);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Forgets the port of the bank and closes the given pool, unless it has already been replaced.
+     * @param stalePool Pool of the port which refused connections
+     */
+    private synchronized void forget(ConnectionPool stalePool) {
+        if (pool == stalePool) {
+            pool.close();
+            pool = null;
+            port = 0;
+        }
+    }
+
+    /**
+     * Searches the bank ports for the bank, by sending the BC command to every port until the bank
+     * answers with its bank code. The search stops early if the host does not respond at all.
+     * @return Port the bank was found on
+     * @throws IOException The bank was not found
+     */
+    private int discover() throws IOException {
+        for (int candidate = FIRST_PORT; candidate <= LAST_PORT; candidate++) {
+            PipelinedConnection connection;
+            try {
+                connection = PipelinedConnection.open(bankCode, candidate, connectTimeout);
+            } catch (ConnectException e) {
+                continue; // Nothing is listening on this port
+            }
+            try {
+                String response = connection.send("BC").get(readTimeout, TimeUnit.MILLISECONDS);
+                if (response.strip().equals("BC " + bankCode)) {
+                    return candidate;
+                }
+            } catch (ExecutionException | TimeoutException e) {
+                // Not a bank, or not this one
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while searching for bank " + bankCode + ".", e);
+            } finally {
+                connection.close();
+            }
+        }
+        throw new IOException("Bank " + bankCode + " was not found on ports " + FIRST_PORT + " - " + LAST_PORT + ".");
+    }
+
+    /**
+     * Remembers the port the bank was found on by someone else, so it does not have to be searched for.
+     * @param knownPort Port of the bank
+     */
+    public synchronized void setPort(int knownPort) {
+        if (port == 0) {
+            port = knownPort;
+        }
+    }
+
+    /**
+     * Returns the port the bank was found on.
+     * @return Port, or 0 if it is not known yet
+     */
+    public synchronized int getPort() {
+        return port;
+    }
+
+    /**
+     * Returns the circuit breaker of the bank.
+     * @return Circuit breaker
+     */
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Closes every pooled connection.
+     */
+    public synchronized void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * This Java Flight Recorder event is recorded for every message handled by the node, from reading the message
+ * to sending the response. Its fields are only filled in when the event is going to be recorded, so the event
+ * costs almost nothing while the recording is off or the message is faster than the configured threshold.
+ */
+@Name("bank.Command")
+@Label("Command")
+@Category({"Bank", "Commands"})
+@Description("Execution of a command sent by a peer")
+@StackTrace(false)
+public class CommandEvent extends Event {
+    @Label("Command")
+    public String command;
+
+    @Label("Account Number")
+    @Description("Account the command operates on, 0 if it does not operate on an account")
+    public int accountNumber;
+
+    @Label("Outcome")
+    @Description("OK, or the error message of an ER response")
+    public String outcome;
+
+    @Label("Database Time")
+    @Description("Time spent in the database")
+    @Timespan(Timespan.NANOSECONDS)
+    public long databaseTime;
+
+    @Label("Peer")
+    public String peer;
+}
@@ -0,0 +1,68 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * This Java Flight Recorder event is recorded for every database call made by the BankAccount table.
+ * Locking reads (SELECT with UPDLOCK) mostly wait for the row locks held by other transactions,
+ * their duration is also stored as the lock wait, so contention on hot accounts stands out.
+ */
+@Name("bank.DatabaseCall")
+@Label("Database Call")
+@Category({"Bank", "Database"})
+@Description("JDBC call made by the BankAccount table")
+public class DatabaseCallEvent extends Event {
+    @Label("Operation")
+    @Description("BankAccount method which made the call")
+    public String operation;
+
+    @Label("SQL Kind")
+    @Description("SELECT, INSERT, UPDATE, DELETE, COMMIT or ROLLBACK")
+    public String sqlKind;
+
+    @Label("Rows")
+    @Description("Number of rows read or changed")
+    public int rows;
+
+    @Label("Lock Wait")
+    @Description("Duration of a locking read, 0 for other calls")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lockWait;
+
+    private transient long startNanos;
+
+    /**
+     * Starts timing the call.
+     */
+    public void start() {
+        if (isEnabled()) {
+            startNanos = System.nanoTime();
+        }
+        begin();
+    }
+
+    /**
+     * Ends the event and records it if it is enabled and longer than the configured threshold.
+     * @param operation BankAccount method which made the call
+     * @param sqlKind Kind of the SQL statement
+     * @param rows Number of rows read or changed
+     * @param locking True if the call was a locking read
+     */
+    public void commit(String operation, String sqlKind, int rows, boolean locking) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.sqlKind = sqlKind;
+            this.rows = rows;
+            // The recorder does not expose the duration, so the call is timed here as well
+            this.lockWait = locking ? System.nanoTime() - startNanos : 0;
+            commit();
+        }
+    }
+}
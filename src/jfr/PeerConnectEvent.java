@@ -0,0 +1,25 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This Java Flight Recorder event is recorded when a peer connects to a host of the node.
+ */
+@Name("bank.PeerConnect")
+@Label("Peer Connect")
+@Category({"Bank", "Peers"})
+@Description("A peer connected to the node")
+@StackTrace(false)
+public class PeerConnectEvent extends Event {
+    @Label("Peer")
+    public String peer;
+
+    @Label("Cluster Link")
+    @Description("True if the peer connected to the cluster link host")
+    public boolean clusterLink;
+}
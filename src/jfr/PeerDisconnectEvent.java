@@ -0,0 +1,25 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This Java Flight Recorder event is recorded when a peer is disconnected from a host of the node.
+ */
+@Name("bank.PeerDisconnect")
+@Label("Peer Disconnect")
+@Category({"Bank", "Peers"})
+@Description("A peer was disconnected from the node")
+@StackTrace(false)
+public class PeerDisconnectEvent extends Event {
+    @Label("Peer")
+    public String peer;
+
+    @Label("Reason")
+    @Description("closed, timeout or error")
+    public String reason;
+}
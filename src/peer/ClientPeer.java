@@ -1,20 +1,19 @@
 package peer;
 
-import database.DatabaseConnector;
+import database.ShardConnections;
 
 import java.io.*;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import java.sql.Connection;
 
 /**
  * This class represents a peer connected to the peer hosting the program.
  * It contains the peer socket, I/O objects used for communicating with the peer,
- * and the database connection assigned to the peer.
+ * and the database connections assigned to the peer.
  */
 public class ClientPeer {
     private final Socket peerSocket;
-    private final Connection connection;
+    private final ShardConnections connections;
     private final InputStreamReader reader;
     private final BufferedReader in;
     private final OutputStreamWriter writer;
@@ -23,15 +22,15 @@ public class ClientPeer {
     /**
      * This private constructor sets the required properties.
      * @param peerSocket Peer socket
-     * @param connection Database connection
+     * @param connections Database connections, one per shard
      * @param reader InputStreamReader instance
      * @param in BufferedReader instance, used to accept messages from the peer
      * @param writer OutputStreamWriter instance
      * @param out PrintWriter instance, used to send messages to the peer
      */
-    private ClientPeer(Socket peerSocket, Connection connection, InputStreamReader reader, BufferedReader in, OutputStreamWriter writer, PrintWriter out) {
+    private ClientPeer(Socket peerSocket, ShardConnections connections, InputStreamReader reader, BufferedReader in, OutputStreamWriter writer, PrintWriter out) {
         this.peerSocket = peerSocket;
-        this.connection = connection;
+        this.connections = connections;
         this.reader = reader;
         this.in = in;
         this.writer = writer;
@@ -40,19 +39,19 @@ public class ClientPeer {
 
     /**
      * Creates a new ClientPeer instance with the given peer socket.
-     * It also creates the necessary objects such as the database connection (may be null),
-     * and the I/O objects.
+     * It also creates the necessary objects such as the database connections (created when
+     * first needed), and the I/O objects.
      * @param peerSocket Connected peer socket
      * @return New ClientPeer instance, or null if failed
      */
     public static ClientPeer create(Socket peerSocket) {
         try {
-            Connection connection = DatabaseConnector.getInstance().getConnection();
+            ShardConnections connections = new ShardConnections();
             InputStreamReader reader = new InputStreamReader(peerSocket.getInputStream(), StandardCharsets.UTF_8);
             BufferedReader in = new BufferedReader(reader);
             OutputStreamWriter writer = new OutputStreamWriter(peerSocket.getOutputStream(), StandardCharsets.UTF_8);
             PrintWriter out = new PrintWriter(writer, true);
-            return new ClientPeer(peerSocket, connection, reader, in, writer, out);
+            return new ClientPeer(peerSocket, connections, reader, in, writer, out);
         } catch (IOException e) {
             return null;
         }
@@ -69,6 +68,13 @@ public class ClientPeer {
         reader.close();
     }
 
+    /**
+     * Closes the database connections assigned to the peer.
+     */
+    public void closeConnections() {
+        connections.close();
+    }
+
     /**
      * Returns the BufferedReader instance.
      * @return BufferedReader instance
@@ -94,10 +100,10 @@ public class ClientPeer {
     }
 
     /**
-     * Returns the peer's database connection.
-     * @return Database connection
+     * Returns the peer's database connections.
+     * @return Database connections, one per shard
      */
-    public Connection getConnection() {
-        return connection;
+    public ShardConnections getConnections() {
+        return connections;
     }
 }
@@ -1,26 +1,47 @@
 package peer;
 
+import cluster.ClusterManager;
 import command.Command;
 import command.util.CommandManager;
+import database.DatabaseConnector;
+import database.ShardConnections;
+import jfr.CommandEvent;
+import replication.StandbyNode;
+import stats.CommandStats;
+import stats.ResponseRecorder;
+import subscription.SubscriptionHub;
+import trace.Tracer;
 import util.FileLogger;
 
 import java.io.*;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
-import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This custom Thread class handles a single peer and handles the messages
  * sent by them. It executes the Commands called by the peer.
  */
 public class HandleThread extends Thread {
+    private static final Pattern IDEMPOTENCY_KEY_PATTERN = Pattern.compile("(?:^|\\s)key=([A-Za-z0-9_-]{1,64})$");
+    private static final Pattern SCOPED_IDEMPOTENCY_KEY_PATTERN =
+            Pattern.compile("(?:^|\\s)key=([0-9A-Fa-f.:%]{1,64}/[A-Za-z0-9_-]{1,64})$");
+    private static final long IDEMPOTENT_WAIT_TIMEOUT = 10000;
+    private static final AtomicInteger livePeers = new AtomicInteger();
+
     private final HostPeer host;
     private final ClientPeer peer;
     private final Socket peerSocket;
-    private final Connection connection;
+    private final ShardConnections connections;
 
     /**
-     * Constructor which sets the host, peer being handled, peer socket and peer's database connection.
+     * Constructor which sets the host, peer being handled, peer socket and peer's database connections.
      * @param host Host peer
      * @param peer Peer connected to the host
      */
@@ -28,48 +49,89 @@ public class HandleThread extends Thread {
         this.host = host;
         this.peerSocket = peer.getPeerSocket();
         this.peer = peer;
-        this.connection = peer.getConnection();
+        this.connections = peer.getConnections();
+    }
+
+    /**
+     * Returns the number of peers being handled at the moment, on all hosts.
+     * @return Number of connected peers
+     */
+    public static int getLivePeerCount() {
+        return livePeers.get();
     }
 
     /**
-     * Calls the handlePeer() method.
+     * Calls the handlePeer() method. The peer's subscription is cancelled and its database connections
+     * are closed afterwards.
      */
     @Override
     public void run() {
+        livePeers.incrementAndGet();
         try {
             handlePeer();
         } catch (IOException e) {
-            FileLogger.getLogger().info("IOException occurred while communicating with peer at " +
-                    peerSocket.getInetAddress() + ":" + peerSocket.getPort() +".");
+            FileLogger.getLogger().info("IOException occurred while communicating with peer at {}.", peerSocket);
+            host.disconnectPeer(peerSocket, "error");
+        } finally {
+            SubscriptionHub.getInstance().unsubscribe(peerSocket);
+            peer.closeConnections();
+            livePeers.decrementAndGet();
         }
     }
 
     /**
      * Handles the given peer connected to the host peer. Accepts messages from the peer and passes them to the
      * handleMessage() method. If the message is null, the peer is disconnected. The thread also catches
-     * the SocketTimeoutException and disconnects the peer.
+     * the SocketTimeoutException and disconnects the peer. The latency of every known Command, its outcome
+     * and the time it spent in the database are recorded in CommandStats, and as a CommandEvent
+     * if Java Flight Recorder is recording. The stages of the message are traced by the Tracer.
      * @throws IOException An I/O operation failed while communicating with the peer
      */
     private void handlePeer() throws IOException {
         BufferedReader in = peer.getIn();
-        PrintWriter out = peer.getOut();
+        // Every response passes through the recorder, so that its outcome is known without asking the Command
+        ResponseRecorder out = new ResponseRecorder(peer.getOut());
         Socket peerSocket = peer.getPeerSocket();
+        CommandStats stats = CommandStats.getInstance();
+        Tracer tracer = Tracer.getInstance();
 
         while (true) {
             try {
                 String message = in.readLine();
                 if (message == null) { // Received null, disconnect the peer
-                    host.disconnectPeer(peerSocket);
+                    host.disconnectPeer(peerSocket, "closed");
                     peer.closeIO();
-                    FileLogger.getLogger().info("Received empty message from peer at " +
-                            peerSocket.getInetAddress() + ":" + peerSocket.getPort() +", disconnecting.");
+                    FileLogger.getLogger().info("Received empty message from peer at {}, disconnecting.", peerSocket);
                     break;
                 }
-                handleMessage(message, out);
+                // Changes pushed to a subscribed peer must not be written in the middle of a response
+                synchronized (out) {
+                    out.startResponse();
+                    connections.getDatabaseTimer().takeNanos();
+                    CommandEvent event = new CommandEvent();
+                    event.begin();
+                    tracer.begin();
+                    long start = System.nanoTime();
+                    String commandName = handleMessage(message, out, event);
+                    long elapsed = System.nanoTime() - start;
+                    String error = out.getError();
+                    tracer.finish(commandName, error == null ? "OK" : "ER " + error);
+                    if (commandName != null) {
+                        long databaseNanos = connections.getDatabaseTimer().takeNanos();
+                        stats.record(commandName, error, elapsed, databaseNanos);
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.command = commandName;
+                            event.outcome = error == null ? "OK" : error;
+                            event.databaseTime = databaseNanos;
+                            event.peer = peerSocket.getInetAddress().getHostAddress() + ":" + peerSocket.getPort();
+                            event.commit();
+                        }
+                    }
+                }
             } catch (SocketTimeoutException e) {
-                FileLogger.getLogger().info("Peer at " + peerSocket.getInetAddress() + ":" + peerSocket.getPort() +", has been timed out," +
-                        " disconnecting.");
-                host.disconnectPeer(peerSocket);
+                FileLogger.getLogger().info("Peer at {}, has been timed out, disconnecting.", peerSocket);
+                host.disconnectPeer(peerSocket, "timeout");
                 peer.closeIO();
                 break;
             }
@@ -77,11 +139,15 @@ public class HandleThread extends Thread {
     }
 
     /**
-     * Handles a message received from a peer.
+     * Handles a message received from a peer. In the cluster mode, messages about accounts owned
+     * by another node are forwarded to that node, unless they arrived over a cluster link.
+     * The method is package-private, so that the benchmarks can call it without reading from a socket.
      * @param message Message received from a peer
      * @param out PrintWriter used to communicate with the peer
+     * @param event Flight Recorder event of the message, its account number is filled in if it is enabled
+     * @return Name of the called Command, or null if no such Command exists
      */
-    private void handleMessage(String message, PrintWriter out) {
+    String handleMessage(String message, PrintWriter out, CommandEvent event) {
         String[] substrings = message.split(" ", 2);
         String commandName = null;
         String paramString = null;
@@ -97,17 +163,228 @@ public class HandleThread extends Thread {
         if (command == null) {
             out.print("ER Command not found.\r\n");
             out.flush();
-            return;
+            return null;
+        }
+
+        // A standby only follows the journal of the primary, changes must be made on the primary
+        if (!command.isReadOnly() && StandbyNode.getInstance().isStandby()) {
+            out.print("ER This node is a standby, use the primary node.\r\n");
+            out.flush();
+            return commandName;
+        }
+
+        // A trailing idempotency key is not a parameter of the Command itself. Keys are scoped to the address
+        // of the peer, a node forwarding a Command over a cluster link sends the key already scoped to its peer
+        String idempotencyKey = null;
+        if (paramString != null && command.acceptsIdempotencyKey()) {
+            Matcher keyMatcher = (host.isClusterLink() ? SCOPED_IDEMPOTENCY_KEY_PATTERN : IDEMPOTENCY_KEY_PATTERN)
+                    .matcher(paramString);
+            if (keyMatcher.find()) {
+                idempotencyKey = host.isClusterLink() ? keyMatcher.group(1)
+                        : peerSocket.getInetAddress().getHostAddress() + "/" + keyMatcher.group(1);
+                paramString = paramString.substring(0, keyMatcher.start()).strip();
+                if (paramString.isEmpty()) {
+                    paramString = null;
+                }
+            }
+        }
+
+        if (event.isEnabled()) {
+            Integer accountNumber = command.getAccountNumber(paramString);
+            event.accountNumber = accountNumber == null ? 0 : accountNumber;
+        }
+
+        if (connections.isInBatch()) {
+            // A remembered response would outlive a batch which is rolled back later
+            if (idempotencyKey != null) {
+                connections.failBatch("Idempotency keys cannot be used in a batch.");
+                out.print("ER Idempotency keys cannot be used in a batch.\r\n");
+                out.flush();
+                return commandName;
+            }
+            // A batch may only contain changes it can make in its own transaction
+            if (!checkBatchable(command, paramString, out)) {
+                return commandName;
+            }
+        }
+
+        Tracer.getInstance().endFrame();
+        if (idempotencyKey != null) {
+            executeOnce(command, commandName, paramString, idempotencyKey, out);
+        } else {
+            dispatch(command, commandName, paramString, null, out);
+        }
+        return commandName;
+    }
+
+    /**
+     * Executes the Command, or forwards it to the node owning its account in the cluster mode.
+     * @param command Command called by the peer
+     * @param commandName Command name
+     * @param paramString String of parameters
+     * @param idempotencyKey Idempotency key scoped to the peer, forwarded with the Command, or null
+     * @param out PrintWriter the response is written to
+     */
+    private void dispatch(Command command, String commandName, String paramString, String idempotencyKey, PrintWriter out) {
+        ClusterManager cluster = ClusterManager.getInstance();
+        if (cluster.isEnabled()) {
+            Integer accountNumber = command.getAccountNumber(paramString);
+            if (accountNumber != null && !cluster.isLocal(accountNumber)) {
+                // The owning node remembers the response too, so a retry sent to any node is not executed twice
+                String message = commandName + " " + paramString + (idempotencyKey == null ? "" : " key=" + idempotencyKey);
+                forward(cluster, accountNumber, commandName, message, out);
+                return;
+            }
         }
 
         // Create the args array of Objects and pass it to the command
         // Some of the arguments may not be used by the command
-        Object[] args = new Object[4];
+        Object[] args = new Object[5];
         args[0] = peerSocket;
         args[1] = out;
         args[2] = paramString;
-        args[3] = connection;
+        args[3] = connections;
+        args[4] = host.isClusterLink();
+
+        if (connections.isInBatch()) {
+            executeInBatch(command, args, out);
+        } else {
+            command.execute(args);
+        }
+        if (!command.isReadOnly()) {
+            connections.markWrite();
+        }
+    }
+
+    /**
+     * Executes a Command sent with an idempotency key at most once. The first request with the key is executed
+     * and its response is remembered. Later requests with the same key (for example a retry after the connection
+     * dropped) receive the remembered response, waiting for it if the first request is still being executed.
+     * @param command Command called by the peer
+     * @param commandName Command name
+     * @param paramString String of parameters, without the idempotency key
+     * @param key Idempotency key scoped to the address of the peer
+     * @param out PrintWriter used to communicate with the peer
+     */
+    private void executeOnce(Command command, String commandName, String paramString, String key, PrintWriter out) {
+        IdempotencyCache cache = IdempotencyCache.getInstance();
+        String request = paramString == null ? commandName : commandName + " " + paramString;
+
+        CompletableFuture<String> previous;
+        try {
+            previous = cache.claim(key, request);
+        } catch (IllegalArgumentException e) {
+            out.print("ER " + e.getMessage() + "\r\n");
+            out.flush();
+            return;
+        }
+
+        if (previous != null) {
+            try {
+                out.print(previous.get(IDEMPOTENT_WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+            } catch (TimeoutException | ExecutionException e) {
+                out.print("ER The request with this idempotency key is still being executed.\r\n");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                out.print("ER The request with this idempotency key is still being executed.\r\n");
+            }
+            out.flush();
+            FileLogger.getLogger().info("Peer at {} repeated command {} with a known idempotency key, it was not"
+                    + " executed again.", peerSocket, commandName);
+            return;
+        }
+
+        StringWriter response = new StringWriter();
+        String responseString = null;
+        try {
+            dispatch(command, commandName, paramString, key, new PrintWriter(response));
+            responseString = response.toString();
+        } finally {
+            if (responseString == null || responseString.isEmpty()) {
+                responseString = "ER Command " + commandName + " failed.\r\n";
+            }
+            cache.complete(key, responseString);
+        }
+        out.print(responseString);
+        out.flush();
+    }
+
+    /**
+     * Checks if the Command can be used in the open batch. Only batchable Commands about accounts served
+     * by this node and stored in the shard of the batch are accepted. A refused Command is answered
+     * with an error message and the batch is marked as failed, so it will be rolled back.
+     * @param command Command called by the peer
+     * @param paramString String of parameters
+     * @param out PrintWriter used to communicate with the peer
+     * @return True if the Command can be executed
+     */
+    private boolean checkBatchable(Command command, String paramString, PrintWriter out) {
+        String error = null;
+        Integer accountNumber = command.getAccountNumber(paramString);
+        if (!command.isBatchable()) {
+            error = "Command " + command.getName() + " cannot be used in a batch, use COMMIT or ROLLBACK first.";
+        } else if (accountNumber != null && !ClusterManager.getInstance().isLocal(accountNumber)) {
+            error = "Accounts served by another node cannot be used in a batch.";
+        } else if (accountNumber != null && !connections.isBatchShard(DatabaseConnector.getInstance().getShard(accountNumber))) {
+            error = "A batch can only change accounts stored in the same shard.";
+        }
+        if (error == null) {
+            return true;
+        }
+        connections.failBatch(error);
+        out.print("ER " + error + "\r\n");
+        out.flush();
+        return false;
+    }
 
+    /**
+     * Executes a Command of the open batch. The response is sent to the peer right away, and if it is an error
+     * (or the Command did not respond at all), the batch is marked as failed, so it will be rolled back.
+     * @param command Command called by the peer
+     * @param args Arguments of the Command
+     * @param out PrintWriter used to communicate with the peer
+     */
+    private void executeInBatch(Command command, Object[] args, PrintWriter out) {
+        StringWriter response = new StringWriter();
+        args[1] = new PrintWriter(response);
         command.execute(args);
+
+        String responseString = response.toString();
+        if (responseString.isEmpty()) {
+            responseString = "ER Command " + command.getName() + " failed.\r\n";
+        }
+        if (responseString.startsWith("ER ")) {
+            connections.failBatch(responseString.substring(3).strip());
+        }
+        out.print(responseString);
+        out.flush();
+    }
+
+    /**
+     * Forwards a message about an account owned by another node of the cluster, and sends
+     * the response to the peer. Messages received over a cluster link are never forwarded again,
+     * the sending node is told that its routing table is stale instead.
+     * @param cluster ClusterManager instance
+     * @param accountNumber Account number the message is about
+     * @param commandName Command name
+     * @param message Message forwarded to the owning node
+     * @param out PrintWriter used to communicate with the peer
+     */
+    private void forward(ClusterManager cluster, int accountNumber, String commandName, String message, PrintWriter out) {
+        if (host.isClusterLink()) {
+            out.print(ClusterManager.NOT_OWNER_RESPONSE + "\r\n");
+            out.flush();
+            return;
+        }
+        try {
+            String response = cluster.forward(accountNumber, message);
+            out.print(response + "\r\n");
+            out.flush();
+        } catch (IOException e) {
+            out.print("ER Failed to reach the node serving the account.\r\n");
+            out.flush();
+            FileLogger.getLogger().severe("Peer at {} used command {}, but the node serving the account could not be"
+                    + " reached.", peerSocket, commandName);
+        }
     }
 }
@@ -1,5 +1,8 @@
 package peer;
 
+import cluster.ClusterManager;
+import jfr.PeerConnectEvent;
+import jfr.PeerDisconnectEvent;
 import util.FileLogger;
 
 import java.io.*;
@@ -17,6 +20,7 @@ public class HostPeer {
     private final int port;
     private final int backlog;
     private final ArrayList<Socket> peers = new ArrayList<>();
+    private final boolean clusterLink;
 
     /**
      * This constructor sets the IP address, port and backlog.
@@ -25,31 +29,59 @@ public class HostPeer {
      * @param backlog Max incoming connections
      */
     public HostPeer(InetAddress address, int port, int backlog) {
+        this(address, port, backlog, false);
+    }
+
+    /**
+     * This constructor sets the IP address, port, backlog and whether the host accepts
+     * internal links from other nodes of the cluster instead of peers.
+     * @param address IP address the program will run on
+     * @param port Port the program will run on
+     * @param backlog Max incoming connections
+     * @param clusterLink True if the host accepts cluster links
+     */
+    public HostPeer(InetAddress address, int port, int backlog, boolean clusterLink) {
         this.address = address;
         this.port = port;
         this.backlog = backlog;
+        this.clusterLink = clusterLink;
     }
 
     /**
      * Creates a new ServerSocket with the configured port, backlog and address.
      * New peer sockets are accepted in a loop, and they are passed to a new HandleThread,
-     * which will handle the communication with the peer.
+     * which will handle the communication with the peer. A cluster link host closes the sockets
+     * of peers which are not members of the cluster.
      */
     public void start() {
         try (ServerSocket socket = new ServerSocket(port, backlog, address)) {
-            FileLogger.getLogger().info("Server started on " + socket.getInetAddress() + ":" + socket.getLocalPort() + ".");
+            FileLogger.getLogger().info("Server started on {}:{}.", socket.getInetAddress(), socket.getLocalPort());
             while (true) {
                 Socket peerSocket = socket.accept();
+                if (clusterLink && !ClusterManager.getInstance().isMember(peerSocket.getInetAddress())) {
+                    FileLogger.getLogger().warning("Peer at {} is not a cluster member, refusing its link.", peerSocket);
+                    try {
+                        peerSocket.close();
+                    } catch (IOException e) {
+                        // The socket is dropped either way, the host keeps accepting
+                    }
+                    continue;
+                }
                 peerSocket.setSoTimeout(60000);
                 peers.add(peerSocket);
-                FileLogger.getLogger().info("Peer at " + peerSocket.getInetAddress() + ":" + peerSocket.getPort() + " connected.");
+                FileLogger.getLogger().info("Peer at {} connected.", peerSocket);
+                PeerConnectEvent connectEvent = new PeerConnectEvent();
+                if (connectEvent.shouldCommit()) {
+                    connectEvent.peer = describe(peerSocket);
+                    connectEvent.clusterLink = clusterLink;
+                    connectEvent.commit();
+                }
 
                 ClientPeer peer = ClientPeer.create(peerSocket);
 
                 if (peer == null) {
-                    FileLogger.getLogger().severe("An error occurred while communicating with " +
-                            "peer at " + peerSocket.getInetAddress() + ":" + peerSocket.getPort() + ".");
-                    disconnectPeer(peerSocket);
+                    FileLogger.getLogger().severe("An error occurred while communicating with peer at {}.", peerSocket);
+                    disconnectPeer(peerSocket, "error");
                     continue;
                 }
 
@@ -66,15 +98,39 @@ public class HostPeer {
     /**
      * Disconnects a connected peer.
      * @param socket Peer socket
+     * @param reason Reason of the disconnection recorded by Java Flight Recorder - closed, timeout or error
      */
-    public void disconnectPeer(Socket socket) {
+    public void disconnectPeer(Socket socket, String reason) {
+        PeerDisconnectEvent disconnectEvent = new PeerDisconnectEvent();
+        if (disconnectEvent.shouldCommit()) {
+            disconnectEvent.peer = describe(socket);
+            disconnectEvent.reason = reason;
+            disconnectEvent.commit();
+        }
         try {
             socket.close();
             peers.remove(socket);
-            FileLogger.getLogger().info("Peer at " + socket.getInetAddress() + ":" + socket.getPort() + " disconnected.");
+            FileLogger.getLogger().info("Peer at {} disconnected.", socket);
         } catch (IOException e) {
-            FileLogger.getLogger().severe("IOException occurred while disconnecting peer" +
-                    " at " + socket.getInetAddress() + ":" + socket.getPort() + ".");
+            FileLogger.getLogger().severe("IOException occurred while disconnecting peer at {}.", socket);
         }
     }
+
+    /**
+     * Returns the address and port of a peer.
+     * @param socket Peer socket
+     * @return Address and port of the peer
+     */
+    private static String describe(Socket socket) {
+        return socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+    }
+
+    /**
+     * Returns whether the host accepts internal links from other nodes of the cluster. Commands received
+     * over a cluster link are always executed locally and never forwarded again.
+     * @return True if the host accepts cluster links
+     */
+    public boolean isClusterLink() {
+        return clusterLink;
+    }
 }
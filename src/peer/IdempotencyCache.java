@@ -0,0 +1,114 @@
+package peer;
+
+import command.Command;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class implements the Singleton design pattern. It remembers the responses to recent requests sent with
+ * an idempotency key, so a peer which lost the connection before receiving a response can send the request again
+ * and receive the same response, without the request being executed twice. Keys are forgotten after a time limit,
+ * and the oldest keys are forgotten when the cache is full. Error responses are not remembered, so a failed
+ * request can be retried with the same key, except when another bank could not be reached: it may have executed
+ * the request anyway, so a retry must not send it again.
+ */
+public class IdempotencyCache {
+    private static IdempotencyCache instance;
+    private int maxEntries = 100000;
+    private long ttlMillis = 600000;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * A remembered request and its response, which is not complete while the request is being executed.
+     * @param request Command name and parameters of the request
+     * @param response Response to the request
+     * @param createdAt Time the request was received, in milliseconds
+     */
+    private record Entry(String request, CompletableFuture<String> response, long createdAt) {
+    }
+
+    /**
+     * Returns the Singleton instance of IdempotencyCache.
+     * @return Singleton instance of IdempotencyCache
+     */
+    public static synchronized IdempotencyCache getInstance() {
+        if (instance == null) {
+            instance = new IdempotencyCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the limits of the cache.
+     * @param maxEntries Maximum number of remembered keys
+     * @param ttlMillis How long a key is remembered, in milliseconds
+     */
+    public synchronized void configure(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Claims the given key for a request. If the key is not known, the caller becomes responsible for executing
+     * the request and must call complete() afterwards. If the key is known, the response of the first request
+     * is returned instead, and it may still be incomplete if that request is being executed.
+     * @param key Idempotency key, including the address of the peer
+     * @param request Command name and parameters of the request
+     * @return Response of the first request with the same key, or null if the key has been claimed by the caller
+     * @throws IllegalArgumentException The key was used for a different request
+     */
+    public synchronized CompletableFuture<String> claim(String key, String request) throws IllegalArgumentException {
+        long now = System.currentTimeMillis();
+        evict(now);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (!entry.request().equals(request)) {
+                throw new IllegalArgumentException("The idempotency key was used for a different request.");
+            }
+            return entry.response();
+        }
+        entries.put(key, new Entry(request, new CompletableFuture<>(), now));
+        return null;
+    }
+
+    /**
+     * Stores the response to a request whose key was claimed by the caller. Error responses are not remembered,
+     * unless the outcome of the request is unknown because the bank owning the account could not be reached.
+     * @param key Idempotency key, including the address of the peer
+     * @param response Response to the request
+     */
+    public synchronized void complete(String key, String response) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        if (response.startsWith("ER ") && !response.startsWith(Command.UNREACHABLE_BANK_RESPONSE)) {
+            entries.remove(key);
+        }
+        entry.response().complete(response);
+    }
+
+    /**
+     * Forgets the keys which are too old, and the oldest keys while the cache is full.
+     * Entries are ordered by the time they were created, so only the oldest ones have to be checked.
+     * @param now Current time in milliseconds
+     */
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            boolean expired = now - entry.createdAt() > ttlMillis;
+            if (!expired && entries.size() < maxEntries) {
+                break;
+            }
+            // A request which is still being executed keeps its key until it completes
+            if (!entry.response().isDone()) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+}
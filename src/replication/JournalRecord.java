@@ -0,0 +1,73 @@
+package replication;
+
+import database.Mutation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This record is a single entry of the binary replication journal. Every record has the same size
+ * (29 bytes): type (1 byte), sequence number (8 bytes), timestamp (8 bytes), account number (4 bytes)
+ * and balance after the change (8 bytes). Applying a record sets the absolute balance, so applying
+ * the same record twice is harmless.
+ * @param type Record type, one of the constants of this class
+ * @param sequence Sequence number, increasing by one with every change committed on the primary
+ * @param timestamp Time the record was created on the primary, in milliseconds since the epoch
+ * @param accountNumber Bank account number (0 for records not related to an account)
+ * @param balance Balance of the account after the change
+ */
+public record JournalRecord(byte type, long sequence, long timestamp, int accountNumber, long balance) {
+    public static final byte HEARTBEAT = 0;
+    public static final byte CREATE = 1;
+    public static final byte DEPOSIT = 2;
+    public static final byte WITHDRAW = 3;
+    public static final byte REMOVE = 4;
+    public static final byte SNAPSHOT_BEGIN = 5;
+    public static final byte SNAPSHOT_ACCOUNT = 6;
+    public static final byte SNAPSHOT_END = 7;
+
+    /**
+     * Creates a record describing a committed change.
+     * @param sequence Sequence number
+     * @param mutation Committed change
+     * @return New JournalRecord instance
+     */
+    public static JournalRecord of(long sequence, Mutation mutation) {
+        byte type = switch (mutation.type()) {
+            case CREATE -> CREATE;
+            case DEPOSIT -> DEPOSIT;
+            case WITHDRAW -> WITHDRAW;
+            case REMOVE -> REMOVE;
+        };
+        return new JournalRecord(type, sequence, mutation.timestamp(), mutation.accountNumber(), mutation.balance());
+    }
+
+    /**
+     * Writes the record in its binary form.
+     * @param out Output the record is written to
+     * @throws IOException Error occurred while writing
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(type);
+        out.writeLong(sequence);
+        out.writeLong(timestamp);
+        out.writeInt(accountNumber);
+        out.writeLong(balance);
+    }
+
+    /**
+     * Reads a record in its binary form.
+     * @param in Input the record is read from
+     * @return Read JournalRecord instance
+     * @throws IOException Error occurred while reading, or the stream has ended
+     */
+    public static JournalRecord read(DataInput in) throws IOException {
+        byte type = in.readByte();
+        long sequence = in.readLong();
+        long timestamp = in.readLong();
+        int accountNumber = in.readInt();
+        long balance = in.readLong();
+        return new JournalRecord(type, sequence, timestamp, accountNumber, balance);
+    }
+}
@@ -0,0 +1,173 @@
+package replication;
+
+import database.DatabaseConnector;
+import database.Mutation;
+import database.MutationListener;
+import database.Shard;
+import database.ShardConnections;
+import database.tables.BankAccount;
+import util.FileLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class implements the Singleton design pattern. It runs on the primary node and streams every
+ * committed account change to the connected standby nodes as a binary journal. A new standby first
+ * receives a snapshot of all accounts, followed by the changes committed since it connected.
+ * A standby which cannot keep up is disconnected, and it resynchronizes with a new snapshot.
+ */
+public class JournalSender implements MutationListener {
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int HEARTBEAT_INTERVAL = 1000;
+    private static final int SNAPSHOT_FETCH_SIZE = 1000;
+
+    private static JournalSender instance;
+    private final CopyOnWriteArrayList<BlockingQueue<JournalRecord>> standbyQueues = new CopyOnWriteArrayList<>();
+    private long sequence = 0;
+
+    /**
+     * Returns the Singleton instance of JournalSender.
+     * @return Singleton instance of JournalSender
+     */
+    public static synchronized JournalSender getInstance() {
+        if (instance == null) {
+            instance = new JournalSender();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts accepting standby nodes on a separate thread.
+     * @param address IP address the journal is served on
+     * @param port Port the journal is served on
+     */
+    public void start(InetAddress address, int port) {
+        Thread acceptThread = new Thread(() -> acceptStandbys(address, port), "journal-sender");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Assigns the next sequence number to a committed change and queues it for every standby.
+     * @param mutation Committed change
+     */
+    @Override
+    public synchronized void onMutation(Mutation mutation) {
+        JournalRecord record = JournalRecord.of(++sequence, mutation);
+        for (BlockingQueue<JournalRecord> queue : standbyQueues) {
+            if (!queue.offer(record)) {
+                // The standby is too slow, it will be disconnected and resynchronize
+                queue.clear();
+                standbyQueues.remove(queue);
+            }
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last committed change.
+     * @return Sequence number
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the number of connected standby nodes.
+     * @return Number of standbys
+     */
+    public int getStandbyCount() {
+        return standbyQueues.size();
+    }
+
+    /**
+     * Accepts standby nodes in a loop, every standby is served by its own thread.
+     * @param address IP address the journal is served on
+     * @param port Port the journal is served on
+     */
+    private void acceptStandbys(InetAddress address, int port) {
+        try (ServerSocket serverSocket = new ServerSocket(port, 10, address)) {
+            FileLogger.getLogger().info("Replication journal served on {}:{}.", address, port);
+            while (true) {
+                Socket standby = serverSocket.accept();
+                Thread standbyThread = new Thread(() -> serveStandby(standby), "journal-standby");
+                standbyThread.setDaemon(true);
+                standbyThread.start();
+            }
+        } catch (IOException e) {
+            FileLogger.getLogger().severe("IOException occurred while serving the replication journal.");
+        }
+    }
+
+    /**
+     * Sends the snapshot and then the live journal to a standby node, until it disconnects or falls behind.
+     * @param standby Standby socket
+     */
+    private void serveStandby(Socket standby) {
+        BlockingQueue<JournalRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ShardConnections connections = new ShardConnections();
+        try (standby; DataOutputStream out = new DataOutputStream(new BufferedOutputStream(standby.getOutputStream(), 65536))) {
+            standby.setTcpNoDelay(true);
+            FileLogger.getLogger().info("Standby at {} connected.", standby);
+
+            // Changes committed during the snapshot are queued and applied after it
+            standbyQueues.add(queue);
+            sendSnapshot(connections, out);
+            connections.close();
+
+            while (standbyQueues.contains(queue)) {
+                JournalRecord record = queue.poll(HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    new JournalRecord(JournalRecord.HEARTBEAT, getSequence(), System.currentTimeMillis(), 0, 0).write(out);
+                } else {
+                    // Write every queued record before flushing, so bursts are sent in one batch
+                    do {
+                        record.write(out);
+                    } while ((record = queue.poll()) != null);
+                }
+                out.flush();
+            }
+            FileLogger.getLogger().warning("Standby at {} fell behind the journal, disconnecting.", standby);
+        } catch (IOException | SQLException e) {
+            FileLogger.getLogger().info("Standby at {} disconnected.", standby);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            standbyQueues.remove(queue);
+            connections.close();
+        }
+    }
+
+    /**
+     * Sends a snapshot of all accounts, read shard by shard.
+     * @param connections Database connections used to read the accounts
+     * @param out Journal output
+     * @throws SQLException Error occurred while reading the accounts
+     * @throws IOException Error occurred while sending the snapshot
+     */
+    private void sendSnapshot(ShardConnections connections, DataOutputStream out) throws SQLException, IOException {
+        long snapshotSequence = getSequence();
+        new JournalRecord(JournalRecord.SNAPSHOT_BEGIN, snapshotSequence, System.currentTimeMillis(), 0, 0).write(out);
+        for (Shard shard : DatabaseConnector.getInstance().getShards()) {
+            Connection connection = connections.getConnection(shard);
+            if (connection == null) {
+                throw new SQLException("Failed to connect to shard " + shard.getIndex() + ".");
+            }
+            BankAccount.scan(connection, shard.getFirstAccountNumber(), shard.getLastAccountNumber(), SNAPSHOT_FETCH_SIZE,
+                    (accountNumber, balance) -> new JournalRecord(JournalRecord.SNAPSHOT_ACCOUNT, snapshotSequence,
+                            System.currentTimeMillis(), accountNumber, balance).write(out));
+        }
+        new JournalRecord(JournalRecord.SNAPSHOT_END, snapshotSequence, System.currentTimeMillis(), 0, 0).write(out);
+        out.flush();
+    }
+}
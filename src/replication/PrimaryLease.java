@@ -0,0 +1,113 @@
+package replication;
+
+import database.ApplicationLocks;
+import database.DatabaseConnector;
+import database.Shard;
+import util.FileLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * This class implements the Singleton design pattern. It holds the lease of the bank code, an exclusive
+ * application lock in the database of the first shard, so that only one node of a primary and its standbys
+ * serves the bank code. The lock belongs to the session of a dedicated connection, so the database releases it
+ * when the node stops or loses the connection. A standby which cannot reach the primary takes over only
+ * if it gets the lease, a node which loses the lease stops, because another node may already serve the bank code.
+ */
+public class PrimaryLease {
+    private static final int CHECK_INTERVAL = 1000;
+
+    private static PrimaryLease instance;
+    private Connection connection;
+
+    /**
+     * Returns the Singleton instance of PrimaryLease.
+     * @return Singleton instance of PrimaryLease
+     */
+    public static synchronized PrimaryLease getInstance() {
+        if (instance == null) {
+            instance = new PrimaryLease();
+        }
+        return instance;
+    }
+
+    /**
+     * Tries to get the lease of the bank code without waiting for it. Once the lease is acquired,
+     * it is checked every second on a separate thread, and the node stops if the lease is lost.
+     * @param bankCode Bank code the lease is acquired for
+     * @return True if this node holds the lease, false if another node holds it or the database cannot be reached
+     */
+    public synchronized boolean acquire(String bankCode) {
+        if (connection != null) {
+            return true;
+        }
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        List<Shard> shards = connector.getShards();
+        Connection leaseConnection = shards.isEmpty() ? null : connector.getConnection(shards.get(0));
+        if (leaseConnection == null) {
+            return false;
+        }
+        String resource = getResource(bankCode);
+        try {
+            if (!ApplicationLocks.acquire(leaseConnection, resource, 0)) {
+                connector.closeConnection(leaseConnection);
+                return false;
+            }
+        } catch (SQLException e) {
+            connector.closeConnection(leaseConnection);
+            return false;
+        }
+        connection = leaseConnection;
+        FileLogger.getLogger().info("Acquired the lease of bank code {}.", bankCode);
+
+        Thread checkThread = new Thread(() -> check(resource, bankCode), "primary-lease");
+        checkThread.setDaemon(true);
+        checkThread.start();
+        return true;
+    }
+
+    /**
+     * Checks every second that the session of the lease connection still holds the lock.
+     * If it does not, the node stops, so that it never changes accounts while another node serves the bank code.
+     * @param resource Name of the application lock
+     * @param bankCode Bank code the lease was acquired for
+     */
+    private void check(String resource, String bankCode) {
+        while (true) {
+            try {
+                Thread.sleep(CHECK_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!isHeld(resource)) {
+                FileLogger.getLogger().severe("Lost the lease of bank code {}, stopping the node.", bankCode);
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the session of the lease connection holds the lock.
+     * @param resource Name of the application lock
+     * @return True if the lock is held, false if it is not or the database cannot be reached
+     */
+    private synchronized boolean isHeld(String resource) {
+        try {
+            return ApplicationLocks.isHeld(connection, resource);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the name of the application lock of a bank code.
+     * @param bankCode Bank code
+     * @return Name of the application lock
+     */
+    private static String getResource(String bankCode) {
+        return "bank-lease:" + bankCode;
+    }
+}
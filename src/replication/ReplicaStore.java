@@ -0,0 +1,138 @@
+package replication;
+
+import database.Mutation;
+import database.MutationListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class implements the Singleton design pattern. It keeps the balance of every account in memory,
+ * so a standby node can serve AB, BA and BN without the database. After the standby takes over,
+ * the store keeps serving reads and is updated by the changes the node commits itself.
+ */
+public class ReplicaStore implements MutationListener {
+    private static ReplicaStore instance;
+    private final ConcurrentHashMap<Integer, Long> balances = new ConcurrentHashMap<>();
+    private volatile boolean active = false;
+    private volatile long totalBalance = 0;
+    private volatile long lastSequence = 0;
+    private volatile long lagMillis = 0;
+
+    /**
+     * Returns the Singleton instance of ReplicaStore.
+     * @return Singleton instance of ReplicaStore
+     */
+    public static synchronized ReplicaStore getInstance() {
+        if (instance == null) {
+            instance = new ReplicaStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Applies a journal record received from the primary.
+     * @param record Journal record
+     */
+    public synchronized void apply(JournalRecord record) {
+        switch (record.type()) {
+            case JournalRecord.SNAPSHOT_BEGIN -> {
+                balances.clear();
+                totalBalance = 0;
+                active = false;
+            }
+            case JournalRecord.SNAPSHOT_END -> active = true;
+            case JournalRecord.REMOVE -> remove(record.accountNumber());
+            case JournalRecord.CREATE, JournalRecord.DEPOSIT, JournalRecord.WITHDRAW, JournalRecord.SNAPSHOT_ACCOUNT ->
+                    put(record.accountNumber(), record.balance());
+            default -> {
+                // Heartbeats only carry the sequence number and timestamp
+            }
+        }
+        lastSequence = record.sequence();
+        lagMillis = Math.max(0, System.currentTimeMillis() - record.timestamp());
+    }
+
+    /**
+     * Applies a change committed by this node after it has taken over.
+     * @param mutation Committed change
+     */
+    @Override
+    public synchronized void onMutation(Mutation mutation) {
+        if (mutation.type() == Mutation.Type.REMOVE) {
+            remove(mutation.accountNumber());
+        } else {
+            put(mutation.accountNumber(), mutation.balance());
+        }
+    }
+
+    /**
+     * Returns whether the store holds a complete copy of the accounts and can serve reads.
+     * @return True after the first snapshot has been received
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Returns the balance of an account.
+     * @param accountNumber Bank account number
+     * @return Balance, or null if the account does not exist
+     */
+    public Long getBalance(int accountNumber) {
+        return balances.get(accountNumber);
+    }
+
+    /**
+     * Returns the total balance of all accounts.
+     * @return Total balance
+     */
+    public long getTotalBalance() {
+        return totalBalance;
+    }
+
+    /**
+     * Returns the number of accounts.
+     * @return Number of accounts
+     */
+    public int getAccountAmount() {
+        return balances.size();
+    }
+
+    /**
+     * Returns the sequence number of the last applied record.
+     * @return Sequence number
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns the replication lag measured on the last applied record: the time between creating
+     * the record on the primary and applying it on the standby.
+     * @return Replication lag in milliseconds
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * Sets the balance of an account and updates the total balance.
+     * @param accountNumber Bank account number
+     * @param balance New balance
+     */
+    private void put(int accountNumber, long balance) {
+        Long previous = balances.put(accountNumber, balance);
+        totalBalance += balance - (previous == null ? 0 : previous);
+    }
+
+    /**
+     * Removes an account and updates the total balance.
+     * @param accountNumber Bank account number
+     */
+    private void remove(int accountNumber) {
+        Long previous = balances.remove(accountNumber);
+        if (previous != null) {
+            totalBalance -= previous;
+        }
+    }
+}
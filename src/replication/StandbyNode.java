@@ -0,0 +1,128 @@
+package replication;
+
+import database.MutationPublisher;
+import util.FileLogger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * This class implements the Singleton design pattern. In the standby mode, the node follows
+ * the replication journal of the primary node and applies it to the ReplicaStore. If the primary
+ * cannot be reached for longer than the failover timeout, the standby takes over its bank code, but only
+ * after it gets the PrimaryLease, which the primary holds while it is running.
+ */
+public class StandbyNode {
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final int RECONNECT_INTERVAL = 500;
+
+    private static StandbyNode instance;
+    private volatile boolean standby = false;
+    private volatile boolean promoted = false;
+
+    /**
+     * Returns the Singleton instance of StandbyNode.
+     * @return Singleton instance of StandbyNode
+     */
+    public static synchronized StandbyNode getInstance() {
+        if (instance == null) {
+            instance = new StandbyNode();
+        }
+        return instance;
+    }
+
+    /**
+     * Enters the standby mode and starts following the journal of the primary on a separate thread.
+     * @param primaryHost Host of the primary's replication journal
+     * @param primaryPort Port of the primary's replication journal
+     * @param failoverMillis How long the primary may be unreachable before the standby takes over
+     * @param bankCode Bank code whose lease the standby must get before it takes over
+     * @param takeover Action which starts serving the bank code, called once when the standby takes over
+     */
+    public void start(String primaryHost, int primaryPort, long failoverMillis, String bankCode, Runnable takeover) {
+        standby = true;
+        // The thread is not a daemon, it keeps the standby running even if it serves no reads
+        new Thread(() -> follow(primaryHost, primaryPort, failoverMillis, bankCode, takeover), "journal-standby").start();
+    }
+
+    /**
+     * Returns whether the node is a standby which has not taken over yet. Standbys only serve reads.
+     * @return True if the node is a standby
+     */
+    public boolean isStandby() {
+        return standby;
+    }
+
+    /**
+     * Returns whether the node was a standby and has taken over the bank code.
+     * @return True if the node has taken over
+     */
+    public boolean isPromoted() {
+        return promoted;
+    }
+
+    /**
+     * Follows the journal of the primary and reconnects when the connection is lost.
+     * Takes over once the primary has been unreachable for longer than the failover timeout and the lease
+     * of the bank code has been acquired. A primary which only cannot be reached by the standby still holds
+     * the lease, so the standby keeps following it instead of serving the bank code at the same time.
+     * @param primaryHost Host of the primary's replication journal
+     * @param primaryPort Port of the primary's replication journal
+     * @param failoverMillis Failover timeout in milliseconds
+     * @param bankCode Bank code whose lease must be acquired
+     * @param takeover Action which starts serving the bank code
+     */
+    private void follow(String primaryHost, int primaryPort, long failoverMillis, String bankCode, Runnable takeover) {
+        long lastContact = System.currentTimeMillis();
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(primaryHost, primaryPort), CONNECT_TIMEOUT);
+                // The primary sends a heartbeat every second, a silent primary is treated as unreachable
+                socket.setSoTimeout((int)failoverMillis);
+                FileLogger.getLogger().info("Following the replication journal of {}:{}.", primaryHost, primaryPort);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 65536));
+                ReplicaStore store = ReplicaStore.getInstance();
+                while (true) {
+                    store.apply(JournalRecord.read(in));
+                    lastContact = System.currentTimeMillis();
+                }
+            } catch (IOException e) {
+                // The primary is unreachable, retry until the failover timeout expires
+            }
+
+            if (System.currentTimeMillis() - lastContact > failoverMillis) {
+                if (PrimaryLease.getInstance().acquire(bankCode)) {
+                    FileLogger.getLogger().warning("Primary at {}:{} has been unreachable for {} ms, taking over.",
+                            primaryHost, primaryPort, failoverMillis);
+                    promote(takeover);
+                    return;
+                }
+                FileLogger.getLogger().warning("Primary at {}:{} has been unreachable for {} ms, but the lease of bank code {} could not be acquired, not taking over.",
+                        primaryHost, primaryPort, failoverMillis, bankCode);
+                // The lease is tried again after another failover timeout
+                lastContact = System.currentTimeMillis();
+            }
+            try {
+                Thread.sleep(RECONNECT_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Leaves the standby mode. The ReplicaStore starts following the changes committed by this node,
+     * so it keeps serving reads with a warm state, and the bank code is taken over.
+     * @param takeover Action which starts serving the bank code
+     */
+    private void promote(Runnable takeover) {
+        MutationPublisher.getInstance().addListener(ReplicaStore.getInstance());
+        standby = false;
+        promoted = true;
+        takeover.run();
+    }
+}
@@ -0,0 +1,11 @@
+package robbery;
+
+/**
+ * Values of a bank found by the BankScanner.
+ * @param bankCode Bank code (IP address)
+ * @param port Port the bank was found on
+ * @param amount Total balance of the bank (BA)
+ * @param clients Number of bank accounts of the bank (BN)
+ */
+public record BankInfo(String bankCode, int port, long amount, long clients) {
+}
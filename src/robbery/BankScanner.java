@@ -0,0 +1,209 @@
+package robbery;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This class searches an IPv4 address range for banks. Every address and bank port is probed
+ * on its own virtual thread, so the scan takes about as long as the slowest probe instead of the sum
+ * of all probes. The number of probes running at once is limited, so the scan does not run out of sockets.
+ */
+public class BankScanner {
+    /**
+     * First port a bank may run on.
+     */
+    public static final int FIRST_PORT = 65525;
+    /**
+     * Last port a bank may run on.
+     */
+    public static final int LAST_PORT = 65535;
+
+    private final long firstAddress;
+    private final long lastAddress;
+    private final int concurrency;
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    /**
+     * This private constructor sets the address range and the probe settings.
+     * @param firstAddress First address of the range, as a number
+     * @param lastAddress Last address of the range, as a number
+     * @param concurrency Maximum number of probes running at once
+     * @param connectTimeout Connect timeout of a probe in milliseconds
+     * @param readTimeout Response timeout of a probe in milliseconds
+     */
+    private BankScanner(long firstAddress, long lastAddress, int concurrency, int connectTimeout, int readTimeout) {
+        this.firstAddress = firstAddress;
+        this.lastAddress = lastAddress;
+        this.concurrency = concurrency;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Attempts to create a new BankScanner.
+     * @param firstAddress First IPv4 address of the range
+     * @param lastAddress Last IPv4 address of the range
+     * @param concurrency Maximum number of probes running at once
+     * @param connectTimeout Connect timeout of a probe in milliseconds
+     * @param readTimeout Response timeout of a probe in milliseconds
+     * @return New BankScanner instance
+     * @throws IllegalArgumentException Invalid address range or settings
+     * @throws UnknownHostException An address could not be parsed
+     */
+    public static BankScanner create(String firstAddress, String lastAddress, int concurrency, int connectTimeout, int readTimeout)
+            throws IllegalArgumentException, UnknownHostException {
+        long first = toNumber(firstAddress);
+        long last = toNumber(lastAddress);
+        if (first > last || last - first >= 65536) {
+            throw new IllegalArgumentException("Scan range must be in order and contain at most 65536 addresses.");
+        }
+        if (concurrency < 1 || connectTimeout < 1 || readTimeout < 1) {
+            throw new IllegalArgumentException("Scan concurrency and timeouts must be greater than 0.");
+        }
+        return new BankScanner(first, last, concurrency, connectTimeout, readTimeout);
+    }
+
+    /**
+     * Probes every address and port of the range and returns the banks which answered.
+     * @param ownBankCode Bank code of this bank, which is left out
+     * @return List of found banks, ordered by their address
+     * @throws InterruptedException The scan was interrupted
+     */
+    public List<BankInfo> scan(String ownBankCode) throws InterruptedException {
+        Map<String, BankInfo> banks = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long address = firstAddress; address <= lastAddress; address++) {
+                String bankCode = toAddress(address);
+                if (bankCode.equals(ownBankCode)) {
+                    continue;
+                }
+                for (int port = FIRST_PORT; port <= LAST_PORT; port++) {
+                    permits.acquire();
+                    int probedPort = port;
+                    executor.submit(() -> {
+                        try {
+                            BankInfo bank = probe(bankCode, probedPort);
+                            if (bank != null) {
+                                banks.putIfAbsent(bankCode, bank);
+                            }
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+            }
+        } // Closing the executor waits for every probe
+
+        List<BankInfo> found = new ArrayList<>();
+        for (long address = firstAddress; address <= lastAddress; address++) {
+            BankInfo bank = banks.get(toAddress(address));
+            if (bank != null) {
+                found.add(bank);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Connects to the given address and port, checks that a bank with the same bank code answers,
+     * and retrieves its total balance and number of clients.
+     * @param bankCode Bank code (IP address)
+     * @param port Port
+     * @return Values of the bank, or null if no bank answered correctly
+     */
+    private BankInfo probe(String bankCode, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(bankCode, port), connectTimeout);
+            socket.setSoTimeout(readTimeout);
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+
+            // All three requests are sent at once, the bank answers them in order
+            out.write("BC\r\nBA\r\nBN\r\n");
+            out.flush();
+            String bankCodeResponse = in.readLine();
+            String amountResponse = in.readLine();
+            String clientsResponse = in.readLine();
+            if (!("BC " + bankCode).equals(strip(bankCodeResponse))) {
+                return null;
+            }
+            long amount = parseValue(amountResponse, "BA");
+            long clients = parseValue(clientsResponse, "BN");
+            if (amount < 0 || clients < 0) {
+                return null;
+            }
+            return new BankInfo(bankCode, port, amount, clients);
+        } catch (IOException e) {
+            return null; // Nothing is listening, or it is not a bank
+        }
+    }
+
+    /**
+     * Parses a numeric response, for example "BA 1000".
+     * @param response Response line
+     * @param commandName Expected command name
+     * @return Parsed value, or -1 if the response is malformed
+     */
+    private static long parseValue(String response, String commandName) {
+        String stripped = strip(response);
+        if (stripped == null || !stripped.startsWith(commandName + " ")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(stripped.substring(commandName.length() + 1).strip());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Strips a response line.
+     * @param response Response line, may be null
+     * @return Stripped line, or null
+     */
+    private static String strip(String response) {
+        return response == null ? null : response.strip();
+    }
+
+    /**
+     * Converts an IPv4 address to a number, so ranges can be iterated.
+     * @param address IPv4 address
+     * @return Address as a number
+     * @throws UnknownHostException The address could not be parsed
+     * @throws IllegalArgumentException The address is not an IPv4 address
+     */
+    private static long toNumber(String address) throws UnknownHostException, IllegalArgumentException {
+        if (!address.matches("^\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}$")) {
+            throw new IllegalArgumentException("Scan range must consist of IPv4 addresses.");
+        }
+        byte[] bytes = InetAddress.getByName(address).getAddress();
+        long number = 0;
+        for (byte b : bytes) {
+            number = (number << 8) | (b & 0xFF);
+        }
+        return number;
+    }
+
+    /**
+     * Converts a number back to an IPv4 address.
+     * @param number Address as a number
+     * @return IPv4 address
+     */
+    private static String toAddress(long number) {
+        return ((number >> 24) & 0xFF) + "." + ((number >> 16) & 0xFF) + "." + ((number >> 8) & 0xFF) + "." + (number & 0xFF);
+    }
+}
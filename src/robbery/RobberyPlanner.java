@@ -0,0 +1,107 @@
+package robbery;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * This class finds the banks which should be robbed to get at least the target amount of money,
+ * while affecting the fewest clients. It is a 0/1 knapsack problem solved by dynamic programming over
+ * the number of clients: for every number of clients, the largest amount reachable with at most that many
+ * clients is kept. The plan is the smallest number of clients whose amount reaches the target.
+ * The time and memory needed grow with the number of banks times the total number of clients.
+ */
+public class RobberyPlanner {
+    /**
+     * Maximum number of banks times clients the planner works with, which limits the memory used.
+     */
+    public static final long MAX_CELLS = 100_000_000L;
+
+    /**
+     * A robbery plan.
+     * @param banks Banks to be robbed
+     * @param amount Total balance of the banks
+     * @param clients Total number of clients of the banks
+     */
+    public record Plan(List<BankInfo> banks, long amount, long clients) {
+    }
+
+    /**
+     * This private constructor prevents instantiation, the planner only has static methods.
+     */
+    private RobberyPlanner() {
+    }
+
+    /**
+     * Finds the banks which reach the target amount while affecting the fewest clients.
+     * @param banks Banks which can be robbed
+     * @param target Target amount of money
+     * @return The plan, or null if all banks together do not reach the target
+     * @throws IllegalArgumentException The banks have too many clients to be planned
+     */
+    public static Plan plan(List<BankInfo> banks, long target) throws IllegalArgumentException {
+        long totalClients = 0;
+        for (BankInfo bank : banks) {
+            totalClients += bank.clients();
+        }
+        if ((long)banks.size() * (totalClients + 1) > MAX_CELLS) {
+            throw new IllegalArgumentException("The found banks have too many clients to plan the robbery.");
+        }
+        int maxClients = (int)totalClients;
+
+        // best[c] is the largest amount reachable with at most c clients
+        long[] best = new long[maxClients + 1];
+        List<BitSet> taken = new ArrayList<>(banks.size());
+        for (BankInfo bank : banks) {
+            BitSet takenWithClients = new BitSet(maxClients + 1);
+            int clients = (int)bank.clients();
+            // Going down from the largest number of clients uses every bank at most once
+            for (int c = maxClients; c >= clients; c--) {
+                long amount = saturatedAdd(best[c - clients], bank.amount());
+                if (amount > best[c]) {
+                    best[c] = amount;
+                    takenWithClients.set(c);
+                }
+            }
+            taken.add(takenWithClients);
+        }
+
+        int clients = -1;
+        for (int c = 0; c <= maxClients; c++) {
+            if (best[c] >= target) {
+                clients = c;
+                break;
+            }
+        }
+        if (clients < 0) {
+            return null;
+        }
+
+        // Walk the decisions back from the last bank to find the banks of the plan
+        List<BankInfo> robbed = new ArrayList<>();
+        long amount = 0;
+        long planClients = 0;
+        int remaining = clients;
+        for (int i = banks.size() - 1; i >= 0; i--) {
+            if (taken.get(i).get(remaining)) {
+                BankInfo bank = banks.get(i);
+                robbed.add(0, bank);
+                amount = saturatedAdd(amount, bank.amount());
+                planClients += bank.clients();
+                remaining -= (int)bank.clients();
+            }
+        }
+        return new Plan(robbed, amount, planClients);
+    }
+
+    /**
+     * Adds two non-negative amounts, the result is capped at Long.MAX_VALUE.
+     * @param a First amount
+     * @param b Second amount
+     * @return Sum of the amounts
+     */
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
@@ -0,0 +1,157 @@
+package stats;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * This class holds the statistics of a single Command: the latency of all its messages, the latency split
+ * by outcome (successful responses and every type of ER response), and the time spent in the database.
+ * Error types are told apart by the error message with every number replaced by #, so messages which differ only
+ * in account numbers, amounts or addresses share a type. Only MAX_ERROR_TYPES of them are kept separately,
+ * further types are counted as OTHER_ERROR, so unexpected messages cannot exhaust memory.
+ */
+public class CommandMetrics implements CommandMetricsMXBean {
+    public static final String OTHER_ERROR = "Other errors";
+    private static final int MAX_ERROR_TYPES = 16;
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+");
+
+    private final String name;
+    private final long startNanos;
+    private final LatencyHistogram all = new LatencyHistogram();
+    private final LatencyHistogram ok = new LatencyHistogram();
+    private final LatencyHistogram database = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> errors = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor which sets the Command name and the time the statistics are counted from.
+     * @param name Command name
+     * @param startNanos Time the statistics are counted from, as returned by System.nanoTime()
+     */
+    CommandMetrics(String name, long startNanos) {
+        this.name = name;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Records a handled message.
+     * @param error Error message of the ER response, or null if the response was successful
+     * @param nanos Time spent handling the message in nanoseconds
+     * @param databaseNanos Time spent in the database in nanoseconds
+     */
+    void record(String error, long nanos, long databaseNanos) {
+        all.record(nanos);
+        database.record(databaseNanos);
+        if (error == null) {
+            ok.record(nanos);
+            return;
+        }
+        String type = getErrorType(error);
+        LatencyHistogram histogram = errors.get(type);
+        if (histogram == null) {
+            histogram = errors.computeIfAbsent(errors.size() < MAX_ERROR_TYPES ? type : OTHER_ERROR,
+                    key -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * Returns the type of an error message, the message with every number replaced by #.
+     * @param error Error message
+     * @return Error type, for example "Account # is locked by another batch."
+     */
+    static String getErrorType(String error) {
+        return NUMBER_PATTERN.matcher(error).replaceAll("#");
+    }
+
+    /**
+     * Returns the histogram of all messages.
+     * @return Latency histogram
+     */
+    public LatencyHistogram getAll() {
+        return all;
+    }
+
+    /**
+     * Returns the histogram of successfully answered messages.
+     * @return Latency histogram
+     */
+    public LatencyHistogram getOk() {
+        return ok;
+    }
+
+    /**
+     * Returns the histogram of the time spent in the database.
+     * @return Latency histogram
+     */
+    public LatencyHistogram getDatabase() {
+        return database;
+    }
+
+    /**
+     * Returns the histograms of messages answered with an error, keyed by the error type.
+     * @return Latency histograms sorted by the error type
+     */
+    public Map<String, LatencyHistogram> getErrors() {
+        return new TreeMap<>(errors);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return all.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return all.getCount() - ok.getCount();
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        errors.forEach((error, histogram) -> counts.put(error, histogram.getCount()));
+        return counts;
+    }
+
+    @Override
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0 : all.getCount() / seconds;
+    }
+
+    @Override
+    public long getP50Micros() {
+        return all.getPercentile(0.5) / 1000;
+    }
+
+    @Override
+    public long getP99Micros() {
+        return all.getPercentile(0.99) / 1000;
+    }
+
+    @Override
+    public long getP999Micros() {
+        return all.getPercentile(0.999) / 1000;
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return all.getMax() / 1000;
+    }
+
+    @Override
+    public long getDatabaseP50Micros() {
+        return database.getPercentile(0.5) / 1000;
+    }
+
+    @Override
+    public long getDatabaseP99Micros() {
+        return database.getPercentile(0.99) / 1000;
+    }
+}
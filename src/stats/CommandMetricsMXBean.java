@@ -0,0 +1,75 @@
+package stats;
+
+import java.util.Map;
+
+/**
+ * This interface describes the statistics of a single Command as they are exposed over JMX.
+ * Latencies are in microseconds and cover the whole handling of a message, including the database.
+ */
+public interface CommandMetricsMXBean {
+    /**
+     * Returns the Command name.
+     * @return Command name
+     */
+    String getName();
+
+    /**
+     * Returns the number of handled messages.
+     * @return Number of messages
+     */
+    long getCount();
+
+    /**
+     * Returns the number of messages answered with an error.
+     * @return Number of errors
+     */
+    long getErrorCount();
+
+    /**
+     * Returns the number of errors of every type, keyed by the error type (the error message with numbers replaced by #).
+     * @return Error counts
+     */
+    Map<String, Long> getErrorCounts();
+
+    /**
+     * Returns the mean number of messages per second since the node started.
+     * @return Throughput in messages per second
+     */
+    double getThroughput();
+
+    /**
+     * Returns the median latency.
+     * @return 50th percentile in microseconds
+     */
+    long getP50Micros();
+
+    /**
+     * Returns the 99th percentile of the latency.
+     * @return 99th percentile in microseconds
+     */
+    long getP99Micros();
+
+    /**
+     * Returns the 99.9th percentile of the latency.
+     * @return 99.9th percentile in microseconds
+     */
+    long getP999Micros();
+
+    /**
+     * Returns the largest latency.
+     * @return Largest latency in microseconds
+     */
+    long getMaxMicros();
+
+    /**
+     * Returns the median time spent in the database.
+     * @return 50th percentile in microseconds
+     */
+    long getDatabaseP50Micros();
+
+    /**
+     * Returns the 99th percentile of the time spent in the database.
+     * @return 99th percentile in microseconds
+     */
+    long getDatabaseP99Micros();
+}
@@ -0,0 +1,92 @@
+package stats;
+
+import util.FileLogger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class implements the Singleton design pattern. It collects the latency statistics of every Command
+ * handled by the node, which are sent to peers by the ST Command. The statistics of each Command are also
+ * registered as an MXBean named bank:type=CommandStats,name=[command], so they can be read over JMX.
+ */
+public class CommandStats {
+    private static CommandStats instance;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, CommandMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the Singleton instance of CommandStats.
+     * @return Singleton instance of CommandStats
+     */
+    public static synchronized CommandStats getInstance() {
+        if (instance == null) {
+            instance = new CommandStats();
+        }
+        return instance;
+    }
+
+    /**
+     * Records a handled message. The statistics of a Command are created when it is first used.
+     * @param commandName Command name
+     * @param error Error message of the ER response, or null if the response was successful
+     * @param nanos Time spent handling the message in nanoseconds
+     * @param databaseNanos Time spent in the database in nanoseconds
+     */
+    public void record(String commandName, String error, long nanos, long databaseNanos) {
+        CommandMetrics commandMetrics = metrics.get(commandName);
+        if (commandMetrics == null) {
+            commandMetrics = metrics.computeIfAbsent(commandName, this::createMetrics);
+        }
+        commandMetrics.record(error, nanos, databaseNanos);
+    }
+
+    /**
+     * Returns the statistics of a Command.
+     * @param commandName Command name
+     * @return Statistics of the Command, or null if it has not been used yet
+     */
+    public CommandMetrics getMetrics(String commandName) {
+        return metrics.get(commandName);
+    }
+
+    /**
+     * Returns the statistics of every Command used so far.
+     * @return List of statistics, sorted by the Command name
+     */
+    public List<CommandMetrics> getAllMetrics() {
+        List<CommandMetrics> list = new ArrayList<>(metrics.values());
+        list.sort(Comparator.comparing(CommandMetrics::getName));
+        return list;
+    }
+
+    /**
+     * Returns the time the statistics have been collected for.
+     * @return Time in seconds
+     */
+    public long getUptimeSeconds() {
+        return (System.nanoTime() - startNanos) / 1_000_000_000L;
+    }
+
+    /**
+     * Creates the statistics of a Command and registers them over JMX.
+     * @param commandName Command name
+     * @return Statistics of the Command
+     */
+    private CommandMetrics createMetrics(String commandName) {
+        CommandMetrics commandMetrics = new CommandMetrics(commandName, startNanos);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(commandMetrics,
+                    new ObjectName("bank:type=CommandStats,name=" + commandName));
+        } catch (JMException e) {
+            FileLogger.getLogger().warning("Statistics of command {} could not be registered over JMX.", commandName);
+        }
+        return commandMetrics;
+    }
+}
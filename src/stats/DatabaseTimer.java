@@ -0,0 +1,93 @@
+package stats;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class measures the time a peer's commands spend in the database. Connections wrapped by it
+ * add the duration of every statement execution, commit and rollback to a single counter, which is read
+ * and reset after each command. Queries executed on several shards in parallel add up their durations.
+ */
+public class DatabaseTimer {
+    private static final Set<String> TIMED_CONNECTION_METHODS = Set.of("commit", "rollback");
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * Wraps a connection, so that the time spent in it is added to this timer. Statements created
+     * by the connection are wrapped as well.
+     * @param connection Database connection, may be null
+     * @return Wrapped connection, or null if the connection is null
+     */
+    public Connection wrap(Connection connection) {
+        if (connection == null) {
+            return null;
+        }
+        return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                new TimingHandler(connection, true));
+    }
+
+    /**
+     * Returns the time spent in the database since the last call and resets the timer.
+     * @return Time in nanoseconds
+     */
+    public long takeNanos() {
+        return nanos.getAndSet(0);
+    }
+
+    /**
+     * Passes calls to the wrapped connection or statement, timing the ones which wait for the database.
+     */
+    private class TimingHandler implements InvocationHandler {
+        private final Object target;
+        private final boolean isConnection;
+
+        /**
+         * Constructor which sets the wrapped object.
+         * @param target Wrapped connection or statement
+         * @param isConnection True if the target is a connection
+         */
+        TimingHandler(Object target, boolean isConnection) {
+            this.target = target;
+            this.isConnection = isConnection;
+        }
+
+        /**
+         * Calls the method on the wrapped object. Statements returned by a connection are wrapped too.
+         * @param proxy Proxy instance
+         * @param method Called method
+         * @param args Arguments of the method
+         * @return Result of the method
+         * @throws Throwable Exception thrown by the method
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            boolean timed = isConnection ? TIMED_CONNECTION_METHODS.contains(name) : name.startsWith("execute");
+            long start = timed ? System.nanoTime() : 0;
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (timed) {
+                    nanos.addAndGet(System.nanoTime() - start);
+                }
+            }
+            if (isConnection && result instanceof Statement statement) {
+                // PreparedStatement and CallableStatement proxies must implement the interface they were asked for
+                Class<?> type = method.getReturnType();
+                return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                        new TimingHandler(statement, false));
+            }
+            return result;
+        }
+    }
+}
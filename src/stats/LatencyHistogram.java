@@ -0,0 +1,143 @@
+package stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class records latencies in nanoseconds into a histogram with a high dynamic range. Buckets are
+ * log-linear: every power of two is split into SUB_BUCKETS buckets of equal width, so any recorded value
+ * from a nanosecond up to MAX_VALUE is kept with a relative error of about 3 %, in a fixed amount of memory.
+ * Recording is a few atomic additions without a lock, so many threads may record at once.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Largest value which is told apart, larger values are counted as this value (about 18 minutes).
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are counted as zero.
+     * @param nanos Latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long previous;
+        while (value > (previous = max.get()) && !max.compareAndSet(previous, value)) {
+            // Another thread has recorded a value in the meantime, compare again
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return Number of recorded values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     * @return Sum in nanoseconds
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     * @return Mean in nanoseconds, or 0 if no values were recorded
+     */
+    public long getMean() {
+        long values = count.get();
+        return values == 0 ? 0 : sum.get() / values;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     * @return Largest value in nanoseconds, or 0 if no values were recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below or at which the given fraction of recorded values lies. The upper bound
+     * of the bucket containing the value is returned, but never more than the largest recorded value.
+     * @param fraction Fraction of values, for example 0.99 for the 99th percentile
+     * @return Percentile in nanoseconds, or 0 if no values were recorded
+     */
+    public long getPercentile(double fraction) {
+        return getPercentiles(fraction)[0];
+    }
+
+    /**
+     * Returns several percentiles from a single pass over the buckets.
+     * @param fractions Fractions of values in ascending order, for example 0.5, 0.99 and 0.999
+     * @return Percentiles in nanoseconds in the order of the fractions, zeros if no values were recorded
+     */
+    public long[] getPercentiles(double... fractions) {
+        // The values are read without stopping writers, so the total is counted from the buckets themselves
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long[] percentiles = new long[fractions.length];
+        if (total == 0) {
+            return percentiles;
+        }
+        long largest = max.get();
+        int next = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS && next < fractions.length; i++) {
+            seen += snapshot[i];
+            while (next < fractions.length && seen >= Math.max(1, (long)Math.ceil(fractions[next] * total))) {
+                percentiles[next++] = Math.min(highestValueOf(i), largest);
+            }
+        }
+        while (next < fractions.length) {
+            percentiles[next++] = largest;
+        }
+        return percentiles;
+    }
+
+    /**
+     * Returns the index of the bucket a value belongs to. Values below 2 * SUB_BUCKETS have a bucket each,
+     * larger values are shifted right until they fit into SUB_BUCKETS, and the shift selects the range.
+     * @param value Value between 0 and MAX_VALUE
+     * @return Index of the bucket
+     */
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int)value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int)(value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value belonging to a bucket.
+     * @param index Index of the bucket
+     * @return Largest value of the bucket
+     */
+    private static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
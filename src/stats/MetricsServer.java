@@ -0,0 +1,226 @@
+package stats;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import database.DatabaseConnector;
+import database.Shard;
+import peer.HandleThread;
+import replication.StandbyNode;
+import util.FileLogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * This class implements the Singleton design pattern. It runs an HTTP server with the metrics of the node
+ * in the Prometheus text format, and with health checks for load balancers:
+ * /metrics returns the metrics, /health/live answers as long as the node runs, and /health/ready answers
+ * with 200 only if every shard database can be reached and the node is not a standby, otherwise with 503.
+ * The server has its own threads and only reads counters which Commands update atomically,
+ * so scraping never makes a Command wait.
+ */
+public class MetricsServer {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final int DATABASE_CHECK_TIMEOUT = 2;
+    private static final long READY_CACHE_MILLIS = 1000;
+
+    private static MetricsServer instance;
+    private HttpServer server;
+    private volatile long readyCheckedAt = 0;
+    private volatile String notReadyReason = null;
+
+    /**
+     * Returns the Singleton instance of MetricsServer.
+     * @return Singleton instance of MetricsServer
+     */
+    public static synchronized MetricsServer getInstance() {
+        if (instance == null) {
+            instance = new MetricsServer();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the HTTP server. Calling this method again does nothing.
+     * @param address Address and port the server listens on
+     * @throws IOException The server could not be started
+     */
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> respond(exchange, 200, renderMetrics()));
+        server.createContext("/health/live", exchange -> respond(exchange, 200, "OK\n"));
+        server.createContext("/health/ready", exchange -> {
+            String reason = checkReady();
+            respond(exchange, reason == null ? 200 : 503, reason == null ? "OK\n" : reason + "\n");
+        });
+        server.setExecutor(Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        FileLogger.getLogger().info("Metrics server started on {}.", address);
+    }
+
+    /**
+     * Sends a plain text response and closes the exchange.
+     * @param exchange HTTP exchange
+     * @param status HTTP status code
+     * @param body Response body
+     * @throws IOException The response could not be sent
+     */
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream stream = exchange.getResponseBody()) {
+                stream.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+
+    /**
+     * Checks if the node can serve peers. The result is kept for READY_CACHE_MILLIS, so frequent checks
+     * by several load balancers do not open a database connection each.
+     * @return Reason why the node is not ready, or null if it is ready
+     */
+    private String checkReady() {
+        long now = System.currentTimeMillis();
+        if (now - readyCheckedAt < READY_CACHE_MILLIS) {
+            return notReadyReason;
+        }
+        String reason = null;
+        if (StandbyNode.getInstance().isStandby()) {
+            reason = "The node is a standby.";
+        } else if (DatabaseConnector.getInstance().getShards().isEmpty()) {
+            reason = "The database is not configured.";
+        } else {
+            DatabaseConnector connector = DatabaseConnector.getInstance();
+            for (Shard shard : connector.getShards()) {
+                Connection connection = connector.getConnection(shard);
+                try {
+                    if (connection == null || !connection.isValid(DATABASE_CHECK_TIMEOUT)) {
+                        reason = "The database of shard " + shard.getIndex() + " cannot be reached.";
+                        break;
+                    }
+                } catch (SQLException e) {
+                    reason = "The database of shard " + shard.getIndex() + " cannot be reached.";
+                    break;
+                } finally {
+                    connector.closeConnection(connection);
+                }
+            }
+        }
+        notReadyReason = reason;
+        readyCheckedAt = now;
+        return reason;
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text format. Latencies are exposed as summaries in seconds.
+     * @return Metrics
+     */
+    private String renderMetrics() {
+        CommandStats stats = CommandStats.getInstance();
+        List<CommandMetrics> allMetrics = stats.getAllMetrics();
+        StringBuilder text = new StringBuilder(4096);
+
+        gauge(text, "bank_uptime_seconds", "Time since the node started.", stats.getUptimeSeconds());
+        gauge(text, "bank_peers_connected", "Number of connected peers.", HandleThread.getLivePeerCount());
+        gauge(text, "bank_database_connections_open", "Number of open database connections.",
+                DatabaseConnector.getInstance().getOpenConnectionCount());
+
+        header(text, "bank_commands_total", "Number of handled messages by command.", "counter");
+        for (CommandMetrics metrics : allMetrics) {
+            text.append("bank_commands_total{command=\"").append(metrics.getName()).append("\"} ")
+                    .append(metrics.getCount()).append('\n');
+        }
+
+        header(text, "bank_command_errors_total", "Number of ER responses by command and error type.", "counter");
+        for (CommandMetrics metrics : allMetrics) {
+            for (Map.Entry<String, Long> error : metrics.getErrorCounts().entrySet()) {
+                text.append("bank_command_errors_total{command=\"").append(metrics.getName())
+                        .append("\",error=\"").append(escape(error.getKey())).append("\"} ")
+                        .append(error.getValue()).append('\n');
+            }
+        }
+
+        header(text, "bank_command_latency_seconds", "Time from reading a message to sending the response.", "summary");
+        for (CommandMetrics metrics : allMetrics) {
+            summary(text, "bank_command_latency_seconds", metrics.getName(), metrics.getAll());
+        }
+
+        header(text, "bank_command_database_seconds", "Time a message spent in the database.", "summary");
+        for (CommandMetrics metrics : allMetrics) {
+            summary(text, "bank_command_database_seconds", metrics.getName(), metrics.getDatabase());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Appends a gauge with its header.
+     * @param text Metrics being rendered
+     * @param name Metric name
+     * @param help Description of the metric
+     * @param value Value of the gauge
+     */
+    private void gauge(StringBuilder text, String name, String help, long value) {
+        header(text, name, help, "gauge");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Appends the HELP and TYPE lines of a metric.
+     * @param text Metrics being rendered
+     * @param name Metric name
+     * @param help Description of the metric
+     * @param type Prometheus type of the metric
+     */
+    private void header(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Appends the quantiles, sum and count of a latency histogram.
+     * @param text Metrics being rendered
+     * @param name Metric name
+     * @param commandName Command name used as the label
+     * @param histogram Latency histogram
+     */
+    private void summary(StringBuilder text, String name, String commandName, LatencyHistogram histogram) {
+        long[] percentiles = histogram.getPercentiles(QUANTILES);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            text.append(name).append("{command=\"").append(commandName).append("\",quantile=\"").append(QUANTILES[i])
+                    .append("\"} ").append(percentiles[i] / 1e9).append('\n');
+        }
+        text.append(name).append("_sum{command=\"").append(commandName).append("\"} ")
+                .append(histogram.getSum() / 1e9).append('\n');
+        text.append(name).append("_count{command=\"").append(commandName).append("\"} ")
+                .append(histogram.getCount()).append('\n');
+    }
+
+    /**
+     * Escapes a label value as required by the Prometheus text format.
+     * @param value Label value
+     * @return Escaped value
+     */
+    private String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
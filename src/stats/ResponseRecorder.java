@@ -0,0 +1,90 @@
+package stats;
+
+import trace.Stage;
+import trace.Tracer;
+
+import java.io.PrintWriter;
+
+/**
+ * This class passes everything written to a peer to its PrintWriter, and remembers the first line
+ * of the current response, so that the outcome of a Command can be told without changing the Command.
+ * Flushing the response to the peer is measured as the WRITE stage of the traced message.
+ */
+public class ResponseRecorder extends PrintWriter {
+    private static final int MAX_LINE_LENGTH = 128;
+    private final StringBuilder line = new StringBuilder();
+    private boolean lineComplete = false;
+
+    /**
+     * Constructor which sets the PrintWriter used to communicate with the peer.
+     * @param out PrintWriter used to communicate with the peer
+     */
+    public ResponseRecorder(PrintWriter out) {
+        super(out);
+    }
+
+    /**
+     * Starts a new response, forgetting the previous one.
+     */
+    public void startResponse() {
+        line.setLength(0);
+        lineComplete = false;
+    }
+
+    /**
+     * Returns the error message of the current response.
+     * @return Error message, or null if the response is not an ER response
+     */
+    public String getError() {
+        if (line.length() < 3 || !line.substring(0, 3).equals("ER ")) {
+            return null;
+        }
+        return line.substring(3).strip();
+    }
+
+    @Override
+    public void flush() {
+        long traceStart = Tracer.getInstance().start();
+        super.flush();
+        Tracer.getInstance().stage(Stage.WRITE, null, traceStart);
+    }
+
+    @Override
+    public void write(int c) {
+        if (!lineComplete) {
+            remember(String.valueOf((char)c), 0, 1);
+        }
+        super.write(c);
+    }
+
+    @Override
+    public void write(char[] buf, int off, int len) {
+        if (!lineComplete) {
+            remember(new String(buf, off, len), 0, len);
+        }
+        super.write(buf, off, len);
+    }
+
+    @Override
+    public void write(String s, int off, int len) {
+        remember(s, off, len);
+        super.write(s, off, len);
+    }
+
+    /**
+     * Appends written characters to the first line of the response, until the line ends.
+     * @param s Written characters
+     * @param off Offset of the first character
+     * @param len Number of characters
+     */
+    private void remember(String s, int off, int len) {
+        for (int i = off; i < off + len && !lineComplete; i++) {
+            char c = s.charAt(i);
+            if (c == '\r' || c == '\n' || line.length() == MAX_LINE_LENGTH) {
+                lineComplete = true;
+            } else {
+                line.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package subscription;
+
+import database.Mutation;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * This class represents the subscription of a single peer. Changes of the subscribed accounts are queued
+ * and pushed to the peer by a separate task, so a slow peer never holds up the thread which committed the change.
+ * The queue is bounded. In the conflation mode, only the latest change of every account is kept,
+ * otherwise every change is pushed and changes which do not fit into the queue are counted as lost.
+ */
+public class Subscription {
+    private final PrintWriter out;
+    private final boolean conflate;
+    private final int capacity;
+    private final Set<Integer> accounts = ConcurrentHashMap.newKeySet();
+    private volatile boolean allAccounts = false;
+    private volatile boolean closed = false;
+
+    // The following fields are guarded by this
+    private final ArrayDeque<Mutation> queue = new ArrayDeque<>();
+    private final LinkedHashMap<Integer, Mutation> latest = new LinkedHashMap<>();
+    private long lost = 0;
+    private boolean scheduled = false;
+
+    /**
+     * This constructor sets the peer's PrintWriter, the mode and the size of the queue.
+     * @param out PrintWriter used to communicate with the peer
+     * @param conflate True to keep only the latest change of every account
+     * @param capacity Maximum number of queued changes
+     */
+    public Subscription(PrintWriter out, boolean conflate, int capacity) {
+        this.out = out;
+        this.conflate = conflate;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds accounts to the subscription.
+     * @param accountNumbers Bank account numbers, or null to subscribe to all accounts
+     */
+    public void add(Set<Integer> accountNumbers) {
+        if (accountNumbers == null) {
+            allAccounts = true;
+        } else {
+            accounts.addAll(accountNumbers);
+        }
+    }
+
+    /**
+     * Checks if the peer is interested in changes of the given account.
+     * @param accountNumber Bank account number
+     * @return True if the account is subscribed
+     */
+    public boolean isInterested(int accountNumber) {
+        return !closed && (allAccounts || accounts.contains(accountNumber));
+    }
+
+    /**
+     * Returns whether only the latest change of every account is kept.
+     * @return True in the conflation mode
+     */
+    public boolean isConflating() {
+        return conflate;
+    }
+
+    /**
+     * Queues a change to be pushed to the peer, and schedules the push task if it is not running yet.
+     * This method never waits for the peer.
+     * @param mutation Committed change
+     * @param executor Executor running the push tasks
+     */
+    public void offer(Mutation mutation, Executor executor) {
+        synchronized (this) {
+            if (conflate) {
+                if (latest.size() >= capacity && !latest.containsKey(mutation.accountNumber())) {
+                    lost++;
+                } else {
+                    latest.put(mutation.accountNumber(), mutation);
+                }
+            } else if (queue.size() >= capacity) {
+                lost++;
+            } else {
+                queue.add(mutation);
+            }
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        executor.execute(this::drain);
+    }
+
+    /**
+     * Stops pushing changes to the peer.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Pushes the queued changes to the peer until the queue is empty. Every change is sent as
+     * EV [account_number] [balance], or EV [account_number] REMOVED for removed accounts. If changes were lost,
+     * EV LOST [count] is sent first, so the peer knows it has to read the balances again.
+     * The peer's PrintWriter is locked while writing, so pushed lines never interleave with responses.
+     */
+    private void drain() {
+        while (true) {
+            List<Mutation> pending;
+            long lostCount;
+            synchronized (this) {
+                if (closed || (queue.isEmpty() && latest.isEmpty() && lost == 0)) {
+                    queue.clear();
+                    latest.clear();
+                    scheduled = false;
+                    return;
+                }
+                pending = new ArrayList<>(conflate ? latest.values() : queue);
+                queue.clear();
+                latest.clear();
+                lostCount = lost;
+                lost = 0;
+            }
+
+            synchronized (out) {
+                if (lostCount > 0) {
+                    out.print("EV LOST " + lostCount + "\r\n");
+                }
+                for (Mutation mutation : pending) {
+                    if (mutation.type() == Mutation.Type.REMOVE) {
+                        out.print("EV " + mutation.accountNumber() + " REMOVED\r\n");
+                    } else {
+                        out.print("EV " + mutation.accountNumber() + " " + mutation.balance() + "\r\n");
+                    }
+                }
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package subscription;
+
+import database.Mutation;
+import database.MutationListener;
+
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class implements the Singleton design pattern. It keeps the subscriptions of all peers and passes
+ * every committed account change to the interested ones (the SubscriptionHub must be registered
+ * in the MutationPublisher). Changes are only queued on the committing thread, they are pushed
+ * to the peers by platform threads, one push task per peer at a time. A push waiting for a slow peer
+ * holds the monitor of its PrintWriter, which would pin the carrier of a virtual thread and hold up
+ * every other virtual thread of the node.
+ */
+public class SubscriptionHub implements MutationListener {
+    private static SubscriptionHub instance;
+    private final ConcurrentHashMap<Socket, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final ExecutorService pushExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "subscription-push");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile int queueCapacity = 1000;
+
+    /**
+     * Returns the Singleton instance of SubscriptionHub.
+     * @return Singleton instance of SubscriptionHub
+     */
+    public static synchronized SubscriptionHub getInstance() {
+        if (instance == null) {
+            instance = new SubscriptionHub();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the maximum number of changes queued for a single peer.
+     * @param queueCapacity Queue size
+     */
+    public void configure(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Subscribes the peer to changes of the given accounts. If the peer is already subscribed,
+     * the accounts are added to its subscription.
+     * @param socket Peer Socket
+     * @param out PrintWriter used to communicate with the peer
+     * @param accountNumbers Bank account numbers, or null to subscribe to all accounts
+     * @param conflate True to keep only the latest change of every account
+     * @throws IllegalStateException The peer is already subscribed in the other mode
+     */
+    public void subscribe(Socket socket, PrintWriter out, Set<Integer> accountNumbers, boolean conflate)
+            throws IllegalStateException {
+        Subscription subscription = subscriptions.computeIfAbsent(socket,
+                key -> new Subscription(out, conflate, queueCapacity));
+        if (subscription.isConflating() != conflate) {
+            throw new IllegalStateException("Use UNSUB before changing the subscription mode.");
+        }
+        subscription.add(accountNumbers);
+    }
+
+    /**
+     * Cancels the subscription of the peer. Nothing happens if the peer is not subscribed.
+     * @param socket Peer Socket
+     * @return True if the peer was subscribed
+     */
+    public boolean unsubscribe(Socket socket) {
+        Subscription subscription = subscriptions.remove(socket);
+        if (subscription == null) {
+            return false;
+        }
+        subscription.close();
+        return true;
+    }
+
+    /**
+     * Queues the change for every peer subscribed to the account.
+     * @param mutation Committed change
+     */
+    @Override
+    public void onMutation(Mutation mutation) {
+        for (Subscription subscription : subscriptions.values()) {
+            if (subscription.isInterested(mutation.accountNumber())) {
+                subscription.offer(mutation, pushExecutor);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package trace;
+
+import java.util.Arrays;
+
+/**
+ * This class collects the stages of the message being handled by a thread. Every handling thread reuses
+ * a single instance, so tracing a message does not allocate anything unless the message is kept.
+ * At most MAX_SPANS stages are kept one by one, the durations of further stages are only added to the totals.
+ */
+class RequestTrace {
+    static final int MAX_SPANS = 32;
+
+    final Stage[] stages = new Stage[MAX_SPANS];
+    final String[] labels = new String[MAX_SPANS];
+    final long[] durations = new long[MAX_SPANS];
+    final long[] stageTotals = new long[Stage.values().length];
+    final int[] stageCounts = new int[Stage.values().length];
+    int spans;
+    long recordedNanos;
+    boolean active;
+    boolean sampled;
+    long startNanos;
+    long startMillis;
+
+    /**
+     * Starts tracing a new message, forgetting the previous one.
+     * @param sampled True if the stages of the message are added to the statistics
+     */
+    void reset(boolean sampled) {
+        for (int i = 0; i < spans; i++) {
+            labels[i] = null;
+        }
+        Arrays.fill(stageTotals, 0);
+        Arrays.fill(stageCounts, 0);
+        spans = 0;
+        recordedNanos = 0;
+        active = true;
+        this.sampled = sampled;
+        startMillis = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Adds a finished stage.
+     * @param stage Stage
+     * @param label Description of the stage (for example the SQL statement), or null
+     * @param nanos Duration in nanoseconds
+     */
+    void add(Stage stage, String label, long nanos) {
+        if (spans < MAX_SPANS) {
+            stages[spans] = stage;
+            labels[spans] = label;
+            durations[spans] = nanos;
+            spans++;
+        }
+        stageTotals[stage.ordinal()] += nanos;
+        stageCounts[stage.ordinal()]++;
+        recordedNanos += nanos;
+    }
+}
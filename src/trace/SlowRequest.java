@@ -0,0 +1,35 @@
+package trace;
+
+/**
+ * This record describes a message which took longer than the slow threshold, as kept in the slow log.
+ * @param timestamp Time the message was read in milliseconds since the epoch
+ * @param command Command name
+ * @param outcome OK, or the ER response without the line ending
+ * @param totalNanos Time spent handling the message in nanoseconds
+ * @param stages Stages in the order they happened
+ * @param labels Descriptions of the stages, null where there is none
+ * @param durations Durations of the stages in nanoseconds
+ */
+public record SlowRequest(long timestamp, String command, String outcome, long totalNanos, Stage[] stages,
+                          String[] labels, long[] durations) {
+    /**
+     * Returns the request in the format used by the TR Command, for example
+     * 1760791200000 AD 152340 frame=4 parse=12 connection=2 lock=151210 sql.findByAccountNumber.select=540 ... OK
+     * Durations are in microseconds. The outcome is last, because an error message may contain spaces.
+     * @return Request as text
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(timestamp).append(' ').append(command).append(' ').append(totalNanos / 1000);
+        for (int i = 0; i < stages.length; i++) {
+            text.append(' ').append(stages[i].label());
+            if (labels[i] != null) {
+                text.append('.').append(labels[i]);
+            }
+            text.append('=').append(durations[i] / 1000);
+        }
+        text.append(' ').append(outcome);
+        return text.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package trace;
+
+/**
+ * Stages of handling a message measured by the Tracer.
+ */
+public enum Stage {
+    /**
+     * Splitting the message, finding the Command and the checks made before it is executed.
+     */
+    FRAME,
+    /**
+     * Parsing the parameters by GeneralCommandParser.
+     */
+    PARSE,
+    /**
+     * Getting a database connection of the peer, including creating it.
+     */
+    CONNECTION,
+    /**
+     * Waiting for the lock of an account.
+     */
+    LOCK,
+    /**
+     * A single SQL statement, commit or rollback of the BankAccount table.
+     */
+    SQL,
+    /**
+     * Sending the response to the peer.
+     */
+    WRITE,
+    /**
+     * Passing a message to the logger.
+     */
+    LOG,
+    /**
+     * Time not covered by the other stages, mostly the work of the Command itself.
+     */
+    OTHER;
+
+    /**
+     * Returns the name of the stage used in the responses of the TR Command.
+     * @return Lower-case name
+     */
+    public String label() {
+        return name().toLowerCase();
+    }
+}
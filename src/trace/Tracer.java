@@ -0,0 +1,232 @@
+package trace;
+
+import stats.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class implements the Singleton design pattern. It measures how long each stage of handling a message
+ * takes: framing, parsing, getting a connection, waiting for an account lock, every SQL statement, writing
+ * the response and logging. The stages of every message are collected in a buffer of the handling thread,
+ * which costs a clock reading per stage and no allocation. When the message has been handled, the stages
+ * of a sampled fraction of messages are added to per-Command histograms, and every message slower than
+ * the threshold is copied to the slow log, which keeps only the most recent slow messages.
+ * Stages running on other threads (for example queries sent to several shards at once) are not traced.
+ */
+public class Tracer {
+    /**
+     * Value returned by start() when the current thread is not tracing a message.
+     */
+    public static final long NOT_TRACED = Long.MIN_VALUE;
+
+    // Created eagerly, so that the stages measured on every message do not synchronize on getInstance()
+    private static final Tracer instance = new Tracer();
+    private final ThreadLocal<RequestTrace> traces = ThreadLocal.withInitial(RequestTrace::new);
+    private final Map<String, StageStats> stageStats = new ConcurrentHashMap<>();
+    private final ArrayDeque<SlowRequest> slowLog = new ArrayDeque<>();
+    private volatile boolean enabled = false;
+    private volatile double sampleRate = 0;
+    private volatile long slowThresholdNanos = Long.MAX_VALUE;
+    private volatile int slowLogSize = 0;
+
+    /**
+     * Histograms of the sampled messages of a single Command: the whole message and every stage.
+     * A stage histogram only counts messages which went through the stage.
+     */
+    public static class StageStats {
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+
+        /**
+         * Constructor which creates empty histograms.
+         */
+        StageStats() {
+            for (int i = 0; i < stages.length; i++) {
+                stages[i] = new LatencyHistogram();
+            }
+        }
+
+        /**
+         * Returns the histogram of the whole message.
+         * @return Latency histogram
+         */
+        public LatencyHistogram getTotal() {
+            return total;
+        }
+
+        /**
+         * Returns the histogram of a stage.
+         * @param stage Stage
+         * @return Latency histogram
+         */
+        public LatencyHistogram getStage(Stage stage) {
+            return stages[stage.ordinal()];
+        }
+    }
+
+    /**
+     * Returns the Singleton instance of Tracer.
+     * @return Singleton instance of Tracer
+     */
+    public static Tracer getInstance() {
+        return instance;
+    }
+
+    /**
+     * Configures the Tracer. Tracing is disabled if nothing is sampled and there is no slow threshold.
+     * @param sampleRate Fraction of messages added to the statistics, between 0 and 1
+     * @param slowThresholdMillis Messages taking at least this long are kept in the slow log, 0 disables the slow log
+     * @param slowLogSize Number of slow messages kept
+     * @throws IllegalArgumentException Invalid sample rate or size
+     */
+    public synchronized void configure(double sampleRate, long slowThresholdMillis, int slowLogSize)
+            throws IllegalArgumentException {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Trace sample rate must be between 0 and 1.");
+        }
+        if (slowThresholdMillis < 0 || slowLogSize < 1) {
+            throw new IllegalArgumentException("Slow threshold must not be negative and slow log size must be positive.");
+        }
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThresholdMillis == 0 ? Long.MAX_VALUE : slowThresholdMillis * 1_000_000L;
+        this.slowLogSize = slowLogSize;
+        this.enabled = sampleRate > 0 || slowThresholdMillis > 0;
+    }
+
+    /**
+     * Starts tracing a message handled by the current thread.
+     */
+    public void begin() {
+        if (enabled) {
+            traces.get().reset(sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        }
+    }
+
+    /**
+     * Returns the start time of a stage.
+     * @return Current time in nanoseconds, or NOT_TRACED if the current thread is not tracing a message
+     */
+    public long start() {
+        if (!enabled || !traces.get().active) {
+            return NOT_TRACED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends a stage of the traced message.
+     * @param stage Stage
+     * @param label Description of the stage, or null
+     * @param start Start time returned by start()
+     */
+    public void stage(Stage stage, String label, long start) {
+        if (start == NOT_TRACED) {
+            return;
+        }
+        RequestTrace trace = traces.get();
+        if (trace.active) {
+            trace.add(stage, label, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Ends the framing stage. Stages which happened since the message was read (such as parsing it
+     * to find the account number) are not counted twice.
+     */
+    public void endFrame() {
+        if (!enabled) {
+            return;
+        }
+        RequestTrace trace = traces.get();
+        if (trace.active) {
+            trace.add(Stage.FRAME, null, Math.max(0, System.nanoTime() - trace.startNanos - trace.recordedNanos));
+        }
+    }
+
+    /**
+     * Finishes tracing the message handled by the current thread. The time not covered by any stage
+     * is added as the OTHER stage.
+     * @param commandName Command name, or null if the Command does not exist (the message is not kept then)
+     * @param outcome OK, or the ER response
+     */
+    public void finish(String commandName, String outcome) {
+        if (!enabled) {
+            return;
+        }
+        RequestTrace trace = traces.get();
+        if (!trace.active) {
+            return;
+        }
+        trace.active = false;
+        if (commandName == null) {
+            return;
+        }
+        long total = System.nanoTime() - trace.startNanos;
+        trace.add(Stage.OTHER, null, Math.max(0, total - trace.recordedNanos));
+
+        if (trace.sampled) {
+            StageStats stats = stageStats.get(commandName);
+            if (stats == null) {
+                stats = stageStats.computeIfAbsent(commandName, key -> new StageStats());
+            }
+            stats.total.record(total);
+            for (int i = 0; i < trace.stageCounts.length; i++) {
+                if (trace.stageCounts[i] > 0) {
+                    stats.stages[i].record(trace.stageTotals[i]);
+                }
+            }
+        }
+
+        if (total >= slowThresholdNanos) {
+            SlowRequest request = new SlowRequest(trace.startMillis, commandName, outcome, total,
+                    Arrays.copyOf(trace.stages, trace.spans), Arrays.copyOf(trace.labels, trace.spans),
+                    Arrays.copyOf(trace.durations, trace.spans));
+            synchronized (slowLog) {
+                if (slowLog.size() >= slowLogSize) {
+                    slowLog.pollFirst();
+                }
+                slowLog.addLast(request);
+            }
+        }
+    }
+
+    /**
+     * Returns the most recent slow messages.
+     * @param limit Maximum number of messages
+     * @return Slow messages, newest first
+     */
+    public List<SlowRequest> getSlowRequests(int limit) {
+        List<SlowRequest> requests = new ArrayList<>();
+        synchronized (slowLog) {
+            Iterator<SlowRequest> iterator = slowLog.descendingIterator();
+            while (iterator.hasNext() && requests.size() < limit) {
+                requests.add(iterator.next());
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Returns the stage statistics of the sampled messages of a Command.
+     * @param commandName Command name
+     * @return Stage statistics, or null if no message of the Command has been sampled
+     */
+    public StageStats getStageStats(String commandName) {
+        return stageStats.get(commandName);
+    }
+
+    /**
+     * Returns whether messages are being traced.
+     * @return True if the Tracer is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
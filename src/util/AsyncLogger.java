@@ -0,0 +1,564 @@
+package util;
+
+import trace.Stage;
+import trace.Tracer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * This class writes log messages to a file on a separate thread. A message is only stored in a preallocated
+ * slot of a ring buffer by the logging thread, together with its pattern and arguments. The writer thread formats
+ * the messages and writes them in batches, so logging costs the logging thread neither formatting nor I/O,
+ * and a disabled level costs a single comparison. Slots are claimed without locks, so threads logging at the same
+ * time do not block each other. When the buffer is full, the logging thread either waits for a free slot
+ * or drops the message, dropped messages are counted and reported in the log. The file is rotated when it exceeds
+ * the maximum size.
+ * <p>
+ * Patterns contain {} placeholders, which are replaced by the arguments. A Socket argument is written as
+ * its remote address and port. Arguments are formatted later, so they must not be changed after they are logged.
+ */
+public class AsyncLogger {
+    private static final long IDLE_PARK_NANOS = 1000000;
+    private static final long FULL_PARK_NANOS = 50000;
+    private static final int WRITER_BUFFER_SIZE = 65536;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final Path file;
+    private final int minLevel;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final boolean blockWhenFull;
+
+    private final Slot[] slots;
+    private final int mask;
+    // Sequence number of the last message stored in every slot, the writer waits for it before reading the slot
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed = 0;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running = false;
+    private volatile boolean closed = false;
+    private Thread writerThread;
+    private Writer writer;
+    private long fileSize;
+
+    /**
+     * A preallocated message slot of the ring buffer.
+     */
+    private static class Slot {
+        private Level level;
+        private long timestamp;
+        private String threadName;
+        private String pattern;
+        private Object arg0;
+        private Object arg1;
+        private Object arg2;
+        private Object[] args;
+    }
+
+    /**
+     * Constructor which creates a logger. Messages are buffered until the logger is started.
+     * @param file Path of the log file, messages are appended to it
+     * @param minLevel Messages with a lower level are ignored
+     * @param bufferSize Number of messages which can wait to be written, rounded up to a power of two
+     * @param blockWhenFull True if the logging thread waits while the buffer is full, false if the message is dropped
+     * @param maxFileSize Size in bytes after which the file is rotated
+     * @param maxFiles Number of rotated files which are kept (file.1 is the newest)
+     */
+    public AsyncLogger(Path file, Level minLevel, int bufferSize, boolean blockWhenFull, long maxFileSize, int maxFiles) {
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize) - 1) << 1;
+        this.file = file;
+        this.minLevel = minLevel.intValue();
+        this.blockWhenFull = blockWhenFull;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.slots = new Slot[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::writeLoop, "log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the writer thread after it writes the buffered messages. Messages logged afterwards
+     * are written to the standard error stream.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks if messages of the given level are written.
+     * @param level Level of the message
+     * @return True if the message would be written
+     */
+    public boolean isLoggable(Level level) {
+        return level.intValue() >= minLevel && minLevel != Level.OFF.intValue();
+    }
+
+    /**
+     * Logs an informational message.
+     * @param message Message
+     */
+    public void info(String message) {
+        log(Level.INFO, message, null, null, null, null);
+    }
+
+    /**
+     * Logs an informational message with one argument.
+     * @param pattern Message with a {} placeholder
+     * @param arg0 Argument
+     */
+    public void info(String pattern, Object arg0) {
+        log(Level.INFO, pattern, arg0, null, null, null);
+    }
+
+    /**
+     * Logs an informational message with two arguments.
+     * @param pattern Message with {} placeholders
+     * @param arg0 First argument
+     * @param arg1 Second argument
+     */
+    public void info(String pattern, Object arg0, Object arg1) {
+        log(Level.INFO, pattern, arg0, arg1, null, null);
+    }
+
+    /**
+     * Logs an informational message with three arguments.
+     * @param pattern Message with {} placeholders
+     * @param arg0 First argument
+     * @param arg1 Second argument
+     * @param arg2 Third argument
+     */
+    public void info(String pattern, Object arg0, Object arg1, Object arg2) {
+        log(Level.INFO, pattern, arg0, arg1, arg2, null);
+    }
+
+    /**
+     * Logs an informational message with any number of arguments.
+     * @param pattern Message with {} placeholders
+     * @param args Arguments
+     */
+    public void info(String pattern, Object... args) {
+        log(Level.INFO, pattern, null, null, null, args);
+    }
+
+    /**
+     * Logs a warning.
+     * @param message Message
+     */
+    public void warning(String message) {
+        log(Level.WARNING, message, null, null, null, null);
+    }
+
+    /**
+     * Logs a warning with one argument.
+     * @param pattern Message with a {} placeholder
+     * @param arg0 Argument
+     */
+    public void warning(String pattern, Object arg0) {
+        log(Level.WARNING, pattern, arg0, null, null, null);
+    }
+
+    /**
+     * Logs a warning with two arguments.
+     * @param pattern Message with {} placeholders
+     * @param arg0 First argument
+     * @param arg1 Second argument
+     */
+    public void warning(String pattern, Object arg0, Object arg1) {
+        log(Level.WARNING, pattern, arg0, arg1, null, null);
+    }
+
+    /**
+     * Logs a warning with three arguments.
+     * @param pattern Message with {} placeholders
+     * @param arg0 First argument
+     * @param arg1 Second argument
+     * @param arg2 Third argument
+     */
+    public void warning(String pattern, Object arg0, Object arg1, Object arg2) {
+        log(Level.WARNING, pattern, arg0, arg1, arg2, null);
+    }
+
+    /**
+     * Logs a warning with any number of arguments.
+     * @param pattern Message with {} placeholders
+     * @param args Arguments
+     */
+    public void warning(String pattern, Object... args) {
+        log(Level.WARNING, pattern, null, null, null, args);
+    }
+
+    /**
+     * Logs an error.
+     * @param message Message
+     */
+    public void severe(String message) {
+        log(Level.SEVERE, message, null, null, null, null);
+    }
+
+    /**
+     * Logs an error with one argument.
+     * @param pattern Message with a {} placeholder
+     * @param arg0 Argument
+     */
+    public void severe(String pattern, Object arg0) {
+        log(Level.SEVERE, pattern, arg0, null, null, null);
+    }
+
+    /**
+     * Logs an error with two arguments.
+     * @param pattern Message with {} placeholders
+     * @param arg0 First argument
+     * @param arg1 Second argument
+     */
+    public void severe(String pattern, Object arg0, Object arg1) {
+        log(Level.SEVERE, pattern, arg0, arg1, null, null);
+    }
+
+    /**
+     * Logs an error with three arguments.
+     * @param pattern Message with {} placeholders
+     * @param arg0 First argument
+     * @param arg1 Second argument
+     * @param arg2 Third argument
+     */
+    public void severe(String pattern, Object arg0, Object arg1, Object arg2) {
+        log(Level.SEVERE, pattern, arg0, arg1, arg2, null);
+    }
+
+    /**
+     * Logs an error with any number of arguments.
+     * @param pattern Message with {} placeholders
+     * @param args Arguments
+     */
+    public void severe(String pattern, Object... args) {
+        log(Level.SEVERE, pattern, null, null, null, args);
+    }
+
+    /**
+     * Stores a message in the next free slot. The slot is claimed by increasing the claimed sequence,
+     * which succeeds only if the writer has already consumed the message stored in the slot before.
+     * The message becomes visible to the writer when its sequence number is published. If the logger has been closed
+     * (also when FileLogger replaced it), the message is written to the standard error stream instead,
+     * so a thread still using the logger never waits for a writer which is gone.
+     * @param level Level of the message
+     * @param pattern Message pattern
+     * @param arg0 First argument, or null
+     * @param arg1 Second argument, or null
+     * @param arg2 Third argument, or null
+     * @param args All arguments if there are more than three, otherwise null
+     */
+    private void log(Level level, String pattern, Object arg0, Object arg1, Object arg2, Object[] args) {
+        if (!isLoggable(level)) {
+            return;
+        }
+        // A full buffer makes the caller wait, the traced message shows it as a slow LOG stage
+        long traceStart = Tracer.getInstance().start();
+        long sequence;
+        while (true) {
+            if (closed) {
+                logToStandardError(level, pattern, arg0, arg1, arg2, args);
+                return;
+            }
+            sequence = claimed.get();
+            if (sequence - consumed >= slots.length) {
+                if (!blockWhenFull) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                continue;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+
+        Slot slot = slots[(int)(sequence & mask)];
+        slot.level = level;
+        slot.timestamp = System.currentTimeMillis();
+        slot.threadName = Thread.currentThread().getName();
+        slot.pattern = pattern;
+        slot.arg0 = arg0;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.args = args;
+        published.set((int)(sequence & mask), sequence);
+        Tracer.getInstance().stage(Stage.LOG, null, traceStart);
+    }
+
+    /**
+     * Formats a message logged after the logger was closed and writes it to the standard error stream.
+     * @param level Level of the message
+     * @param pattern Message pattern
+     * @param arg0 First argument, or null
+     * @param arg1 Second argument, or null
+     * @param arg2 Third argument, or null
+     * @param args All arguments if there are more than three, otherwise null
+     */
+    private void logToStandardError(Level level, String pattern, Object arg0, Object arg1, Object arg2, Object[] args) {
+        Slot slot = new Slot();
+        slot.level = level;
+        slot.timestamp = System.currentTimeMillis();
+        slot.threadName = Thread.currentThread().getName();
+        slot.pattern = pattern;
+        slot.arg0 = arg0;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.args = args;
+        StringBuilder line = new StringBuilder(256);
+        format(slot, line);
+        System.err.print(line);
+    }
+
+    /**
+     * Body of the writer thread. It writes every published message in order and flushes the file
+     * when there are no more messages, then waits for new ones.
+     */
+    private void writeLoop() {
+        StringBuilder line = new StringBuilder(256);
+        long reportedDrops = 0;
+        openFile();
+        while (true) {
+            boolean stopping = !running;
+            long next = consumed;
+            int written = 0;
+            while (published.get((int)(next & mask)) == next) {
+                Slot slot = slots[(int)(next & mask)];
+                line.setLength(0);
+                format(slot, line);
+                // Arguments are released, so the buffer does not keep them alive
+                slot.arg0 = slot.arg1 = slot.arg2 = null;
+                slot.args = null;
+                consumed = ++next;
+                write(line);
+                written++;
+            }
+
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                line.setLength(0);
+                appendHeader(line, Level.WARNING, System.currentTimeMillis(), writerThread.getName());
+                line.append(drops - reportedDrops).append(" log messages were dropped because the log buffer was full.")
+                        .append(System.lineSeparator());
+                write(line);
+                reportedDrops = drops;
+                written++;
+            }
+
+            if (written > 0) {
+                flush();
+            } else if (stopping) {
+                break;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        closeFile();
+    }
+
+    /**
+     * Formats a message into a single line.
+     * @param slot Slot with the message
+     * @param line Builder the line is appended to
+     */
+    private void format(Slot slot, StringBuilder line) {
+        appendHeader(line, slot.level, slot.timestamp, slot.threadName);
+        String pattern = slot.pattern;
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while ((placeholder = pattern.indexOf("{}", start)) >= 0) {
+            line.append(pattern, start, placeholder);
+            appendArg(line, argument(slot, argIndex++));
+            start = placeholder + 2;
+        }
+        line.append(pattern, start, pattern.length()).append(System.lineSeparator());
+    }
+
+    /**
+     * Returns an argument of a message.
+     * @param slot Slot with the message
+     * @param index Index of the argument
+     * @return Argument, or null if the message has fewer arguments
+     */
+    private Object argument(Slot slot, int index) {
+        if (slot.args != null) {
+            return index < slot.args.length ? slot.args[index] : null;
+        }
+        return switch (index) {
+            case 0 -> slot.arg0;
+            case 1 -> slot.arg1;
+            case 2 -> slot.arg2;
+            default -> null;
+        };
+    }
+
+    /**
+     * Appends an argument, a Socket is written as its remote address and port.
+     * @param line Builder the argument is appended to
+     * @param arg Argument
+     */
+    private void appendArg(StringBuilder line, Object arg) {
+        if (arg instanceof Socket socket) {
+            line.append(socket.getInetAddress()).append(':').append(socket.getPort());
+        } else {
+            line.append(arg);
+        }
+    }
+
+    /**
+     * Appends the time, level and thread of a message.
+     * @param line Builder the header is appended to
+     * @param level Level of the message
+     * @param timestamp Time of the message in milliseconds since the epoch
+     * @param threadName Name of the thread which logged the message
+     */
+    private void appendHeader(StringBuilder line, Level level, long timestamp, String threadName) {
+        TIMESTAMP_FORMAT.formatTo(Instant.ofEpochMilli(timestamp), line);
+        line.append(' ').append(level.getName()).append(" [").append(threadName).append("] ");
+    }
+
+    /**
+     * Writes a line to the file and rotates the file when it exceeds the maximum size.
+     * If the file cannot be written, the line is written to the standard error stream.
+     * @param line Formatted line
+     */
+    private void write(CharSequence line) {
+        if (writer == null) {
+            System.err.print(line);
+            return;
+        }
+        try {
+            writer.append(line);
+            fileSize += line.length();
+            if (fileSize >= maxFileSize) {
+                rotate();
+            }
+        } catch (IOException e) {
+            System.err.print(line);
+        }
+    }
+
+    /**
+     * Flushes the buffered lines to the file.
+     */
+    private void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            System.err.println("Failed to write to the log file " + file + ".");
+        }
+    }
+
+    /**
+     * Renames the log file to file.1 (and older rotated files to higher numbers, the oldest one is deleted)
+     * and continues with an empty file.
+     * @throws IOException The files could not be renamed
+     */
+    private void rotate() throws IOException {
+        closeFile();
+        try {
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path older = rotatedFile(i);
+                if (Files.exists(older)) {
+                    Files.move(older, rotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (maxFiles > 0) {
+                Files.move(file, rotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(file);
+            }
+        } finally {
+            // If renaming failed, the current file keeps growing
+            openFile();
+        }
+    }
+
+    /**
+     * Returns the path of a rotated file.
+     * @param index Index of the rotated file, 1 is the newest
+     * @return Path of the rotated file
+     */
+    private Path rotatedFile(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    /**
+     * Opens the log file for appending.
+     */
+    private void openFile() {
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND), StandardCharsets.UTF_8), WRITER_BUFFER_SIZE);
+            fileSize = Files.size(file);
+        } catch (IOException e) {
+            writer = null;
+            System.err.println("File logging failed, the log file " + file + " could not be opened.");
+        }
+    }
+
+    /**
+     * Flushes and closes the log file.
+     */
+    private void closeFile() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close the log file " + file + ".");
+        }
+        writer = null;
+    }
+}
@@ -2,6 +2,7 @@ package util;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Properties;
 
@@ -10,28 +11,28 @@ import java.util.Properties;
  */
 public class ConfigLoader {
     /**
-     * Loads the database credentials from a configuration file.
+     * Loads the database credentials from a configuration file. If shards are configured,
+     * the address and database may be blank, as every shard has its own.
      * @param configFilePath Path to the config file
      * @return HashMap of property names and their values - address, database, username and password
      * @throws IOException Error occurred while reading configuration file
      * @throws IllegalArgumentException Missing or blank database credentials in the configuration file
      */
     public HashMap<String, String> loadDatabaseCredentials(String configFilePath) throws IOException, IllegalArgumentException {
-        FileInputStream fileInputStream = new FileInputStream(configFilePath);
-        Properties properties = new Properties();
-        properties.load(fileInputStream);
-        fileInputStream.close();
+        Properties properties = loadProperties(configFilePath);
 
         String address = properties.getProperty("address");
         String database = properties.getProperty("database");
         String username = properties.getProperty("username");
         String password = properties.getProperty("password");
+        String shards = properties.getProperty("shards");
+        boolean sharded = shards != null && !shards.isBlank();
 
         if(address == null || database == null || username == null || password == null) {
             throw new IllegalArgumentException("There are keys missing in the configuration file.");
         }
 
-        if(address.isBlank() || database.isBlank() || username.isBlank() || password.isBlank()) {
+        if((!sharded && (address.isBlank() || database.isBlank())) || username.isBlank() || password.isBlank()) {
             throw new IllegalArgumentException("There are values missing in the configuration file.");
         }
 
@@ -52,10 +53,7 @@ public class ConfigLoader {
      * @throws IllegalArgumentException Missing or blank P2P credentials in the configuration file
      */
     public HashMap<String, String> loadPeerSettings(String configFilePath) throws IOException, IllegalArgumentException {
-        FileInputStream fileInputStream = new FileInputStream(configFilePath);
-        Properties properties = new Properties();
-        properties.load(fileInputStream);
-        fileInputStream.close();
+        Properties properties = loadProperties(configFilePath);
 
         String hostAddress = properties.getProperty("host_address");
         String port = properties.getProperty("port");
@@ -74,4 +72,586 @@ public class ConfigLoader {
 
         return propertyDictionary;
     }
+
+    /**
+     * Loads the read coalescing settings from a configuration file. The settings are optional,
+     * if the staleness window is missing, coalesced results are never reused after the query finishes.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - readCacheMillis
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadReadCoalescingSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String readCacheMillis = properties.getProperty("read_cache_ms");
+        if (readCacheMillis == null || readCacheMillis.isBlank()) {
+            readCacheMillis = "0";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("readCacheMillis", readCacheMillis.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the account lock settings from a configuration file. The settings are optional,
+     * if the timeout is missing, a change waits for the lock of its account for 2 seconds.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - accountLockMillis
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadLockSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String accountLockMillis = properties.getProperty("account_lock_timeout_ms");
+        if (accountLockMillis == null || accountLockMillis.isBlank()) {
+            accountLockMillis = "2000";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("accountLockMillis", accountLockMillis.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the read replica settings from a configuration file. The settings are optional,
+     * if no replica addresses are present, all commands use the primary database.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - replicaAddresses (comma separated, may be empty)
+     * and readYourWritesMillis
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadReplicaSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String replicaAddresses = properties.getProperty("replica_addresses");
+        String readYourWritesMillis = properties.getProperty("read_your_writes_ms");
+        if (replicaAddresses == null) {
+            replicaAddresses = "";
+        }
+        if (readYourWritesMillis == null || readYourWritesMillis.isBlank()) {
+            readYourWritesMillis = "5000";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("replicaAddresses", replicaAddresses.strip());
+        propertyDictionary.put("readYourWritesMillis", readYourWritesMillis.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the shard settings from a configuration file. The settings are optional, if the shards key
+     * is missing or blank, an empty list is returned and the database from the credentials owns all accounts.
+     * Every shard N (starting at 1) is configured by the keys shardN_range (for example 10000-54999),
+     * shardN_address, shardN_database and the optional shardN_replica_addresses.
+     * @param configFilePath Path to the config file
+     * @return List of HashMaps, one per shard, with property names and their values - firstAccountNumber,
+     * lastAccountNumber, address, database and replicaAddresses (comma separated, may be empty)
+     * @throws IOException Error occurred while reading configuration file
+     * @throws IllegalArgumentException Missing, blank or invalid shard settings in the configuration file
+     */
+    public ArrayList<HashMap<String, String>> loadShardSettings(String configFilePath) throws IOException, IllegalArgumentException {
+        Properties properties = loadProperties(configFilePath);
+        ArrayList<HashMap<String, String>> shardSettings = new ArrayList<>();
+
+        String shards = properties.getProperty("shards");
+        if (shards == null || shards.isBlank()) {
+            return shardSettings;
+        }
+
+        int shardCount = Integer.parseInt(shards.strip());
+        for (int i = 1; i <= shardCount; i++) {
+            String range = properties.getProperty("shard" + i + "_range");
+            String address = properties.getProperty("shard" + i + "_address");
+            String database = properties.getProperty("shard" + i + "_database");
+            String replicaAddresses = properties.getProperty("shard" + i + "_replica_addresses", "");
+
+            if (range == null || address == null || database == null) {
+                throw new IllegalArgumentException("There are keys missing in the configuration file.");
+            }
+            if (range.isBlank() || address.isBlank() || database.isBlank()) {
+                throw new IllegalArgumentException("There are values missing in the configuration file.");
+            }
+
+            String[] rangeBounds = range.strip().split("-");
+            if (rangeBounds.length != 2) {
+                throw new IllegalArgumentException("Invalid shard range in the configuration file.");
+            }
+
+            HashMap<String, String> propertyDictionary = new HashMap<>();
+            propertyDictionary.put("firstAccountNumber", rangeBounds[0].strip());
+            propertyDictionary.put("lastAccountNumber", rangeBounds[1].strip());
+            propertyDictionary.put("address", address.strip());
+            propertyDictionary.put("database", database.strip());
+            propertyDictionary.put("replicaAddresses", replicaAddresses.strip());
+            shardSettings.add(propertyDictionary);
+        }
+
+        return shardSettings;
+    }
+
+    /**
+     * Loads the cluster settings from a configuration file. The settings are optional, if the cluster_nodes key
+     * is missing or blank, an empty list is returned and the node serves all accounts by itself.
+     * Every node N (starting at 1) is configured by the keys nodeN_link (host:port of its internal link)
+     * and nodeN_range (for example 10000-54999). The cluster_node key sets the id of this node.
+     * @param configFilePath Path to the config file
+     * @return List of HashMaps, one per node, with property names and their values - id, link, firstAccountNumber,
+     * lastAccountNumber and local ("true" for this node)
+     * @throws IOException Error occurred while reading configuration file
+     * @throws IllegalArgumentException Missing, blank or invalid cluster settings in the configuration file
+     */
+    public ArrayList<HashMap<String, String>> loadClusterSettings(String configFilePath) throws IOException, IllegalArgumentException {
+        Properties properties = loadProperties(configFilePath);
+        ArrayList<HashMap<String, String>> nodeSettings = new ArrayList<>();
+
+        String nodes = properties.getProperty("cluster_nodes");
+        if (nodes == null || nodes.isBlank()) {
+            return nodeSettings;
+        }
+
+        String localNode = properties.getProperty("cluster_node");
+        if (localNode == null || localNode.isBlank()) {
+            throw new IllegalArgumentException("There are values missing in the configuration file.");
+        }
+
+        int nodeCount = Integer.parseInt(nodes.strip());
+        for (int i = 1; i <= nodeCount; i++) {
+            String link = properties.getProperty("node" + i + "_link");
+            String range = properties.getProperty("node" + i + "_range");
+
+            if (link == null || range == null) {
+                throw new IllegalArgumentException("There are keys missing in the configuration file.");
+            }
+            if (link.isBlank() || range.isBlank()) {
+                throw new IllegalArgumentException("There are values missing in the configuration file.");
+            }
+
+            String[] rangeBounds = range.strip().split("-");
+            if (rangeBounds.length != 2) {
+                throw new IllegalArgumentException("Invalid node range in the configuration file.");
+            }
+
+            HashMap<String, String> propertyDictionary = new HashMap<>();
+            propertyDictionary.put("id", String.valueOf(i));
+            propertyDictionary.put("link", link.strip());
+            propertyDictionary.put("firstAccountNumber", rangeBounds[0].strip());
+            propertyDictionary.put("lastAccountNumber", rangeBounds[1].strip());
+            propertyDictionary.put("local", String.valueOf(localNode.strip().equals(String.valueOf(i))));
+            nodeSettings.add(propertyDictionary);
+        }
+
+        return nodeSettings;
+    }
+
+    /**
+     * Loads the replication settings from a configuration file. The settings are optional.
+     * If replication_port is present, the node streams its journal to standbys on that port.
+     * If standby_of is present, the node is a standby of the primary at that address.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - replicationPort (may be empty), standbyOf (host:port, may be empty),
+     * standbyPort (may be empty) and failoverMillis
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadReplicationSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String replicationPort = properties.getProperty("replication_port");
+        String standbyOf = properties.getProperty("standby_of");
+        String standbyPort = properties.getProperty("standby_port");
+        String failoverMillis = properties.getProperty("standby_failover_ms");
+        if (replicationPort == null) {
+            replicationPort = "";
+        }
+        if (standbyOf == null) {
+            standbyOf = "";
+        }
+        if (standbyPort == null) {
+            standbyPort = "";
+        }
+        if (failoverMillis == null || failoverMillis.isBlank()) {
+            failoverMillis = "5000";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("replicationPort", replicationPort.strip());
+        propertyDictionary.put("standbyOf", standbyOf.strip());
+        propertyDictionary.put("standbyPort", standbyPort.strip());
+        propertyDictionary.put("failoverMillis", failoverMillis.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the settings of forwarding commands to other banks from a configuration file. The settings are optional.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - connectTimeoutMillis, readTimeoutMillis, poolSize
+     * and allowedBanks (may be empty)
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadForwardingSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String connectTimeoutMillis = properties.getProperty("forward_connect_timeout_ms");
+        String readTimeoutMillis = properties.getProperty("forward_read_timeout_ms");
+        String poolSize = properties.getProperty("forward_pool_size");
+        String allowedBanks = properties.getProperty("forward_allowed_banks");
+        if (connectTimeoutMillis == null || connectTimeoutMillis.isBlank()) {
+            connectTimeoutMillis = "1000";
+        }
+        if (readTimeoutMillis == null || readTimeoutMillis.isBlank()) {
+            readTimeoutMillis = "5000";
+        }
+        if (poolSize == null || poolSize.isBlank()) {
+            poolSize = "4";
+        }
+        if (allowedBanks == null) {
+            allowedBanks = "";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("connectTimeoutMillis", connectTimeoutMillis.strip());
+        propertyDictionary.put("readTimeoutMillis", readTimeoutMillis.strip());
+        propertyDictionary.put("poolSize", poolSize.strip());
+        propertyDictionary.put("allowedBanks", allowedBanks.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the network scan settings of the robbery plan from a configuration file. The settings are optional,
+     * if the address range is missing, the /24 network of the bank is scanned.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - scanFirst and scanLast (may be empty), concurrency,
+     * connectTimeoutMillis and readTimeoutMillis
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadRobberySettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String scanFirst = properties.getProperty("robbery_scan_first");
+        String scanLast = properties.getProperty("robbery_scan_last");
+        String concurrency = properties.getProperty("robbery_scan_concurrency");
+        String connectTimeoutMillis = properties.getProperty("robbery_connect_timeout_ms");
+        String readTimeoutMillis = properties.getProperty("robbery_read_timeout_ms");
+        if (scanFirst == null) {
+            scanFirst = "";
+        }
+        if (scanLast == null) {
+            scanLast = "";
+        }
+        if (concurrency == null || concurrency.isBlank()) {
+            concurrency = "512";
+        }
+        if (connectTimeoutMillis == null || connectTimeoutMillis.isBlank()) {
+            connectTimeoutMillis = "300";
+        }
+        if (readTimeoutMillis == null || readTimeoutMillis.isBlank()) {
+            readTimeoutMillis = "2000";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("scanFirst", scanFirst.strip());
+        propertyDictionary.put("scanLast", scanLast.strip());
+        propertyDictionary.put("concurrency", concurrency.strip());
+        propertyDictionary.put("connectTimeoutMillis", connectTimeoutMillis.strip());
+        propertyDictionary.put("readTimeoutMillis", readTimeoutMillis.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the peer directory settings from a configuration file. The settings are optional,
+     * if the refresh interval is missing, the peer directory is disabled.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - refreshMillis (may be empty), discoveryMillis and
+     * ttlMillis (may be empty)
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadDirectorySettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String refreshMillis = properties.getProperty("directory_refresh_ms");
+        String discoveryMillis = properties.getProperty("directory_discovery_ms");
+        String ttlMillis = properties.getProperty("directory_ttl_ms");
+        if (refreshMillis == null) {
+            refreshMillis = "";
+        }
+        if (discoveryMillis == null || discoveryMillis.isBlank()) {
+            discoveryMillis = "60000";
+        }
+        if (ttlMillis == null) {
+            ttlMillis = "";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("refreshMillis", refreshMillis.strip());
+        propertyDictionary.put("discoveryMillis", discoveryMillis.strip());
+        propertyDictionary.put("ttlMillis", ttlMillis.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the idempotency settings from a configuration file. The settings are optional,
+     * default values are used if they are missing.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - cacheSize and ttlMillis
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadIdempotencySettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String cacheSize = properties.getProperty("idempotency_cache_size");
+        String ttlMillis = properties.getProperty("idempotency_ttl_ms");
+        if (cacheSize == null || cacheSize.isBlank()) {
+            cacheSize = "100000";
+        }
+        if (ttlMillis == null || ttlMillis.isBlank()) {
+            ttlMillis = "600000";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("cacheSize", cacheSize.strip());
+        propertyDictionary.put("ttlMillis", ttlMillis.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the subscription settings from a configuration file. The settings are optional,
+     * default values are used if they are missing.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - queueSize
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadSubscriptionSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String queueSize = properties.getProperty("subscription_queue_size");
+        if (queueSize == null || queueSize.isBlank()) {
+            queueSize = "1000";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("queueSize", queueSize.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the account history settings from a configuration file. The settings are optional,
+     * the account history is disabled by default.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - enabled, queueSize and batchSize
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadHistorySettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String enabled = properties.getProperty("history_enabled");
+        String queueSize = properties.getProperty("history_queue_size");
+        String batchSize = properties.getProperty("history_batch_size");
+        if (enabled == null || enabled.isBlank()) {
+            enabled = "false";
+        }
+        if (queueSize == null || queueSize.isBlank()) {
+            queueSize = "100000";
+        }
+        if (batchSize == null || batchSize.isBlank()) {
+            batchSize = "500";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("enabled", enabled.strip());
+        propertyDictionary.put("queueSize", queueSize.strip());
+        propertyDictionary.put("batchSize", batchSize.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the bulk operation settings from a configuration file. The settings are optional.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - stateFile, parallelism, chunkSize and maxPauseMillis
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadBulkSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String stateFile = properties.getProperty("bulk_state_file");
+        String parallelism = properties.getProperty("bulk_parallelism");
+        String chunkSize = properties.getProperty("bulk_chunk_size");
+        String maxPauseMillis = properties.getProperty("bulk_max_pause_ms");
+        if (stateFile == null || stateFile.isBlank()) {
+            stateFile = "bulk-operations.properties";
+        }
+        if (parallelism == null || parallelism.isBlank()) {
+            parallelism = "2";
+        }
+        if (chunkSize == null || chunkSize.isBlank()) {
+            chunkSize = "1000";
+        }
+        if (maxPauseMillis == null || maxPauseMillis.isBlank()) {
+            maxPauseMillis = "50";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("stateFile", stateFile.strip());
+        propertyDictionary.put("parallelism", parallelism.strip());
+        propertyDictionary.put("chunkSize", chunkSize.strip());
+        propertyDictionary.put("maxPauseMillis", maxPauseMillis.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the logging settings from a configuration file. The settings are optional.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - file, level, bufferSize, whenFull, maxFileMegabytes
+     * and maxFiles
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadLoggingSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String file = properties.getProperty("log_file");
+        String level = properties.getProperty("log_level");
+        String bufferSize = properties.getProperty("log_buffer_size");
+        String whenFull = properties.getProperty("log_when_full");
+        String maxFileMegabytes = properties.getProperty("log_max_file_mb");
+        String maxFiles = properties.getProperty("log_max_files");
+        if (file == null || file.isBlank()) {
+            file = "node.log";
+        }
+        if (level == null || level.isBlank()) {
+            level = "INFO";
+        }
+        if (bufferSize == null || bufferSize.isBlank()) {
+            bufferSize = "8192";
+        }
+        if (whenFull == null || whenFull.isBlank()) {
+            whenFull = "block";
+        }
+        if (maxFileMegabytes == null || maxFileMegabytes.isBlank()) {
+            maxFileMegabytes = "10";
+        }
+        if (maxFiles == null || maxFiles.isBlank()) {
+            maxFiles = "5";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("file", file.strip());
+        propertyDictionary.put("level", level.strip());
+        propertyDictionary.put("bufferSize", bufferSize.strip());
+        propertyDictionary.put("whenFull", whenFull.strip());
+        propertyDictionary.put("maxFileMegabytes", maxFileMegabytes.strip());
+        propertyDictionary.put("maxFiles", maxFiles.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the audit journal settings from a configuration file. The settings are optional,
+     * the audit journal is disabled by default.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - enabled, directory and segmentMegabytes
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadAuditSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String enabled = properties.getProperty("audit_enabled");
+        String directory = properties.getProperty("audit_dir");
+        String segmentMegabytes = properties.getProperty("audit_segment_mb");
+        if (enabled == null || enabled.isBlank()) {
+            enabled = "false";
+        }
+        if (directory == null || directory.isBlank()) {
+            directory = "audit";
+        }
+        if (segmentMegabytes == null || segmentMegabytes.isBlank()) {
+            segmentMegabytes = "64";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("enabled", enabled.strip());
+        propertyDictionary.put("directory", directory.strip());
+        propertyDictionary.put("segmentMegabytes", segmentMegabytes.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the metrics settings from a configuration file. The settings are optional,
+     * the metrics server is disabled unless its port is set.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - port (empty if disabled) and address
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadMetricsSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String port = properties.getProperty("metrics_port");
+        String address = properties.getProperty("metrics_address");
+        if (port == null) {
+            port = "";
+        }
+        if (address == null || address.isBlank()) {
+            address = "127.0.0.1";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("port", port.strip());
+        propertyDictionary.put("address", address.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Loads the tracing settings from a configuration file. The settings are optional.
+     * @param configFilePath Path to the config file
+     * @return HashMap of property names and their values - sampleRate, slowMillis and slowLogSize
+     * @throws IOException Error occurred while reading configuration file
+     */
+    public HashMap<String, String> loadTraceSettings(String configFilePath) throws IOException {
+        Properties properties = loadProperties(configFilePath);
+
+        String sampleRate = properties.getProperty("trace_sample_rate");
+        String slowMillis = properties.getProperty("trace_slow_ms");
+        String slowLogSize = properties.getProperty("trace_slow_log_size");
+        if (sampleRate == null || sampleRate.isBlank()) {
+            sampleRate = "0.01";
+        }
+        if (slowMillis == null || slowMillis.isBlank()) {
+            slowMillis = "100";
+        }
+        if (slowLogSize == null || slowLogSize.isBlank()) {
+            slowLogSize = "100";
+        }
+
+        HashMap<String, String> propertyDictionary = new HashMap<>();
+        propertyDictionary.put("sampleRate", sampleRate.strip());
+        propertyDictionary.put("slowMillis", slowMillis.strip());
+        propertyDictionary.put("slowLogSize", slowLogSize.strip());
+
+        return propertyDictionary;
+    }
+
+    /**
+     * Reads all properties from a configuration file.
+     * @param configFilePath Path to the config file
+     * @return Loaded properties
+     * @throws IOException Error occurred while reading configuration file
+     */
+    private Properties loadProperties(String configFilePath) throws IOException {
+        try (FileInputStream fileInputStream = new FileInputStream(configFilePath)) {
+            Properties properties = new Properties();
+            properties.load(fileInputStream);
+            return properties;
+        }
+    }
 }
@@ -1,33 +1,46 @@
 package util;
 
-import java.io.IOException;
-import java.util.logging.FileHandler;
+import java.nio.file.Path;
 import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.logging.SimpleFormatter;
 
 /**
- * This class encapsulates a Logger instance and sets it up.
+ * This class encapsulates an AsyncLogger instance and sets it up. Until the logging settings are loaded,
+ * messages are written to the node.log file with the default settings.
  */
 public class FileLogger {
-    private static final Logger logger = Logger.getLogger("MainLogger");
+    private static volatile AsyncLogger logger = new AsyncLogger(Path.of("node.log"), Level.INFO, 8192, true,
+            10L * 1024 * 1024, 5);
 
     static {
-        try {
-            FileHandler fileHandler = new FileHandler("node.log", true);
-            fileHandler.setFormatter(new SimpleFormatter());
-
-            logger.addHandler(fileHandler);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "File logging failed.", e);
-        }
+        logger.start();
+        // Buffered messages are written before the program exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> logger.close(), "log-shutdown"));
     }
 
     /**
-     * Returns the Logger instance.
-     * @return The Logger instance
+     * Returns the AsyncLogger instance.
+     * @return The AsyncLogger instance
      */
-    public static Logger getLogger() {
+    public static AsyncLogger getLogger() {
         return logger;
     }
+
+    /**
+     * Replaces the logger with one using the given settings. The messages buffered by the previous logger
+     * are written before the new logger starts writing, messages logged in the meantime wait in its buffer.
+     * @param file Path of the log file
+     * @param level Minimum level of written messages
+     * @param bufferSize Number of messages which can wait to be written
+     * @param blockWhenFull True if logging threads wait while the buffer is full, false if messages are dropped
+     * @param maxFileSize Size in bytes after which the file is rotated
+     * @param maxFiles Number of rotated files which are kept
+     */
+    public static synchronized void configure(Path file, Level level, int bufferSize, boolean blockWhenFull,
+                                              long maxFileSize, int maxFiles) {
+        AsyncLogger previous = logger;
+        AsyncLogger next = new AsyncLogger(file, level, bufferSize, blockWhenFull, maxFileSize, maxFiles);
+        logger = next;
+        previous.close();
+        next.start();
+    }
 }